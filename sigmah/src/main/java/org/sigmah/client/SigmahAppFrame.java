@@ -277,7 +277,9 @@ public class SigmahAppFrame implements Frame {
 						                .setAttribute("style",
 						                                "background-image: url(" + GWT.getModuleBaseURL()
 						                                                + "image-provider?" + FileUploadUtils.IMAGE_URL
-						                                                + "=" + result.getLogo() + ")");
+						                                                + "=" + result.getLogo() + "&"
+						                                                + FileUploadUtils.IMAGE_SIZE + "="
+						                                                + FileUploadUtils.IMAGE_SIZE_BANNER + ")");
 					}
 				}
 
@@ -0,0 +1,67 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.client.dispatch.callback;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.sigmah.shared.command.GetValues;
+import org.sigmah.shared.command.result.ValueResult;
+import org.sigmah.shared.command.result.ValuesResult;
+import org.sigmah.shared.dto.element.FlexibleElementDTO;
+
+import com.google.gwt.user.client.rpc.AsyncCallback;
+
+/**
+ * Gathers the values to load for a page in a single {@link GetValues} command, and
+ * calls back each element with its own value once it has been executed.
+ */
+public class ValuesCallback implements AsyncCallback<ValuesResult> {
+
+    private final GetValues command;
+    private final List<Long> elementIds = new ArrayList<Long>();
+    private final List<AsyncCallback<ValueResult>> callbacks = new ArrayList<AsyncCallback<ValueResult>>();
+
+    public ValuesCallback(int projectId, Integer amendmentId) {
+        this.command = new GetValues(projectId, amendmentId);
+    }
+
+    /**
+     * Adds an element to the command.
+     *
+     * @param element
+     *            The element whose value is loaded.
+     * @param callback
+     *            The callback receiving the value of the element.
+     */
+    public void add(FlexibleElementDTO element, AsyncCallback<ValueResult> callback) {
+        command.addElement(element.getId(), element.getEntityName());
+        elementIds.add((long) element.getId());
+        callbacks.add(callback);
+    }
+
+    public boolean isEmpty() {
+        return callbacks.isEmpty();
+    }
+
+    public GetValues getCommand() {
+        return command;
+    }
+
+    @Override
+    public void onFailure(Throwable caught) {
+        for (final AsyncCallback<ValueResult> callback : callbacks) {
+            callback.onFailure(caught);
+        }
+    }
+
+    @Override
+    public void onSuccess(ValuesResult result) {
+        for (int index = 0; index < callbacks.size(); index++) {
+            callbacks.get(index).onSuccess(result.getValue(elementIds.get(index)));
+        }
+    }
+}
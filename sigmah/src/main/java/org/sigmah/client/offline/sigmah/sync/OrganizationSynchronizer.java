@@ -72,13 +72,15 @@ public class OrganizationSynchronizer extends AbstractSynchronizer {
 
                         fireOnUpdate(0.8);
                         fireOnTaskChange(I18N.CONSTANTS.synchronizerOrganizationDownload_3());
+                        // the logo is captured with the url of the banner logo
                         store.capture(new ResourceStoreUrlCaptureHandler() {
 
                             @Override
                             public void onCapture(ResourceStoreUrlCaptureEvent event) {
                                 fireOnComplete();
                             }
-                        }, GWT.getModuleBaseURL() + "image-provider?" + FileUploadUtils.IMAGE_URL + "=" + result.getLogo());
+                        }, GWT.getModuleBaseURL() + "image-provider?" + FileUploadUtils.IMAGE_URL + "=" + result.getLogo()
+                                + "&" + FileUploadUtils.IMAGE_SIZE + "=" + FileUploadUtils.IMAGE_SIZE_BANNER);
 
                     } catch (DatabaseException ex) {
                         Log.debug("Error while writing the organization dto to the local database.", ex);
@@ -93,6 +93,7 @@ public abstract class AbstractEditorGridPresenter<ModelT extends ModelData> exte
             public void onFailure(Throwable caught) {
                 // let the monitor handle failure, we're not
                 // expecting any exceptions
+                onSaveFailed(caught);
             }
 
             public void onSuccess(Object result) {
@@ -189,4 +190,11 @@ public abstract class AbstractEditorGridPresenter<ModelT extends ModelData> exte
 
     }
 
+    /**
+     * Called after the monitor has reported the failure of the save command.
+     */
+    protected void onSaveFailed(Throwable caught) {
+
+    }
+
 }
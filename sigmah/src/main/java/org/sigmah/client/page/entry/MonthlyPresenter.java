@@ -12,10 +12,12 @@ import com.extjs.gxt.ui.client.store.ListStore;
 import com.extjs.gxt.ui.client.store.Record;
 import com.extjs.gxt.ui.client.store.Store;
 import com.extjs.gxt.ui.client.util.DateWrapper;
+import com.extjs.gxt.ui.client.widget.MessageBox;
 import org.sigmah.client.EventBus;
 import org.sigmah.client.dispatch.Dispatcher;
 import org.sigmah.client.dispatch.loader.ListCmdLoader;
 import org.sigmah.client.event.SiteEvent;
+import org.sigmah.client.i18n.I18N;
 import org.sigmah.client.page.PageId;
 import org.sigmah.client.page.PageState;
 import org.sigmah.client.page.common.grid.AbstractEditorGridPresenter;
@@ -29,6 +31,7 @@ import org.sigmah.shared.command.result.MonthlyReportResult;
 import org.sigmah.shared.dto.ActivityDTO;
 import org.sigmah.shared.dto.IndicatorRowDTO;
 import org.sigmah.shared.dto.SiteDTO;
+import org.sigmah.shared.exception.ConcurrentUpdateException;
 
 import java.util.ArrayList;
 /*
@@ -57,6 +60,11 @@ public class MonthlyPresenter extends AbstractEditorGridPresenter<IndicatorRowDT
     private int currentSiteId = -1;
     private Month startMonth;
 
+    /**
+     * Version of the loaded monthly reports, checked by the server when saving.
+     */
+    private Long version;
+
     public MonthlyPresenter(EventBus eventBus, Dispatcher service, IStateManager stateMgr, ActivityDTO activity, final View view) {
         super(eventBus, service, stateMgr, view);
         this.service = service;
@@ -68,6 +76,7 @@ public class MonthlyPresenter extends AbstractEditorGridPresenter<IndicatorRowDT
         loader.addLoadListener(new LoadListener() {
             @Override
             public void loaderLoad(LoadEvent le) {
+                version = ((MonthlyReportResult) le.getData()).getVersion();
                 view.setStartMonth(startMonth);
             }
         });
@@ -160,6 +169,24 @@ public class MonthlyPresenter extends AbstractEditorGridPresenter<IndicatorRowDT
                 changes.add(change);
             }
         }
-        return new UpdateMonthlyReports(currentSiteId, changes);
+        UpdateMonthlyReports command = new UpdateMonthlyReports(currentSiteId, changes);
+        command.setVersion(version);
+        return command;
+    }
+
+    @Override
+    protected void onSaved() {
+        // gets the version of the saved reports
+        loader.load();
+    }
+
+    @Override
+    protected void onSaveFailed(Throwable caught) {
+        if (caught instanceof ConcurrentUpdateException) {
+            // the edits cannot be saved over the newer version, which is reloaded
+            store.rejectChanges();
+            loader.load();
+            MessageBox.alert(I18N.CONSTANTS.error(), I18N.CONSTANTS.monthlyReportsChanged(), null);
+        }
     }
 }
@@ -14,6 +14,7 @@ import org.sigmah.client.EventBus;
 import org.sigmah.client.cache.UserLocalCache;
 import org.sigmah.client.dispatch.AsyncMonitor;
 import org.sigmah.client.dispatch.Dispatcher;
+import org.sigmah.client.dispatch.callback.ValuesCallback;
 import org.sigmah.client.dispatch.remote.Authentication;
 import org.sigmah.client.event.NavigationEvent;
 import org.sigmah.client.event.NavigationEvent.NavigationError;
@@ -40,7 +41,6 @@ import org.sigmah.client.ui.ToggleAnchor;
 import org.sigmah.client.util.Notification;
 import org.sigmah.shared.command.AmendmentAction;
 import org.sigmah.shared.command.GetProject;
-import org.sigmah.shared.command.GetValue;
 import org.sigmah.shared.command.UpdateEntity;
 import org.sigmah.shared.command.result.ValueResult;
 import org.sigmah.shared.command.result.VoidResult;
@@ -560,6 +560,13 @@ public class ProjectPresenter implements Frame, TabPage {
 				gridLayout.getColumnFormatter().setWidth(i, "325px");
 			}
 
+			Integer amendmentId = null;
+			if (currentProjectDTO.getCurrentAmendment() != null)
+				amendmentId = currentProjectDTO.getCurrentAmendment().getId();
+
+			// The values of all the elements are loaded by a single command.
+			final ValuesCallback valuesCallback = new ValuesCallback(currentProjectDTO.getId(), amendmentId);
+
 			for (final LayoutGroupDTO groupLayout : layout.getLayoutGroupsDTO()) {
 
 				// Checks group bounds.
@@ -591,15 +598,8 @@ public class ProjectPresenter implements Frame, TabPage {
 						defaultElement.setCache(cache);
 						defaultElement.setCurrentContainerDTO(currentProjectDTO);
 
-						Integer amendmentId = null;
-						if (currentProjectDTO.getCurrentAmendment() != null)
-							amendmentId = currentProjectDTO.getCurrentAmendment().getId();
-
-						// Remote call to ask for this element value.
-						final GetValue command = new GetValue(currentProjectDTO.getId(), element.getId(),
-						                element.getEntityName(), amendmentId);
-
-						dispatcher.execute(command, null, new AsyncCallback<ValueResult>() {
+						// Asks for this element value.
+						valuesCallback.add(element, new AsyncCallback<ValueResult>() {
 
 							@Override
 							public void onFailure(Throwable throwable) {
@@ -657,6 +657,10 @@ public class ProjectPresenter implements Frame, TabPage {
 				}
 			}
 
+			if (!valuesCallback.isEmpty()) {
+				dispatcher.execute(valuesCallback.getCommand(), null, valuesCallback);
+			}
+
 			gridPanel.setWidget(0, 1, gridLayout);
 		}
 		// Default banner.
@@ -14,6 +14,7 @@ import java.util.Map;
 import org.sigmah.client.EventBus;
 import org.sigmah.client.cache.UserLocalCache;
 import org.sigmah.client.dispatch.Dispatcher;
+import org.sigmah.client.dispatch.callback.ValuesCallback;
 import org.sigmah.client.dispatch.monitor.MaskingAsyncMonitor;
 import org.sigmah.client.dispatch.remote.Authentication;
 import org.sigmah.client.i18n.I18N;
@@ -589,6 +590,15 @@ public class ProjectDashboardPresenter implements SubPresenter {
 		final Grid layoutGrid = (Grid) phaseDTO.getPhaseModelDTO().getWidget();
 		view.getPanelSelectedPhase().add(layoutGrid);
 
+		// Retrieving the current amendment id
+		Integer amendmentId = null;
+		if (projectPresenter.getCurrentProjectDTO().getCurrentAmendment() != null)
+			amendmentId = projectPresenter.getCurrentProjectDTO().getCurrentAmendment().getId();
+
+		// The values of all the elements are loaded by a single command.
+		final ValuesCallback valuesCallback = new ValuesCallback(projectPresenter.getCurrentProjectDTO().getId(),
+		                amendmentId);
+
 		// For each layout group.
 		for (final LayoutGroupDTO groupDTO : phaseDTO.getPhaseModelDTO().getLayoutDTO().getLayoutGroupsDTO()) {
 
@@ -606,15 +616,8 @@ public class ProjectDashboardPresenter implements SubPresenter {
 				// -- ELEMENT VALUE
 				// --
 
-				// Retrieving the current amendment id
-				Integer amendmentId = null;
-				if (projectPresenter.getCurrentProjectDTO().getCurrentAmendment() != null)
-					amendmentId = projectPresenter.getCurrentProjectDTO().getCurrentAmendment().getId();
-
-				// Remote call to ask for this element value.
-				final GetValue command = new GetValue(projectPresenter.getCurrentProjectDTO().getId(),
-				                elementDTO.getId(), elementDTO.getEntityName(), amendmentId);
-				dispatcher.execute(command, null, new AsyncCallback<ValueResult>() {
+				// Asks for this element value.
+				valuesCallback.add(elementDTO, new AsyncCallback<ValueResult>() {
 
 					@Override
 					public void onFailure(Throwable throwable) {
@@ -710,6 +713,10 @@ public class ProjectDashboardPresenter implements SubPresenter {
 
 		}
 
+		if (!valuesCallback.isEmpty()) {
+			dispatcher.execute(valuesCallback.getCommand(), null, valuesCallback);
+		}
+
 		// View layouts update.
 		// FIXME: This should be done by Ext, not be the developer!
 		view.getTabPanelPhases().addStyleName("x-border-panel");
@@ -8,6 +8,7 @@ import java.util.Map;
 import org.sigmah.client.EventBus;
 import org.sigmah.client.cache.UserLocalCache;
 import org.sigmah.client.dispatch.Dispatcher;
+import org.sigmah.client.dispatch.callback.ValuesCallback;
 import org.sigmah.client.dispatch.monitor.MaskingAsyncMonitor;
 import org.sigmah.client.dispatch.remote.Authentication;
 import org.sigmah.client.event.ProjectEvent;
@@ -16,7 +17,6 @@ import org.sigmah.client.page.project.ProjectPresenter;
 import org.sigmah.client.page.project.SubPresenter;
 import org.sigmah.client.util.Notification;
 import org.sigmah.shared.command.GetOrgUnit;
-import org.sigmah.shared.command.GetValue;
 import org.sigmah.shared.command.UpdateProject;
 import org.sigmah.shared.command.result.ValueResult;
 import org.sigmah.shared.command.result.ValueResultUtils;
@@ -248,6 +248,15 @@ public class ProjectDetailsPresenter implements SubPresenter {
 
 			final Grid gridLayout = (Grid) layout.getWidget();
 
+			// Retrieving the current amendment id
+			Integer amendmentId = null;
+			if (projectPresenter.getCurrentProjectDTO().getCurrentAmendment() != null)
+				amendmentId = projectPresenter.getCurrentProjectDTO().getCurrentAmendment().getId();
+
+			// The values of all the elements are loaded by a single command.
+			final ValuesCallback valuesCallback = new ValuesCallback(projectPresenter.getCurrentProjectDTO().getId(),
+							amendmentId);
+
 			for (final LayoutGroupDTO groupLayout : layout.getLayoutGroupsDTO()) {
 
 				// Creates the fieldset and positions it.
@@ -265,15 +274,8 @@ public class ProjectDetailsPresenter implements SubPresenter {
 						// -- ELEMENT VALUE
 						// --
 
-						// Retrieving the current amendment id
-						Integer amendmentId = null;
-						if (projectPresenter.getCurrentProjectDTO().getCurrentAmendment() != null)
-							amendmentId = projectPresenter.getCurrentProjectDTO().getCurrentAmendment().getId();
-
-						// Remote call to ask for this element value.
-						final GetValue command = new GetValue(projectPresenter.getCurrentProjectDTO().getId(),
-										elementDTO.getId(), elementDTO.getEntityName(), amendmentId);
-						dispatcher.execute(command, null, new AsyncCallback<ValueResult>() {
+						// Asks for this element value.
+						valuesCallback.add(elementDTO, new AsyncCallback<ValueResult>() {
 
 							@Override
 							public void onFailure(Throwable throwable) {
@@ -334,6 +336,10 @@ public class ProjectDetailsPresenter implements SubPresenter {
 				}
 			}
 
+			if (!valuesCallback.isEmpty()) {
+				dispatcher.execute(valuesCallback.getCommand(), null, valuesCallback);
+			}
+
 			view.getMainPanel().add(gridLayout);
 		}
 		// Default details page.
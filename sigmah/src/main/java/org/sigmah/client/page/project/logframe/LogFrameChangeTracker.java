@@ -0,0 +1,154 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.client.page.project.logframe;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.sigmah.shared.command.UpdateLogFrameRows;
+import org.sigmah.shared.command.result.LogFrameRowsResult;
+import org.sigmah.shared.dto.logframe.ExpectedResultDTO;
+import org.sigmah.shared.dto.logframe.LogFrameActivityDTO;
+import org.sigmah.shared.dto.logframe.LogFrameDTO;
+import org.sigmah.shared.dto.logframe.LogFrameGroupDTO;
+import org.sigmah.shared.dto.logframe.LogFrameRowChange;
+import org.sigmah.shared.dto.logframe.LogFrameRowChange.Kind;
+import org.sigmah.shared.dto.logframe.PrerequisiteDTO;
+import org.sigmah.shared.dto.logframe.SpecificObjectiveDTO;
+
+import com.extjs.gxt.ui.client.data.ModelData;
+
+/**
+ * Keeps the state of the rows of a log frame as saved, to send only the rows changed
+ * since with an {@link UpdateLogFrameRows} command.
+ */
+public class LogFrameChangeTracker {
+
+    /**
+     * Saved state of the rows, by kind and id.
+     */
+    private final Map<String, LogFrameRowChange> saved = new LinkedHashMap<String, LogFrameRowChange>();
+    private String savedMainObjective;
+
+    /**
+     * Rows of the last created command, in the order of its changes (<code>null</code>
+     * for the deletions).
+     */
+    private final List<ModelData> pendingRows = new ArrayList<ModelData>();
+
+    /**
+     * Takes the current state of the given log frame as saved.
+     */
+    public void reset(LogFrameDTO logFrame) {
+        saved.clear();
+        pendingRows.clear();
+
+        for (final LogFrameRowChange row : currentRows(logFrame, new ArrayList<ModelData>())) {
+            if (row.getId() != null) {
+                saved.put(key(row.getKind(), row.getId()), row);
+            }
+        }
+        savedMainObjective = logFrame.getMainObjective();
+    }
+
+    /**
+     * Creates the command saving the rows of the given log frame changed since the last
+     * {@link #reset(LogFrameDTO)}.
+     */
+    public UpdateLogFrameRows createCommand(int projectId, LogFrameDTO logFrame) {
+        final UpdateLogFrameRows command = new UpdateLogFrameRows(projectId, logFrame.getId());
+        pendingRows.clear();
+
+        final String mainObjective = logFrame.getMainObjective();
+        if (mainObjective == null ? savedMainObjective != null : !mainObjective.equals(savedMainObjective)) {
+            command.setMainObjective(mainObjective);
+        }
+
+        // Created and updated rows, the parents before their children.
+        final List<ModelData> rows = new ArrayList<ModelData>();
+        final List<LogFrameRowChange> current = currentRows(logFrame, rows);
+        final Set<String> keys = new HashSet<String>();
+
+        for (int index = 0; index < current.size(); index++) {
+            final LogFrameRowChange row = current.get(index);
+            if (row.getId() != null) {
+                final String key = key(row.getKind(), row.getId());
+                keys.add(key);
+                if (row.hasSameValues(saved.get(key))) {
+                    continue;
+                }
+            }
+            command.addChange(row);
+            pendingRows.add(rows.get(index));
+        }
+
+        // Deleted rows, the children before their parent.
+        final Kind[] kinds = Kind.values();
+        for (int index = kinds.length - 1; index >= 0; index--) {
+            for (final Map.Entry<String, LogFrameRowChange> entry : saved.entrySet()) {
+                final LogFrameRowChange row = entry.getValue();
+                if (row.getKind() == kinds[index] && !keys.contains(entry.getKey())) {
+                    command.addChange(LogFrameRowChange.deletion(row.getKind(), row.getId()));
+                    pendingRows.add(null);
+                }
+            }
+        }
+
+        return command;
+    }
+
+    /**
+     * Sets the ids of the created rows and takes the log frame as saved.
+     */
+    public void onSaved(LogFrameRowsResult result, LogFrameDTO logFrame) {
+        final List<LogFrameRowChange> rows = result.getData();
+        for (int index = 0; index < rows.size() && index < pendingRows.size(); index++) {
+            final ModelData row = pendingRows.get(index);
+            if (row != null && row.get("id") == null) {
+                row.set("id", rows.get(index).getId());
+            }
+        }
+        reset(logFrame);
+    }
+
+    /**
+     * Gets the state of all the rows of the log frame, the parents before their children.
+     */
+    private static List<LogFrameRowChange> currentRows(LogFrameDTO logFrame, List<ModelData> rows) {
+        final List<LogFrameRowChange> changes = new ArrayList<LogFrameRowChange>();
+
+        for (final LogFrameGroupDTO group : logFrame.getGroups()) {
+            changes.add(LogFrameRowChange.of(group));
+            rows.add(group);
+        }
+        for (final SpecificObjectiveDTO objective : logFrame.getSpecificObjectives()) {
+            changes.add(LogFrameRowChange.of(objective));
+            rows.add(objective);
+        }
+        for (final ExpectedResultDTO result : logFrame.getAllExpectedResultsDTO()) {
+            changes.add(LogFrameRowChange.of(result));
+            rows.add(result);
+        }
+        for (final LogFrameActivityDTO activity : logFrame.getAllActivitiesDTO()) {
+            changes.add(LogFrameRowChange.of(activity));
+            rows.add(activity);
+        }
+        for (final PrerequisiteDTO prerequisite : logFrame.getPrerequisites()) {
+            changes.add(LogFrameRowChange.of(prerequisite));
+            rows.add(prerequisite);
+        }
+
+        return changes;
+    }
+
+    private static String key(Kind kind, Integer id) {
+        return kind.name() + ":" + id;
+    }
+}
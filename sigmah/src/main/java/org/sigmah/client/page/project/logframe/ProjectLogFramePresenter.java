@@ -13,7 +13,9 @@ import org.sigmah.client.ui.ExportSpreadsheetFormButton;
 import org.sigmah.client.util.Notification;
 import org.sigmah.shared.command.CopyLogFrame;
 import org.sigmah.shared.command.UpdateLogFrame;
+import org.sigmah.shared.command.UpdateLogFrameRows;
 import org.sigmah.shared.command.result.LogFrameResult;
+import org.sigmah.shared.command.result.LogFrameRowsResult;
 import org.sigmah.shared.domain.Amendment;
 import org.sigmah.shared.domain.logframe.IndicatorCopyStrategy;
 import org.sigmah.shared.domain.profile.GlobalPermissionEnum;
@@ -111,6 +113,11 @@ public class ProjectLogFramePresenter implements SubPresenter {
 	 */
 	private LogFrameDTO logFrame;
 
+	/**
+	 * The rows of the displayed log frame as saved.
+	 */
+	private final LogFrameChangeTracker changeTracker = new LogFrameChangeTracker();
+
 	public ProjectLogFramePresenter(EventBus eventBus, Dispatcher dispatcher, Authentication authentication,
 	                ProjectPresenter projectPresenter) {
 		this.eventBus = eventBus;
@@ -209,45 +216,12 @@ public class ProjectLogFramePresenter implements SubPresenter {
 			@Override
 			public void handleEvent(BaseEvent be) {
 
-				// Logs the modified log frame.
-				if (Log.isDebugEnabled()) {
-					Log.debug("[handleEvent] Merges the log frame : \n" + logFrame.toString());
+				// Log frames saved once are saved row by row.
+				if (logFrame.getId() > 0) {
+					saveChangedRows();
+				} else {
+					saveLogFrame();
 				}
-
-				// Sends the merge action to the server.
-				dispatcher.execute(new UpdateLogFrame(logFrame, currentProjectDTO.getId()), new MaskingAsyncMonitor(
-				                view, I18N.CONSTANTS.loading()), new AsyncCallback<LogFrameResult>() {
-
-					@Override
-					public void onFailure(Throwable e) {
-
-						// Informs of the error.
-						Log.error("[execute] Error when saving the log frame.", e);
-						MessageBox.alert(I18N.CONSTANTS.save(), I18N.CONSTANTS.saveError(), null);
-					}
-
-					@Override
-					public void onSuccess(LogFrameResult r) {
-						if (Log.isDebugEnabled()) {
-							Log.debug("[execute] Log frame successfully saved.");
-						}
-
-						// Updates local entities with the new returned log
-						// frame (to get the generated ids).
-						final LogFrameDTO updated = r.getLogFrame();
-						currentProjectDTO.setLogFrameDTO(updated);
-						view.getLogFrameGrid().updateLogFrame(updated);
-						logFrame = updated;
-
-						// Informs of the success.
-						Notification.show(I18N.CONSTANTS.infoConfirmation(), I18N.CONSTANTS.saveConfirm());
-						logFrameUpdated = false;
-						view.getSaveButton().setEnabled(false);
-
-						// broadcast an indicator change event to be safe
-						eventBus.fireEvent(new IndicatorEvent(IndicatorEvent.CHANGED, ProjectLogFramePresenter.this));
-					}
-				});
 			}
 		});
 
@@ -318,6 +292,105 @@ public class ProjectLogFramePresenter implements SubPresenter {
 
 	}
 
+	/**
+	 * Saves the whole log frame.
+	 */
+	private void saveLogFrame() {
+
+		// Logs the modified log frame.
+		if (Log.isDebugEnabled()) {
+			Log.debug("[handleEvent] Merges the log frame : \n" + logFrame.toString());
+		}
+
+		// Sends the merge action to the server.
+		dispatcher.execute(new UpdateLogFrame(logFrame, currentProjectDTO.getId()), new MaskingAsyncMonitor(
+		                view, I18N.CONSTANTS.loading()), new AsyncCallback<LogFrameResult>() {
+
+			@Override
+			public void onFailure(Throwable e) {
+
+				// Informs of the error.
+				Log.error("[execute] Error when saving the log frame.", e);
+				MessageBox.alert(I18N.CONSTANTS.save(), I18N.CONSTANTS.saveError(), null);
+			}
+
+			@Override
+			public void onSuccess(LogFrameResult r) {
+				if (Log.isDebugEnabled()) {
+					Log.debug("[execute] Log frame successfully saved.");
+				}
+
+				// Updates local entities with the new returned log
+				// frame (to get the generated ids).
+				final LogFrameDTO updated = r.getLogFrame();
+				currentProjectDTO.setLogFrameDTO(updated);
+				view.getLogFrameGrid().updateLogFrame(updated);
+				logFrame = updated;
+				changeTracker.reset(logFrame);
+
+				// Informs of the success.
+				Notification.show(I18N.CONSTANTS.infoConfirmation(), I18N.CONSTANTS.saveConfirm());
+				logFrameUpdated = false;
+				view.getSaveButton().setEnabled(false);
+
+				// broadcast an indicator change event to be safe
+				eventBus.fireEvent(new IndicatorEvent(IndicatorEvent.CHANGED, ProjectLogFramePresenter.this));
+			}
+		});
+	}
+
+	/**
+	 * Saves the rows of the log frame changed since it was displayed or saved.
+	 */
+	private void saveChangedRows() {
+
+		final UpdateLogFrameRows command = changeTracker.createCommand(currentProjectDTO.getId(), logFrame);
+
+		if (Log.isDebugEnabled()) {
+			Log.debug("[saveChangedRows] Saves the changed rows of the log frame : " + command.getChanges());
+		}
+
+		if (command.isEmpty()) {
+			logFrameUpdated = false;
+			view.getSaveButton().setEnabled(false);
+			return;
+		}
+
+		dispatcher.execute(command, new MaskingAsyncMonitor(view, I18N.CONSTANTS.loading()),
+		                new AsyncCallback<LogFrameRowsResult>() {
+
+			@Override
+			public void onFailure(Throwable e) {
+
+				// Informs of the error.
+				Log.error("[execute] Error when saving the log frame.", e);
+				MessageBox.alert(I18N.CONSTANTS.save(), I18N.CONSTANTS.saveError(), null);
+			}
+
+			@Override
+			public void onSuccess(LogFrameRowsResult r) {
+				if (Log.isDebugEnabled()) {
+					Log.debug("[execute] Log frame successfully saved.");
+				}
+
+				// Updates the ids of the created rows.
+				changeTracker.onSaved(r, logFrame);
+				if (r.getActivityAdvancement() != null) {
+					currentProjectDTO.setActivityAdvancement(r.getActivityAdvancement());
+				}
+				view.getLogFrameGrid().updateLogFrame(logFrame);
+
+				// Informs of the success.
+				Notification.show(I18N.CONSTANTS.infoConfirmation(), I18N.CONSTANTS.saveConfirm());
+				logFrameUpdated = false;
+				view.getSaveButton().setEnabled(false);
+
+				// broadcast an indicator change event to be safe
+				eventBus.fireEvent(new IndicatorEvent(IndicatorEvent.CHANGED, ProjectLogFramePresenter.this));
+			}
+		});
+	}
+
 	private boolean isEditable() {
 		return logFrame != null && currentProjectDTO.getAmendmentState() == Amendment.State.DRAFT
 		                && currentProjectDTO.getCurrentAmendment() == null
@@ -345,6 +418,7 @@ public class ProjectLogFramePresenter implements SubPresenter {
 
 			// Fill the grid.
 			view.getLogFrameGrid().displayLogFrame(currentProjectDTO.getId(), logFrame, editable);
+			changeTracker.reset(logFrame);
 		}
 
 		// Default buttons states.
@@ -8,6 +8,8 @@ import org.sigmah.client.dispatch.Dispatcher;
 import org.sigmah.shared.command.GetSites;
 import org.sigmah.shared.command.result.SiteResult;
 import org.sigmah.shared.dao.Filter;
+import org.sigmah.shared.dao.SiteProjection;
+import org.sigmah.shared.dao.SiteTableDAO;
 import org.sigmah.shared.report.model.DimensionType;
 
 import com.extjs.gxt.ui.client.data.BaseListLoader;
@@ -48,6 +50,8 @@ public class SiteFilterCombo extends ComboBox<ModelData> {
 			
 			GetSites request = new GetSites();
 			request.setFilter(filter);
+			// only the names of the sites are shown
+			request.setProjection(new SiteProjection(SiteTableDAO.RETRIEVE_NONE));
 			
 			dispatcher.execute(request, null, new AsyncCallback<SiteResult>() {
 
@@ -130,6 +130,11 @@ public class ProjectReportsView extends LayoutContainer {
     private int currentReportId = -1;
     private HashMap<Integer, RichTextArea> textAreas;
     private HashMap<Integer, String> oldContents;
+
+    /**
+     * HTML of the text areas as last saved, to send only the edited ones.
+     */
+    private HashMap<Integer, String> savedContents;
     private KeyQuestionState keyQuestionState;
 
     private Button attachButton;
@@ -144,6 +149,7 @@ public class ProjectReportsView extends LayoutContainer {
         this.dispatcher = dispatcher;
         this.textAreas = new HashMap<Integer, RichTextArea>();
         this.oldContents = new HashMap<Integer, String>();
+        this.savedContents = new HashMap<Integer, String>();
 
         this.store = store;
 
@@ -366,6 +372,7 @@ public class ProjectReportsView extends LayoutContainer {
                     sectionPanel.add(textArea);
                     textAreas.put(((RichTextElementDTO) object).getId(), textArea);
                     oldContents.put(((RichTextElementDTO) object).getId(), textArea.getText());
+                    savedContents.put(((RichTextElementDTO) object).getId(), textArea.getHTML());
 
                 } else {
                     final HTML html = new HTML();
@@ -396,6 +403,7 @@ public class ProjectReportsView extends LayoutContainer {
                     textArea.setHTML(richTextElementDTO.getText());
                     textAreas.put(richTextElementDTO.getId(), textArea);
                     oldContents.put(richTextElementDTO.getId(), textArea.getText());
+                    savedContents.put(richTextElementDTO.getId(), textArea.getHTML());
 
                 } else {
                     Log.error("No text area is attached to the key question #" + keyQuestion.getId());
@@ -450,6 +458,7 @@ public class ProjectReportsView extends LayoutContainer {
         // Preparing the view for the new report
         textAreas.clear();
         oldContents.clear();
+        savedContents.clear();
         keyQuestionState.clear();
 
         // Title bar
@@ -554,8 +563,7 @@ public class ProjectReportsView extends LayoutContainer {
                     final HashMap<String, Object> changes = new HashMap<String, Object>();
                     changes.put("currentPhase", phaseName);
 
-                    for (final Map.Entry<Integer, RichTextArea> entry : textAreas.entrySet())
-                        changes.put(entry.getKey().toString(), entry.getValue().getHTML());
+                    putEditedTexts(changes);
 
                     final UpdateEntity updateEntity = new UpdateEntity("ProjectReport", report.getVersionId(), changes);
                     final PromoteProjectReportDraft promoteDraft =
@@ -567,6 +575,8 @@ public class ProjectReportsView extends LayoutContainer {
 
                         @Override
                         public void onFailure(Throwable caught) {
+                            // Sends all the texts again with the next save.
+                            savedContents.clear();
                             MessageBox.alert(I18N.CONSTANTS.projectTabReports(), I18N.CONSTANTS.reportSaveError(), null);
                         }
 
@@ -601,8 +611,7 @@ public class ProjectReportsView extends LayoutContainer {
 
                     changes.put("currentPhase", phaseName);
 
-                    for (final Map.Entry<Integer, RichTextArea> entry : textAreas.entrySet())
-                        changes.put(entry.getKey().toString(), entry.getValue().getHTML());
+                    putEditedTexts(changes);
 
                     final UpdateEntity updateEntity =
                             new UpdateEntity("ProjectReport", report.getVersionId(),
@@ -611,6 +620,8 @@ public class ProjectReportsView extends LayoutContainer {
 
                         @Override
                         public void onFailure(Throwable caught) {
+                            // Sends all the texts again with the next save.
+                            savedContents.clear();
                             MessageBox.alert(I18N.CONSTANTS.projectTabReports(), I18N.CONSTANTS.reportSaveError(), null);
                         }
 
@@ -1011,6 +1022,20 @@ public class ProjectReportsView extends LayoutContainer {
         return createReportButton;
     }
 
+    /**
+     * Puts the HTML of the text areas edited since the last save in the given changes
+     * and takes them as saved.
+     */
+    private void putEditedTexts(Map<String, ? super String> changes) {
+        for (final Map.Entry<Integer, RichTextArea> entry : textAreas.entrySet()) {
+            final String html = entry.getValue().getHTML();
+            if (!html.equals(savedContents.get(entry.getKey()))) {
+                changes.put(entry.getKey().toString(), html);
+                savedContents.put(entry.getKey(), html);
+            }
+        }
+    }
+
     public boolean isTextAreaChanged() {
         boolean changed = false;
         if (textAreas != null) {
@@ -4,6 +4,8 @@
 
 package org.sigmah.server;
 
+import java.io.File;
+
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 
@@ -19,12 +21,15 @@ import org.sigmah.server.endpoint.gwtrpc.GwtRpcModule;
 import org.sigmah.server.endpoint.jsonrpc.JsonRpcModule;
 import org.sigmah.server.endpoint.kml.KmlModule;
 import org.sigmah.server.endpoint.wfs.WfsModule;
+import org.sigmah.server.mail.MailDelivery;
 import org.sigmah.server.mail.MailModule;
 import org.sigmah.server.report.ReportModule;
 import org.sigmah.server.schedule.export.SchedulerModule;
 import org.sigmah.server.util.BeanMappingModule;
 import org.sigmah.server.util.TemplateModule;
+import org.sigmah.server.util.logging.LoggingInterceptor;
 import org.sigmah.server.util.logging.LoggingModule;
+import org.sigmah.server.util.metrics.MetricsModule;
 
 import com.google.inject.Guice;
 import com.google.inject.Injector;
@@ -42,26 +47,41 @@ public class StartupListener extends GuiceServletContextListener {
     private ServletContext context;
     public static final String INJECTOR_NAME = StartupListener.class.getName();
     public static String webInfRealPath;
+    public static File webAppTempDir;
 
     @Override
     public void contextInitialized(ServletContextEvent servletContextEvent) {
         logger.info("Sigmah servlet context is initializing");
 
         webInfRealPath = servletContextEvent.getServletContext().getRealPath("WEB-INF");
+        webAppTempDir = (File) servletContextEvent.getServletContext().getAttribute("javax.servlet.context.tempdir");
 
         super.contextInitialized(servletContextEvent);
     }
 
+    @Override
+    public void contextDestroyed(ServletContextEvent servletContextEvent) {
+        logger.info("Sigmah servlet context is being destroyed");
+
+        Injector injector = (Injector) servletContextEvent.getServletContext().getAttribute(Injector.class.getName());
+        if (injector != null) {
+            injector.getInstance(LoggingInterceptor.class).shutdown();
+            injector.getInstance(MailDelivery.class).shutdown();
+        }
+
+        super.contextDestroyed(servletContextEvent);
+    }
+
     @Override
     protected Injector getInjector() {
         logger.trace("Injector is being created");
 
         Injector injector =
-                Guice.createInjector(new ConfigModule(), new LoggingModule(), new TemplateModule(),
-                    new BeanMappingModule(), new MailModule(), new HibernateModule(), new FileModule(),
-                    new AuthenticationModule(), new ReportModule(), new BootstrapModule(), new SigmahBootstrapModule(),
-                    new GwtRpcModule(), new ExportModule(), new WfsModule(), new AccountModule(), new JsonRpcModule(),
-                    new KmlModule(), new SchedulerModule());
+                Guice.createInjector(new ConfigModule(), new LoggingModule(), new MetricsModule(),
+                    new TemplateModule(), new BeanMappingModule(), new MailModule(), new HibernateModule(),
+                    new FileModule(), new AuthenticationModule(), new ReportModule(), new BootstrapModule(),
+                    new SigmahBootstrapModule(), new GwtRpcModule(), new ExportModule(), new WfsModule(),
+                    new AccountModule(), new JsonRpcModule(), new KmlModule(), new SchedulerModule());
 
         return injector;
     }
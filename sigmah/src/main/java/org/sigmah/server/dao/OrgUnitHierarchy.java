@@ -0,0 +1,189 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.dao;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.Session;
+import org.hibernate.ejb.HibernateEntityManager;
+import org.sigmah.shared.domain.OrgUnit;
+import org.sigmah.shared.domain.User;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.transaction.Synchronization;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory closure of the {@link OrgUnit} tree, answering ancestry and visibility
+ * questions without walking the lazy <code>children</code> collections.
+ * <p/>
+ * The index is loaded with a single query the first time it is needed and kept until
+ * {@link #invalidate()} is called by a handler that adds, moves or removes a unit. Each
+ * invalidation increments the {@link #getVersion() version}, so an index loaded
+ * concurrently with a change is never kept.
+ * <p/>
+ * Like {@link org.sigmah.server.endpoint.gwtrpc.handler.GetProjectHandler#crawlUnits},
+ * the index includes units that have been marked as deleted.
+ */
+@Singleton
+public class OrgUnitHierarchy {
+
+    private final static Log LOG = LogFactory.getLog(OrgUnitHierarchy.class);
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final AtomicLong version = new AtomicLong();
+    private volatile Index index;
+
+    @Inject
+    public OrgUnitHierarchy(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    /**
+     * @return the number of times the hierarchy has been invalidated
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Discards the index; it will be reloaded on next use.
+     */
+    public void invalidate() {
+        version.incrementAndGet();
+        index = null;
+    }
+
+    /**
+     * Discards the index now and again once the current transaction of the given
+     * entity manager completes, so that an index reloaded from the not yet committed
+     * state by another request is not kept.
+     */
+    public void invalidateOnCompletion(EntityManager em) {
+        invalidate();
+
+        final Session session = ((HibernateEntityManager) em).getSession();
+        if (session.getTransaction().isActive()) {
+            session.getTransaction().registerSynchronization(new Synchronization() {
+
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    invalidate();
+                }
+            });
+        }
+    }
+
+    /**
+     * @return true if the unit is the root unit or one of its descendants
+     */
+    public boolean isDescendant(int unitId, int rootId) {
+        return index().isDescendant(unitId, rootId);
+    }
+
+    /**
+     * @return the ids of the given unit and all its descendants, or an empty set if the
+     *         unit does not exist
+     */
+    public Set<Integer> descendantIds(int rootId) {
+        Set<Integer> ids = index().descendants.get(rootId);
+        if (ids == null) {
+            return Collections.emptySet();
+        }
+        return ids;
+    }
+
+    /**
+     * @return the ids of the units visible to the user: its own unit and all its
+     *         descendants
+     */
+    public Set<Integer> visibleUnitIds(User user) {
+        if (user.getOrgUnitWithProfiles() == null || user.getOrgUnitWithProfiles().getOrgUnit() == null) {
+            return Collections.emptySet();
+        }
+        return descendantIds(user.getOrgUnitWithProfiles().getOrgUnit().getId());
+    }
+
+    private Index index() {
+        Index current = index;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            current = index;
+            if (current == null) {
+                long loadedVersion = version.get();
+                current = load();
+                if (version.get() == loadedVersion) {
+                    index = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Index load() {
+        EntityManager em = entityManagerFactory.createEntityManager();
+        try {
+            List<Object[]> rows = em.createQuery("select o.id, p.id from OrgUnit o left join o.parent p")
+                    .getResultList();
+
+            Index loaded = new Index();
+            for (Object[] row : rows) {
+                loaded.parents.put((Integer) row[0], (Integer) row[1]);
+            }
+            loaded.buildDescendants();
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("[load] Loaded the hierarchy of " + rows.size() + " org unit(s).");
+            }
+            return loaded;
+
+        } finally {
+            em.close();
+        }
+    }
+
+    private static class Index {
+
+        private final Map<Integer, Integer> parents = new HashMap<Integer, Integer>();
+        private final Map<Integer, Set<Integer>> descendants = new HashMap<Integer, Set<Integer>>();
+
+        private void buildDescendants() {
+            for (Integer unitId : parents.keySet()) {
+                // guard against cycles in corrupted data
+                int depth = 0;
+                Integer ancestor = unitId;
+                while (ancestor != null && depth++ <= parents.size()) {
+                    Set<Integer> set = descendants.get(ancestor);
+                    if (set == null) {
+                        set = new HashSet<Integer>();
+                        descendants.put(ancestor, set);
+                    }
+                    set.add(unitId);
+                    ancestor = parents.get(ancestor);
+                }
+            }
+            for (Map.Entry<Integer, Set<Integer>> entry : descendants.entrySet()) {
+                entry.setValue(Collections.unmodifiableSet(entry.getValue()));
+            }
+        }
+
+        private boolean isDescendant(int unitId, int rootId) {
+            Set<Integer> set = descendants.get(rootId);
+            return set != null && set.contains(unitId);
+        }
+    }
+}
@@ -5,9 +5,13 @@
 
 package org.sigmah.server.dao;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.sigmah.shared.domain.report.ProjectReport;
 import org.sigmah.shared.domain.report.ProjectReportModel;
 import org.sigmah.shared.domain.report.ProjectReportVersion;
+import org.sigmah.shared.domain.report.RichTextBlock;
 import org.sigmah.shared.domain.report.RichTextElement;
 import org.sigmah.shared.domain.value.Value;
 
@@ -18,6 +22,7 @@ import org.sigmah.shared.domain.value.Value;
 public interface ProjectReportDAO {
     void persist(ProjectReport report);
     void persist(ProjectReportVersion version);
+    void persist(RichTextBlock block);
     void merge(ProjectReport report);
     void merge(ProjectReportVersion version);
     void merge(RichTextElement element);
@@ -27,4 +32,19 @@ public interface ProjectReportDAO {
     public ProjectReportVersion findReportVersionById(Integer id);
     public ProjectReportModel findModelById(Integer id);
     public RichTextElement findRichTextElementById(Integer id);
+
+    /**
+     * Finds the rich text elements of a version with their blocks.
+     */
+    public List<RichTextElement> findRichTextElementsByVersionId(Integer versionId);
+
+    /**
+     * Finds the blocks of text having the given hash.
+     */
+    public List<RichTextBlock> findRichTextBlocksByHash(String hash);
+
+    /**
+     * Removes the given blocks which are not the text of any rich text element anymore.
+     */
+    public void removeUnusedBlocks(Collection<RichTextBlock> blocks);
 }
@@ -0,0 +1,92 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.dao.cache;
+
+import com.google.inject.Inject;
+import org.sigmah.server.dao.PivotDAO;
+import org.sigmah.server.dao.hibernate.PivotHibernateDAO;
+import org.sigmah.shared.dao.Filter;
+import org.sigmah.shared.report.model.AdminDimension;
+import org.sigmah.shared.report.model.AttributeGroupDimension;
+import org.sigmah.shared.report.model.DateDimension;
+import org.sigmah.shared.report.model.Dimension;
+import org.sigmah.shared.report.model.DimensionType;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * {@link PivotDAO} keeping the buckets of the pivot queries in the {@link QueryResultCache}.
+ */
+public class CachingPivotDAO implements PivotDAO {
+
+    private final PivotHibernateDAO dao;
+    private final EntityManager em;
+    private final QueryResultCache cache;
+
+    @Inject
+    public CachingPivotDAO(PivotHibernateDAO dao, EntityManager em, QueryResultCache cache) {
+        this.dao = dao;
+        this.em = em;
+        this.cache = cache;
+    }
+
+    @Override
+    public List<Bucket> aggregate(int userId, Filter filter, Set<Dimension> dimensions) {
+        String key = QueryResultCache.key("aggregate", userId, filter,
+                QueryResultCache.permissionsKey(em, userId), dimensionsKey(dimensions));
+        List<Bucket> buckets = cache.get("aggregate", key);
+        if (buckets == null) {
+            long stamp = cache.getStamp();
+            buckets = dao.aggregate(userId, filter, dimensions);
+            cache.put(key, buckets, QueryResultCache.queryDatabases(em, filter), buckets.size(), stamp);
+        }
+        return buckets;
+    }
+
+    @Override
+    public List<String> getFilterLabels(DimensionType type, Collection<Integer> ids) {
+        return dao.getFilterLabels(type, ids);
+    }
+
+    @Override
+    public List<Bucket> queryDimensionCategories(int userId, Filter filter, Set<Dimension> dimensions) {
+        String key = QueryResultCache.key("dimensionCategories", userId, filter,
+                QueryResultCache.permissionsKey(em, userId), dimensionsKey(dimensions));
+        List<Bucket> buckets = cache.get("dimensionCategories", key);
+        if (buckets == null) {
+            long stamp = cache.getStamp();
+            buckets = dao.queryDimensionCategories(userId, filter, dimensions);
+            cache.put(key, buckets, QueryResultCache.queryDatabases(em, filter), buckets.size(), stamp);
+        }
+        return buckets;
+    }
+
+    /**
+     * @return the dimensions in a stable order, with the level, the attribute group or the
+     *         unit that {@link Dimension#toString()} leaves out
+     */
+    private static String dimensionsKey(Set<Dimension> dimensions) {
+        List<String> keys = new ArrayList<String>();
+        for (Dimension dimension : dimensions) {
+            String key = dimension.getType().toString();
+            if (dimension instanceof AdminDimension) {
+                key += ":" + ((AdminDimension) dimension).getLevelId();
+            } else if (dimension instanceof AttributeGroupDimension) {
+                key += ":" + ((AttributeGroupDimension) dimension).getAttributeGroupId();
+            } else if (dimension instanceof DateDimension) {
+                key += ":" + ((DateDimension) dimension).getUnit();
+            }
+            keys.add(key);
+        }
+        Collections.sort(keys);
+        return keys.toString();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.dao.cache;
+
+import com.google.inject.Inject;
+import org.sigmah.server.dao.hibernate.HibernateSiteTableDAO;
+import org.sigmah.shared.dao.Filter;
+import org.sigmah.shared.dao.SiteOrder;
+import org.sigmah.shared.dao.SiteProjection;
+import org.sigmah.shared.dao.SiteProjectionBinder;
+import org.sigmah.shared.dao.SiteTableDAO;
+import org.sigmah.shared.domain.User;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+/**
+ * {@link SiteTableDAO} keeping the site counts, the page numbers and the rows bound by
+ * {@link SiteProjectionBinder.Cacheable} binders in the {@link QueryResultCache}.
+ */
+public class CachingSiteTableDAO implements SiteTableDAO {
+
+    private final HibernateSiteTableDAO dao;
+    private final EntityManager em;
+    private final QueryResultCache cache;
+
+    @Inject
+    public CachingSiteTableDAO(HibernateSiteTableDAO dao, EntityManager em, QueryResultCache cache) {
+        this.dao = dao;
+        this.em = em;
+        this.cache = cache;
+    }
+
+    @Override
+    public <RowT> List<RowT> query(User user, Filter filter, List<SiteOrder> orderings,
+                                   SiteProjectionBinder<RowT> binder, int retrieve, int offset, int limit) {
+        return query(user, filter, orderings, binder, new SiteProjection(retrieve), offset, limit);
+    }
+
+    @Override
+    public <RowT> List<RowT> query(User user, Filter filter, List<SiteOrder> orderings,
+                                   SiteProjectionBinder<RowT> binder, SiteProjection projection,
+                                   int offset, int limit) {
+        if (!(binder instanceof SiteProjectionBinder.Cacheable)) {
+            return dao.query(user, filter, orderings, binder, projection, offset, limit);
+        }
+
+        String key = QueryResultCache.key("sites", user.getId(), filter,
+                QueryResultCache.permissionsKey(em, user.getId()), binder.getClass().getName(), projection,
+                offset, limit, orderingsKey(orderings));
+        List<RowT> rows = cache.get("sites", key);
+        if (rows == null) {
+            long stamp = cache.getStamp();
+            rows = dao.query(user, filter, orderings, binder, projection, offset, limit);
+            cache.put(key, rows, QueryResultCache.queryDatabases(em, filter), rows.size(), stamp);
+        }
+        return rows;
+    }
+
+    @Override
+    public int queryCount(User user, Filter filter) {
+        String key = QueryResultCache.key("siteCount", user.getId(), filter,
+                QueryResultCache.permissionsKey(em, user.getId()));
+        Integer count = cache.get("siteCount", key);
+        if (count == null) {
+            long stamp = cache.getStamp();
+            count = dao.queryCount(user, filter);
+            cache.put(key, count, QueryResultCache.queryDatabases(em, filter), 1, stamp);
+        }
+        return count;
+    }
+
+    @Override
+    public int queryPageNumber(User user, Filter filter, List<SiteOrder> orderings, int pageSize, int siteId) {
+        String key = QueryResultCache.key("sitePage", user.getId(), filter,
+                QueryResultCache.permissionsKey(em, user.getId()), pageSize, siteId,
+                orderingsKey(orderings));
+        Integer page = cache.get("sitePage", key);
+        if (page == null) {
+            long stamp = cache.getStamp();
+            page = dao.queryPageNumber(user, filter, orderings, pageSize, siteId);
+            cache.put(key, page, QueryResultCache.queryDatabases(em, filter), 1, stamp);
+        }
+        return page;
+    }
+
+    private static String orderingsKey(List<SiteOrder> orderings) {
+        StringBuilder key = new StringBuilder();
+        if (orderings != null) {
+            for (SiteOrder ordering : orderings) {
+                key.append(ordering.getColumn()).append(ordering.isDescending() ? " DESC," : " ASC,");
+            }
+        }
+        return key.toString();
+    }
+}
@@ -0,0 +1,350 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.dao.cache;
+
+import com.google.inject.Singleton;
+import org.hibernate.Session;
+import org.hibernate.ejb.HibernateEntityManager;
+import org.sigmah.shared.dao.Filter;
+import org.sigmah.shared.report.model.DimensionType;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.transaction.Synchronization;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Least-recently-used cache of the results of the pivot and site table queries, keyed by
+ * the user, the fingerprint of the user's permissions, the normalized {@link Filter} and
+ * the other parameters of the query.
+ * <p/>
+ * Each result is kept with the databases it was read from, or <code>null</code> if the
+ * filter does not restrict the databases. The handlers writing the sites, the indicator
+ * values or the schema of a database call {@link #invalidateOnCompletion(EntityManager, Collection)},
+ * which discards the results read from this database and from the databases whose
+ * indicators use its indicators as data sources.
+ * <p/>
+ * The cache holds at most {@link #MAX_ROWS} rows, and a result is not kept longer than
+ * {@link #MAX_AGE} milliseconds, which bounds the staleness of the results after the
+ * writes made out of these handlers (log frames, imports, offline synchronization).
+ * <p/>
+ * The cached results are shared between requests and must be treated as read-only.
+ */
+@Singleton
+public class QueryResultCache {
+
+    public static final int MAX_ROWS = 100000;
+    public static final long MAX_AGE = 10 * 60 * 1000L;
+
+    private static class Entry {
+        private final Object result;
+        private final Set<Integer> databaseIds;
+        private final int rows;
+        private final long created;
+
+        private Entry(Object result, Set<Integer> databaseIds, int rows) {
+            this.result = result;
+            this.databaseIds = databaseIds;
+            this.rows = rows;
+            this.created = System.currentTimeMillis();
+        }
+
+        private boolean dependsOn(Collection<Integer> changedDatabaseIds) {
+            return databaseIds == null || !Collections.disjoint(databaseIds, changedDatabaseIds);
+        }
+    }
+
+    private static class Counters {
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+    }
+
+    /**
+     * Guards {@link #entries}, {@link #rows} and {@link #stamp}.
+     */
+    private final Object lock = new Object();
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private int rows;
+    private long stamp;
+
+    private final ConcurrentMap<String, Counters> counters = new ConcurrentHashMap<String, Counters>();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * @return the key of a query of the given kind made by the given user
+     */
+    public static String key(String kind, int userId, Filter filter, Object... parameters) {
+        StringBuilder key = new StringBuilder(kind).append('|').append(userId).append('|');
+
+        List<DimensionType> types = new ArrayList<DimensionType>(filter.getRestrictedDimensions());
+        Collections.sort(types);
+        for (DimensionType type : types) {
+            List<Integer> ids = new ArrayList<Integer>(filter.getRestrictions(type));
+            Collections.sort(ids);
+            key.append(type).append('=').append(ids).append(';');
+        }
+        key.append(filter.getMinDate() == null ? "" : filter.getMinDate().getTime()).append('-');
+        key.append(filter.getMaxDate() == null ? "" : filter.getMaxDate().getTime());
+
+        for (Object parameter : parameters) {
+            key.append('|').append(parameter);
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return the fingerprint of the permissions of the user on each database, which the
+     *         keys include so that a revoked or narrowed access is not served from the cache
+     */
+    public static String permissionsKey(EntityManager em, int userId) {
+        // native, as the "userVisible" filter of UserPermission would hide some of them
+        Query query = em.createNativeQuery("SELECT DatabaseId, AllowView, AllowViewAll, PartnerId, LastSchemaUpdate "
+                + "FROM UserPermission WHERE UserId = ?1 ORDER BY DatabaseId");
+        query.setParameter(1, userId);
+
+        StringBuilder key = new StringBuilder();
+        for (Object row : query.getResultList()) {
+            for (Object column : (Object[]) row) {
+                key.append(column instanceof Date ? ((Date) column).getTime() : column).append(':');
+            }
+            key.append(',');
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return the current modification stamp; callers read it <strong>before</strong>
+     *         running a query and pass it to {@link #put(String, Object, Set, int, long)}
+     */
+    public long getStamp() {
+        synchronized (lock) {
+            return stamp;
+        }
+    }
+
+    /**
+     * @param kind the kind of query, for the statistics
+     * @return the cached result of the query, or <code>null</code>
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String kind, String key) {
+        Entry entry;
+        synchronized (lock) {
+            entry = entries.get(key);
+            if (entry != null && System.currentTimeMillis() - entry.created > MAX_AGE) {
+                remove(key);
+                entry = null;
+            }
+        }
+        Counters kindCounters = countersOf(kind);
+        if (entry == null) {
+            kindCounters.misses.incrementAndGet();
+            return null;
+        }
+        kindCounters.hits.incrementAndGet();
+        return (T) entry.result;
+    }
+
+    /**
+     * Caches the result of a query run while <code>loadStamp</code> was current. The result
+     * is not kept if the cache has been invalidated since, nor if it has more than a tenth
+     * of {@link #MAX_ROWS} rows.
+     *
+     * @param databaseIds the databases the result was read from, <code>null</code> for all
+     * @param resultRows the number of rows of the result
+     */
+    public void put(String key, Object result, Set<Integer> databaseIds, int resultRows, long loadStamp) {
+        if (resultRows > MAX_ROWS / 10) {
+            return;
+        }
+        synchronized (lock) {
+            if (loadStamp != stamp) {
+                return;
+            }
+            remove(key);
+            entries.put(key, new Entry(result, databaseIds, resultRows));
+            rows += resultRows;
+
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (rows > MAX_ROWS && eldest.hasNext()) {
+                rows -= eldest.next().getValue().rows;
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Discards the results read from the given databases.
+     */
+    public void invalidate(Collection<Integer> databaseIds) {
+        synchronized (lock) {
+            stamp++;
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (entry.dependsOn(databaseIds)) {
+                    rows -= entry.rows;
+                    iterator.remove();
+                }
+            }
+        }
+        invalidations.incrementAndGet();
+    }
+
+    /**
+     * Discards the results read from the given databases, or from databases linked to them,
+     * now and again once the current transaction of the given entity manager completes, so
+     * that a result read from the not yet committed state by another request is not kept.
+     */
+    public void invalidateOnCompletion(EntityManager em, Collection<Integer> databaseIds) {
+        final Set<Integer> changed = new HashSet<Integer>(databaseIds);
+        changed.addAll(queryLinkedDatabases(em, databaseIds));
+        invalidate(changed);
+
+        final Session session = ((HibernateEntityManager) em).getSession();
+        if (session.getTransaction().isActive()) {
+            session.getTransaction().registerSynchronization(new Synchronization() {
+
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    invalidate(changed);
+                }
+            });
+        }
+    }
+
+    public void invalidateOnCompletion(EntityManager em, int databaseId) {
+        invalidateOnCompletion(em, Collections.singleton(databaseId));
+    }
+
+    /**
+     * @return the databases a query with the given filter reads from, or <code>null</code>
+     *         if the filter does not restrict them
+     */
+    @SuppressWarnings("unchecked")
+    public static Set<Integer> queryDatabases(EntityManager em, Filter filter) {
+        Set<Integer> databaseIds = new HashSet<Integer>();
+
+        if (filter.isRestricted(DimensionType.Database)) {
+            databaseIds.addAll(filter.getRestrictions(DimensionType.Database));
+
+        } else if (filter.isRestricted(DimensionType.Activity)) {
+            addIds(databaseIds, filter.getRestrictions(DimensionType.Activity),
+                    em.createQuery("SELECT a.database.id FROM Activity a WHERE a.id IN (:ids)"));
+
+        } else if (filter.isRestricted(DimensionType.Indicator)) {
+            addIds(databaseIds, filter.getRestrictions(DimensionType.Indicator),
+                    em.createQuery("SELECT i.database.id FROM Indicator i WHERE i.id IN (:ids)"));
+            addIds(databaseIds, filter.getRestrictions(DimensionType.Indicator),
+                    em.createQuery("SELECT a.database.id FROM Indicator i JOIN i.activity a WHERE i.id IN (:ids)"));
+
+        } else if (filter.isRestricted(DimensionType.Site)) {
+            addIds(databaseIds, filter.getRestrictions(DimensionType.Site),
+                    em.createQuery("SELECT s.database.id FROM Site s WHERE s.id IN (:ids)"));
+
+        } else {
+            return null;
+        }
+        return databaseIds;
+    }
+
+    /**
+     * @return the databases whose indicators use the indicators of the given databases as
+     *         data sources
+     */
+    private static Set<Integer> queryLinkedDatabases(EntityManager em, Collection<Integer> databaseIds) {
+        Set<Integer> linked = new HashSet<Integer>();
+        addIds(linked, databaseIds, em.createQuery("SELECT i.database.id FROM Indicator i JOIN i.dataSources s "
+                + "LEFT JOIN s.activity a WHERE s.database.id IN (:ids) OR a.database.id IN (:ids)"));
+        return linked;
+    }
+
+    private static void addIds(Set<Integer> target, Collection<Integer> ids, Query query) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        query.setParameter("ids", ids);
+        for (Object id : query.getResultList()) {
+            if (id != null) {
+                target.add((Integer) id);
+            }
+        }
+    }
+
+    /**
+     * Writes the hit and miss counts of each kind of query, the evictions, the
+     * invalidations and the size of the cache in the Prometheus text format.
+     */
+    public void write(Writer writer) throws IOException {
+        writer.write("# HELP sigmah_query_cache_requests_total Lookups in the query result cache.\n");
+        writer.write("# TYPE sigmah_query_cache_requests_total counter\n");
+        for (Map.Entry<String, Counters> e : counters.entrySet()) {
+            writer.write("sigmah_query_cache_requests_total{query=\"" + e.getKey() + "\",result=\"hit\"} "
+                    + e.getValue().hits.get() + "\n");
+            writer.write("sigmah_query_cache_requests_total{query=\"" + e.getKey() + "\",result=\"miss\"} "
+                    + e.getValue().misses.get() + "\n");
+        }
+
+        writer.write("# HELP sigmah_query_cache_evictions_total Results evicted to bound the cache.\n");
+        writer.write("# TYPE sigmah_query_cache_evictions_total counter\n");
+        writer.write("sigmah_query_cache_evictions_total " + evictions.get() + "\n");
+
+        writer.write("# HELP sigmah_query_cache_invalidations_total Writes having invalidated cached results.\n");
+        writer.write("# TYPE sigmah_query_cache_invalidations_total counter\n");
+        writer.write("sigmah_query_cache_invalidations_total " + invalidations.get() + "\n");
+
+        int size;
+        int cachedRows;
+        synchronized (lock) {
+            size = entries.size();
+            cachedRows = rows;
+        }
+        writer.write("# HELP sigmah_query_cache_entries Results in the cache.\n");
+        writer.write("# TYPE sigmah_query_cache_entries gauge\n");
+        writer.write("sigmah_query_cache_entries " + size + "\n");
+        writer.write("# HELP sigmah_query_cache_rows Rows of the results in the cache.\n");
+        writer.write("# TYPE sigmah_query_cache_rows gauge\n");
+        writer.write("sigmah_query_cache_rows " + cachedRows + "\n");
+
+        writer.flush();
+    }
+
+    private void remove(String key) {
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            rows -= previous.rows;
+        }
+    }
+
+    private Counters countersOf(String kind) {
+        Counters kindCounters = counters.get(kind);
+        if (kindCounters == null) {
+            counters.putIfAbsent(kind, new Counters());
+            kindCounters = counters.get(kind);
+        }
+        return kindCounters;
+    }
+}
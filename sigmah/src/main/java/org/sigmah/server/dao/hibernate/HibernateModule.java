@@ -18,11 +18,15 @@ import org.sigmah.server.dao.IndicatorDAO;
 import org.sigmah.server.dao.LocationDAO;
 import org.sigmah.server.dao.PartnerDAO;
 import org.sigmah.server.dao.PersonalEventDAO;
+import org.sigmah.server.dao.PivotDAO;
 import org.sigmah.server.dao.ProjectReportDAO;
 import org.sigmah.server.dao.ReportDefinitionDAO;
 import org.sigmah.server.dao.ReportingPeriodDAO;
 import org.sigmah.server.dao.SiteDAO;
 import org.sigmah.server.dao.Transactional;
+import org.sigmah.server.dao.cache.CachingPivotDAO;
+import org.sigmah.server.dao.cache.CachingSiteTableDAO;
+import org.sigmah.server.dao.cache.QueryResultCache;
 import org.sigmah.shared.dao.ActivityDAO;
 import org.sigmah.shared.dao.AdminDAO;
 import org.sigmah.shared.dao.CountryDAO;
@@ -55,6 +59,7 @@ public class HibernateModule extends AbstractModule {
         configureEm();
         configureDialects();
         configureDAOs();
+        configureCachedDAOs();
 
         configureTransactions();
     }
@@ -89,7 +94,6 @@ public class HibernateModule extends AbstractModule {
         bind(ReportingPeriodDAO.class).to(ReportingPeriodHibernateDAO.class);
         bindDAOProxy(ReportDefinitionDAO.class);
         bindDAOProxy(PartnerDAO.class);
-        bind(SiteTableDAO.class).to(HibernateSiteTableDAO.class);
         bind(SiteDAO.class).to(SiteHibernateDAO.class);
         bindDAOProxy(UserDatabaseDAO.class);
         bind(UserPermissionDAO.class).to(UserPermissionHibernateDAO.class);
@@ -100,6 +104,14 @@ public class HibernateModule extends AbstractModule {
         bind(GlobalExportDAO.class).to(GlobalExportHibernateDAO.class);
     }
 
+    /**
+     * Binds the DAOs whose results are kept in the {@link QueryResultCache}.
+     */
+    protected void configureCachedDAOs() {
+        bind(SiteTableDAO.class).to(CachingSiteTableDAO.class);
+        bind(PivotDAO.class).to(CachingPivotDAO.class);
+    }
+
     private <T extends DAO> void bindDAOProxy(Class<T> daoClass) {
         HibernateDAOProvider<T> provider = new HibernateDAOProvider<T>(daoClass);
         requestInjection(provider);
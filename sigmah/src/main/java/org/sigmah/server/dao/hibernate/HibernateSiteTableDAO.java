@@ -12,6 +12,7 @@ import org.sigmah.shared.dao.*;
 import org.sigmah.shared.domain.User;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
@@ -19,9 +20,14 @@ import java.util.List;
 /**
  * Hibernate-friendly wrapper for the {@link org.sigmah.shared.dao.SqlSiteTableDAO}
  * that assures that connections are used and cleaned up appropriately.
+ * <p/>
+ * The rows of the queries are fetched by batches of {@link #FETCH_SIZE}, which lets
+ * the PostgreSQL driver stream them instead of reading the whole result in memory.
  */
 public class HibernateSiteTableDAO implements SiteTableDAO {
 
+    private static final int FETCH_SIZE = 1000;
+
     private HibernateEntityManager entityManager;
     private SQLDialect dialect;
 
@@ -34,17 +40,31 @@ public class HibernateSiteTableDAO implements SiteTableDAO {
 
     @Override
     public <RowT> List<RowT> query(final User user, final Filter filter, final List<SiteOrder> orderings, final SiteProjectionBinder<RowT> binder, final int retrieve, final int offset, final int limit) {
+        return query(user, filter, orderings, binder, new SiteProjection(retrieve), offset, limit);
+    }
+
+    @Override
+    public <RowT> List<RowT> query(final User user, final Filter filter, final List<SiteOrder> orderings, final SiteProjectionBinder<RowT> binder, final SiteProjection projection, final int offset, final int limit) {
         final List<RowT> list = new ArrayList<RowT>();
         entityManager.getSession().doWork(new Work() {
             @Override
             public void execute(Connection connection) throws SQLException {
-                SqlSiteTableDAO dao = new SqlSiteTableDAO(connection, dialect);
-                list.addAll(dao.query(user, filter, orderings, binder, retrieve, offset, limit));
+                SqlSiteTableDAO dao = createDAO(connection);
+                list.addAll(dao.query(user, filter, orderings, binder, projection, offset, limit));
             }
         });
         return list;
     }
 
+    private SqlSiteTableDAO createDAO(Connection connection) {
+        return new SqlSiteTableDAO(connection, dialect) {
+            @Override
+            protected void prepare(PreparedStatement statement) throws SQLException {
+                statement.setFetchSize(FETCH_SIZE);
+            }
+        };
+    }
+
     @Override
     public int queryCount(final User user, final Filter filter) {
         final int result[] = new int[1];
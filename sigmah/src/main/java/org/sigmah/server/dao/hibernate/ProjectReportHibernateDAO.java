@@ -6,11 +6,16 @@
 package org.sigmah.server.dao.hibernate;
 
 import com.google.inject.Inject;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
 import org.sigmah.server.dao.ProjectReportDAO;
 import org.sigmah.shared.domain.report.ProjectReport;
 import org.sigmah.shared.domain.report.ProjectReportModel;
 import org.sigmah.shared.domain.report.ProjectReportVersion;
+import org.sigmah.shared.domain.report.RichTextBlock;
 import org.sigmah.shared.domain.report.RichTextElement;
 import org.sigmah.shared.domain.value.Value;
 
@@ -41,6 +46,37 @@ public class ProjectReportHibernateDAO implements ProjectReportDAO {
         return em.find(RichTextElement.class, id);
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<RichTextElement> findRichTextElementsByVersionId(Integer versionId) {
+        final Query query = em.createQuery("SELECT e FROM RichTextElement e LEFT JOIN FETCH e.block "
+                + "WHERE e.version.id = :versionId ORDER BY e.sectionId, e.index");
+        query.setParameter("versionId", versionId);
+        return query.getResultList();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<RichTextBlock> findRichTextBlocksByHash(String hash) {
+        final Query query = em.createQuery("SELECT b FROM RichTextBlock b WHERE b.hash = :hash");
+        query.setParameter("hash", hash);
+        return query.getResultList();
+    }
+
+    @Override
+    public void removeUnusedBlocks(Collection<RichTextBlock> blocks) {
+        final Query query = em.createQuery("SELECT COUNT(e) FROM RichTextElement e WHERE e.block = :block");
+
+        for(final RichTextBlock block : new HashSet<RichTextBlock>(blocks)) {
+            if(block == null)
+                continue;
+
+            query.setParameter("block", block);
+            if(((Number) query.getSingleResult()).longValue() == 0)
+                em.remove(block);
+        }
+    }
+
     @Override
     public void persist(ProjectReport report) {
         em.persist(report);
@@ -51,6 +87,11 @@ public class ProjectReportHibernateDAO implements ProjectReportDAO {
         em.persist(version);
     }
 
+    @Override
+    public void persist(RichTextBlock block) {
+        em.persist(block);
+    }
+
     @Override
     public ProjectReport findReportById(Integer id) {
         return em.find(ProjectReport.class, id);
@@ -70,6 +70,13 @@ import org.sigmah.shared.domain.reminder.MonitoredPointList;
 import org.sigmah.shared.domain.reminder.Reminder;
 import org.sigmah.shared.domain.reminder.ReminderHistory;
 import org.sigmah.shared.domain.reminder.ReminderList;
+import org.sigmah.shared.domain.report.KeyQuestion;
+import org.sigmah.shared.domain.report.ProjectReport;
+import org.sigmah.shared.domain.report.ProjectReportModel;
+import org.sigmah.shared.domain.report.ProjectReportModelSection;
+import org.sigmah.shared.domain.report.ProjectReportVersion;
+import org.sigmah.shared.domain.report.RichTextBlock;
+import org.sigmah.shared.domain.report.RichTextElement;
 import org.sigmah.shared.domain.value.File;
 import org.sigmah.shared.domain.value.FileVersion;
 import org.sigmah.shared.domain.value.Value;
@@ -99,5 +106,6 @@ public class PersistentClasses {
 	                LogFrameActivity.class, LogFrameElement.class, ExpectedResult.class, SpecificObjective.class,
 	                LogFrame.class, LogFrameGroup.class, LogFrameModel.class, CategoryElement.class,
 	                CategoryType.class, PersonalCalendar.class, PersonalEvent.class, HistoryToken.class,
-	                Amendment.class };
+	                Amendment.class, RichTextElement.class, RichTextBlock.class, ProjectReportVersion.class,
+	                ProjectReport.class, KeyQuestion.class, ProjectReportModelSection.class, ProjectReportModel.class };
 }
@@ -14,6 +14,7 @@ import org.apache.poi.ss.util.CellRangeAddress;
 import org.sigmah.server.domain.SiteData;
 import org.sigmah.server.report.generator.SiteDataBinder;
 import org.sigmah.shared.dao.Filter;
+import org.sigmah.shared.dao.SiteProjection;
 import org.sigmah.shared.dao.SiteTableColumn;
 import org.sigmah.shared.dao.SiteTableDAO;
 import org.sigmah.shared.domain.AdminEntity;
@@ -242,7 +243,12 @@ public class Export {
 
         return siteDAO.query(user, filter,
                 singletonList(descendingOn(SiteTableColumn.date2.property())),
-                new SiteDataBinder(), SiteTableDAO.RETRIEVE_ALL, 0, -1);
+                new SiteDataBinder(),
+                new SiteProjection(SiteTableDAO.RETRIEVE_NONE)
+                        .withIndicators(indicators)
+                        .withAttributes(attributes)
+                        .withAdminLevels(levels),
+                0, -1);
     }
 
     private void createDataRows(ActivityDTO activity, Sheet sheet) {
@@ -12,7 +12,7 @@ import org.sigmah.server.dao.AuthenticationDAO;
 import org.sigmah.server.domain.Authentication;
 import org.sigmah.server.domain.DomainFilters;
 import org.sigmah.server.domain.ReportDefinition;
-import org.sigmah.server.report.ReportParserJaxb;
+import org.sigmah.server.report.ParsedReportCache;
 import org.sigmah.server.report.generator.ReportGenerator;
 import org.sigmah.server.report.renderer.Renderer;
 import org.sigmah.server.report.renderer.RendererFactory;
@@ -63,7 +63,7 @@ public class ReportServlet extends HttpServlet {
         ReportDefinition template = em.find(ReportDefinition.class, Integer.parseInt(req.getParameter("id")));
         Report report = null;
         try {
-            report = ReportParserJaxb.parseXml(template.getXml());
+            report = injector.getInstance(ParsedReportCache.class).get(template);
         } catch (Exception e) {
             e.printStackTrace();
             resp.setStatus(500);
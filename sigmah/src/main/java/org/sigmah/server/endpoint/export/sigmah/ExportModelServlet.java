@@ -24,6 +24,7 @@ import org.apache.commons.fileupload.FileItemStream;
 import org.apache.commons.fileupload.FileUploadException;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
 import org.apache.commons.fileupload.util.Streams;
+import org.apache.commons.io.output.CountingOutputStream;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.sigmah.server.Cookies;
@@ -89,9 +90,15 @@ public class ExportModelServlet extends HttpServlet {
             final ModelHandler handler = handlers.get(type);
             if(handler != null) {
                 try {
-                    String fileName = handler.exportModel(resp.getOutputStream(), identifier,
+                    final long start = System.currentTimeMillis();
+                    final CountingOutputStream outputStream = new CountingOutputStream(resp.getOutputStream());
+
+                    String fileName = handler.exportModel(outputStream, identifier,
                             injector.getInstance(EntityManager.class));
 
+                    LOG.info("Model exported, type: "+type+", id: "+identifier+", "+outputStream.getByteCount()
+                            +" bytes in "+(System.currentTimeMillis() - start)+" ms.");
+
                     resp.setContentType("application/octet-stream");
                     resp.addHeader("Content-Disposition", "attachment; filename=\""+escapeFileName(fileName)+".dat\"");
 
@@ -158,13 +165,16 @@ public class ExportModelServlet extends HttpServlet {
                             final ByteArrayOutputStream serializedData = new ByteArrayOutputStream();
                             long dataSize = 0L;
 
-                            int b = stream.read();
+                            final byte[] buffer = new byte[8192];
+
+                            int count = stream.read(buffer);
 
-                            while(b != -1 && dataSize < MAXIMUM_FILE_SIZE) {
-                                serializedData.write(b);
+                            while(count != -1 && dataSize < MAXIMUM_FILE_SIZE) {
+                                count = (int) Math.min(count, MAXIMUM_FILE_SIZE - dataSize);
+                                serializedData.write(buffer, 0, count);
 
-                                dataSize++;
-                                b = stream.read();
+                                dataSize += count;
+                                count = stream.read(buffer);
                             }
 
                             stream.close();
@@ -181,25 +191,33 @@ public class ExportModelServlet extends HttpServlet {
                     // A file has been received
 
                     final String type = properties.get("type");
-                    final ModelHandler handler = handlers.get(type);
+                    ModelHandler handler = handlers.get(type);
 
                     if(handler != null) {
                     	
                     	if(handler instanceof ProjectModelHandler){
+                    		// The model type is specific to this import, the shared handler is left untouched.
+                    		final ProjectModelHandler projectModelHandler = new ProjectModelHandler();
                     		final String projectModelTypeAsString = properties.get("project-model-type");
                     		try {
                     			final ProjectModelType projectModelType = ProjectModelType.valueOf(projectModelTypeAsString);
-                    			((ProjectModelHandler)handler).setProjectModelType(projectModelType);
+                    			projectModelHandler.setProjectModelType(projectModelType);
                     		} catch (IllegalArgumentException e) {
 								LOG.debug("Bad value for project model type: "+projectModelTypeAsString, e);
 							}
+                    		handler = projectModelHandler;
                     	}
 
                         final ByteArrayInputStream inputStream = new ByteArrayInputStream(data);
 
                         try {
+                            final long start = System.currentTimeMillis();
+
                             handler.importModel(inputStream, injector.getInstance(EntityManager.class), authentication);
 
+                            LOG.info("Model imported, type: "+type+", "+data.length+" bytes in "
+                                    +(System.currentTimeMillis() - start)+" ms.");
+
                         } catch (ExportException ex) {
                             LOG.error("Model import error, type: "+type, ex);
                             resp.sendError(500);
@@ -16,6 +16,7 @@ import javax.servlet.http.HttpServletRequest;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.sigmah.server.dao.ProjectReportDAO;
 import org.sigmah.server.endpoint.export.sigmah.ExportException;
 import org.sigmah.server.endpoint.export.sigmah.Exporter;
 import org.sigmah.server.endpoint.gwtrpc.handler.GetProjectReportHandler;
@@ -108,7 +109,8 @@ public class ProjectReportExporter extends Exporter {
         if(report != null) {
             final ProjectReportVersion version = report.getCurrentVersion();
 
-            final ProjectReportDTO reportDTO = GetProjectReportHandler.toDTO(report, version);
+            final ProjectReportDTO reportDTO = GetProjectReportHandler.toDTO(report, version,
+                    injector.getInstance(ProjectReportDAO.class).findRichTextElementsByVersionId(version.getId()));
             
             // Generating the RTF
             try {
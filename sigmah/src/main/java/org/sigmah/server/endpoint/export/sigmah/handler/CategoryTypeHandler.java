@@ -2,12 +2,10 @@ package org.sigmah.server.endpoint.export.sigmah.handler;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.persistence.EntityManager;
 
 import org.h2.util.StringUtils;
@@ -24,16 +22,6 @@ import org.sigmah.shared.domain.category.CategoryType;
  */
 public class CategoryTypeHandler implements ModelHandler {
 
-    /**
-     * The map of imported objects (original object, transformed object)
-     */
-    public static HashMap<Object, Object> modelesReset = new HashMap<Object, Object>();
-
-    /**
-     * The list of imported objects which are transformed or being transformed.
-     */
-    public static HashSet<Object> modelesImport = new HashSet<Object>();
-
     @Override
     public String exportModel(OutputStream outputStream, String identifier, EntityManager em) throws ExportException {
         String name = "";
@@ -53,8 +41,7 @@ public class CategoryTypeHandler implements ModelHandler {
 
             // Serialization
             try {
-                final ObjectOutputStream objectOutputStream = new ObjectOutputStream(outputStream);
-                objectOutputStream.writeObject(realCategory);
+                ModelStreams.write(outputStream, realCategory);
 
             } catch (IOException ex) {
                 throw new ExportException("An error occured while serializing the category type " + categoryTypeId, ex);
@@ -71,21 +58,21 @@ public class CategoryTypeHandler implements ModelHandler {
     public void importModel(InputStream inputStream, EntityManager em, Authentication authentication)
             throws ExportException {
 
-        ObjectInputStream objectInputStream;
         em.getTransaction().begin();
 
         try {
-            objectInputStream = new ObjectInputStream(inputStream);
-            CategoryType categoryType = (CategoryType) objectInputStream.readObject();
+            CategoryType categoryType = ModelStreams.read(inputStream, CategoryType.class);
 
             if (categoryType != null) {
-                saveOrUpdateCategoryType(categoryType, em, authentication);
+                saveOrUpdateCategoryType(categoryType, em, authentication, new ImportState());
             }
             em.getTransaction().commit();
         } catch (IOException e) {
-            e.printStackTrace();
+            em.getTransaction().rollback();
+            throw new ExportException("Error while reading a category type.", e);
         } catch (ClassNotFoundException e) {
-            e.printStackTrace();
+            em.getTransaction().rollback();
+            throw new ExportException("Error while reading a category type.", e);
         }
     }
 
@@ -98,8 +85,14 @@ public class CategoryTypeHandler implements ModelHandler {
      *            the imported element
      * @param em
      *            the entity manager
+     * @param state
+     *            the state of this import
      */
-    private void saveOrUpdateCategoryType(CategoryType categoryType, EntityManager em, Authentication authentication) {
+    private void saveOrUpdateCategoryType(CategoryType categoryType, EntityManager em, Authentication authentication,
+            ImportState state) {
+        final Map<Object, Object> modelesReset = state.getModelesReset();
+        final Set<Object> modelesImport = state.getModelesImport();
+
         // Add the category type in the list of elements that are being handled
         modelesImport.add(categoryType);
         CategoryType key = categoryType;
@@ -131,7 +124,7 @@ public class CategoryTypeHandler implements ModelHandler {
         if (categoryElements != null) {
             for (CategoryElement element : categoryElements) {
                 element.setParentType(categoryType);
-                saveOrUpdateCategoryElement(element, em, authentication);
+                saveOrUpdateCategoryElement(element, em, authentication, state);
             }
             categoryType.setElements(categoryElements);
             em.merge(categoryType);
@@ -150,9 +143,14 @@ public class CategoryTypeHandler implements ModelHandler {
      *            the category of the imported element.
      * @param em
      *            the entity manager.
+     * @param state
+     *            the state of this import.
      */
     private void saveOrUpdateCategoryElement(CategoryElement categoryElement, EntityManager em,
-            Authentication authentication) {
+            Authentication authentication, ImportState state) {
+        final Map<Object, Object> modelesReset = state.getModelesReset();
+        final Set<Object> modelesImport = state.getModelesImport();
+
         // Test if the category isn't being transformed
         if (!modelesImport.contains(categoryElement)) {
             modelesImport.add(categoryElement);
@@ -168,7 +166,7 @@ public class CategoryTypeHandler implements ModelHandler {
 
                     // Test if the category type hasn't been transformed
                     if (!modelesReset.containsKey(parentType)) {
-                        saveOrUpdateCategoryType(parentType, em, authentication);
+                        saveOrUpdateCategoryType(parentType, em, authentication, state);
                     } else {
                         parentType = (CategoryType) modelesReset.get(parentType);
                     }
@@ -0,0 +1,97 @@
+/*
+ *  All Sigmah code is released under the GNU General Public License v3
+ *  See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.endpoint.export.sigmah.handler;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+
+import org.sigmah.shared.domain.category.CategoryElement;
+import org.sigmah.shared.domain.category.CategoryType;
+
+/**
+ * State of a single model import or copy.
+ * <p>
+ * A new instance must be created for each imported or copied model and dropped once it
+ * has been saved: the objects are tracked by identity, and sharing an instance between
+ * concurrent requests would mix their graphs.
+ *
+ * @author Raphaël Calabro (rcalabro@ideia.fr)
+ */
+public class ImportState {
+
+    /**
+     * The map of imported objects (original object, transformed object)
+     */
+    private final Map<Object, Object> modelesReset = new IdentityHashMap<Object, Object>();
+
+    /**
+     * The list of imported objects which are transformed or being transformed.
+     */
+    private final Set<Object> modelesImport = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+
+    public Map<Object, Object> getModelesReset() {
+        return modelesReset;
+    }
+
+    public Set<Object> getModelesImport() {
+        return modelesImport;
+    }
+
+    /**
+     * Save the category element of a question choice element, along with its category
+     * type and the other elements of this type if they have not been saved yet.
+     *
+     * @param categoryElement
+     *            the category element to save.
+     * @param em
+     *            the entity manager.
+     */
+    public void saveCategoryElement(CategoryElement categoryElement, EntityManager em) {
+        if (!modelesImport.contains(categoryElement)) {
+            modelesImport.add(categoryElement);
+
+            if (!modelesReset.containsKey(categoryElement)) {
+                CategoryElement key = categoryElement;
+                categoryElement.setId(null);
+
+                CategoryType parentType = categoryElement.getParentType();
+                if (!modelesImport.contains(parentType)) {
+                    modelesImport.add(parentType);
+
+                    if (!modelesReset.containsKey(parentType)) {
+                        CategoryType parentKey = parentType;
+                        parentType.setId(null);
+
+                        List<CategoryElement> elements = parentType.getElements();
+                        if (elements != null) {
+                            parentType.setElements(null);
+                            em.persist(parentType);
+                            for (CategoryElement element : elements) {
+                                element.setParentType(parentType);
+                                saveCategoryElement(element, em);
+                            }
+                            parentType.setElements(elements);
+                            em.merge(parentType);
+                        } else {
+                            em.persist(parentType);
+                        }
+                        modelesReset.put(parentKey, parentType);
+                    } else {
+                        parentType = (CategoryType) modelesReset.get(parentType);
+                    }
+                }
+                categoryElement.setParentType(parentType);
+                em.persist(categoryElement);
+                modelesReset.put(key, categoryElement);
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ *  All Sigmah code is released under the GNU General Public License v3
+ *  See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.endpoint.export.sigmah.handler;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Reads and writes the files produced by the model export.
+ * <p>
+ * A file starts with the {@link #MAGIC} bytes and the format version, followed by the
+ * realized model serialized into a gzip stream. The model is serialized straight into the
+ * compressed output, without buffering the whole file in memory.
+ * <br>
+ * Files exported before the format was versioned are plain serialized objects; they are
+ * recognized by their missing header and still read.
+ * <p>
+ * The payload is still written with Java serialization rather than with explicit field
+ * writers: a model is a graph of dozens of entity classes, with polymorphic flexible
+ * elements, shared category types and report models, and cycles between phases, which
+ * serialization handles without a writer to maintain for each entity. Gzip removes most
+ * of its verbosity. A more compact payload can be introduced as a new
+ * {@link #FORMAT_VERSION}, the older versions remaining readable.
+ *
+ * @author Raphaël Calabro (rcalabro@ideia.fr)
+ */
+public final class ModelStreams {
+
+    /**
+     * First bytes of every versioned model file.
+     */
+    public static final byte[] MAGIC = { 'S', 'G', 'M', 'D' };
+
+    /**
+     * Version of the format written by {@link #write(OutputStream, Object)}.
+     */
+    public static final int FORMAT_VERSION = 2;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private ModelStreams() {
+    }
+
+    /**
+     * Writes the given realized model into the given stream. The stream is not closed.
+     * @param outputStream Output stream.
+     * @param model Model stripped from its hibernate proxies.
+     * @throws IOException If the model could not be written.
+     */
+    public static void write(OutputStream outputStream, Object model) throws IOException {
+        final DataOutputStream header = new DataOutputStream(outputStream);
+        header.write(MAGIC);
+        header.writeInt(FORMAT_VERSION);
+        header.flush();
+
+        final GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream, BUFFER_SIZE);
+        final ObjectOutputStream objectOutputStream = new ObjectOutputStream(gzipOutputStream);
+        objectOutputStream.writeObject(model);
+        objectOutputStream.flush();
+        gzipOutputStream.finish();
+    }
+
+    /**
+     * Reads a model written by {@link #write(OutputStream, Object)} or by an older
+     * version of the export.
+     * @param <T> Type of the model.
+     * @param inputStream Data stream.
+     * @param type Expected class of the model.
+     * @return The deserialized model.
+     * @throws IOException If the file is unreadable or has been written by a newer version.
+     * @throws ClassNotFoundException If the file references unknown classes.
+     */
+    public static <T> T read(InputStream inputStream, Class<T> type) throws IOException, ClassNotFoundException {
+        final BufferedInputStream bufferedInputStream = new BufferedInputStream(inputStream, BUFFER_SIZE);
+        bufferedInputStream.mark(MAGIC.length);
+
+        final byte[] magic = new byte[MAGIC.length];
+        final int read = readFully(bufferedInputStream, magic);
+
+        final ObjectInputStream objectInputStream;
+        if (read == MAGIC.length && Arrays.equals(magic, MAGIC)) {
+            final int version = new DataInputStream(bufferedInputStream).readInt();
+            if (version > FORMAT_VERSION) {
+                throw new IOException("Unsupported model format version " + version + ", this server reads up to "
+                        + FORMAT_VERSION + '.');
+            }
+            objectInputStream = new ObjectInputStream(new GZIPInputStream(bufferedInputStream, BUFFER_SIZE));
+
+        } else {
+            // Legacy file: plain serialized object.
+            bufferedInputStream.reset();
+            objectInputStream = new ObjectInputStream(bufferedInputStream);
+        }
+
+        return type.cast(objectInputStream.readObject());
+    }
+
+    private static int readFully(InputStream inputStream, byte[] buffer) throws IOException {
+        int offset = 0;
+        while (offset < buffer.length) {
+            final int count = inputStream.read(buffer, offset, buffer.length - offset);
+            if (count == -1) {
+                break;
+            }
+            offset += count;
+        }
+        return offset;
+    }
+}
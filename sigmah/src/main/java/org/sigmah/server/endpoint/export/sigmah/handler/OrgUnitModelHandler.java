@@ -7,11 +7,7 @@ package org.sigmah.server.endpoint.export.sigmah.handler;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 
 import javax.persistence.EntityManager;
@@ -38,26 +34,15 @@ public class OrgUnitModelHandler implements ModelHandler {
 	
 	private final static Log LOG = LogFactory.getLog(OrgUnitModelHandler.class);
 	
-	/**
-	 * The map of imported objects (original object, transformed object)
-	 */
-	public static HashMap<Object, Object> modelesReset = new HashMap<Object, Object>();
-	
-	/**
-	 * The list of imported objects which are transformed or being transformed.
-	 */
-	public static HashSet<Object> modelesImport = new HashSet<Object>();
 	
 	
     @Override
     public void importModel(InputStream inputStream, EntityManager em, Authentication authentication) throws ExportException {
-        ObjectInputStream objectInputStream;
         em.getTransaction().begin();
 		try {
-			objectInputStream = new ObjectInputStream(inputStream);
-			OrgUnitModel orgUnitModel = (OrgUnitModel)objectInputStream.readObject();
+			OrgUnitModel orgUnitModel = ModelStreams.read(inputStream, OrgUnitModel.class);
 			orgUnitModel.resetImport();
-			saveOrgUnitFlexibleElement(orgUnitModel, em);
+			saveOrgUnitFlexibleElement(orgUnitModel, em, new ImportState());
 			
 			//Set the staus to DRAFT
 			orgUnitModel.setStatus(ProjectModelStatus.DRAFT);
@@ -65,9 +50,11 @@ public class OrgUnitModelHandler implements ModelHandler {
 			em.persist(orgUnitModel);
 			em.getTransaction().commit();
 		} catch (IOException e) {
-			LOG.error("Model import error.", e);
+			em.getTransaction().rollback();
+			throw new ExportException("Error while reading an org unit model.", e);
 		} catch (ClassNotFoundException e) {
-			LOG.error("Model import error.", e);
+			em.getTransaction().rollback();
+			throw new ExportException("Error while reading an org unit model.", e);
 		}
     }
 
@@ -91,8 +78,7 @@ public class OrgUnitModelHandler implements ModelHandler {
 
             // Serialization
             try {
-                final ObjectOutputStream objectOutputStream = new ObjectOutputStream(outputStream);
-                objectOutputStream.writeObject(realModel);
+                ModelStreams.write(outputStream, realModel);
 
             } catch (IOException ex) {
                 throw new ExportException("An error occured while serializing the orgUnit model "+orgUnitModelId, ex);
@@ -112,9 +98,11 @@ public class OrgUnitModelHandler implements ModelHandler {
 	 *            the imported organizational unit model
 	 * @param em
 	 *            the entity manager
+	 * @param state
+	 *            the state of this import
 	 */
 	private void saveOrgUnitFlexibleElement(OrgUnitModel orgUnitModel,
-			EntityManager em) {
+			EntityManager em, ImportState state) {
 		// OrgUnitModel --> Banner --> Layout --> Groups --> Constraints
 		if (orgUnitModel.getBanner() != null
 				&& orgUnitModel.getBanner().getLayout() != null) {
@@ -153,7 +141,7 @@ public class OrgUnitModelHandler implements ModelHandler {
 														questionChoiceElement.setCategoryElement(null);
 														
 														em.persist(questionChoiceElement);
-														saveOrgUnitModelCategoryElement(categoryElement, em);
+														state.saveCategoryElement(categoryElement, em);
 														questionChoiceElement.setCategoryElement(categoryElement);
 														em.merge(questionChoiceElement);
 													}else{
@@ -175,7 +163,7 @@ public class OrgUnitModelHandler implements ModelHandler {
 													for(CategoryElement element : typeElements){
 														if(em.find(CategoryElement.class, element.getId())==null){
 															element.setParentType(type);
-															saveOrgUnitModelCategoryElement(element, em);
+															state.saveCategoryElement(element, em);
 														}
 													}
 													type.setElements(typeElements);
@@ -237,7 +225,7 @@ public class OrgUnitModelHandler implements ModelHandler {
 														questionChoiceElement.setCategoryElement(null);
 														
 														em.persist(questionChoiceElement);
-														saveOrgUnitModelCategoryElement(categoryElement, em);
+														state.saveCategoryElement(categoryElement, em);
 														questionChoiceElement.setCategoryElement(categoryElement);
 														em.merge(questionChoiceElement);
 													}else{
@@ -259,7 +247,7 @@ public class OrgUnitModelHandler implements ModelHandler {
 													for(CategoryElement element : typeElements){
 														if(em.find(CategoryElement.class, element.getId())==null){
 															element.setParentType(type);
-															saveOrgUnitModelCategoryElement(element, em);
+															state.saveCategoryElement(element, em);
 														}
 													}
 													type.setElements(typeElements);
@@ -284,55 +272,4 @@ public class OrgUnitModelHandler implements ModelHandler {
 			}
 		}
 	}
-	
-	/**
-	 * Save the category element of a question choice element.
-	 * 
-	 * @param categoryElement
-	 *            the category element to save.
-	 * @param em
-	 *            the entity manager.
-	 */
-	private void saveOrgUnitModelCategoryElement(CategoryElement categoryElement, EntityManager em){
-		if(!modelesImport.contains(categoryElement)){
-			modelesImport.add(categoryElement);
-			
-			if(!modelesReset.containsKey(categoryElement)){
-				CategoryElement key = categoryElement;
-				categoryElement.setId(null);
-				
-				CategoryType parentType = categoryElement.getParentType();
-				if(!modelesImport.contains(parentType)){
-					modelesImport.add(parentType);
-					
-					if(!modelesReset.containsKey(parentType)){
-						CategoryType parentKey = parentType;
-						parentType.setId(null);
-						
-						List<CategoryElement> elements = parentType.getElements();
-						if(elements!=null){
-							parentType.setElements(null);
-							em.persist(parentType);
-							for(CategoryElement element : elements){
-								categoryElement.setParentType(parentType);
-								saveOrgUnitModelCategoryElement(element, em);
-							}
-							parentType.setElements(elements);
-							em.merge(parentType);
-						}else{
-							em.persist(parentType);
-						}						
-						modelesReset.put(parentKey, parentType);
-					}else{
-						parentType = (CategoryType)modelesReset.get(parentType);
-					}
-				}
-				categoryElement.setParentType(parentType);
-				em.persist(categoryElement);
-				modelesReset.put(key, categoryElement);
-			}else{
-				categoryElement = (CategoryElement)modelesReset.get(categoryElement);
-			}
-		}
-	}
 }
@@ -7,11 +7,8 @@ package org.sigmah.server.endpoint.export.sigmah.handler;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 
@@ -51,20 +48,17 @@ public class ProjectModelHandler implements ModelHandler {
     @Override
     public void importModel(InputStream inputStream, EntityManager em, Authentication authentication)
             throws ExportException {
-        ObjectInputStream objectInputStream;
         em.getTransaction().begin();
         try {
-            objectInputStream = new ObjectInputStream(inputStream);
-            ProjectModel projectModel = (ProjectModel) objectInputStream.readObject();
+            ProjectModel projectModel = ModelStreams.read(inputStream, ProjectModel.class);
 
             // Sets the new model as a draft.
             projectModel.setStatus(ProjectModelStatus.DRAFT);
 
-            final HashMap<Object, Object> modelesReset = new HashMap<Object, Object>();
-            final HashSet<Object> modelesImport = new HashSet<Object>();
+            final ImportState state = new ImportState();
 
-            projectModel.resetImport(modelesReset, modelesImport);
-            saveProjectFlexibleElement(projectModel, em, modelesReset, modelesImport, authentication);
+            projectModel.resetImport(state.getModelesReset(), state.getModelesImport());
+            saveProjectFlexibleElement(projectModel, em, state, authentication);
 
             // Attaching the new model to the current user's organization
             final ProjectModelVisibility visibility = new ProjectModelVisibility();
@@ -79,25 +73,14 @@ public class ProjectModelHandler implements ModelHandler {
             // Set the staus to DRAFT
             projectModel.setStatus(ProjectModelStatus.DRAFT);
 
-            for (PhaseModel pm : projectModel.getPhases()) {
-                for (LayoutGroup lg : pm.getLayout().getGroups()) {
-                    for (LayoutConstraint lc : lg.getConstraints()) {
-                        FlexibleElement fe = lc.getElement();
-                        System.out.println(fe.getClass() + " id " + fe.getId());
-                        if (fe instanceof QuestionElement) {
-                            for (QuestionChoiceElement qce : ((QuestionElement) fe).getChoices()) {
-                                System.out.println(qce.getClass() + " id " + qce.getId());
-                            }
-                        }
-                    }
-                }
-            }
-
             em.merge(projectModel);
             em.getTransaction().commit();
             LOG.debug("The project model '" + projectModel.getName() + "' has been imported successfully.");
 
         } catch (Throwable e) {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
             LOG.debug("Error while importing a project model.", e);
             throw new ExportException("Error while importing a project model.", e);
         }
@@ -126,8 +109,7 @@ public class ProjectModelHandler implements ModelHandler {
 
             // Serialization
             try {
-                final ObjectOutputStream objectOutputStream = new ObjectOutputStream(outputStream);
-                objectOutputStream.writeObject(realModel);
+                ModelStreams.write(outputStream, realModel);
 
             } catch (IOException ex) {
                 throw new ExportException("An error occured while serializing the project model " + projectModelId, ex);
@@ -159,20 +141,20 @@ public class ProjectModelHandler implements ModelHandler {
      *            the entity manager
      */
     private void saveProjectFlexibleElement(ProjectModel projectModel, EntityManager em,
-            HashMap<Object, Object> modelesReset, HashSet<Object> modelesImport, Authentication authentication) {
+            ImportState state, Authentication authentication) {
 
         // ProjectModel --> Banner --> Layout --> Groups --> Constraints
         if (projectModel.getProjectBanner() != null && projectModel.getProjectBanner().getLayout() != null) {
 
             final List<LayoutGroup> bannerLayoutGroups = projectModel.getProjectBanner().getLayout().getGroups();
-            saveLayoutGroups(bannerLayoutGroups, em, modelesReset, modelesImport, authentication);
+            saveLayoutGroups(bannerLayoutGroups, em, state, authentication);
         }
 
         // ProjectModel --> Detail --> Layout --> Groups --> Constraints
         if (projectModel.getProjectDetails() != null && projectModel.getProjectDetails().getLayout() != null) {
 
             final List<LayoutGroup> detailLayoutGroups = projectModel.getProjectDetails().getLayout().getGroups();
-            saveLayoutGroups(detailLayoutGroups, em, modelesReset, modelesImport, authentication);
+            saveLayoutGroups(detailLayoutGroups, em, state, authentication);
         }
 
         // ProjectModel --> Phases --> Layout --> Groups --> Constraints
@@ -185,7 +167,7 @@ public class ProjectModelHandler implements ModelHandler {
                 if (phase.getLayout() != null) {
 
                     final List<LayoutGroup> phaseLayoutGroups = phase.getLayout().getGroups();
-                    saveLayoutGroups(phaseLayoutGroups, em, modelesReset, modelesImport, authentication);
+                    saveLayoutGroups(phaseLayoutGroups, em, state, authentication);
                 }
                 if (phase.getDefinition() != null) {
                     em.persist(phase.getDefinition());
@@ -197,7 +179,7 @@ public class ProjectModelHandler implements ModelHandler {
     }
 
     private void saveLayoutGroups(final List<LayoutGroup> layoutGroups, EntityManager em,
-            HashMap<Object, Object> modelesReset, HashSet<Object> modelesImport, Authentication authentication) {
+            ImportState state, Authentication authentication) {
 
         final HashSet<Integer> reportModelsId = new HashSet<Integer>();
 
@@ -248,8 +230,7 @@ public class ProjectModelHandler implements ModelHandler {
                                                     questionChoiceElement.setCategoryElement(null);
 
                                                     em.persist(questionChoiceElement);
-                                                    saveProjectModelCategoryElement(categoryElement, em, modelesReset,
-                                                            modelesImport);
+                                                    state.saveCategoryElement(categoryElement, em);
                                                     questionChoiceElement.setCategoryElement(categoryElement);
                                                     em.merge(questionChoiceElement);
                                                 } else {
@@ -273,8 +254,7 @@ public class ProjectModelHandler implements ModelHandler {
                                                 for (CategoryElement element : typeElements) {
                                                     if (em.find(CategoryElement.class, element.getId()) == null) {
                                                         element.setParentType(type);
-                                                        saveProjectModelCategoryElement(element, em, modelesReset,
-                                                                modelesImport);
+                                                        state.saveCategoryElement(element, em);
                                                     }
                                                 }
                                                 type.setElements(typeElements);
@@ -303,7 +283,8 @@ public class ProjectModelHandler implements ModelHandler {
                                     final ProjectReportModel newModel;
 
                                     if (!reportModelsId.contains(oldModelId)) {
-                                        oldModel.resetImport(new HashMap<Object, Object>(), new HashSet<Object>());
+                                        final ImportState reportState = new ImportState();
+                                        oldModel.resetImport(reportState.getModelesReset(), reportState.getModelesImport());
                                         oldModel.setOrganization(authentication.getUser().getOrganization());
                                         newModel = oldModel;
                                         ProjectReportModelHandler.saveProjectReportModelElement(newModel, em);
@@ -335,7 +316,8 @@ public class ProjectModelHandler implements ModelHandler {
                                     final ProjectReportModel newModel;
 
                                     if (!reportModelsId.contains(oldModelId)) {
-                                        oldModel.resetImport(new HashMap<Object, Object>(), new HashSet<Object>());
+                                        final ImportState reportState = new ImportState();
+                                        oldModel.resetImport(reportState.getModelesReset(), reportState.getModelesImport());
                                         oldModel.setOrganization(authentication.getUser().getOrganization());
                                         newModel = oldModel;
                                         ProjectReportModelHandler.saveProjectReportModelElement(newModel, em);
@@ -366,56 +348,4 @@ public class ProjectModelHandler implements ModelHandler {
         }
 
     }
-
-    /**
-     * Save the category element of a question choice element.
-     * 
-     * @param categoryElement
-     *            the category element to save.
-     * @param em
-     *            the entity manager.
-     */
-    private void saveProjectModelCategoryElement(CategoryElement categoryElement, EntityManager em,
-            HashMap<Object, Object> modelesReset, HashSet<Object> modelesImport) {
-        if (!modelesImport.contains(categoryElement)) {
-            modelesImport.add(categoryElement);
-
-            if (!modelesReset.containsKey(categoryElement)) {
-                CategoryElement key = categoryElement;
-                categoryElement.setId(null);
-
-                CategoryType parentType = categoryElement.getParentType();
-                if (!modelesImport.contains(parentType)) {
-                    modelesImport.add(parentType);
-
-                    if (!modelesReset.containsKey(parentType)) {
-                        CategoryType parentKey = parentType;
-                        parentType.setId(null);
-
-                        List<CategoryElement> elements = parentType.getElements();
-                        if (elements != null) {
-                            parentType.setElements(null);
-                            em.persist(parentType);
-                            for (CategoryElement element : elements) {
-                                categoryElement.setParentType(parentType);
-                                saveProjectModelCategoryElement(element, em, modelesReset, modelesImport);
-                            }
-                            parentType.setElements(elements);
-                            em.merge(parentType);
-                        } else {
-                            em.persist(parentType);
-                        }
-                        modelesReset.put(parentKey, parentType);
-                    } else {
-                        parentType = (CategoryType) modelesReset.get(parentType);
-                    }
-                }
-                categoryElement.setParentType(parentType);
-                em.persist(categoryElement);
-                modelesReset.put(key, categoryElement);
-            } else {
-                categoryElement = (CategoryElement) modelesReset.get(categoryElement);
-            }
-        }
-    }
 }
@@ -7,11 +7,7 @@ package org.sigmah.server.endpoint.export.sigmah.handler;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 
 import javax.persistence.EntityManager;
@@ -34,33 +30,25 @@ public class ProjectReportModelHandler implements ModelHandler {
 
     private final static Log LOG = LogFactory.getLog(ProjectReportModelHandler.class);
 	
-	/**
-	 * The map of imported objects (original object, transformed object)
-	 */
-	public static HashMap<Object, Object> modelesReset = new HashMap<Object, Object>();
-	
-	/**
-	 * The list of imported objects which are transformed or being transformed.
-	 */
-	public static HashSet<Object> modelesImport = new HashSet<Object>();
 
     @Override
     public void importModel(InputStream inputStream, EntityManager em, Authentication authentication) throws ExportException {
-    	ObjectInputStream objectInputStream;
     	em.getTransaction().begin();
 		try {
-			objectInputStream = new ObjectInputStream(inputStream);
-			ProjectReportModel projectReportModel = (ProjectReportModel) objectInputStream.readObject();
-			projectReportModel.resetImport(modelesReset, modelesImport);
+			ProjectReportModel projectReportModel = ModelStreams.read(inputStream, ProjectReportModel.class);
+			final ImportState state = new ImportState();
+			projectReportModel.resetImport(state.getModelesReset(), state.getModelesImport());
 			saveProjectReportModelElement(projectReportModel, em);
 			projectReportModel.setOrganization(authentication.getUser().getOrganization());
 			em.persist(projectReportModel);
 			em.getTransaction().commit();
 		} catch (IOException e) {
-			LOG.debug(e);
+			em.getTransaction().rollback();
+			throw new ExportException("Error while reading a project report model.", e);
 		} catch (ClassNotFoundException e) {
-			LOG.debug(e);
-		}    	
+			em.getTransaction().rollback();
+			throw new ExportException("Error while reading a project report model.", e);
+		}
     }
 
     @Override
@@ -84,8 +72,7 @@ public class ProjectReportModelHandler implements ModelHandler {
 
             // Serialization
             try {
-                final ObjectOutputStream objectOutputStream = new ObjectOutputStream(outputStream);
-                objectOutputStream.writeObject(realModel);
+                ModelStreams.write(outputStream, realModel);
 
             } catch (IOException ex) {
                 throw new ExportException("An error occured while serializing the project model "+projectReportModelId, ex);
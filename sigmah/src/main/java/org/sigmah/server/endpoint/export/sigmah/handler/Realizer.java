@@ -4,10 +4,16 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -17,12 +23,61 @@ import org.hibernate.collection.PersistentSet;
 
 /**
  * Creates plain objects from Hibernate proxies.
+ * <p>
+ * The constructor and the fields to copy are looked up once per class and cached. The
+ * graph is walked breadth-first with an explicit queue, so deep models cannot overflow
+ * the stack and the lazy collections of one level are initialized together, which lets
+ * Hibernate load them in batches where the mapping declares a batch size.
+ *
  * @author Raphaël Calabro (rcalabro@ideia.fr)
  */
 public class Realizer {
 
     private final static Log LOG = LogFactory.getLog(Realizer.class);
 
+    private final static ConcurrentMap<Class<?>, Plan> PLANS = new ConcurrentHashMap<Class<?>, Plan>();
+
+    /**
+     * How to copy the instances of a class: its empty constructor and its instance fields,
+     * including those inherited from Sigmah superclasses.
+     */
+    private static class Plan {
+        private final Constructor<?> constructor;
+        private final Field[] fields;
+
+        private Plan(Constructor<?> constructor, Field[] fields) {
+            this.constructor = constructor;
+            this.fields = fields;
+        }
+    }
+
+    /**
+     * A realized instance whose fields still have to be copied from its source.
+     */
+    private static class Pending {
+        private final Object source;
+        private final Object instance;
+
+        private Pending(Object source, Object instance) {
+            this.source = source;
+            this.instance = instance;
+        }
+    }
+
+    /**
+     * A set to fill once every instance has been realized, since the hash codes of its
+     * elements may depend on their fields.
+     */
+    private static class PendingSet {
+        private final HashSet<Object> set;
+        private final List<Object> elements;
+
+        private PendingSet(HashSet<Object> set, List<Object> elements) {
+            this.set = set;
+            this.elements = elements;
+        }
+    }
+
     private Realizer() {
     }
 
@@ -33,107 +88,202 @@ public class Realizer {
      * <b>Note:</b> do not use this without testing its compatibility with your objects.
      * @param <T>
      * @param object An hibernate proxy.
-     * @return
+     * @return The realized object or <code>null</code> if <code>object</code> could not be
+     * realized. The objects of the graph that could not be realized are replaced by
+     * <code>null</code>.
      */
+    @SuppressWarnings("unchecked")
     public static <T> T realize(T object) {
-        return realize(object, new HashMap<Object, Object>());
-    }
+        final Map<Object, Object> alreadyRealizedObjects = new IdentityHashMap<Object, Object>();
+        final Queue<Pending> queue = new LinkedList<Pending>();
+        final List<PendingSet> sets = new ArrayList<PendingSet>();
 
-    private static <T> T realize(T object, Map<Object, Object> alreadyRealizedObjects) {
-        T result = null;
+        final List<Pending> copied = new ArrayList<Pending>();
+        final Map<Object, Object> failedInstances = new IdentityHashMap<Object, Object>();
 
-        if (object != null) {
+        final Object result = instantiate(object, alreadyRealizedObjects, queue);
 
-            // If the given object has already been instantiated, no need to instantiate it again
-            if (alreadyRealizedObjects.containsKey(object)) {
-                return (T) alreadyRealizedObjects.get(object);
-            }
+        while (!queue.isEmpty()) {
+            final Pending pending = queue.poll();
+            try {
+                copyFields(pending.source, pending.instance, alreadyRealizedObjects, queue, sets);
+                copied.add(pending);
 
-            LOG.trace("Realizing "+object.getClass()+"...");
+            } catch (Exception e) {
+                LOG.debug("An error occured while realizing " + pending.source, e);
+                failedInstances.put(pending.instance, pending.source);
+            }
+        }
 
-            try {
-                // Extracting the class of the current object
-                final Class<T> clazz = (Class<T>) object.getClass();
-                final Constructor<T> emptyConstructor = clazz.getConstructor();
+        if (!failedInstances.isEmpty()) {
+            removeFailedInstances(copied, sets, failedInstances);
+        }
 
-                // Creating a new instance of the current object
-                // REM: this will crash if the object doesn't have an empty constructor
-                final T instance = emptyConstructor.newInstance();
-                alreadyRealizedObjects.put(object, instance);
+        for (final PendingSet pendingSet : sets) {
+            pendingSet.set.addAll(pendingSet.elements);
+        }
 
-                // Accessing fields from the given object
-                final ArrayList<Field> fields = new ArrayList<Field>();
+        if (failedInstances.containsKey(result)) {
+            return null;
+        }
+        return (T) result;
+    }
 
-                fields.addAll(Arrays.asList(clazz.getDeclaredFields()));
+    /**
+     * Replaces the references to the partly copied instances by <code>null</code>, as if
+     * they had not been realized at all.
+     */
+    @SuppressWarnings("unchecked")
+    private static void removeFailedInstances(List<Pending> copied, List<PendingSet> sets,
+            Map<Object, Object> failedInstances) {
 
-                Class<?> superClass = clazz.getSuperclass();
-                while(superClass.getPackage().getName().startsWith("org.sigmah")) {
+        for (final Pending pending : copied) {
+            try {
+                for (final Field field : planFor(pending.source.getClass()).fields) {
+                    final Object sourceValue = field.get(pending.source);
+                    final Object value = field.get(pending.instance);
+
+                    if (failedInstances.containsKey(value)) {
+                        field.set(pending.instance, null);
+
+                    } else if (sourceValue instanceof PersistentBag
+                            || sourceValue instanceof PersistentList) {
+                        // Lists created from persistent bags and lists
+                        final List<Object> list = (List<Object>) value;
+                        for (int index = 0; index < list.size(); index++) {
+                            if (failedInstances.containsKey(list.get(index))) {
+                                list.set(index, null);
+                            }
+                        }
+                    }
+                }
 
-                    fields.addAll(Arrays.asList(superClass.getDeclaredFields()));
+            } catch (Exception e) {
+                LOG.debug("An error occured while realizing " + pending.source, e);
+            }
+        }
 
-                    superClass = superClass.getSuperclass();
+        for (final PendingSet pendingSet : sets) {
+            for (int index = 0; index < pendingSet.elements.size(); index++) {
+                if (failedInstances.containsKey(pendingSet.elements.get(index))) {
+                    pendingSet.elements.set(index, null);
                 }
+            }
+        }
+    }
 
-                for (final Field field : fields) {
-                    if (!Modifier.isStatic(field.getModifiers())) { // Avoid trying to modify static fields
-                        LOG.trace("\tfield "+field.getName());
+    /**
+     * Returns the instance realized for <code>object</code>, creating it and queueing the
+     * copy of its fields if needed.
+     */
+    private static Object instantiate(Object object, Map<Object, Object> alreadyRealizedObjects, Queue<Pending> queue) {
+        if (object == null) {
+            return null;
+        }
 
-                        field.setAccessible(true); // Force the accessibility of the current field
+        // If the given object has already been instantiated, no need to instantiate it again
+        if (alreadyRealizedObjects.containsKey(object)) {
+            return alreadyRealizedObjects.get(object);
+        }
 
-                        final Object sourceValue = field.get(object);
-                        final Object destinationValue;
+        LOG.trace("Realizing "+object.getClass()+"...");
 
-                        if (sourceValue == null) {
-                            destinationValue = null;
+        Object instance = null;
+        try {
+            // Creating a new instance of the current object
+            // REM: this will crash if the object doesn't have an empty constructor
+            instance = planFor(object.getClass()).constructor.newInstance();
+            queue.add(new Pending(object, instance));
 
-                        } else if (sourceValue instanceof PersistentBag
-                                || sourceValue instanceof PersistentList) {
-                            // Turning persistent bags into array lists
+        } catch (Exception e) {
+            LOG.debug("An error occured while realizing " + object, e);
+        }
 
-                            final ArrayList<Object> list = new ArrayList<Object>();
+        alreadyRealizedObjects.put(object, instance);
+        return instance;
+    }
 
-                            for (Object value : (PersistentBag) sourceValue) {
-                                list.add(realize(value, alreadyRealizedObjects));
-                            }
+    private static void copyFields(Object object, Object instance, Map<Object, Object> alreadyRealizedObjects,
+            Queue<Pending> queue, List<PendingSet> sets) throws IllegalAccessException {
 
-                            destinationValue = list;
+        for (final Field field : planFor(object.getClass()).fields) {
+            LOG.trace("\tfield "+field.getName());
 
-                        } else if (sourceValue instanceof PersistentSet) {
-                            // Turning persistent sets into hash sets
+            final Object sourceValue = field.get(object);
+            final Object destinationValue;
 
-                            final HashSet<Object> set = new HashSet<Object>();
+            if (sourceValue == null) {
+                destinationValue = null;
 
-                            for(Object value : (PersistentSet) sourceValue) {
-                                set.add(realize(value, alreadyRealizedObjects));
-                            }
+            } else if (sourceValue instanceof PersistentBag
+                    || sourceValue instanceof PersistentList) {
+                // Turning persistent bags into array lists
 
-                            destinationValue = set;
+                final ArrayList<Object> list = new ArrayList<Object>();
 
-                        } else if(sourceValue.getClass().getSimpleName().contains("javassist")) {
-                            destinationValue = null;
+                for (Object value : (Collection<?>) sourceValue) {
+                    list.add(instantiate(value, alreadyRealizedObjects, queue));
+                }
 
-                        } else if (sourceValue.getClass().getName().startsWith("java.")
-                                || sourceValue.getClass().isEnum()) {
-                            // Simple copy if the current field is a jdk type or an enum
-                            destinationValue = sourceValue;
+                destinationValue = list;
 
-                        } else {
-                            destinationValue = realize(sourceValue, alreadyRealizedObjects);
-                        }
+            } else if (sourceValue instanceof PersistentSet) {
+                // Turning persistent sets into hash sets
 
-                        // Setting the field of the new object
-                        field.set(instance, destinationValue);
-                    }
+                final HashSet<Object> set = new HashSet<Object>();
+                final List<Object> elements = new ArrayList<Object>();
+
+                for(Object value : (PersistentSet) sourceValue) {
+                    elements.add(instantiate(value, alreadyRealizedObjects, queue));
                 }
+                sets.add(new PendingSet(set, elements));
 
-                result = instance;
+                destinationValue = set;
 
-            } catch (Exception e) {
-                LOG.debug("An error occured while realizing " + object, e);
+            } else if(sourceValue.getClass().getSimpleName().contains("javassist")) {
+                destinationValue = null;
+
+            } else if (sourceValue.getClass().getName().startsWith("java.")
+                    || sourceValue.getClass().isEnum()) {
+                // Simple copy if the current field is a jdk type or an enum
+                destinationValue = sourceValue;
+
+            } else {
+                destinationValue = instantiate(sourceValue, alreadyRealizedObjects, queue);
             }
 
+            // Setting the field of the new object
+            field.set(instance, destinationValue);
         }
+    }
+
+    private static Plan planFor(Class<?> clazz) throws NoSuchMethodException {
+        Plan plan = PLANS.get(clazz);
+        if (plan == null) {
+            plan = createPlan(clazz);
+            PLANS.putIfAbsent(clazz, plan);
+        }
+        return plan;
+    }
+
+    private static Plan createPlan(Class<?> clazz) throws NoSuchMethodException {
+        final Constructor<?> emptyConstructor = clazz.getConstructor();
+
+        // Accessing fields from the given class and its Sigmah superclasses
+        final ArrayList<Field> fields = new ArrayList<Field>();
+
+        Class<?> currentClass = clazz;
+        do {
+            for (final Field field : currentClass.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) { // Avoid trying to modify static fields
+                    field.setAccessible(true); // Force the accessibility of the current field
+                    fields.add(field);
+                }
+            }
+            currentClass = currentClass.getSuperclass();
+
+        } while (currentClass.getPackage().getName().startsWith("org.sigmah"));
 
-        return result;
+        return new Plan(emptyConstructor, fields.toArray(new Field[fields.size()]));
     }
 }
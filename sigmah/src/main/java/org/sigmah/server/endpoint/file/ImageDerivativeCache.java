@@ -0,0 +1,261 @@
+package org.sigmah.server.endpoint.file;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Keeps the images served by {@link ImageServlet} in memory, in each of the sizes
+ * they are displayed at, along with the hash of their content.
+ * <p>
+ * The first requests for an image and a size share a single read and resize; the
+ * following ones are served from memory. Writers of images must call
+ * {@link #invalidate(String)} once the new content has been stored.
+ */
+@Singleton
+public class ImageDerivativeCache {
+
+    private static final Log log = LogFactory.getLog(ImageDerivativeCache.class);
+
+    /**
+     * Maximum number of images kept, the cache is emptied when it is reached.
+     */
+    public static final int MAX_ENTRIES = 256;
+
+    /**
+     * Sizes an image can be served at.
+     */
+    public enum Variant {
+        /**
+         * The stored image, untouched.
+         */
+        ORIGINAL(0, 0),
+        /**
+         * The size of the logo in the application banner.
+         */
+        BANNER(LogoManagerImpl.LOGO_WIDTH, LogoManagerImpl.LOGO_HEIGHT),
+        /**
+         * Half the size of the banner, for lists.
+         */
+        THUMBNAIL(LogoManagerImpl.LOGO_WIDTH / 2, LogoManagerImpl.LOGO_HEIGHT / 2);
+
+        private final int maxWidth;
+        private final int maxHeight;
+
+        private Variant(int maxWidth, int maxHeight) {
+            this.maxWidth = maxWidth;
+            this.maxHeight = maxHeight;
+        }
+
+        /**
+         * Returns the variant named by the given request parameter.
+         *
+         * @param value
+         *            The parameter value, may be <code>null</code>.
+         * @return The matching variant, {@link #ORIGINAL} if none matches.
+         */
+        public static Variant fromParameter(String value) {
+            if (value != null) {
+                for (final Variant variant : values()) {
+                    if (variant.name().equalsIgnoreCase(value)) {
+                        return variant;
+                    }
+                }
+            }
+            return ORIGINAL;
+        }
+    }
+
+    /**
+     * An image ready to be written to a response.
+     */
+    public static class Image {
+
+        private final byte[] content;
+        private final String contentType;
+        private final String version;
+
+        private Image(byte[] content, String contentType, String version) {
+            this.content = content;
+            this.contentType = contentType;
+            this.version = version;
+        }
+
+        public byte[] getContent() {
+            return content;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        /**
+         * @return The hexadecimal MD5 hash of the content.
+         */
+        public String getVersion() {
+            return version;
+        }
+
+        /**
+         * @return The strong entity tag of the content.
+         */
+        public String getETag() {
+            return '"' + version + '"';
+        }
+    }
+
+    private final FileStorageProvider fileStorageProvider;
+    private final ConcurrentMap<String, FutureTask<Image>> images = new ConcurrentHashMap<String, FutureTask<Image>>();
+
+    @Inject
+    public ImageDerivativeCache(FileStorageProvider fileStorageProvider) {
+        this.fileStorageProvider = fileStorageProvider;
+    }
+
+    /**
+     * Returns the image stored at the given path, in the given size.
+     *
+     * @param path
+     *            Storage id of the image.
+     * @param variant
+     *            Size of the image.
+     * @return The image.
+     * @throws IOException
+     *             If the image cannot be read.
+     */
+    public Image get(final String path, final Variant variant) throws IOException {
+        final String key = key(path, variant);
+
+        FutureTask<Image> task = images.get(key);
+        if (task == null) {
+            if (images.size() >= MAX_ENTRIES) {
+                images.clear();
+            }
+
+            final FutureTask<Image> newTask = new FutureTask<Image>(new Callable<Image>() {
+
+                @Override
+                public Image call() throws Exception {
+                    return load(path, variant);
+                }
+            });
+
+            task = images.putIfAbsent(key, newTask);
+            if (task == null) {
+                task = newTask;
+                newTask.run();
+            }
+        }
+
+        try {
+            return task.get();
+
+        } catch (ExecutionException e) {
+            // Failures are not cached, the next request tries again.
+            images.remove(key, task);
+
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Error while loading the image '" + path + "'.", e.getCause());
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading the image '" + path + "'.");
+        }
+    }
+
+    /**
+     * Discards every size of the image stored at the given path.
+     *
+     * @param path
+     *            Storage id of the image.
+     */
+    public void invalidate(String path) {
+        for (final Variant variant : Variant.values()) {
+            images.remove(key(path, variant));
+        }
+    }
+
+    /**
+     * Discards all the images.
+     */
+    public void invalidateAll() {
+        images.clear();
+    }
+
+    private Image load(String path, Variant variant) throws IOException {
+        if (log.isDebugEnabled()) {
+            log.debug("[load] Loading image '" + path + "' (" + variant + ").");
+        }
+
+        final InputStream inputStream = new BufferedInputStream(fileStorageProvider.open(path));
+
+        try {
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+            if (variant == Variant.ORIGINAL) {
+                IOUtil.copy(inputStream, outputStream);
+
+            } else {
+                final BufferedImage image = ImageIO.read(inputStream);
+                if (image == null) {
+                    throw new IOException("The file '" + path + "' is not a readable image.");
+                }
+
+                // Only reduces the image, keeping its proportions.
+                final double scale = Math.min(1.0, Math.min((double) variant.maxWidth / image.getWidth(),
+                        (double) variant.maxHeight / image.getHeight()));
+                final int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+                final int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+                ImageIO.write(LogoManagerImpl.resize(image, width, height), "png", outputStream);
+            }
+
+            // Logos are always stored as PNG, whatever their name.
+            final byte[] content = outputStream.toByteArray();
+            return new Image(content, "image/png", md5(content));
+
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private static String md5(byte[] content) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("MD5").digest(content);
+
+            final StringBuilder builder = new StringBuilder(digest.length * 2);
+            for (final byte b : digest) {
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+                builder.append(Character.forDigit(b & 0xF, 16));
+            }
+            return builder.toString();
+
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available.", e);
+        }
+    }
+
+    private static String key(String path, Variant variant) {
+        return variant.name() + ':' + path;
+    }
+}
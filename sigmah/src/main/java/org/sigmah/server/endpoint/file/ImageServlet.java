@@ -1,6 +1,5 @@
 package org.sigmah.server.endpoint.file;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Properties;
@@ -50,7 +49,7 @@ public class ImageServlet extends HttpServlet {
     /**
      * To get the images.
      */
-    private final FileStorageProvider fileStorageProvider;
+    private final ImageDerivativeCache imageCache;
     private final Provider<EntityManager> entityManager;
 
     /**
@@ -59,8 +58,8 @@ public class ImageServlet extends HttpServlet {
     private final String imageRepositoryRoot;
 
     @Inject
-    public ImageServlet(Properties configProperties, FileStorageProvider fileStorageProvider, Provider<EntityManager> entityManager, Injector injector) {
-        this.fileStorageProvider = fileStorageProvider;
+    public ImageServlet(Properties configProperties, ImageDerivativeCache imageCache, Provider<EntityManager> entityManager, Injector injector) {
+        this.imageCache = imageCache;
         this.entityManager = entityManager;
 
         // Initializes images repository path.
@@ -100,21 +99,28 @@ public class ImageServlet extends HttpServlet {
             log.debug("[doGet] Provides image at url '" + url + "'.");
         }
 
-        // Retrieves the image.
-        // final URI image = imageRepository.getImage(url);
-        // final BufferedInputStream inputStream = new
-        // BufferedInputStream(image.toURL().openStream());
+        // Retrieves the image in the requested size.
+        final ImageDerivativeCache.Variant variant =
+                ImageDerivativeCache.Variant.fromParameter(request.getParameter(FileUploadUtils.IMAGE_SIZE));
+        final ImageDerivativeCache.Image image = imageCache.get(imageRepositoryRoot + "/" + url, variant);
 
-        final BufferedInputStream inputStream =
-                new BufferedInputStream(fileStorageProvider.open(imageRepositoryRoot + "/" + url));
+        // The logo behind the url may change, browsers have to revalidate it.
+        response.setHeader("ETag", image.getETag());
+        response.setHeader("Cache-Control", "no-cache");
+
+        if (matches(request.getHeader("If-None-Match"), image.getETag())) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
 
         try {
 
             // Writes image content to the HTTP response.
-            final ServletOutputStream outputStream = response.getOutputStream();
-            IOUtil.copy(inputStream, outputStream);
+            response.setContentType(image.getContentType());
+            response.setContentLength(image.getContent().length);
 
-            inputStream.close();
+            final ServletOutputStream outputStream = response.getOutputStream();
+            outputStream.write(image.getContent());
             outputStream.close();
         } catch (IOException e) {
             log.error("[doGet] HTTP response I/O error.");
@@ -222,4 +228,31 @@ public class ImageServlet extends HttpServlet {
 
         }
     }
+
+    /**
+     * Checks if the <code>If-None-Match</code> header of a request matches the given
+     * entity tag.
+     * 
+     * @param ifNoneMatch
+     *            The header value, may be <code>null</code>.
+     * @param eTag
+     *            The current entity tag.
+     * @return <code>true</code> if the client already has the current content.
+     */
+    private static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
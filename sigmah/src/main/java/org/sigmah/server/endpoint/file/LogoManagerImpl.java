@@ -6,23 +6,16 @@ import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.lang.annotation.Documented;
 
 import javax.imageio.ImageIO;
-import javax.persistence.EntityManager;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.sigmah.shared.domain.Organization;
-import org.sigmah.shared.dto.value.FileUploadUtils;
 
 import com.google.inject.Inject;
-import com.google.inject.Provider;
 
 
 /**
@@ -34,65 +27,70 @@ import com.google.inject.Provider;
  */
 public class LogoManagerImpl implements LogoManager{
     
-    private final static int LOGO_HEIGHT = 56;
-    private final static int LOGO_WIDTH = 126;
+    public final static int LOGO_HEIGHT = 56;
+    public final static int LOGO_WIDTH = 126;
     
     /**
      * Logger.
      */
-    private static final Log log = LogFactory.getLog(FileManagerImpl.class);
+    private static final Log log = LogFactory.getLog(LogoManagerImpl.class);
 
     private final FileStorageProvider fileStorageProvider;
+    private final ImageDerivativeCache imageCache;
 
     @Inject
-    public LogoManagerImpl(FileStorageProvider storageProvider) {
+    public LogoManagerImpl(FileStorageProvider storageProvider, ImageDerivativeCache imageCache) {
         this.fileStorageProvider = storageProvider;
+        this.imageCache = imageCache;
     }
 
     @Override
     public void updateLogo(InputStream logoInputStream, String path) throws IOException {
-        final OutputStream outputStream = new BufferedOutputStream(fileStorageProvider.create(path));
-        
-        InputStream inputStream = validateLogo(logoInputStream);
-        
-        IOUtil.copy(inputStream, outputStream);
-        
+        final BufferedImage originalImage = ImageIO.read(new BufferedInputStream(logoInputStream));
         logoInputStream.close();
-        outputStream.close();
+
+        if (originalImage == null) {
+            throw new IOException("The uploaded logo is not a readable image.");
+        }
+
+        // The resized logo is encoded straight into the storage.
+        final OutputStream outputStream = new BufferedOutputStream(fileStorageProvider.create(path));
+        try {
+            ImageIO.write(resize(originalImage, LOGO_WIDTH, LOGO_HEIGHT), "png", outputStream);
+        } finally {
+            outputStream.close();
+        }
+
+        imageCache.invalidate(path);
+
+        if (log.isDebugEnabled()) {
+            log.debug("[updateLogo] Logo '" + path + "' updated.");
+        }
     }
 
     /*
-     * Resize the logo to the correct height and width 
+     * Resize the image to the given height and width
      * 
-     * @param logoInputStream
-     *              The inputstream of the image
-     * @return an inputstream of the new image
+     * @param originalImage
+     *              The image to resize
+     * @return the resized image
      */
-    private InputStream validateLogo(InputStream logoInputStream) throws IOException {
-        
-        BufferedImage originalImage = ImageIO.read(logoInputStream);
+    static BufferedImage resize(BufferedImage originalImage, int width, int height) {
         int type = originalImage.getType() == 0? BufferedImage.TYPE_INT_ARGB : originalImage.getType();
         
-        
-        BufferedImage resizedImage = new BufferedImage(LOGO_WIDTH, LOGO_HEIGHT, type);
+        BufferedImage resizedImage = new BufferedImage(width, height, type);
         Graphics2D g = resizedImage.createGraphics();
-        g.drawImage(originalImage, 0, 0, LOGO_WIDTH, LOGO_HEIGHT, null);
-        g.dispose();
         
+        // The hints only apply to what is drawn after them.
         g.setComposite(AlphaComposite.Src);
-        
         g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
         g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
         g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,RenderingHints.VALUE_ANTIALIAS_ON);
         
-        ByteArrayOutputStream os = new ByteArrayOutputStream();
-        ImageIO.write(resizedImage, "png" , os);
-        
-        byte[] data = os.toByteArray();
-        os.close();
-        logoInputStream.close();
+        g.drawImage(originalImage, 0, 0, width, height, null);
+        g.dispose();
         
-        return new BufferedInputStream(new ByteArrayInputStream(data));
+        return resizedImage;
     }
 
 }
@@ -9,14 +9,20 @@ import com.google.gwt.rpc.server.RpcServlet;
 import com.google.gwt.user.server.rpc.RemoteServiceServlet;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.OutOfScopeException;
 import com.google.inject.Singleton;
+import com.google.inject.servlet.ServletScopes;
 import org.sigmah.server.dao.AuthenticationDAO;
 import org.sigmah.server.dao.Transactional;
 import org.sigmah.server.domain.Authentication;
 import org.sigmah.server.domain.DomainFilters;
 import org.sigmah.server.endpoint.gwtrpc.handler.HandlerUtil;
 import org.sigmah.server.util.logging.LogException;
+import org.sigmah.server.util.metrics.CommandMetrics;
+import org.sigmah.server.util.metrics.Metered;
 import org.sigmah.shared.command.Command;
+import org.sigmah.shared.command.ReadOnly;
 import org.sigmah.shared.command.RemoteCommandService;
 import org.sigmah.shared.command.handler.CommandHandler;
 import org.sigmah.shared.command.result.CommandResult;
@@ -26,8 +32,23 @@ import org.sigmah.shared.exception.InvalidAuthTokenException;
 import org.sigmah.shared.exception.UnexpectedCommandException;
 
 import javax.persistence.EntityManager;
+import javax.servlet.http.HttpServletRequest;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
@@ -40,18 +61,48 @@ import java.util.List;
  * CommandHandlers are loaded based on name from the org.sigmah.server.command.handler package.
  * <p/>
  * E.g. UpdateEntity => org.sigmah.server.command.handler.UpdateEntityHandler
+ * <p/>
+ * When a list of commands is executed, the {@link ReadOnly} commands are executed at the
+ * same time, each with its own EntityManager and transaction. The other commands are
+ * executed one at a time, in order, once the commands sent before them are done.
  */
 @Singleton
 public class CommandServlet extends RemoteServiceServlet implements RemoteCommandService {
 
+    /**
+     * Maximum number of read-only commands of a request executed at the same time.
+     */
+    private static final int MAX_PARALLEL_COMMANDS = 4;
+
+    /**
+     * Number of threads executing the read-only commands of all the requests.
+     */
+    private static final int COMMAND_THREADS = 16;
+
+    /**
+     * Request attribute holding the name under which the size of the response is recorded.
+     */
+    private static final String METRICS_NAMES_ATTRIBUTE = CommandServlet.class.getName() + ".metricsNames";
+
     @Inject
     private Injector injector;
 
+    @Inject
+    private CommandMetrics metrics;
+
+    private final ExecutorService executor = createExecutor();
+
 
     @Override
     @LogException
     public List<CommandResult> execute(String authToken, List<Command> commands) throws CommandException {
         Authentication auth = retrieveAuthentication(authToken);
+
+        HttpServletRequest request = getThreadLocalRequest();
+        if (request != null) {
+            request.setAttribute(METRICS_NAMES_ATTRIBUTE, CommandMetrics.namesOf(commands));
+        }
+
         try {
             return handleCommands(auth.getUser(), commands);
 
@@ -74,22 +125,144 @@ public class CommandServlet extends RemoteServiceServlet implements RemoteComman
     public List<CommandResult> handleCommands(User user, List<Command> commands) {
         applyUserFilters(user);
 
-        List<CommandResult> results = new ArrayList<CommandResult>();
-        for (Command command : commands) {
+        CommandResult[] results = new CommandResult[commands.size()];
+        List<Integer> readOnlyCommands = new ArrayList<Integer>();
+
+        for (int index = 0; index < commands.size(); index++) {
+            if (commands.get(index) instanceof ReadOnly) {
+                readOnlyCommands.add(index);
+
+            } else {
+                // a write waits for the commands sent before it
+                handleReadOnlyCommands(user, commands, readOnlyCommands, results);
+                readOnlyCommands.clear();
+
+                results[index] = handleCommandSafely(user, commands.get(index));
+            }
+        }
+        handleReadOnlyCommands(user, commands, readOnlyCommands, results);
+
+        return new ArrayList<CommandResult>(Arrays.asList(results));
+    }
+
+    /**
+     * Executes the given read-only commands at the same time, each in a continuation of
+     * the current request, so with its own EntityManager.
+     */
+    private void handleReadOnlyCommands(User user, List<Command> commands, List<Integer> indexes,
+                                        CommandResult[] results) {
+
+        if (indexes.size() < 2) {
+            for (Integer index : indexes) {
+                results[index] = handleCommandSafely(user, commands.get(index));
+            }
+            return;
+        }
+
+        final Map<Integer, Future<CommandResult>> futures = new LinkedHashMap<Integer, Future<CommandResult>>();
+        final Semaphore permits = new Semaphore(MAX_PARALLEL_COMMANDS);
+
+        try {
+            for (Integer index : indexes) {
+                final Command command = commands.get(index);
+
+                final Callable<CommandResult> task;
+                try {
+                    task = ServletScopes.continueRequest(new ReadOnlyCommandTask(user.getId(), command),
+                            Collections.<Key<?>, Object>emptyMap());
+
+                } catch (OutOfScopeException e) {
+                    // not called within a request, the command is executed with the
+                    // current EntityManager
+                    results[index] = handleCommandSafely(user, command);
+                    continue;
+                }
+
+                permits.acquire();
+                try {
+                    futures.put(index, executor.submit(new Callable<CommandResult>() {
+
+                        @Override
+                        public CommandResult call() throws Exception {
+                            try {
+                                return task.call();
+                            } finally {
+                                permits.release();
+                            }
+                        }
+                    }));
+                } catch (RuntimeException e) {
+                    permits.release();
+                    throw e;
+                }
+            }
+
+            for (Map.Entry<Integer, Future<CommandResult>> entry : futures.entrySet()) {
+                try {
+                    results[entry.getKey()] = entry.getValue().get();
+                } catch (ExecutionException e) {
+                    results[entry.getKey()] = new UnexpectedCommandException(e.getCause());
+                }
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            for (Integer index : indexes) {
+                Future<CommandResult> future = futures.get(index);
+                if (future != null) {
+                    future.cancel(true);
+                }
+                if (results[index] == null) {
+                    results[index] = new UnexpectedCommandException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Executes a read-only command with the EntityManager of the request continued by the
+     * current thread.
+     */
+    private class ReadOnlyCommandTask implements Callable<CommandResult> {
+
+        private final int userId;
+        private final Command command;
+
+        private ReadOnlyCommandTask(int userId, Command command) {
+            this.userId = userId;
+            this.command = command;
+        }
+
+        @Override
+        public CommandResult call() {
+            EntityManager em = injector.getInstance(EntityManager.class);
             try {
-                results.add(handleCommand(user, command));
-            } catch (CommandException e) {
-                // include this as an error-ful result and
-                // continue executing other commands in the list
-                results.add(e);
-            } catch (Throwable e) {
-                // something when wrong while executing the command
-                // this is already logged by the logging interceptor
-                // so just pass a new UnexpectedCommandException to the client
-                results.add(new UnexpectedCommandException(e));
+                // the user is loaded again, entities are not shared between threads
+                User user = em.find(User.class, userId);
+                DomainFilters.applyUserFilter(user, em);
+
+                return handleCommandSafely(user, command);
+
+            } finally {
+                em.close();
             }
         }
-        return results;
+    }
+
+    private CommandResult handleCommandSafely(User user, Command command) {
+        try {
+            return handleCommand(user, command);
+        } catch (CommandException e) {
+            // include this as an error-ful result and
+            // continue executing other commands in the list
+            return e;
+        } catch (Throwable e) {
+            // something when wrong while executing the command
+            // this is already logged by the logging interceptor
+            // so just pass a new UnexpectedCommandException to the client
+            return new UnexpectedCommandException(e);
+        }
     }
 
     private void applyUserFilters(User user) {
@@ -97,6 +270,7 @@ public class CommandServlet extends RemoteServiceServlet implements RemoteComman
         DomainFilters.applyUserFilter(user, em);
     }
 
+    @Metered
     @Transactional
     @LogException(emailAlert = true)
     protected CommandResult handleCommand(User user, Command command) throws CommandException {
@@ -109,6 +283,39 @@ public class CommandServlet extends RemoteServiceServlet implements RemoteComman
                 HandlerUtil.executorForCommand(command));
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void onAfterResponseSerialized(String serializedResponse) {
+        HttpServletRequest request = getThreadLocalRequest();
+        Object names = request == null ? null : request.getAttribute(METRICS_NAMES_ATTRIBUTE);
+        if (names != null) {
+            metrics.recordResponse((List<String>) names, serializedResponse.length());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+        super.destroy();
+    }
+
+    private static ExecutorService createExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(COMMAND_THREADS, COMMAND_THREADS,
+                60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "command-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     private Authentication retrieveAuthentication(String authToken) throws InvalidAuthTokenException {
         AuthenticationDAO authDAO = injector.getInstance(AuthenticationDAO.class);
         Authentication auth = authDAO.findById(authToken);
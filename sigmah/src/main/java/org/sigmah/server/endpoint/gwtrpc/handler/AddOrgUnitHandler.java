@@ -5,6 +5,7 @@ import java.util.HashSet;
 import javax.persistence.EntityManager;
 
 import org.dozer.Mapper;
+import org.sigmah.server.dao.OrgUnitHierarchy;
 import org.sigmah.server.dao.Transactional;
 import org.sigmah.shared.command.AddOrgUnit;
 import org.sigmah.shared.command.handler.CommandHandler;
@@ -26,11 +27,16 @@ public class AddOrgUnitHandler implements CommandHandler<AddOrgUnit> {
 
     private final EntityManager em;
     private final Mapper mapper;
+    private final OrgUnitHierarchy hierarchy;
+
+    private final ModelDTOCache cache;
 
     @Inject
-    public AddOrgUnitHandler(EntityManager em, Mapper mapper) {
+    public AddOrgUnitHandler(EntityManager em, Mapper mapper, OrgUnitHierarchy hierarchy, ModelDTOCache cache) {
         this.em = em;
         this.mapper = mapper;
+        this.hierarchy = hierarchy;
+        this.cache = cache;
     }
 
     @Transactional
@@ -82,10 +88,14 @@ public class AddOrgUnitHandler implements CommandHandler<AddOrgUnit> {
         newOrgUnit.setOrgUnitModel(model);
 
         newOrgUnit = em.merge(newOrgUnit);
+        hierarchy.invalidateOnCompletion(em);
 
-        // Updates the model status.
-        model.setStatus(ProjectModelStatus.USED);
-        em.merge(model);
+        // Updates the model status, which locks the edition of the cached model.
+        if (model.getStatus() != ProjectModelStatus.USED) {
+            model.setStatus(ProjectModelStatus.USED);
+            em.merge(model);
+            cache.invalidateOnCompletion(em);
+        }
 
         final CreateResult result = new CreateResult(newOrgUnit.getId());
         result.setEntity(mapper.map(newOrgUnit, OrgUnitDTO.class).light());
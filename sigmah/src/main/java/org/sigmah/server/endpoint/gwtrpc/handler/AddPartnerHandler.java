@@ -19,6 +19,7 @@ import org.sigmah.shared.exception.DuplicateException;
 import org.sigmah.shared.exception.IllegalAccessCommandException;
 
 import javax.persistence.EntityManager;
+import java.util.Date;
 import java.util.List;
 import java.util.Set;
 
@@ -62,6 +63,7 @@ public class AddPartnerHandler implements CommandHandler<AddPartner> {
 
         if (allPartners.size() != 0) {
             db.getPartners().add(allPartners.get(0));
+            db.setLastSchemaUpdate(new Date());
             return new CreateResult(allPartners.get(0).getId());
         }
 
@@ -72,6 +74,7 @@ public class AddPartnerHandler implements CommandHandler<AddPartner> {
         em.persist(newPartner);
 
         db.getPartners().add(newPartner);
+        db.setLastSchemaUpdate(new Date());
 
         return new CreateResult(newPartner.getId());
     }
@@ -126,7 +126,7 @@ public class BaseEntityHandler {
             attribute.setSortOrder((Integer) changes.get("sortOrder"));
         }
 
-        // TODO: update lastSchemaUpdate
+        touchDatabases(attribute.getGroup());
     }
 
     protected void updateAttributeGroupProperties(AttributeGroup group, Map<String, Object> changes) {
@@ -141,7 +141,18 @@ public class BaseEntityHandler {
             group.setSortOrder((Integer) changes.get("sortOrder"));
         }
 
+        touchDatabases(group);
+    }
 
+    /**
+     * Updates the <code>lastSchemaUpdate</code> of the databases whose activities use the
+     * given attribute group.
+     */
+    protected void touchDatabases(AttributeGroup group) {
+        Date now = new Date();
+        for (Activity activity : group.getActivities()) {
+            activity.getDatabase().setLastSchemaUpdate(now);
+        }
     }
 
     protected void updateActivityProperties(Activity activity, Map<String, Object> changes) {
@@ -17,6 +17,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.dozer.Mapper;
 import org.sigmah.client.page.admin.AdminUtil;
+import org.sigmah.server.dao.cache.QueryResultCache;
 import org.sigmah.server.policy.ActivityPolicy;
 import org.sigmah.server.policy.CategoryPolicy;
 import org.sigmah.server.policy.ImportationSchemeModelPolicy;
@@ -46,6 +47,7 @@ import org.sigmah.shared.domain.Indicator;
 import org.sigmah.shared.domain.OrgUnit;
 import org.sigmah.shared.domain.Project;
 import org.sigmah.shared.domain.ProjectFunding;
+import org.sigmah.shared.domain.Site;
 import org.sigmah.shared.domain.User;
 import org.sigmah.shared.domain.UserDatabase;
 import org.sigmah.shared.domain.reminder.MonitoredPoint;
@@ -134,7 +136,9 @@ public class CreateEntityHandler extends BaseEntityHandler implements CommandHan
 			return new CreateResult(mappedProject);
 		} else if ("Site".equals(cmd.getEntityName())) {
 			SitePolicy policy = injector.getInstance(SitePolicy.class);
-			return new CreateResult((Integer) policy.create(user, propertyMap));
+			final Integer siteId = (Integer) policy.create(user, propertyMap);
+			invalidateResults(em.find(Site.class, siteId).getDatabase());
+			return new CreateResult(siteId);
 		} else if ("PersonalEvent".equals(cmd.getEntityName())) {
 			PersonalEventPolicy policy = injector.getInstance(PersonalEventPolicy.class);
 			return new CreateResult((Integer) policy.create(user, propertyMap));
@@ -153,18 +157,24 @@ public class CreateEntityHandler extends BaseEntityHandler implements CommandHan
 		} else if ("User".equals(cmd.getEntityName())) {
 			return createUser(user, propertyMap);
 		} else if ("PrivacyGroup".equals(cmd.getEntityName())) {
+			invalidateModels();
 			return createPrivacyGroup(user, propertyMap);
 		} else if ("Profile".equals(cmd.getEntityName())) {
 			return createProfile(user, propertyMap);
 		} else if ("ProjectModel".equals(cmd.getEntityName())) {
+			invalidateModels();
 			return createProjectModel(user, propertyMap);
 		} else if ("ProjectReportModel".equals(cmd.getEntityName())) {
+			invalidateModels();
 			return createProjectReportModel(user, propertyMap);
 		} else if ("OrgUnitModel".equals(cmd.getEntityName())) {
+			invalidateModels();
 			return createOrgUnitModel(user, propertyMap);
 		} else if ("GroupLayout".equals(cmd.getEntityName())) {
+			invalidateModels();
 			return createLayoutGroupModel(user, propertyMap);
 		} else if ("CategoryType".equals(cmd.getEntityName())) {
+			invalidateModels();
 			return createCategoryType(user, propertyMap);
 		} else if ("ImportationScheme".equals(cmd.getEntityName())) {
 			return createImportationScheme(user, propertyMap);
@@ -175,6 +185,21 @@ public class CreateEntityHandler extends BaseEntityHandler implements CommandHan
 		}
 	}
 
+	/**
+	 * Discards the cached project and org unit model DTOs, which embed the edited
+	 * layouts, flexible elements, categories, privacy groups and report models.
+	 */
+	private void invalidateModels() {
+		injector.getInstance(ModelDTOCache.class).invalidateOnCompletion(em);
+	}
+
+	/**
+	 * Discards the cached pivot and site table results read from the given database.
+	 */
+	private void invalidateResults(UserDatabase database) {
+		injector.getInstance(QueryResultCache.class).invalidateOnCompletion(em, database.getId());
+	}
+
 	private CommandResult createImportationSchemeModel(User user, PropertyMap propertyMap) {
 		ImportationSchemeModelPolicy policy = injector.getInstance(ImportationSchemeModelPolicy.class);
 		ImportationSchemeModelDTO newImportationSchemeModel = (ImportationSchemeModelDTO) policy.create(user,
@@ -320,6 +345,7 @@ public class CreateEntityHandler extends BaseEntityHandler implements CommandHan
 
 		Activity activity = em.find(Activity.class, properties.get("activityId"));
 		activity.getAttributeGroups().add(group);
+		activity.getDatabase().setLastSchemaUpdate(new Date());
 
 		return new CreateResult(group.getId());
 	}
@@ -19,16 +19,20 @@ public class DeleteCategoriesHandler implements CommandHandler<DeleteCategories>
 	//private static final Log log = LogFactory.getLog(DeleteCategoriesHandler.class);
 
 	private EntityManager em;
+	private final ModelDTOCache cache;
 
     @Inject
-    public DeleteCategoriesHandler(EntityManager em) {
+    public DeleteCategoriesHandler(EntityManager em, ModelDTOCache cache) {
         this.em = em;
+        this.cache = cache;
     }
 
 	@Override
 	public CommandResult execute(DeleteCategories cmd, User executingUser)
 			throws CommandException {
 		
+		cache.invalidateOnCompletion(em);
+		
 		if(cmd.getCategoryTypes() != null){
 			for(CategoryTypeDTO categoryDTO : cmd.getCategoryTypes()){
 				CategoryType category = em.find(CategoryType.class, categoryDTO.getId());
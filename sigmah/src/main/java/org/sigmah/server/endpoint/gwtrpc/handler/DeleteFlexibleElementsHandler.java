@@ -24,16 +24,20 @@ public class DeleteFlexibleElementsHandler implements CommandHandler<DeleteFlexi
 	private static final Log log = LogFactory.getLog(DeleteFlexibleElementsHandler.class);
 	
 	private EntityManager em;
+	private final ModelDTOCache cache;
 
     @Inject
-    public DeleteFlexibleElementsHandler(EntityManager em, UserDAO userDAO) {
+    public DeleteFlexibleElementsHandler(EntityManager em, UserDAO userDAO, ModelDTOCache cache) {
         this.em = em;
+        this.cache = cache;
     }
 
 	@Override
 	public CommandResult execute(DeleteFlexibleElements cmd, User executiongUser)
 			throws CommandException {
 		
+		cache.invalidateOnCompletion(em);
+		
 		if(cmd.getFlexibleElements() != null){
 			for(FlexibleElementDTO flexEltDTO : cmd.getFlexibleElements()){
 				
@@ -6,15 +6,24 @@
 package org.sigmah.server.endpoint.gwtrpc.handler;
 
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.persistence.EntityManager;
 import javax.persistence.Query;
 
+import org.sigmah.server.dao.ProjectReportDAO;
+import org.sigmah.server.dao.cache.QueryResultCache;
 import org.sigmah.shared.command.Delete;
 import org.sigmah.shared.command.handler.CommandHandler;
 import org.sigmah.shared.command.result.CommandResult;
+import org.sigmah.shared.domain.Activity;
+import org.sigmah.shared.domain.Attribute;
+import org.sigmah.shared.domain.AttributeGroup;
 import org.sigmah.shared.domain.Deleteable;
+import org.sigmah.shared.domain.Indicator;
 import org.sigmah.shared.domain.OrgUnitModel;
 import org.sigmah.shared.domain.Phase;
 import org.sigmah.shared.domain.PhaseModel;
@@ -22,6 +31,7 @@ import org.sigmah.shared.domain.Project;
 import org.sigmah.shared.domain.ProjectFunding;
 import org.sigmah.shared.domain.ProjectModel;
 import org.sigmah.shared.domain.ProjectModelStatus;
+import org.sigmah.shared.domain.Site;
 import org.sigmah.shared.domain.User;
 import org.sigmah.shared.domain.UserDatabase;
 import org.sigmah.shared.domain.element.FlexibleElement;
@@ -29,6 +39,7 @@ import org.sigmah.shared.domain.layout.LayoutConstraint;
 import org.sigmah.shared.domain.layout.LayoutGroup;
 import org.sigmah.shared.domain.report.ProjectReport;
 import org.sigmah.shared.domain.report.ProjectReportVersion;
+import org.sigmah.shared.domain.report.RichTextBlock;
 import org.sigmah.shared.domain.report.RichTextElement;
 import org.sigmah.shared.domain.value.Value;
 
@@ -43,10 +54,16 @@ import com.google.inject.Inject;
 public class DeleteHandler implements CommandHandler<Delete> {
 
 	private EntityManager em;
+	private final ModelDTOCache cache;
+	private final QueryResultCache results;
+	private final ProjectReportDAO reportDAO;
 
 	@Inject
-	public DeleteHandler(EntityManager em) {
+	public DeleteHandler(EntityManager em, ModelDTOCache cache, QueryResultCache results, ProjectReportDAO reportDAO) {
 		this.em = em;
+		this.cache = cache;
+		this.results = results;
+		this.reportDAO = reportDAO;
 	}
 
 	@Override
@@ -57,6 +74,11 @@ public class DeleteHandler implements CommandHandler<Delete> {
 		@SuppressWarnings("rawtypes")
 		Class entityClass = entityClassForEntityName(cmd.getEntityName());
 
+		if ("ProjectModel".equals(cmd.getEntityName()) || "PhaseModel".equals(cmd.getEntityName())
+		                || "OrgUnitModel".equals(cmd.getEntityName())) {
+			cache.invalidateOnCompletion(em);
+		}
+
 		if (ProjectModelStatus.DRAFT.equals(cmd.getProjectModelStatus()) && "ProjectModel".equals(cmd.getEntityName())) { // Delete
 			                                                                                                              // draft
 			                                                                                                              // project
@@ -81,11 +103,53 @@ public class DeleteHandler implements CommandHandler<Delete> {
 		else {
 			Deleteable entity = (Deleteable) em.find(entityClass, cmd.getId());
 			entity.delete();
+
+			final Set<Integer> databaseIds = touchSchema(entity);
+			if (entity instanceof Site) {
+				databaseIds.add(((Site) entity).getDatabase().getId());
+			}
+			if (!databaseIds.isEmpty()) {
+				results.invalidateOnCompletion(em, databaseIds);
+			}
 		}
 
 		return null;
 	}
 
+	/**
+	 * Updates the <code>lastSchemaUpdate</code> of the databases whose structure includes
+	 * the deleted entity.
+	 * 
+	 * @return the ids of these databases
+	 */
+	private Set<Integer> touchSchema(Deleteable entity) {
+		final Set<UserDatabase> databases = new HashSet<UserDatabase>();
+		if (entity instanceof Activity) {
+			databases.add(((Activity) entity).getDatabase());
+		} else if (entity instanceof Indicator) {
+			final Indicator indicator = (Indicator) entity;
+			if (indicator.getActivity() != null) {
+				databases.add(indicator.getActivity().getDatabase());
+			} else if (indicator.getDatabase() != null) {
+				databases.add(indicator.getDatabase());
+			}
+		} else if (entity instanceof AttributeGroup || entity instanceof Attribute) {
+			final AttributeGroup group = entity instanceof Attribute ? ((Attribute) entity).getGroup()
+			                : (AttributeGroup) entity;
+			for (Activity activity : group.getActivities()) {
+				databases.add(activity.getDatabase());
+			}
+		}
+
+		final Date now = new Date();
+		final Set<Integer> databaseIds = new HashSet<Integer>();
+		for (UserDatabase database : databases) {
+			database.setLastSchemaUpdate(now);
+			databaseIds.add(database.getId());
+		}
+		return databaseIds;
+	}
+
 	private void deletePhaseModel(PhaseModel phaseModel) {
 
 		// ----STEP1: delete the successor relation---------------------------
@@ -238,6 +302,7 @@ public class DeleteHandler implements CommandHandler<Delete> {
 		query.setParameter("databaseid", project.getId());
 		final List<ProjectReport> listResultReports = (List<ProjectReport>) query.getResultList();
 		if (listResultReports != null) {
+			final List<RichTextBlock> blocks = new ArrayList<RichTextBlock>();
 			for (ProjectReport report : listResultReports) {
 				// Delete the project report's version
 				ProjectReportVersion version = report.getCurrentVersion();
@@ -246,6 +311,7 @@ public class DeleteHandler implements CommandHandler<Delete> {
 					List<RichTextElement> richTextElements = version.getTexts();
 					if (richTextElements != null) {
 						for (RichTextElement richTextElement : richTextElements) {
+							blocks.add(richTextElement.getBlock());
 							em.remove(richTextElement);
 						}
 					}
@@ -254,6 +320,7 @@ public class DeleteHandler implements CommandHandler<Delete> {
 				}
 				em.remove(report);
 			}
+			reportDAO.removeUnusedBlocks(blocks);
 		}
 	}
 
@@ -21,15 +21,19 @@ public class DeletePrivacyGroupsHandler implements CommandHandler<DeletePrivacyG
 private static final Log log = LogFactory.getLog(DeleteFlexibleElementsHandler.class);
 	
 	private EntityManager em;
+	private final ModelDTOCache cache;
 
     @Inject
-    public DeletePrivacyGroupsHandler(EntityManager em, UserDAO userDAO) {
+    public DeletePrivacyGroupsHandler(EntityManager em, UserDAO userDAO, ModelDTOCache cache) {
         this.em = em;
+        this.cache = cache;
     }
 
 	@Override
 	public CommandResult execute(DeletePrivacyGroups cmd, User user)
 			throws CommandException {
+		cache.invalidateOnCompletion(em);
+		
 		List<PrivacyGroupDTO> privacyGroupsDTOList = cmd.getPrivacyGroupsList();
 		
 		if(privacyGroupsDTOList!=null)
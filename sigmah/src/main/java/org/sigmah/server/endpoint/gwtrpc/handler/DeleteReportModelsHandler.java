@@ -32,6 +32,7 @@ import com.google.inject.Inject;
 public class DeleteReportModelsHandler implements CommandHandler<DeleteReportModels> {
 	
 	private EntityManager em;
+	private final ModelDTOCache cache;
 	private final static org.apache.commons.logging.Log LOG = LogFactory.getLog(DeleteReportModelsHandler.class);
 	
 
@@ -40,9 +41,10 @@ public class DeleteReportModelsHandler implements CommandHandler<DeleteReportMod
 	 * @param em
 	 */
 	@Inject
-	public DeleteReportModelsHandler(EntityManager em) {
+	public DeleteReportModelsHandler(EntityManager em, ModelDTOCache cache) {
 
 		this.em = em;
+		this.cache = cache;
 	}
 
 
@@ -51,6 +53,8 @@ public class DeleteReportModelsHandler implements CommandHandler<DeleteReportMod
 	public CommandResult execute(DeleteReportModels cmd, User user)
 			throws CommandException {
 		
+		cache.invalidateOnCompletion(em);
+		
 		List<ReportModelDTO> reportModelDTOList = cmd.getReportModelList();
 		List<ProjectReportModelSectionDTO> sectionDTOList = cmd.getSectionList();
 		
@@ -6,7 +6,6 @@ package org.sigmah.server.endpoint.gwtrpc.handler;
 
 import com.google.inject.Inject;
 import com.google.inject.Injector;
-import com.google.inject.Singleton;
 import java.util.EnumMap;
 import java.util.Map;
 import org.sigmah.server.endpoint.gwtrpc.handler.calendar.ActivityCalendarHandler;
@@ -23,10 +22,12 @@ import org.sigmah.shared.exception.CommandException;
 
 /**
  * Retrieves calendars and events.
+ * <p>
+ * Not a singleton: the calendar handlers hold the entity manager of the current
+ * request.
  * 
  * @author Raphaël Calabro (rcalabro@ideia.fr)
  */
-@Singleton
 public class GetCalendarHandler implements CommandHandler<GetCalendar> {
 
     /**
@@ -13,18 +13,26 @@ import org.sigmah.shared.command.handler.CommandHandler;
 import org.sigmah.shared.command.result.CommandResult;
 import org.sigmah.shared.command.result.MonthlyReportResult;
 import org.sigmah.shared.domain.Indicator;
-import org.sigmah.shared.domain.IndicatorValue;
 import org.sigmah.shared.domain.ReportingPeriod;
 import org.sigmah.shared.domain.User;
 import org.sigmah.shared.dto.IndicatorRowDTO;
 import org.sigmah.shared.exception.CommandException;
 
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.TemporalType;
 import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * See GetMonthlyReports
+ * <p>
+ * The reporting periods of the requested months and their values are loaded with one
+ * query each.
  * 
  * @author Alex Bertram
  */
@@ -39,9 +47,23 @@ public class GetMonthlyReportsHandler implements CommandHandler<GetMonthlyReport
 
     public CommandResult execute(GetMonthlyReports cmd, User user) throws CommandException {
 
-        List<ReportingPeriod> periods =
-                em.createQuery("select p from ReportingPeriod p where p.site.id = ?1").setParameter(1, cmd.getSiteId())
-                    .getResultList();
+        // Months of the periods, by period id.
+        Map<Integer, Month> months = new HashMap<Integer, Month>();
+
+        for (ReportingPeriod period : queryPeriods(cmd)) {
+            boolean wasValid = ReportingPeriodValidation.validate(period);
+            if (!wasValid) {
+                em.merge(period);
+            }
+
+            Month month = HandlerUtil.monthFromRange(period.getDate1(), period.getDate2());
+            if (month != null
+                && (cmd.getStartMonth() == null || month.compareTo(cmd.getStartMonth()) >= 0)
+                && (cmd.getEndMonth() == null || month.compareTo(cmd.getEndMonth()) <= 0)) {
+
+                months.put(period.getId(), month);
+            }
+        }
 
         List<Indicator> indicators =
                 em.createQuery(
@@ -49,7 +71,7 @@ public class GetMonthlyReportsHandler implements CommandHandler<GetMonthlyReport
                         + "(select s.activity.id from Site s where s.id = ?1)").setParameter(1, cmd.getSiteId())
                     .getResultList();
 
-        List<IndicatorRowDTO> list = new ArrayList<IndicatorRowDTO>();
+        Map<Integer, IndicatorRowDTO> rows = new LinkedHashMap<Integer, IndicatorRowDTO>();
 
         for (Indicator indicator : indicators) {
 
@@ -58,30 +80,59 @@ public class GetMonthlyReportsHandler implements CommandHandler<GetMonthlyReport
             dto.setSiteId(cmd.getSiteId());
             dto.setIndicatorName(indicator.getName());
 
-            for (ReportingPeriod period : periods) {
-                boolean wasValid = ReportingPeriodValidation.validate(period);
-                if (!wasValid) {
-                    em.merge(period);
-                }
-
-                Month month = HandlerUtil.monthFromRange(period.getDate1(), period.getDate2());
-                if (month != null
-                    && month.compareTo(cmd.getStartMonth()) >= 0
-                    && month.compareTo(cmd.getEndMonth()) <= 0) {
+            rows.put(indicator.getId(), dto);
+        }
 
-                    for (IndicatorValue value : period.getIndicatorValues()) {
-                        if (value.getIndicator().getId() == indicator.getId()) {
-                            dto.setValue(month, value.getValue());
-                        }
-                    }
+        if (!months.isEmpty()) {
+            List<Object[]> values =
+                    em.createQuery(
+                        "select v.id.reportingPeriodId, v.id.indicatorId, v.value from IndicatorValue v "
+                            + "where v.id.reportingPeriodId in (:periodIds)")
+                        .setParameter("periodIds", months.keySet()).getResultList();
+
+            for (Object[] value : values) {
+                IndicatorRowDTO dto = rows.get(value[1]);
+                if (dto != null) {
+                    dto.setValue(months.get(value[0]), (Double) value[2]);
                 }
             }
+        }
+
+        MonthlyReportResult result = new MonthlyReportResult(new ArrayList<IndicatorRowDTO>(rows.values()));
+        result.setVersion(HandlerUtil.monthlyReportsVersion(em, cmd.getSiteId()));
+        return result;
+
+    }
+
+    /**
+     * Loads the reporting periods of the site overlapping the requested months. The periods
+     * of a month may overlap the previous or the next one until they are validated.
+     */
+    private List<ReportingPeriod> queryPeriods(GetMonthlyReports cmd) {
 
-            list.add(dto);
+        StringBuilder jpql = new StringBuilder("select p from ReportingPeriod p where p.site.id = :siteId");
+        if (cmd.getStartMonth() != null) {
+            jpql.append(" and p.date2 >= :start");
+        }
+        if (cmd.getEndMonth() != null) {
+            jpql.append(" and p.date1 < :end");
         }
 
-        return new MonthlyReportResult(list);
+        Query query = em.createQuery(jpql.toString()).setParameter("siteId", cmd.getSiteId());
+        if (cmd.getStartMonth() != null) {
+            query.setParameter("start", firstDay(cmd.getStartMonth()), TemporalType.DATE);
+        }
+        if (cmd.getEndMonth() != null) {
+            query.setParameter("end", firstDay(cmd.getEndMonth().next()), TemporalType.DATE);
+        }
+        return query.getResultList();
+    }
 
+    private static Calendar firstDay(Month month) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(month.getYear(), month.getMonth() - 1, 1);
+        return calendar;
     }
 
 }
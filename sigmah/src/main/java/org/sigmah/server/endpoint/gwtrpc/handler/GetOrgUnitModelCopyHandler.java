@@ -1,7 +1,5 @@
 package org.sigmah.server.endpoint.gwtrpc.handler;
 
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 
 import javax.persistence.EntityManager;
@@ -9,6 +7,7 @@ import javax.persistence.EntityManager;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.dozer.Mapper;
+import org.sigmah.server.endpoint.export.sigmah.handler.ImportState;
 import org.sigmah.server.endpoint.export.sigmah.handler.Realizer;
 import org.sigmah.shared.command.GetOrgUnitModelCopy;
 import org.sigmah.shared.command.handler.CommandHandler;
@@ -37,15 +36,6 @@ public class GetOrgUnitModelCopyHandler implements CommandHandler<GetOrgUnitMode
 	private final EntityManager em;
 	private final Mapper mapper;
 	
-	/**
-	 * The map of imported objects (original object, transformed object)
-	 */
-	public static HashMap<Object, Object> modelesReset = new HashMap<Object, Object>();
-	
-	/**
-	 * The list of imported objects which are transformed or being transformed.
-	 */
-	public static HashSet<Object> modelesImport = new HashSet<Object>();
 	
 	
 	@Inject
@@ -79,7 +69,7 @@ public class GetOrgUnitModelCopyHandler implements CommandHandler<GetOrgUnitMode
         	OrgUnitModel copyOrgUnitModel = Realizer.realize(existentOrgUnitModel);
         	copyOrgUnitModel.resetImport();
         	copyOrgUnitModel.setStatus(ProjectModelStatus.DRAFT);
-    		saveFlexibleElement(copyOrgUnitModel, em);
+    		saveFlexibleElement(copyOrgUnitModel, em, new ImportState());
     		copyOrgUnitModel.setName(cmd.getNewModelName());
     		copyOrgUnitModel.setOrganization(existentOrgUnitModel.getOrganization());
     		em.persist(copyOrgUnitModel);
@@ -96,9 +86,11 @@ public class GetOrgUnitModelCopyHandler implements CommandHandler<GetOrgUnitMode
 	 *            the imported organizational unit model
 	 * @param em
 	 *            the entity manager
+	 * @param state
+	 *            the state of this import
 	 */
 	private void saveFlexibleElement(OrgUnitModel orgUnitModel,
-			EntityManager em) {
+			EntityManager em, ImportState state) {
 		// OrgUnitModel --> Banner --> Layout --> Groups --> Constraints
 		if (orgUnitModel.getBanner() != null
 				&& orgUnitModel.getBanner().getLayout() != null) {
@@ -137,7 +129,7 @@ public class GetOrgUnitModelCopyHandler implements CommandHandler<GetOrgUnitMode
 														questionChoiceElement.setCategoryElement(null);
 														
 														em.persist(questionChoiceElement);
-														saveCategoryElement(categoryElement, em);
+														state.saveCategoryElement(categoryElement, em);
 														questionChoiceElement.setCategoryElement(categoryElement);
 														em.merge(questionChoiceElement);
 													}else{
@@ -246,7 +238,7 @@ public class GetOrgUnitModelCopyHandler implements CommandHandler<GetOrgUnitMode
 														questionChoiceElement.setCategoryElement(null);
 														
 														em.persist(questionChoiceElement);
-														saveCategoryElement(categoryElement, em);
+														state.saveCategoryElement(categoryElement, em);
 														questionChoiceElement.setCategoryElement(categoryElement);
 														em.merge(questionChoiceElement);
 													}else{
@@ -318,55 +310,4 @@ public class GetOrgUnitModelCopyHandler implements CommandHandler<GetOrgUnitMode
 			}
 		}
 	}
-	
-	/**
-	 * Save the category element of a question choice element.
-	 * 
-	 * @param categoryElement
-	 *            the category element to save.
-	 * @param em
-	 *            the entity manager.
-	 */
-	private void saveCategoryElement(CategoryElement categoryElement, EntityManager em){
-		if(!modelesImport.contains(categoryElement)){
-			modelesImport.add(categoryElement);
-			
-			if(!modelesReset.containsKey(categoryElement)){
-				CategoryElement key = categoryElement;
-				categoryElement.setId(null);
-				
-				CategoryType parentType = categoryElement.getParentType();
-				if(!modelesImport.contains(parentType)){
-					modelesImport.add(parentType);
-					
-					if(!modelesReset.containsKey(parentType)){
-						CategoryType parentKey = parentType;
-						parentType.setId(null);
-						
-						List<CategoryElement> elements = parentType.getElements();
-						if(elements!=null){
-							parentType.setElements(null);
-							em.persist(parentType);
-							for(CategoryElement element : elements){
-								categoryElement.setParentType(parentType);
-								saveCategoryElement(element, em);
-							}
-							parentType.setElements(elements);
-							em.merge(parentType);
-						}else{
-							em.persist(parentType);
-						}						
-						modelesReset.put(parentKey, parentType);
-					}else{
-						parentType = (CategoryType)modelesReset.get(parentType);
-					}
-				}
-				categoryElement.setParentType(parentType);
-				em.persist(categoryElement);
-				modelesReset.put(key, categoryElement);
-			}else{
-				categoryElement = (CategoryElement)modelesReset.get(categoryElement);
-			}
-		}
-	}
 }
@@ -20,11 +20,13 @@ public class GetOrgUnitModelHandler implements CommandHandler<GetOrgUnitModel> {
 	
 	private final EntityManager em;
 	private final Mapper mapper;
+	private final ModelDTOCache cache;
 	
 	@Inject
-    public GetOrgUnitModelHandler(EntityManager em, Mapper mapper) {
+    public GetOrgUnitModelHandler(EntityManager em, Mapper mapper, ModelDTOCache cache) {
         this.em = em;
         this.mapper = mapper;
+        this.cache = cache;
     }
 			
 	@Override
@@ -37,6 +39,12 @@ public class GetOrgUnitModelHandler implements CommandHandler<GetOrgUnitModel> {
 		
 		Integer id = cmd.getId();
 
+        final OrgUnitModelDTO cached = cache.get(OrgUnitModelDTO.class, id);
+        if (cached != null) {
+            return cached;
+        }
+
+        final long stamp = cache.getStamp();
         final OrgUnitModel model = em.find(OrgUnitModel.class, id);
         
         if (model == null) {
@@ -52,6 +60,7 @@ public class GetOrgUnitModelHandler implements CommandHandler<GetOrgUnitModel> {
     		
         	OrgUnitModelDTO o = mapper.map(model, OrgUnitModelDTO.class);   
         	
+        	cache.put(OrgUnitModelDTO.class, id, stamp, o);
         	return o;
         	
         }
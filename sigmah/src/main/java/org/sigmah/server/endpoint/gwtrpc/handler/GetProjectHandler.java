@@ -7,7 +7,6 @@ package org.sigmah.server.endpoint.gwtrpc.handler;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -16,6 +15,7 @@ import javax.persistence.EntityManager;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.dozer.Mapper;
+import org.sigmah.server.dao.OrgUnitHierarchy;
 import org.sigmah.shared.command.GetProject;
 import org.sigmah.shared.command.handler.CommandHandler;
 import org.sigmah.shared.command.result.CommandResult;
@@ -40,11 +40,13 @@ public class GetProjectHandler implements CommandHandler<GetProject> {
 
 	private final EntityManager em;
 	private final Mapper mapper;
+	private final OrgUnitHierarchy hierarchy;
 
 	@Inject
-	public GetProjectHandler(EntityManager em, Mapper mapper) {
+	public GetProjectHandler(EntityManager em, Mapper mapper, OrgUnitHierarchy hierarchy) {
 		this.em = em;
 		this.mapper = mapper;
+		this.hierarchy = hierarchy;
 	}
 
 	/**
@@ -146,7 +148,7 @@ public class GetProjectHandler implements CommandHandler<GetProject> {
 	 *            The user.
 	 * @return If the project is visible for the user.
 	 */
-	public static boolean isProjectVisible(Project project, User user) {
+	public boolean isProjectVisible(Project project, User user) {
 
 		// Checks that the project is not deleted
 		if(!project.isDeleted()) {
@@ -166,14 +168,11 @@ public class GetProjectHandler implements CommandHandler<GetProject> {
 			}
 
 			// Checks that the user can see this project.
-			final HashSet<OrgUnit> units = new HashSet<OrgUnit>();
-			GetProjectHandler.crawlUnits(user.getOrgUnitWithProfiles().getOrgUnit(), units, true);
+			final int rootId = user.getOrgUnitWithProfiles().getOrgUnit().getId();
 
 			for (final OrgUnit partner : project.getPartners()) {
-				for (final OrgUnit unit : units) {
-					if (partner.getId() == unit.getId()) {
-						return true;
-					}
+				if (hierarchy.isDescendant(partner.getId(), rootId)) {
+					return true;
 				}
 			}
 		}
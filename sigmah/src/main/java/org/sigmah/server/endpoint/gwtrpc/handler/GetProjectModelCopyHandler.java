@@ -1,8 +1,6 @@
 package org.sigmah.server.endpoint.gwtrpc.handler;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 
 import javax.persistence.EntityManager;
@@ -10,6 +8,7 @@ import javax.persistence.EntityManager;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.dozer.Mapper;
+import org.sigmah.server.endpoint.export.sigmah.handler.ImportState;
 import org.sigmah.server.endpoint.export.sigmah.handler.Realizer;
 import org.sigmah.shared.command.GetProjectModelCopy;
 import org.sigmah.shared.command.handler.CommandHandler;
@@ -45,15 +44,6 @@ public class GetProjectModelCopyHandler implements CommandHandler<GetProjectMode
 	private final EntityManager em;
 	private final Mapper mapper;
 
-	/**
-	 * The map of imported objects (original object, transformed object)
-	 */
-	public static HashMap<Object, Object> modelesReset = new HashMap<Object, Object>();
-
-	/**
-	 * The list of imported objects which are transformed or being transformed.
-	 */
-	public static HashSet<Object> modelesImport = new HashSet<Object>();
 
 	@Inject
 	public GetProjectModelCopyHandler(EntityManager em, Mapper mapper) {
@@ -82,8 +72,10 @@ public class GetProjectModelCopyHandler implements CommandHandler<GetProjectMode
 			if (log.isDebugEnabled()) {
 				log.debug("[execute] Found project model" + cmd.getProjectModelId());
 			}
+			final ImportState state = new ImportState();
+
 			ProjectModel copyProjectModel = Realizer.realize(existentProjectModel);
-			copyProjectModel.resetImport(modelesReset, modelesImport);
+			copyProjectModel.resetImport(state.getModelesReset(), state.getModelesImport());
 
 			// Set status 'DRAFT'
 			copyProjectModel.setStatus(ProjectModelStatus.DRAFT);
@@ -101,7 +93,7 @@ public class GetProjectModelCopyHandler implements CommandHandler<GetProjectMode
 			copyProjectModel.setVisibilities(visibilities);
 
 			// Save project elements
-			saveFlexibleElement(copyProjectModel, em);
+			saveFlexibleElement(copyProjectModel, em, state);
 
 			copyProjectModel.setName(cmd.getNewModelName());
 
@@ -118,8 +110,10 @@ public class GetProjectModelCopyHandler implements CommandHandler<GetProjectMode
 	 *            the imported project model
 	 * @param em
 	 *            the entity manager
+	 * @param state
+	 *            the state of this copy
 	 */
-	private void saveFlexibleElement(ProjectModel projectModel, EntityManager em) {
+	private void saveFlexibleElement(ProjectModel projectModel, EntityManager em, ImportState state) {
 		// ProjectModel --> Banner --> Layout --> Groups --> Constraints
 		if (projectModel.getProjectBanner() != null && projectModel.getProjectBanner().getLayout() != null) {
 			List<LayoutGroup> bannerLayoutGroups = projectModel.getProjectBanner().getLayout().getGroups();
@@ -154,7 +148,7 @@ public class GetProjectModelCopyHandler implements CommandHandler<GetProjectMode
 														questionChoiceElement.setCategoryElement(null);
 
 														em.persist(questionChoiceElement);
-														saveProjectModelCategoryElement(categoryElement, em);
+														state.saveCategoryElement(categoryElement, em);
 														questionChoiceElement.setCategoryElement(categoryElement);
 														em.merge(questionChoiceElement);
 													} else {
@@ -263,7 +257,7 @@ public class GetProjectModelCopyHandler implements CommandHandler<GetProjectMode
 															questionChoiceElement.setCategoryElement(null);
 
 															em.persist(questionChoiceElement);
-															saveProjectModelCategoryElement(categoryElement, em);
+															state.saveCategoryElement(categoryElement, em);
 															questionChoiceElement.setCategoryElement(categoryElement);
 															em.merge(questionChoiceElement);
 														} else {
@@ -387,7 +381,7 @@ public class GetProjectModelCopyHandler implements CommandHandler<GetProjectMode
 																if (categoryElement != null) {
 																	questionChoiceElement.setCategoryElement(null);
 																	em.persist(questionChoiceElement);
-																	saveProjectModelCategoryElement(categoryElement, em);
+																	state.saveCategoryElement(categoryElement, em);
 																	questionChoiceElement
 																	                .setCategoryElement(categoryElement);
 																	em.merge(questionChoiceElement);
@@ -482,56 +476,4 @@ public class GetProjectModelCopyHandler implements CommandHandler<GetProjectMode
 			}
 		}
 	}
-
-	/**
-	 * Save the category element of a question choice element.
-	 * 
-	 * @param categoryElement
-	 *            the category element to save.
-	 * @param em
-	 *            the entity manager.
-	 */
-	private void saveProjectModelCategoryElement(CategoryElement categoryElement, EntityManager em) {
-		if (!modelesImport.contains(categoryElement)) {
-			modelesImport.add(categoryElement);
-
-			if (!modelesReset.containsKey(categoryElement)) {
-				CategoryElement key = categoryElement;
-				categoryElement.setId(null);
-
-				CategoryType parentType = categoryElement.getParentType();
-				if (!modelesImport.contains(parentType)) {
-					modelesImport.add(parentType);
-
-					if (!modelesReset.containsKey(parentType)) {
-						CategoryType parentKey = parentType;
-						parentType.setId(null);
-
-						List<CategoryElement> elements = parentType.getElements();
-						if (elements != null) {
-							parentType.setElements(null);
-							em.persist(parentType);
-							for (CategoryElement element : elements) {
-								categoryElement.setParentType(parentType);
-								saveProjectModelCategoryElement(element, em);
-							}
-							parentType.setElements(elements);
-							em.merge(parentType);
-						} else {
-							em.persist(parentType);
-						}
-						modelesReset.put(parentKey, parentType);
-					} else {
-						parentType = (CategoryType) modelesReset.get(parentType);
-					}
-				}
-				categoryElement.setParentType(parentType);
-				em.persist(categoryElement);
-				modelesReset.put(key, categoryElement);
-			} else {
-				categoryElement = (CategoryElement) modelesReset.get(categoryElement);
-			}
-		}
-	}
-
 }
@@ -1,7 +1,5 @@
 package org.sigmah.server.endpoint.gwtrpc.handler;
 
-import java.util.List;
-
 import javax.persistence.EntityManager;
 import javax.persistence.Query;
 
@@ -13,7 +11,6 @@ import org.sigmah.shared.command.handler.CommandHandler;
 import org.sigmah.shared.command.result.CommandResult;
 import org.sigmah.shared.domain.ProjectModel;
 import org.sigmah.shared.domain.User;
-import org.sigmah.shared.domain.layout.LayoutGroup;
 import org.sigmah.shared.domain.logframe.LogFrameModel;
 import org.sigmah.shared.dto.ProjectModelDTO;
 import org.sigmah.shared.dto.logframe.LogFrameModelDTO;
@@ -27,11 +24,13 @@ public class GetProjectModelHandler implements CommandHandler<GetProjectModel> {
 	
 	private final EntityManager em;
 	private final Mapper mapper;
+	private final ModelDTOCache cache;
 	
 	@Inject
-    public GetProjectModelHandler(EntityManager em, Mapper mapper) {
+    public GetProjectModelHandler(EntityManager em, Mapper mapper, ModelDTOCache cache) {
         this.em = em;
         this.mapper = mapper;
+        this.cache = cache;
     }
 			
 	@Override
@@ -44,6 +43,12 @@ public class GetProjectModelHandler implements CommandHandler<GetProjectModel> {
 		
 		Long id = Long.valueOf(String.valueOf(cmd.getId()));
 
+        final ProjectModelDTO cached = cache.get(ProjectModelDTO.class, id);
+        if (cached != null) {
+            return cached;
+        }
+
+        final long stamp = cache.getStamp();
         final ProjectModel model = em.find(ProjectModel.class, id);
         
         if (model == null) {
@@ -57,11 +62,12 @@ public class GetProjectModelHandler implements CommandHandler<GetProjectModel> {
                 log.debug("[execute] Found project model" + cmd.getId());
             }
         	
-        	final Query query = em.createQuery("SELECT l FROM LogFrameModel l ORDER BY l.id");
-        	for(LogFrameModel logFrame : (List<LogFrameModel>) query.getResultList()){
-        		if(logFrame.getProjectModel() != null && logFrame.getProjectModel().getId().equals(model.getId())){
-        			model.setLogFrameModel(logFrame);
-        		}
+        	// Keeps the most recent log frame model if several reference this model.
+        	final Query query = em.createQuery("SELECT l FROM LogFrameModel l WHERE l.projectModel.id = :modelId ORDER BY l.id DESC");
+        	query.setParameter("modelId", model.getId());
+        	query.setMaxResults(1);
+        	for(Object logFrame : query.getResultList()){
+        		model.setLogFrameModel((LogFrameModel) logFrame);
         	}
     		
     		
@@ -71,6 +77,7 @@ public class GetProjectModelHandler implements CommandHandler<GetProjectModel> {
             	p.setLogFrameModelDTO(logFrameModelDTO);
         	}
         	
+        	cache.put(ProjectModelDTO.class, id, stamp, p);
         	return p;
         	
         }
@@ -14,6 +14,7 @@ import java.util.List;
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.Query;
+import org.sigmah.server.dao.ProjectReportDAO;
 import org.sigmah.shared.command.GetProjectReport;
 import org.sigmah.shared.command.handler.CommandHandler;
 import org.sigmah.shared.command.result.CommandResult;
@@ -37,10 +38,12 @@ import org.sigmah.shared.exception.CommandException;
  */
 public class GetProjectReportHandler implements CommandHandler<GetProjectReport> {
     private EntityManager em;
+    private ProjectReportDAO dao;
 
     @Inject
-    public GetProjectReportHandler(EntityManager em) {
+    public GetProjectReportHandler(EntityManager em, ProjectReportDAO dao) {
         this.em = em;
+        this.dao = dao;
     }
 
     @Override
@@ -65,7 +68,7 @@ public class GetProjectReportHandler implements CommandHandler<GetProjectReport>
                 // No draft for the current user
             }
 
-            reportDTO = toDTO(report, version);
+            reportDTO = toDTO(report, version, dao.findRichTextElementsByVersionId(version.getId()));
 
         } catch (NoResultException e) {
             // Bad report id
@@ -78,9 +81,11 @@ public class GetProjectReportHandler implements CommandHandler<GetProjectReport>
      * Convert the given report into a ProjectReportDTO.
      * @param report A project report.
      * @param version A version of this report.
+     * @param texts Rich text elements of the version, ordered by section and index.
      * @return A ProjectReportDTO.
+     * @see ProjectReportDAO#findRichTextElementsByVersionId(Integer)
      */
-    public static ProjectReportDTO toDTO(ProjectReport report, ProjectReportVersion version) {
+    public static ProjectReportDTO toDTO(ProjectReport report, ProjectReportVersion version, List<RichTextElement> texts) {
         final ProjectReportDTO reportDTO = new ProjectReportDTO();
         
         reportDTO.setId(report.getId());
@@ -100,7 +105,7 @@ public class GetProjectReportHandler implements CommandHandler<GetProjectReport>
         final ProjectReportModel model = report.getModel();
 
         final List<ProjectReportModelSection> sectionModels = model.getSections();
-        final HashMap<Integer, List<RichTextElement>> richTextElements = organizeElementsBySection(version.getTexts());
+        final HashMap<Integer, List<RichTextElement>> richTextElements = organizeElementsBySection(texts);
         	 final ArrayList<ProjectReportSectionDTO> sectionDTOs = new ArrayList<ProjectReportSectionDTO>();
              for(ProjectReportModelSection sectionModel : sectionModels)
                  sectionDTOs.add(iterateOnSection(sectionModel, richTextElements));
@@ -166,7 +171,7 @@ public class GetProjectReportHandler implements CommandHandler<GetProjectReport>
 
            final RichTextElementDTO elementDTO = new RichTextElementDTO();
            elementDTO.setId(nextElement.getId());
-           elementDTO.setText(nextElement.getText());
+           elementDTO.setText(nextElement.getContent());
 
            keyQuestionDTO.setRichTextElementDTO(elementDTO);
 
@@ -186,7 +191,7 @@ public class GetProjectReportHandler implements CommandHandler<GetProjectReport>
            while(nextElement != null && nextElement.getIndex()-keys < subSectionModel.getIndex()) {
                final RichTextElementDTO elementDTO = new RichTextElementDTO();
                elementDTO.setId(nextElement.getId());
-               elementDTO.setText(nextElement.getText());
+               elementDTO.setText(nextElement.getContent());
                children.add(elementDTO);
 
                if(elementIterator.hasNext())
@@ -203,7 +208,7 @@ public class GetProjectReportHandler implements CommandHandler<GetProjectReport>
        while(nextElement != null) {
            final RichTextElementDTO elementDTO = new RichTextElementDTO();
            elementDTO.setId(nextElement.getId());
-           elementDTO.setText(nextElement.getText());
+           elementDTO.setText(nextElement.getContent());
            children.add(elementDTO);
 
            if(elementIterator.hasNext())
@@ -8,6 +8,7 @@ package org.sigmah.server.endpoint.gwtrpc.handler;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.persistence.EntityManager;
 import javax.persistence.Query;
@@ -15,11 +16,11 @@ import javax.persistence.Query;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hibernate.ejb.HibernateEntityManager;
+import org.sigmah.server.dao.OrgUnitHierarchy;
 import org.sigmah.shared.command.GetProjects;
 import org.sigmah.shared.command.handler.CommandHandler;
 import org.sigmah.shared.command.result.CommandResult;
 import org.sigmah.shared.command.result.ProjectListResult;
-import org.sigmah.shared.domain.OrgUnit;
 import org.sigmah.shared.domain.Project;
 import org.sigmah.shared.domain.ProjectModelType;
 import org.sigmah.shared.domain.User;
@@ -34,11 +35,13 @@ public class GetProjectsHandler implements CommandHandler<GetProjects> {
 
 	private final EntityManager em;
 	private final ProjectMapper mapper;
+	private final OrgUnitHierarchy hierarchy;
 
 	@Inject
-	public GetProjectsHandler(EntityManager em, ProjectMapper mapper) {
+	public GetProjectsHandler(EntityManager em, ProjectMapper mapper, OrgUnitHierarchy hierarchy) {
 		this.em = em;
 		this.mapper = mapper;
+		this.hierarchy = hierarchy;
 	}
 
 	/**
@@ -86,7 +89,7 @@ public class GetProjectsHandler implements CommandHandler<GetProjects> {
 		final List<Integer> ids = cmd.getOrgUnitsIds();
 
 		// Use a set to be avoid duplicated entries.
-		final HashSet<OrgUnit> units = new HashSet<OrgUnit>();
+		final Set<Integer> unitIds = new HashSet<Integer>();
 
 		// Checks if there is at least one org unit id specified.
 		if (ids == null) {
@@ -95,25 +98,21 @@ public class GetProjectsHandler implements CommandHandler<GetProjects> {
 				LOG.debug("[execute] No org unit specified, gets all projects for the user org unit.");
 			}
 
-			// Crawl the org units hierarchy from the user root org unit.
-			GetProjectHandler.crawlUnits(user.getOrgUnitWithProfiles().getOrgUnit(), units, true);
+			// All the units below the user root org unit.
+			unitIds.addAll(hierarchy.visibleUnitIds(user));
 		} else {
 
-			// Crawl the org units hierarchy from each specified org unit.
-			OrgUnit unit;
+			// All the units below each specified org unit.
 			for (final Integer id : ids) {
-				if ((unit = em.find(OrgUnit.class, id)) != null) {
-					GetProjectHandler.crawlUnits(unit, units, true);
-				}
+				unitIds.addAll(hierarchy.descendantIds(id));
 			}
 		}
 
-		// Retrieves all the corresponding org units.
-		for (final OrgUnit unit : units) {
+		// Retrieves the projects of all the corresponding org units at once.
+		if (!unitIds.isEmpty()) {
 
-			// Builds and executes the query.
-			final Query query = em.createQuery("SELECT p FROM Project p WHERE :unit MEMBER OF p.partners");
-			query.setParameter("unit", unit);
+			final Query query = em.createQuery("SELECT DISTINCT p FROM Project p JOIN p.partners u WHERE u.id IN (:units)");
+			query.setParameter("units", unitIds);
 
 			int count = 0;
 			final List<Project> listResults = (List<Project>) query.getResultList();
@@ -133,8 +132,8 @@ public class GetProjectsHandler implements CommandHandler<GetProjects> {
 			}
 
 			if (LOG.isDebugEnabled()) {
-				LOG.debug("[execute] Found " + count + "/" + listResults.size() + " projects for org unit #"
-				                + unit.getName() + ".");
+				LOG.debug("[execute] Found " + count + "/" + listResults.size() + " projects for " + unitIds.size()
+				                + " org unit(s).");
 			}
 		}
 
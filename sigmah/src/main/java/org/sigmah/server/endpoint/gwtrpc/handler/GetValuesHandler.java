@@ -0,0 +1,334 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.endpoint.gwtrpc.handler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dozer.Mapper;
+import org.sigmah.shared.command.GetValues;
+import org.sigmah.shared.command.handler.CommandHandler;
+import org.sigmah.shared.command.result.CommandResult;
+import org.sigmah.shared.command.result.ValueResult;
+import org.sigmah.shared.command.result.ValueResultUtils;
+import org.sigmah.shared.command.result.ValuesResult;
+import org.sigmah.shared.domain.User;
+import org.sigmah.shared.domain.history.HistoryToken;
+import org.sigmah.shared.domain.report.ProjectReport;
+import org.sigmah.shared.domain.value.BudgetPartsListValue;
+import org.sigmah.shared.domain.value.File;
+import org.sigmah.shared.domain.value.IndicatorsListValue;
+import org.sigmah.shared.domain.value.TripletValue;
+import org.sigmah.shared.dto.report.ReportReference;
+import org.sigmah.shared.dto.value.BudgetPartsListValueDTO;
+import org.sigmah.shared.dto.value.FileDTO;
+import org.sigmah.shared.dto.value.IndicatorsListValueDTO;
+import org.sigmah.shared.dto.value.ListableValue;
+import org.sigmah.shared.dto.value.TripletValueDTO;
+import org.sigmah.shared.exception.CommandException;
+
+import com.google.inject.Inject;
+
+/**
+ * Handler getting the values of several flexible elements.
+ * <p>
+ * The values of all the elements are read with one query, then the entities referenced
+ * by the list elements are read with one query per kind of list.
+ *
+ * @see GetValueHandler
+ */
+public class GetValuesHandler implements CommandHandler<GetValues> {
+
+    private final static Log LOG = LogFactory.getLog(GetValuesHandler.class);
+
+    /**
+     * Kind of list element, reading the entities referenced by the value of its elements.
+     */
+    private static abstract class ListType {
+
+        private final Class<? extends ListableValue> dtoClazz;
+        private final String query;
+
+        /**
+         * Ids referenced by each element of this kind.
+         */
+        private final Map<Long, Set<Object>> elementIds = new HashMap<Long, Set<Object>>();
+
+        private ListType(Class<? extends ListableValue> dtoClazz, String query) {
+            this.dtoClazz = dtoClazz;
+            this.query = query;
+        }
+
+        /**
+         * Parses the ids referenced by a value.
+         */
+        protected abstract List<?> splitValue(String value);
+
+        /**
+         * Returns the id by which an entity is referenced in a value.
+         */
+        protected abstract Object idOf(Object entity);
+
+        private void add(long elementId, String value) {
+            elementIds.put(elementId, new LinkedHashSet<Object>(splitValue(value)));
+        }
+
+        @SuppressWarnings("unchecked")
+        private void fill(EntityManager em, Mapper mapper, Map<Long, ValueResult> results) {
+            if (elementIds.isEmpty()) {
+                return;
+            }
+
+            final Set<Object> ids = new HashSet<Object>();
+            for (final Set<Object> values : elementIds.values()) {
+                ids.addAll(values);
+            }
+
+            final Map<Object, List<ListableValue>> values = new HashMap<Object, List<ListableValue>>();
+            if (!ids.isEmpty()) {
+                final Query listQuery = em.createQuery(query);
+                listQuery.setParameter("ids", ids);
+
+                for (final Object entity : (List<Object>) listQuery.getResultList()) {
+                    final Object id = idOf(entity);
+                    List<ListableValue> entityValues = values.get(id);
+                    if (entityValues == null) {
+                        entityValues = new ArrayList<ListableValue>();
+                        values.put(id, entityValues);
+                    }
+                    entityValues.add(mapper.map(entity, dtoClazz));
+                }
+            }
+
+            for (final Map.Entry<Long, Set<Object>> entry : elementIds.entrySet()) {
+                final List<ListableValue> serializablesList = new ArrayList<ListableValue>();
+                for (final Object id : entry.getValue()) {
+                    final List<ListableValue> entityValues = values.get(id);
+                    if (entityValues != null) {
+                        serializablesList.addAll(entityValues);
+                    }
+                }
+                results.get(entry.getKey()).setValuesObject(serializablesList);
+            }
+        }
+    }
+
+    private final EntityManager em;
+    private final Mapper mapper;
+
+    @Inject
+    public GetValuesHandler(EntityManager em, Mapper mapper) {
+        this.em = em;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Gets the values of flexible elements from the database.
+     *
+     * @param cmd
+     *            {@link GetValues} command containing the flexible elements classes, their
+     *            ids, and the project id
+     * @param user
+     *            user connected
+     *
+     * @return a {@link ValuesResult} object containing a value for each element, without
+     *         any value if there is no value defined for this element.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public CommandResult execute(GetValues cmd, User user) throws CommandException {
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("[execute] GetValues command = " + cmd.toString() + ".");
+        }
+
+        final Map<Long, ValueResult> results = new HashMap<Long, ValueResult>();
+        for (final Long elementId : cmd.getElementIds()) {
+            results.put(elementId, new ValueResult());
+        }
+
+        final ValuesResult valuesResult = new ValuesResult();
+        if (results.isEmpty()) {
+            return valuesResult;
+        }
+
+        // --------------------------------------------------------------------
+        // STEP 1 : gets the string values (regardless of the elements).
+        // --------------------------------------------------------------------
+
+        final Map<Long, String> values = new HashMap<Long, String>();
+
+        final Query valueQuery = em
+                .createQuery("SELECT v.element.id, v.value FROM Value v WHERE v.containerId = :projectId AND v.element.id IN (:elementIds)");
+        valueQuery.setParameter("projectId", cmd.getProjectId());
+        valueQuery.setParameter("elementIds", results.keySet());
+
+        for (final Object[] row : (List<Object[]>) valueQuery.getResultList()) {
+            if (row[1] instanceof String && !"".equals(row[1])) {
+                values.put((Long) row[0], (String) row[1]);
+            }
+        }
+
+        // Overriding the values by the old ones if we have to display an
+        // amendment.
+        if (cmd.getAmendmentId() != null) {
+            final Query tokenQuery = em.createQuery("SELECT a.values FROM Amendment a WHERE a.id = :amendmentId");
+            tokenQuery.setParameter("amendmentId", cmd.getAmendmentId());
+
+            final Map<Long, String> historyValues = new HashMap<Long, String>();
+            for (final HistoryToken token : (List<HistoryToken>) tokenQuery.getResultList()) {
+                if (results.containsKey(token.getElementId()) && token.getValue() != null) {
+                    historyValues.put(token.getElementId(), token.getValue());
+                }
+            }
+
+            for (final Map.Entry<Long, String> entry : historyValues.entrySet()) {
+                values.put(entry.getKey(), entry.getValue());
+                results.get(entry.getKey()).setAmendment(true);
+            }
+        }
+
+        // --------------------------------------------------------------------
+        // STEP 2 : gets the true values (depending of the elements).
+        // Lists of ids are read with one query by kind of list.
+        // --------------------------------------------------------------------
+
+        final Map<String, ListType> listTypes = createListTypes();
+
+        for (int index = 0; index < cmd.getElementIds().size(); index++) {
+            final Long elementId = cmd.getElementIds().get(index);
+            final String elementClassName = cmd.getElementEntityNames().get(index);
+
+            final String value = values.get(elementId);
+
+            // No value exists for the flexible element.
+            if (value == null) {
+                continue;
+            }
+
+            final ListType listType = listTypes.get(elementClassName);
+            if (listType != null) {
+                try {
+                    listType.add(elementId, value);
+                } catch (NumberFormatException e) {
+                    LOG.warn("[execute] Invalid value '" + value + "' for the element #" + elementId + ".", e);
+                }
+
+            } else if (!"element.MessageElement".equals(elementClassName)) {
+                // A single value is always interpreted as a string.
+                results.get(elementId).setValueObject(value);
+            }
+        }
+
+        // --------------------------------------------------------------------
+        // STEP 3 : fill the command result with the values.
+        // --------------------------------------------------------------------
+
+        for (final ListType listType : listTypes.values()) {
+            listType.fill(em, mapper, results);
+        }
+
+        for (final Map.Entry<Long, ValueResult> entry : results.entrySet()) {
+            valuesResult.setValue(entry.getKey(), entry.getValue());
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("[execute] Returned values = " + valuesResult + ".");
+        }
+
+        return valuesResult;
+    }
+
+    /**
+     * Creates the kinds of list elements, by entity name.
+     */
+    private static Map<String, ListType> createListTypes() {
+        final Map<String, ListType> listTypes = new HashMap<String, ListType>();
+
+        listTypes.put("element.TripletsListElement", new ListType(TripletValueDTO.class,
+                "SELECT tv FROM TripletValue tv WHERE tv.id IN (:ids)") {
+
+            @Override
+            protected List<?> splitValue(String value) {
+                return ValueResultUtils.splitValuesAsLong(value);
+            }
+
+            @Override
+            protected Object idOf(Object entity) {
+                return ((TripletValue) entity).getId();
+            }
+        });
+
+        listTypes.put("element.IndicatorsListElement", new ListType(IndicatorsListValueDTO.class,
+                "SELECT ilv FROM IndicatorsListValue ilv WHERE ilv.id.idList IN (:ids)") {
+
+            @Override
+            protected List<?> splitValue(String value) {
+                return Collections.singletonList(Long.valueOf(value));
+            }
+
+            @Override
+            protected Object idOf(Object entity) {
+                return ((IndicatorsListValue) entity).getId().getIdList();
+            }
+        });
+
+        listTypes.put("element.BudgetDistributionElement", new ListType(BudgetPartsListValueDTO.class,
+                "SELECT bplv FROM BudgetPartsListValue bplv WHERE bplv.id IN (:ids)") {
+
+            @Override
+            protected List<?> splitValue(String value) {
+                return Collections.singletonList(Long.valueOf(value));
+            }
+
+            @Override
+            protected Object idOf(Object entity) {
+                return ((BudgetPartsListValue) entity).getId();
+            }
+        });
+
+        listTypes.put("element.FilesListElement", new ListType(FileDTO.class,
+                "SELECT f FROM File f WHERE f.id IN (:ids)") {
+
+            @Override
+            protected List<?> splitValue(String value) {
+                return ValueResultUtils.splitValuesAsInteger(value);
+            }
+
+            @Override
+            protected Object idOf(Object entity) {
+                return ((File) entity).getId();
+            }
+        });
+
+        listTypes.put("element.ReportListElement", new ListType(ReportReference.class,
+                "SELECT r FROM ProjectReport r WHERE r.id IN (:ids)") {
+
+            @Override
+            protected List<?> splitValue(String value) {
+                return ValueResultUtils.splitValuesAsInteger(value);
+            }
+
+            @Override
+            protected Object idOf(Object entity) {
+                return ((ProjectReport) entity).getId();
+            }
+        });
+
+        return listTypes;
+    }
+}
@@ -12,6 +12,8 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
+import javax.persistence.EntityManager;
+
 import org.dozer.Mapper;
 import org.sigmah.shared.command.Command;
 import org.sigmah.shared.command.Month;
@@ -92,22 +94,22 @@ public class HandlerUtil {
         return list;
     }
 
+    /**
+     * Returns the month of a reporting period, the period lying within one month once
+     * validated by {@link org.sigmah.server.util.ReportingPeriodValidation}.
+     *
+     * @return the month, or <code>null</code> if the period spans several months
+     */
     static Month monthFromRange(Date date1, Date date2) {
 
         Calendar c1 = Calendar.getInstance();
         c1.setTime(date1);
-        if (c1.get(Calendar.DAY_OF_MONTH) != 1) {
-            return null;
-        }
 
         Calendar c2 = Calendar.getInstance();
         c2.setTime(date2);
-        if (c2.get(Calendar.DAY_OF_MONTH) != c2.getActualMaximum(Calendar.DAY_OF_MONTH)) {
-            return null;
-        }
 
         if (c2.get(Calendar.MONTH) != c1.get(Calendar.MONTH) ||
-                c2.get(Calendar.YEAR) != c2.get(Calendar.YEAR)) {
+                c2.get(Calendar.YEAR) != c1.get(Calendar.YEAR)) {
 
             return null;
         }
@@ -115,4 +117,16 @@ public class HandlerUtil {
         return new Month(c1.get(Calendar.YEAR), c1.get(Calendar.MONTH) + 1);
 
     }
+
+    /**
+     * Returns the version of the monthly reports of a site, which is the last edition
+     * date of its reporting periods.
+     *
+     * @return the version, <code>0</code> if the site has no reporting period
+     */
+    static long monthlyReportsVersion(EntityManager em, int siteId) {
+        Date lastEdited = (Date) em.createQuery("select max(p.dateEdited) from ReportingPeriod p where p.site.id = ?1")
+            .setParameter(1, siteId).getSingleResult();
+        return lastEdited == null ? 0L : lastEdited.getTime();
+    }
 }
@@ -0,0 +1,111 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.endpoint.gwtrpc.handler;
+
+import com.google.inject.Singleton;
+import org.hibernate.Session;
+import org.hibernate.ejb.HibernateEntityManager;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Synchronization;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared cache of fully mapped project and org unit model DTOs, keyed by DTO class and
+ * model id.
+ * <p/>
+ * Each entry records the {@link #getStamp() stamp} that was current when its model was
+ * loaded. The admin handlers that edit models, layouts, flexible elements, categories,
+ * privacy groups or report models call {@link #invalidateOnCompletion(EntityManager)},
+ * which moves the stamp forward and so discards every entry at once, including those
+ * being mapped concurrently with the change.
+ * <p/>
+ * The cached DTOs are shared between requests and must be treated as read-only.
+ */
+@Singleton
+public class ModelDTOCache {
+
+    private static class Entry {
+        private final long stamp;
+        private final Object dto;
+
+        private Entry(long stamp, Object dto) {
+            this.stamp = stamp;
+            this.dto = dto;
+        }
+    }
+
+    private final AtomicLong stamp = new AtomicLong();
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * @return the current modification stamp; callers read it <strong>before</strong>
+     *         loading a model and pass it to {@link #put(Class, Object, long, Object)}
+     */
+    public long getStamp() {
+        return stamp.get();
+    }
+
+    /**
+     * @return the cached DTO of the given model, or <code>null</code> if it has not been
+     *         cached since the last invalidation
+     */
+    public <T> T get(Class<T> dtoClass, Object id) {
+        Entry entry = entries.get(key(dtoClass, id));
+        if (entry == null || entry.stamp != stamp.get()) {
+            return null;
+        }
+        return dtoClass.cast(entry.dto);
+    }
+
+    /**
+     * Caches the DTO of a model loaded while <code>loadStamp</code> was current. The DTO
+     * is not kept if the cache has been invalidated since.
+     */
+    public <T> void put(Class<T> dtoClass, Object id, long loadStamp, T dto) {
+        if (loadStamp == stamp.get()) {
+            entries.put(key(dtoClass, id), new Entry(loadStamp, dto));
+        }
+    }
+
+    /**
+     * Discards all the cached DTOs.
+     */
+    public void invalidate() {
+        stamp.incrementAndGet();
+        entries.clear();
+    }
+
+    /**
+     * Discards all the cached DTOs now and again once the current transaction of the
+     * given entity manager completes, so that a DTO mapped from the not yet committed
+     * state by another request is not kept.
+     */
+    public void invalidateOnCompletion(EntityManager em) {
+        invalidate();
+
+        final Session session = ((HibernateEntityManager) em).getSession();
+        if (session.getTransaction().isActive()) {
+            session.getTransaction().registerSynchronization(new Synchronization() {
+
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    invalidate();
+                }
+            });
+        }
+    }
+
+    private static String key(Class<?> dtoClass, Object id) {
+        return dtoClass.getName() + ":" + id;
+    }
+}
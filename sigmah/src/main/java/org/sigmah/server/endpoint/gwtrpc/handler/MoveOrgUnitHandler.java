@@ -2,6 +2,7 @@ package org.sigmah.server.endpoint.gwtrpc.handler;
 
 import javax.persistence.EntityManager;
 
+import org.sigmah.server.dao.OrgUnitHierarchy;
 import org.sigmah.server.policy.UserPermissionPolicy;
 import org.sigmah.shared.command.MoveOrgUnit;
 import org.sigmah.shared.command.handler.CommandHandler;
@@ -19,11 +20,13 @@ public class MoveOrgUnitHandler implements CommandHandler<MoveOrgUnit> {
 
     private final EntityManager em;
     private final Injector injector;
+    private final OrgUnitHierarchy hierarchy;
 
     @Inject
-    public MoveOrgUnitHandler(EntityManager em,Injector injector) {
+    public MoveOrgUnitHandler(EntityManager em,Injector injector, OrgUnitHierarchy hierarchy) {
         this.em = em;
         this.injector=injector;
+        this.hierarchy = hierarchy;
     }
 
     @Override
@@ -49,7 +52,7 @@ public class MoveOrgUnitHandler implements CommandHandler<MoveOrgUnit> {
         }
 
         // Checks that my new parent is not already one of my child !
-        final boolean theKidIsMySon = theKidIsMySon(moved, parentId);
+        final boolean theKidIsMySon = hierarchy.isDescendant(parentId, id);
         if (theKidIsMySon) {
             throw new MoveException("Cycle detected : cannot move an org unit as a child of one of its children.",
                     MoveException.CYCLE_ERR_CODE);
@@ -58,6 +61,7 @@ public class MoveOrgUnitHandler implements CommandHandler<MoveOrgUnit> {
         // Performs the move.
         moved.setParent(parent);
         moved = em.merge(moved);
+        hierarchy.invalidateOnCompletion(em);
         
         /* [UserPermission trigger] 
 		 * Updates UserPermission table when orgnit changes its parent*/ 
@@ -67,45 +71,4 @@ public class MoveOrgUnitHandler implements CommandHandler<MoveOrgUnit> {
        
         return new VoidResult();
     }
-
-    /**
-     * Let's sing...
-     * 
-     * @param me
-     *            Mickael J.
-     * @param theKidName
-     *            Billie Jean son's name.
-     * @see Thriller
-     * @since 1982
-     */
-    private boolean theKidIsMySon(OrgUnit me, int theKidName) {
-
-        boolean sheSaysIAmTheOne = false;
-
-        if (me.getChildren() != null) {
-
-            // For each of my sons.
-            for (final OrgUnit son : me.getChildren()) {
-
-                // My son ?
-                if (son.getId() == theKidName) {
-                    sheSaysIAmTheOne = true;
-                }
-                // Son of my son ?
-                else {
-                    sheSaysIAmTheOne = theKidIsMySon(son, theKidName);
-                }
-
-                // Damn it, Billie Jean was right...
-                if (sheSaysIAmTheOne) {
-                    break;
-                }
-
-            }
-
-        }
-
-        return sheSaysIAmTheOne;
-
-    }
 }
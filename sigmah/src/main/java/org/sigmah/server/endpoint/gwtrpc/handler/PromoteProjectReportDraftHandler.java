@@ -8,6 +8,7 @@ package org.sigmah.server.endpoint.gwtrpc.handler;
 import com.google.inject.Inject;
 import java.util.Date;
 import javax.persistence.EntityManager;
+import org.sigmah.server.dao.ProjectReportDAO;
 import org.sigmah.shared.command.PromoteProjectReportDraft;
 import org.sigmah.shared.command.handler.CommandHandler;
 import org.sigmah.shared.command.result.CommandResult;
@@ -22,10 +23,12 @@ import org.sigmah.shared.exception.CommandException;
  */
 public class PromoteProjectReportDraftHandler implements CommandHandler<PromoteProjectReportDraft> {
     private EntityManager em;
+    private ProjectReportDAO dao;
 
     @Inject
-    public PromoteProjectReportDraftHandler(EntityManager em) {
+    public PromoteProjectReportDraftHandler(EntityManager em, ProjectReportDAO dao) {
         this.em = em;
+        this.dao = dao;
     }
 
     @Override
@@ -40,6 +43,6 @@ public class PromoteProjectReportDraftHandler implements CommandHandler<PromoteP
 
         em.merge(report);
 
-        return GetProjectReportHandler.toDTO(report, version);
+        return GetProjectReportHandler.toDTO(report, version, dao.findRichTextElementsByVersionId(version.getId()));
     }
 }
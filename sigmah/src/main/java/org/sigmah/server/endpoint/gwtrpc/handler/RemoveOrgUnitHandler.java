@@ -6,6 +6,7 @@ import java.util.List;
 import javax.persistence.EntityManager;
 import javax.persistence.Query;
 
+import org.sigmah.server.dao.OrgUnitHierarchy;
 import org.sigmah.shared.command.RemoveOrgUnit;
 import org.sigmah.shared.command.handler.CommandHandler;
 import org.sigmah.shared.command.result.CommandResult;
@@ -21,10 +22,12 @@ import com.google.inject.Inject;
 public class RemoveOrgUnitHandler implements CommandHandler<RemoveOrgUnit> {
 
     private final EntityManager em;
+    private final OrgUnitHierarchy hierarchy;
 
     @Inject
-    public RemoveOrgUnitHandler(EntityManager em) {
+    public RemoveOrgUnitHandler(EntityManager em, OrgUnitHierarchy hierarchy) {
         this.em = em;
+        this.hierarchy = hierarchy;
     }
 
     @SuppressWarnings("unchecked")
@@ -62,6 +65,7 @@ public class RemoveOrgUnitHandler implements CommandHandler<RemoveOrgUnit> {
         // Remove.
         removed.setDeleted(new Date());
         em.merge(removed);
+        hierarchy.invalidateOnCompletion(em);
 
         return new VoidResult();
     }
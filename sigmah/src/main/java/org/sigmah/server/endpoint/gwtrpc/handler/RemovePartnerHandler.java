@@ -19,6 +19,7 @@ import org.sigmah.shared.exception.IllegalAccessCommandException;
 import org.sigmah.shared.exception.PartnerHasSitesException;
 
 import javax.persistence.EntityManager;
+import java.util.Date;
 
 /**
  * @author Alex Bertram
@@ -60,6 +61,7 @@ public class RemovePartnerHandler implements CommandHandler<RemovePartner> {
         }
 
         db.getPartners().remove(em.getReference(OrgUnit.class, cmd.getPartnerId()));
+        db.setLastSchemaUpdate(new Date());
 
 
         return new VoidResult();
@@ -6,12 +6,17 @@
 package org.sigmah.server.endpoint.gwtrpc.handler;
 
 import com.google.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
 import javax.persistence.EntityManager;
+import org.sigmah.server.dao.ProjectReportDAO;
 import org.sigmah.shared.command.RemoveProjectReportDraft;
 import org.sigmah.shared.command.handler.CommandHandler;
 import org.sigmah.shared.command.result.CommandResult;
 import org.sigmah.shared.domain.User;
 import org.sigmah.shared.domain.report.ProjectReportVersion;
+import org.sigmah.shared.domain.report.RichTextBlock;
+import org.sigmah.shared.domain.report.RichTextElement;
 import org.sigmah.shared.exception.CommandException;
 
 /**
@@ -20,16 +25,26 @@ import org.sigmah.shared.exception.CommandException;
  */
 public class RemoveProjectReportDraftHandler implements CommandHandler<RemoveProjectReportDraft> {
     private EntityManager em;
+    private ProjectReportDAO dao;
 
     @Inject
-    public RemoveProjectReportDraftHandler(EntityManager em) {
+    public RemoveProjectReportDraftHandler(EntityManager em, ProjectReportDAO dao) {
         this.em = em;
+        this.dao = dao;
     }
 
     @Override
     public CommandResult execute(RemoveProjectReportDraft cmd, User user) throws CommandException {
         final ProjectReportVersion version = em.find(ProjectReportVersion.class, cmd.getVersionId());
+
+        final List<RichTextBlock> blocks = new ArrayList<RichTextBlock>();
+        for(final RichTextElement text : version.getTexts())
+            blocks.add(text.getBlock());
+
         em.remove(version);
+
+        // Texts edited in the draft only
+        dao.removeUnusedBlocks(blocks);
         
         return null;
     }
@@ -7,7 +7,8 @@ package org.sigmah.server.endpoint.gwtrpc.handler;
 
 import com.google.inject.Inject;
 import org.sigmah.server.dao.ReportDefinitionDAO;
-import org.sigmah.server.report.ReportParserJaxb;
+import org.sigmah.server.domain.ReportDefinition;
+import org.sigmah.server.report.ParsedReportCache;
 import org.sigmah.server.report.ServletImageStorageProvider;
 import org.sigmah.server.report.generator.ReportGenerator;
 import org.sigmah.server.report.renderer.html.HtmlReportRenderer;
@@ -35,21 +36,24 @@ public class RenderReportHtmlHandler implements CommandHandler<RenderReportHtml>
     private final ReportDefinitionDAO reportDAO;
     private final HtmlReportRenderer renderer;
     private final ServletContext servletContext;
+    private final ParsedReportCache reportCache;
 
     @Inject
-    public RenderReportHtmlHandler(ReportGenerator generator, ReportDefinitionDAO reportDAO, HtmlReportRenderer renderer, ServletContext servletContext) {
+    public RenderReportHtmlHandler(ReportGenerator generator, ReportDefinitionDAO reportDAO, HtmlReportRenderer renderer, ServletContext servletContext,
+                                   ParsedReportCache reportCache) {
         this.generator = generator;
         this.reportDAO = reportDAO;
         this.renderer = renderer;
         this.servletContext = servletContext;
+        this.reportCache = reportCache;
     }
 
     public CommandResult execute(RenderReportHtml cmd, User user) throws CommandException {
 
-        String xml = reportDAO.findById(cmd.getTemplateId()).getXml();
+        ReportDefinition definition = reportDAO.findById(cmd.getTemplateId());
 
         try {
-            Report report = ReportParserJaxb.parseXml(xml);
+            Report report = reportCache.get(definition);
 
             generator.generate(user, report, null, cmd.getDateRange());
 
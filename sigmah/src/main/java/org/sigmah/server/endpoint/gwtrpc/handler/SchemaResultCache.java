@@ -0,0 +1,62 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.endpoint.gwtrpc.handler;
+
+import com.google.inject.Singleton;
+import org.sigmah.shared.dto.SchemaDTO;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least-recently-used cache of the {@link SchemaDTO} built for each user by
+ * {@link org.sigmah.shared.command.handler.GetSchemaHandler}, together with the
+ * schema version it was built for.
+ * <p/>
+ * The cached schemas are shared between requests and must be treated as read-only.
+ */
+@Singleton
+public class SchemaResultCache {
+
+    public static final int MAX_USERS = 500;
+
+    private static class Entry {
+        private final String version;
+        private final SchemaDTO schema;
+
+        private Entry(String version, SchemaDTO schema) {
+            this.version = version;
+            this.schema = schema;
+        }
+    }
+
+    private final Map<Integer, Entry> entries = new LinkedHashMap<Integer, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+            return size() > MAX_USERS;
+        }
+    };
+
+    /**
+     * @return the schema cached for the given user if it was built for the given
+     *         version, or <code>null</code>
+     */
+    public SchemaDTO get(int userId, String version) {
+        synchronized (entries) {
+            Entry entry = entries.get(userId);
+            if (entry != null && entry.version.equals(version)) {
+                return entry.schema;
+            }
+            return null;
+        }
+    }
+
+    public void put(int userId, String version, SchemaDTO schema) {
+        synchronized (entries) {
+            entries.put(userId, new Entry(version, schema));
+        }
+    }
+}
@@ -12,6 +12,7 @@ import javax.persistence.EntityManager;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.sigmah.server.dao.cache.QueryResultCache;
 import org.sigmah.server.policy.ActivityPolicy;
 import org.sigmah.server.policy.PersonalEventPolicy;
 import org.sigmah.server.policy.ProjectPolicy;
@@ -22,10 +23,12 @@ import org.sigmah.shared.command.UpdateEntity;
 import org.sigmah.shared.command.handler.CommandHandler;
 import org.sigmah.shared.command.result.CommandResult;
 import org.sigmah.shared.command.result.VoidResult;
+import org.sigmah.shared.domain.Activity;
 import org.sigmah.shared.domain.Attribute;
 import org.sigmah.shared.domain.AttributeGroup;
 import org.sigmah.shared.domain.Indicator;
 import org.sigmah.shared.domain.ProjectFunding;
+import org.sigmah.shared.domain.Site;
 import org.sigmah.shared.domain.User;
 import org.sigmah.shared.domain.UserDatabase;
 import org.sigmah.shared.domain.reminder.MonitoredPoint;
@@ -68,6 +71,7 @@ public class UpdateEntityHandler extends BaseEntityHandler implements CommandHan
 		if ("Activity".equals(cmd.getEntityName())) {
 			ActivityPolicy policy = injector.getInstance(ActivityPolicy.class);
 			policy.update(user, cmd.getId(), changeMap);
+			invalidateResults(em.find(Activity.class, cmd.getId()).getDatabase());
 
 		} else if ("AttributeGroup".equals(cmd.getEntityName())) {
 			updateAttributeGroup(cmd, changes);
@@ -81,6 +85,7 @@ public class UpdateEntityHandler extends BaseEntityHandler implements CommandHan
 		} else if ("Site".equals(cmd.getEntityName())) {
 			SitePolicy policy = injector.getInstance(SitePolicy.class);
 			policy.update(user, cmd.getId(), changeMap);
+			invalidateResults(em.find(Site.class, cmd.getId()).getDatabase());
 
 		} else if ("PersonalEvent".equals(cmd.getEntityName())) {
 			PersonalEventPolicy policy = injector.getInstance(PersonalEventPolicy.class);
@@ -130,6 +135,7 @@ public class UpdateEntityHandler extends BaseEntityHandler implements CommandHan
 		if (indicator.getName().length() > 1024)
 			indicator.setName(indicator.getName().substring(0, 1024));
 		updateIndicatorProperties(indicator, changes);
+		invalidateResults(db);
 	}
 
 	private void updateAttribute(User user, UpdateEntity cmd, Map<String, Object> changes) {
@@ -139,12 +145,27 @@ public class UpdateEntityHandler extends BaseEntityHandler implements CommandHan
 		// assertDesignPriviledges(user, attribute.get);
 
 		updateAttributeProperties(changes, attribute);
+		invalidateResults(attribute.getGroup());
 	}
 
 	private void updateAttributeGroup(UpdateEntity cmd, Map<String, Object> changes) {
 		AttributeGroup group = em.find(AttributeGroup.class, cmd.getId());
 
 		updateAttributeGroupProperties(group, changes);
+		invalidateResults(group);
+	}
+
+	/**
+	 * Discards the cached pivot and site table results read from the given database.
+	 */
+	private void invalidateResults(UserDatabase database) {
+		injector.getInstance(QueryResultCache.class).invalidateOnCompletion(em, database.getId());
+	}
+
+	private void invalidateResults(AttributeGroup group) {
+		for (Activity activity : group.getActivities()) {
+			invalidateResults(activity.getDatabase());
+		}
 	}
 
 	private VoidResult updateReminder(User user, UpdateEntity cmd) {
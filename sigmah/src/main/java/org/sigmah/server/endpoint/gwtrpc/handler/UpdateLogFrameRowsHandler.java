@@ -0,0 +1,371 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.endpoint.gwtrpc.handler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.sigmah.shared.command.UpdateLogFrameRows;
+import org.sigmah.shared.command.handler.CommandHandler;
+import org.sigmah.shared.command.result.CommandResult;
+import org.sigmah.shared.command.result.LogFrameRowsResult;
+import org.sigmah.shared.domain.Indicator;
+import org.sigmah.shared.domain.User;
+import org.sigmah.shared.domain.UserDatabase;
+import org.sigmah.shared.domain.logframe.ExpectedResult;
+import org.sigmah.shared.domain.logframe.LogFrame;
+import org.sigmah.shared.domain.logframe.LogFrameActivity;
+import org.sigmah.shared.domain.logframe.LogFrameElement;
+import org.sigmah.shared.domain.logframe.LogFrameGroup;
+import org.sigmah.shared.domain.logframe.Prerequisite;
+import org.sigmah.shared.domain.logframe.SpecificObjective;
+import org.sigmah.shared.dto.logframe.LogFrameRowChange;
+import org.sigmah.shared.dto.logframe.LogFrameRowChange.Kind;
+import org.sigmah.shared.exception.CommandException;
+import org.sigmah.shared.exception.IllegalAccessCommandException;
+
+import com.google.inject.Inject;
+
+/**
+ * Handler for the {@link UpdateLogFrameRows} command.
+ * <p>
+ * Only the changed rows are loaded and written. The activity advancement of the project
+ * is computed again with an aggregate query, and only if an activity may have changed.
+ *
+ * @see UpdateLogFrameHandler
+ */
+public class UpdateLogFrameRowsHandler implements CommandHandler<UpdateLogFrameRows> {
+
+    private final static Log LOG = LogFactory.getLog(UpdateLogFrameRowsHandler.class);
+
+    private final EntityManager em;
+
+    @Inject
+    public UpdateLogFrameRowsHandler(EntityManager em) {
+        this.em = em;
+    }
+
+    @Override
+    public CommandResult execute(UpdateLogFrameRows cmd, User user) throws CommandException {
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("[execute] UpdateLogFrameRows command = " + cmd + ".");
+        }
+
+        final LogFrame logFrame = em.find(LogFrame.class, cmd.getLogFrameId());
+        if (logFrame == null || logFrame.getParentProject() == null
+                || logFrame.getParentProject().getId() != cmd.getProjectId()) {
+            throw new IllegalAccessCommandException("The log frame #" + cmd.getLogFrameId()
+                    + " is not the log frame of the project #" + cmd.getProjectId() + ".");
+        }
+
+        if (cmd.isMainObjectiveChanged()) {
+            logFrame.setMainObjective(cmd.getMainObjective());
+        }
+
+        // Rows created by this command, by kind and client-side id.
+        final Map<String, Object> created = new HashMap<String, Object>();
+
+        final List<LogFrameRowChange> rows = new ArrayList<LogFrameRowChange>();
+        boolean activitiesChanged = false;
+
+        for (final LogFrameRowChange change : cmd.getChanges()) {
+
+            // The deletion of an objective or of a result deletes its activities.
+            if (change.getKind() == Kind.ACTIVITY || (change.isDeleted()
+                    && (change.getKind() == Kind.SPECIFIC_OBJECTIVE || change.getKind() == Kind.EXPECTED_RESULT))) {
+                activitiesChanged = true;
+            }
+
+            if (change.isDeleted()) {
+                final Object row = em.find(entityClass(change.getKind()), change.getId());
+                // Already removed with its parent.
+                if (row != null) {
+                    checkLogFrame(logFrame, row);
+                    if (row instanceof LogFrameGroup) {
+                        checkUnused((LogFrameGroup) row);
+                    }
+                    // Otherwise the cascade of the parent would save it again.
+                    detach(row);
+                    em.remove(row);
+                }
+
+            } else if (change.getId() == null) {
+                final Object row = create(logFrame, change, created);
+                em.persist(row);
+                created.put(change.getKind() + ":" + change.getTmpId(), row);
+
+            } else {
+                final Object row = find(logFrame, change.getKind(), change.getId());
+                update(row, change, created);
+            }
+
+            rows.add(change);
+        }
+
+        // Gets the ids of the created rows.
+        em.flush();
+        for (final LogFrameRowChange change : rows) {
+            if (!change.isDeleted() && change.getId() == null) {
+                change.setId(idOf(created.get(change.getKind() + ":" + change.getTmpId())));
+            }
+        }
+
+        Integer activityAdvancement = null;
+        if (activitiesChanged) {
+            activityAdvancement = computeActivityAdvancement(logFrame);
+            logFrame.getParentProject().setActivityAdvancement(activityAdvancement);
+        }
+
+        return new LogFrameRowsResult(rows, activityAdvancement);
+    }
+
+    /**
+     * Averages the advancement of the activities of the log frame, the activities without
+     * advancement counting as 0.
+     */
+    private int computeActivityAdvancement(LogFrame logFrame) {
+        final Query query = em.createQuery("SELECT COUNT(a.id), SUM(a.advancement) FROM LogFrameActivity a "
+                + "WHERE a.parentExpectedResult.parentSpecificObjective.parentLogFrame.id = :logFrameId");
+        query.setParameter("logFrameId", logFrame.getId());
+
+        final Object[] row = (Object[]) query.getSingleResult();
+        final long count = row[0] != null ? ((Number) row[0]).longValue() : 0L;
+        final long sum = row[1] != null ? ((Number) row[1]).longValue() : 0L;
+
+        return count > 0 ? (int) (sum / count) : 0;
+    }
+
+    private Object create(LogFrame logFrame, LogFrameRowChange change, Map<String, Object> created)
+            throws CommandException {
+        final Object row;
+        switch (change.getKind()) {
+        case GROUP:
+            final LogFrameGroup group = new LogFrameGroup();
+            group.setType(change.getType());
+            group.setParentLogFrame(logFrame);
+            row = group;
+            break;
+        case SPECIFIC_OBJECTIVE:
+            final SpecificObjective objective = new SpecificObjective();
+            objective.setParentLogFrame(logFrame);
+            row = objective;
+            break;
+        case EXPECTED_RESULT:
+            final ExpectedResult result = new ExpectedResult();
+            result.setParentSpecificObjective((SpecificObjective) reference(logFrame, Kind.SPECIFIC_OBJECTIVE,
+                    change.getParentId(), change.getParentTmpId(), created));
+            row = result;
+            break;
+        case ACTIVITY:
+            final LogFrameActivity activity = new LogFrameActivity();
+            activity.setParentExpectedResult((ExpectedResult) reference(logFrame, Kind.EXPECTED_RESULT,
+                    change.getParentId(), change.getParentTmpId(), created));
+            row = activity;
+            break;
+        default:
+            final Prerequisite prerequisite = new Prerequisite();
+            prerequisite.setParentLogFrame(logFrame);
+            row = prerequisite;
+            break;
+        }
+
+        update(row, change, created);
+        return row;
+    }
+
+    /**
+     * Sets the values of the columns of a row.
+     */
+    private void update(Object row, LogFrameRowChange change, Map<String, Object> created) throws CommandException {
+        final LogFrame logFrame = logFrameOf(row);
+
+        if (row instanceof LogFrameGroup) {
+            ((LogFrameGroup) row).setLabel(change.getLabel());
+            return;
+        }
+
+        final LogFrameGroup group = (LogFrameGroup) reference(logFrame, Kind.GROUP, change.getGroupId(),
+                change.getGroupTmpId(), created);
+
+        if (row instanceof Prerequisite) {
+            final Prerequisite prerequisite = (Prerequisite) row;
+            prerequisite.setCode(change.getCode());
+            prerequisite.setPosition(change.getPosition());
+            prerequisite.setContent(change.getContent());
+            prerequisite.setGroup(group);
+            return;
+        }
+
+        final LogFrameElement element = (LogFrameElement) row;
+        element.setCode(change.getCode());
+        element.setPosition(change.getPosition());
+        element.setRisksAndAssumptions(change.getRisksAndAssumptions());
+        element.setGroup(group);
+        setIndicators(logFrame, element, change.getIndicatorIds());
+
+        if (row instanceof SpecificObjective) {
+            ((SpecificObjective) row).setInterventionLogic(change.getInterventionLogic());
+
+        } else if (row instanceof ExpectedResult) {
+            ((ExpectedResult) row).setInterventionLogic(change.getInterventionLogic());
+
+        } else if (row instanceof LogFrameActivity) {
+            final LogFrameActivity activity = (LogFrameActivity) row;
+            activity.setTitle(change.getTitle());
+            activity.setStartDate(change.getStartDate());
+            activity.setEndDate(change.getEndDate());
+            activity.setAdvancement(change.getAdvancement());
+        }
+    }
+
+    /**
+     * Links the given indicators to an element, and unlinks the others.
+     */
+    private void setIndicators(LogFrame logFrame, LogFrameElement element, List<Integer> indicatorIds)
+            throws CommandException {
+        if (indicatorIds == null) {
+            return;
+        }
+
+        final Set<Indicator> indicators = new HashSet<Indicator>();
+        for (final Integer indicatorId : indicatorIds) {
+            final Indicator indicator = em.find(Indicator.class, indicatorId);
+            if (indicator == null) {
+                throw new CommandException("The indicator #" + indicatorId + " does not exist.");
+            }
+            final UserDatabase database = indicator.getDatabase() != null ? indicator.getDatabase()
+                    : indicator.getActivity() != null ? indicator.getActivity().getDatabase() : null;
+            if (database == null || database.getId() != logFrame.getParentProject().getId()) {
+                throw new IllegalAccessCommandException("The indicator #" + indicatorId
+                        + " is not an indicator of the project #" + logFrame.getParentProject().getId() + ".");
+            }
+            indicators.add(indicator);
+        }
+
+        element.getIndicators().retainAll(indicators);
+        element.getIndicators().addAll(indicators);
+    }
+
+    /**
+     * Checks that no element nor prerequisite still belongs to a group to delete.
+     */
+    private void checkUnused(LogFrameGroup group) throws CommandException {
+        final Query elements = em.createQuery("SELECT COUNT(e) FROM LogFrameElement e WHERE e.group.id = :groupId");
+        elements.setParameter("groupId", group.getId());
+        final Query prerequisites = em.createQuery("SELECT COUNT(p) FROM Prerequisite p WHERE p.group.id = :groupId");
+        prerequisites.setParameter("groupId", group.getId());
+
+        if (((Number) elements.getSingleResult()).longValue() > 0
+                || ((Number) prerequisites.getSingleResult()).longValue() > 0) {
+            throw new CommandException("The group #" + group.getId() + " still has rows.");
+        }
+    }
+
+    /**
+     * Removes a row to delete from the collection of its parent.
+     */
+    private static void detach(Object row) {
+        if (row instanceof LogFrameGroup) {
+            ((LogFrameGroup) row).getParentLogFrame().getGroups().remove(row);
+        } else if (row instanceof SpecificObjective) {
+            ((SpecificObjective) row).getParentLogFrame().getSpecificObjectives().remove(row);
+        } else if (row instanceof ExpectedResult) {
+            ((ExpectedResult) row).getParentSpecificObjective().getExpectedResults().remove(row);
+        } else if (row instanceof LogFrameActivity) {
+            ((LogFrameActivity) row).getParentExpectedResult().getActivities().remove(row);
+        } else if (row instanceof Prerequisite) {
+            ((Prerequisite) row).getParentLogFrame().getPrerequisites().remove(row);
+        }
+    }
+
+    /**
+     * Gets a row referenced by a change, either saved or created by this command.
+     */
+    private Object reference(LogFrame logFrame, Kind kind, Integer id, Integer tmpId, Map<String, Object> created)
+            throws CommandException {
+        if (id != null) {
+            return find(logFrame, kind, id);
+        }
+        if (tmpId != null) {
+            final Object row = created.get(kind + ":" + tmpId);
+            if (row == null) {
+                throw new CommandException("The " + kind + " #" + tmpId + " must be created before being referenced.");
+            }
+            return row;
+        }
+        return null;
+    }
+
+    private Object find(LogFrame logFrame, Kind kind, int id) throws CommandException {
+        final Object row = em.find(entityClass(kind), id);
+        if (row == null) {
+            throw new CommandException("The " + kind + " #" + id + " does not exist.");
+        }
+        checkLogFrame(logFrame, row);
+        return row;
+    }
+
+    private static void checkLogFrame(LogFrame logFrame, Object row) throws CommandException {
+        final LogFrame rowLogFrame = logFrameOf(row);
+        if (rowLogFrame == null || !logFrame.getId().equals(rowLogFrame.getId())) {
+            throw new IllegalAccessCommandException("The row " + row + " is not in the log frame #"
+                    + logFrame.getId() + ".");
+        }
+    }
+
+    private static LogFrame logFrameOf(Object row) {
+        if (row instanceof LogFrameGroup) {
+            return ((LogFrameGroup) row).getParentLogFrame();
+        } else if (row instanceof SpecificObjective) {
+            return ((SpecificObjective) row).getParentLogFrame();
+        } else if (row instanceof ExpectedResult) {
+            final SpecificObjective parent = ((ExpectedResult) row).getParentSpecificObjective();
+            return parent != null ? parent.getParentLogFrame() : null;
+        } else if (row instanceof LogFrameActivity) {
+            final ExpectedResult parent = ((LogFrameActivity) row).getParentExpectedResult();
+            return parent != null ? logFrameOf(parent) : null;
+        } else if (row instanceof Prerequisite) {
+            return ((Prerequisite) row).getParentLogFrame();
+        }
+        return null;
+    }
+
+    private static Integer idOf(Object row) {
+        if (row instanceof LogFrameGroup) {
+            return ((LogFrameGroup) row).getId();
+        } else if (row instanceof LogFrameElement) {
+            return ((LogFrameElement) row).getId();
+        } else if (row instanceof Prerequisite) {
+            return ((Prerequisite) row).getId();
+        }
+        return null;
+    }
+
+    private static Class<?> entityClass(Kind kind) {
+        switch (kind) {
+        case GROUP:
+            return LogFrameGroup.class;
+        case SPECIFIC_OBJECTIVE:
+            return SpecificObjective.class;
+        case EXPECTED_RESULT:
+            return ExpectedResult.class;
+        case ACTIVITY:
+            return LogFrameActivity.class;
+        default:
+            return Prerequisite.class;
+        }
+    }
+}
@@ -4,50 +4,89 @@
 
 package org.sigmah.server.endpoint.gwtrpc.handler;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.Calendar;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 
 import javax.persistence.EntityManager;
 
+import org.hibernate.LockMode;
+import org.hibernate.ejb.HibernateEntityManager;
+import org.hibernate.jdbc.Work;
+import org.sigmah.server.dao.cache.QueryResultCache;
 import org.sigmah.server.util.ReportingPeriodValidation;
 import org.sigmah.shared.command.Month;
 import org.sigmah.shared.command.UpdateMonthlyReports;
 import org.sigmah.shared.command.handler.CommandHandler;
 import org.sigmah.shared.command.result.CommandResult;
 import org.sigmah.shared.command.result.VoidResult;
-import org.sigmah.shared.domain.Indicator;
-import org.sigmah.shared.domain.IndicatorValue;
 import org.sigmah.shared.domain.ReportingPeriod;
 import org.sigmah.shared.domain.Site;
 import org.sigmah.shared.domain.User;
 import org.sigmah.shared.exception.CommandException;
+import org.sigmah.shared.exception.ConcurrentUpdateException;
 
 import com.google.inject.Inject;
 
 /**
+ * Saves the values of the monthly reports of a site.
+ * <p>
+ * The missing reporting periods are created through the entity manager, then the values
+ * are inserted, updated and deleted with one JDBC batch of each kind, ordered by period.
+ * 
  * @author Alex Bertram
  * @see org.sigmah.shared.command.UpdateMonthlyReports
  */
 public class UpdateMonthlyReportsHandler implements CommandHandler<UpdateMonthlyReports> {
 
     private final EntityManager em;
+    private final QueryResultCache cache;
 
     @Inject
-    public UpdateMonthlyReportsHandler(EntityManager em) {
+    public UpdateMonthlyReportsHandler(EntityManager em, QueryResultCache cache) {
         this.em = em;
+        this.cache = cache;
     }
 
     public CommandResult execute(UpdateMonthlyReports cmd, User user) throws CommandException {
 
-        Site site = em.find(Site.class, cmd.getSiteId());
+        // Locks the site (SELECT ... FOR UPDATE) before anything else is read, so that the
+        // saves of its reports are serialized and each one checks the version left by the
+        // previous one.
+        Site site = (Site) ((HibernateEntityManager) em).getSession().get(Site.class, cmd.getSiteId(),
+            LockMode.UPGRADE);
+
+        long version = HandlerUtil.monthlyReportsVersion(em, site.getId());
+        if (cmd.getVersion() != null && cmd.getVersion().longValue() != version) {
+            throw new ConcurrentUpdateException("The monthly reports of the site #" + site.getId()
+                + " have been changed since they were loaded.");
+        }
 
         Map<Month, ReportingPeriod> periods = new HashMap<Month, ReportingPeriod>();
 
         for (ReportingPeriod period : site.getReportingPeriods()) {
+            boolean wasValid = ReportingPeriodValidation.validate(period);
+            if (!wasValid) {
+                em.merge(period);
+            }
             periods.put(HandlerUtil.monthFromRange(period.getDate1(), period.getDate2()), period);
         }
 
+        // Values to save by period and indicator, a null value deleting the saved one.
+        final Map<Integer, Map<Integer, Double>> values = new LinkedHashMap<Integer, Map<Integer, Double>>();
+
+        // The version must change even if DateEdited is stored without the milliseconds
+        // (MySQL) and the previous save was in the same second.
+        Date now = new Date(Math.max(System.currentTimeMillis(), version + 1000));
         for (UpdateMonthlyReports.Change change : cmd.getChanges()) {
 
             ReportingPeriod period = periods.get(change.month);
@@ -66,53 +105,108 @@ public class UpdateMonthlyReportsHandler implements CommandHandler<UpdateMonthly
                 em.persist(period);
 
                 periods.put(change.month, period);
-            } else {
-                boolean wasValid = ReportingPeriodValidation.validate(period);
-                if (!wasValid) {
-                    em.merge(period);
-                }
             }
+            period.setDateEdited(now);
 
-            updateIndicatorValue(em, period, change.indicatorId, change.value, false);
+            Map<Integer, Double> periodValues = values.get(period.getId());
+            if (periodValues == null) {
+                // the id is generated when persisting
+                periodValues = new LinkedHashMap<Integer, Double>();
+                values.put(period.getId(), periodValues);
+            }
+            periodValues.put(change.indicatorId, change.value);
         }
 
-        return new VoidResult();
-
-    }
-
-    public void updateIndicatorValue(EntityManager em, ReportingPeriod period, int indicatorId, Double value,
-            boolean creating) {
-
-        if (value == null && !creating) {
-            int rowsAffected =
-                    em.createQuery("delete IndicatorValue v where v.indicator.id = ?1 and v.reportingPeriod.id = ?2")
-                        .setParameter(1, indicatorId).setParameter(2, period.getId()).executeUpdate();
-
-            assert rowsAffected <= 1 : "whoops, deleted too many";
-
-        } else if (value != null) {
-
-            int rowsAffected = 0;
+        if (values.isEmpty()) {
+            return new VoidResult();
+        }
 
-            if (!creating) {
-                rowsAffected =
-                        em.createQuery(
-                            "update IndicatorValue v set v.value = ?1 where "
-                                + "v.indicator.id = ?2 and "
-                                + "v.reportingPeriod.id = ?3").setParameter(1, (Double) value)
-                            .setParameter(2, indicatorId).setParameter(3, period.getId()).executeUpdate();
+        // Writes the periods before the values referencing them.
+        em.flush();
+
+        ((HibernateEntityManager) em).getSession().doWork(new Work() {
+
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                Set<String> saved = querySavedValues(connection, values.keySet());
+
+                PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO IndicatorValue (ReportingPeriodId, IndicatorId, Value) VALUES (?, ?, ?)");
+                PreparedStatement update = connection.prepareStatement(
+                    "UPDATE IndicatorValue SET Value = ? WHERE ReportingPeriodId = ? AND IndicatorId = ?");
+                PreparedStatement delete = connection.prepareStatement(
+                    "DELETE FROM IndicatorValue WHERE ReportingPeriodId = ? AND IndicatorId = ?");
+                try {
+                    for (Map.Entry<Integer, Map<Integer, Double>> periodValues : values.entrySet()) {
+                        int periodId = periodValues.getKey();
+
+                        for (Map.Entry<Integer, Double> value : periodValues.getValue().entrySet()) {
+                            int indicatorId = value.getKey();
+                            boolean exists = saved.contains(periodId + ":" + indicatorId);
+
+                            if (value.getValue() == null) {
+                                if (exists) {
+                                    delete.setInt(1, periodId);
+                                    delete.setInt(2, indicatorId);
+                                    delete.addBatch();
+                                }
+                            } else if (exists) {
+                                update.setDouble(1, value.getValue());
+                                update.setInt(2, periodId);
+                                update.setInt(3, indicatorId);
+                                update.addBatch();
+                            } else {
+                                insert.setInt(1, periodId);
+                                insert.setInt(2, indicatorId);
+                                insert.setDouble(3, value.getValue());
+                                insert.addBatch();
+                            }
+                        }
+                    }
+
+                    delete.executeBatch();
+                    update.executeBatch();
+                    insert.executeBatch();
+
+                } finally {
+                    insert.close();
+                    update.close();
+                    delete.close();
+                }
             }
+        });
 
-            if (rowsAffected == 0) {
+        cache.invalidateOnCompletion(em, site.getDatabase().getId());
 
-                IndicatorValue iValue =
-                        new IndicatorValue(period, em.getReference(Indicator.class, indicatorId), (Double) value);
+        return new VoidResult();
 
-                em.persist(iValue);
+    }
 
+    /**
+     * Queries the values saved in the given periods, including the values of the deleted
+     * indicators that the <code>hideDeleted</code> filter would leave out.
+     *
+     * @return the keys (<code>periodId:indicatorId</code>) of the saved values
+     */
+    private static Set<String> querySavedValues(Connection connection, Set<Integer> periodIds) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT ReportingPeriodId, IndicatorId FROM IndicatorValue "
+            + "WHERE ReportingPeriodId IN (");
+        for (Integer periodId : periodIds) {
+            sql.append(periodId).append(',');
+        }
+        sql.setCharAt(sql.length() - 1, ')');
+
+        Set<String> saved = new HashSet<String>();
+        Statement statement = connection.createStatement();
+        try {
+            ResultSet rs = statement.executeQuery(sql.toString());
+            while (rs.next()) {
+                saved.add(rs.getInt(1) + ":" + rs.getInt(2));
             }
+        } finally {
+            statement.close();
         }
-
+        return saved;
     }
 
 }
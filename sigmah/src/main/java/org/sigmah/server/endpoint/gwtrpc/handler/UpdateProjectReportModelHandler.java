@@ -36,17 +36,20 @@ public class UpdateProjectReportModelHandler implements CommandHandler<UpdatePro
 	
 	
 	private final EntityManager em;
+	private final ModelDTOCache cache;
 	private final static Log LOG = LogFactory.getLog(UpdateProjectReportModelHandler.class);
 	
 
 	/**
 	 * @param em
 	 * @param mapper
+	 * @param cache
 	 */
 	@Inject
-	public UpdateProjectReportModelHandler(EntityManager em, Mapper mapper) {
+	public UpdateProjectReportModelHandler(EntityManager em, Mapper mapper, ModelDTOCache cache) {
 		super();
 		this.em = em;
+		this.cache = cache;
 	}
 
 
@@ -54,6 +57,8 @@ public class UpdateProjectReportModelHandler implements CommandHandler<UpdatePro
 	public CommandResult execute(UpdateProjectReportModel cmd, User user)
 			throws CommandException {
 		
+		cache.invalidateOnCompletion(em);
+		
 		//Get all objects needed
 		int reportModelId = cmd.getReportModelId();
 		List<ProjectReportModelSectionDTO> changedSectionsDTO = (List<ProjectReportModelSectionDTO>) cmd.getChanges().get(AdminUtil.PROP_REPORT_SECTION_MODEL);		
@@ -22,29 +22,50 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.IOException;
+import java.io.*;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 
 /**
  * An adapter class for the GWT-RPC interface that allows
  * non-GWT clients to execute commands using the {@code Command}
  * encoded as JSON.
+ * <p/>
+ * Results are serialized compactly straight into a gzip buffer, so only the compressed
+ * form is ever held in memory. Since only {@code Get*} commands are accepted, every
+ * response carries an {@code ETag} computed over the JSON and a matching
+ * {@code If-None-Match} header is answered with {@code 304 Not Modified}.
  *
  */
 @Singleton
 public class JsonCommandServlet extends HttpServlet {
 
+    private static final String ENCODING = "UTF-8";
+
     private final CommandServlet commandServlet;
     private final Gson gson;
 
+    /**
+     * Setters of each {@code Command} class, keyed by property name
+     */
+    private final ConcurrentMap<Class, Map<String, Method>> setters = new ConcurrentHashMap<Class, Map<String, Method>>();
+
     @Inject
     public JsonCommandServlet(CommandServlet commandServlet) {
         this.commandServlet = commandServlet;
         this.gson = new GsonBuilder()
-                .setPrettyPrinting()
                 .registerTypeAdapter(SyncRegionUpdate.class, new SyncRegionUpdateSerializer())
                 .create();
     }
@@ -62,8 +83,7 @@ public class JsonCommandServlet extends HttpServlet {
 
             CommandResult result = commandServlet.execute(getAuthToken(req), command);
 
-            resp.setContentType("application/json");
-            resp.getWriter().print(gson.toJson(result));
+            writeResult(req, resp, result);
 
         } catch (BadRequestException e) {
             resp.sendError(e.getStatusCode(), e.getMessage());
@@ -74,6 +94,64 @@ public class JsonCommandServlet extends HttpServlet {
         }
     }
 
+    private void writeResult(HttpServletRequest req, HttpServletResponse resp, CommandResult result) throws IOException {
+        MessageDigest digest = newDigest();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        Writer writer = new OutputStreamWriter(
+                new DigestOutputStream(new GZIPOutputStream(compressed), digest), ENCODING);
+        gson.toJson(result, writer);
+        writer.close();
+
+        String acceptEncoding = req.getHeader("Accept-Encoding");
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+
+        // the compressed and the plain responses are different representations, caches
+        // must keep them apart
+        String etag = '"' + toHex(digest.digest()) + (gzip ? "-gzip" : "") + '"';
+        resp.setHeader("ETag", etag);
+        resp.setHeader("Cache-Control", "private, no-cache");
+        resp.setHeader("Vary", "Accept-Encoding");
+
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if(ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding(ENCODING);
+
+        if(gzip) {
+            resp.setHeader("Content-Encoding", "gzip");
+            resp.setContentLength(compressed.size());
+            compressed.writeTo(resp.getOutputStream());
+        } else {
+            InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()));
+            OutputStream out = resp.getOutputStream();
+            byte[] buffer = new byte[8 * 1024];
+            int len;
+            while((len = in.read(buffer)) != -1) {
+                out.write(buffer, 0, len);
+            }
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for(byte b : bytes) {
+            sb.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+        }
+        return sb.toString();
+    }
+
     private String getAuthToken(HttpServletRequest req) {
 
         String authToken = req.getHeader("X-ActivityInfo-AuthToken");
@@ -112,18 +190,16 @@ public class JsonCommandServlet extends HttpServlet {
             throw new ServletException("Exception instantiating Command object", e);
         }
 
-        // look for setters
-        for(Method method : command.getClass().getMethods()) {
-            if(isSetter(method)) {
-                String property = propertyNameFromSetter(method);
-                if(req.getParameterValues(property) != null) {
-                    try {
-                        method.invoke(command, convert(property, req.getParameter(property), method.getParameterTypes()[0]));
-                    } catch (IllegalAccessException e) {
-                        throw new ServletException(e);
-                    } catch (InvocationTargetException e) {
-                        throw new ServletException(e);
-                    }
+        for(Map.Entry<String, Method> setter : settersOf(command.getClass()).entrySet()) {
+            String property = setter.getKey();
+            if(req.getParameterValues(property) != null) {
+                Method method = setter.getValue();
+                try {
+                    method.invoke(command, convert(property, req.getParameter(property), method.getParameterTypes()[0]));
+                } catch (IllegalAccessException e) {
+                    throw new ServletException(e);
+                } catch (InvocationTargetException e) {
+                    throw new ServletException(e);
                 }
             }
         }
@@ -131,6 +207,21 @@ public class JsonCommandServlet extends HttpServlet {
         return command;
     }
 
+    private Map<String, Method> settersOf(Class commandClass) {
+        Map<String, Method> classSetters = setters.get(commandClass);
+        if(classSetters == null) {
+            Map<String, Method> found = new HashMap<String, Method>();
+            for(Method method : commandClass.getMethods()) {
+                if(isSetter(method)) {
+                    found.put(propertyNameFromSetter(method), method);
+                }
+            }
+            classSetters = Collections.unmodifiableMap(found);
+            setters.putIfAbsent(commandClass, classSetters);
+        }
+        return classSetters;
+    }
+
     private Object convert(String name, String parameter, Class aClass) throws BadRequestException, ServletException {
         try {
             if(aClass.equals(String.class)) {
@@ -234,7 +234,8 @@ public class KmlDataServlet extends javax.servlet.http.HttpServlet {
         order.add(SiteOrder.ascendingOn(SiteTableColumn.date2.property()));
 
         SiteTableDAO siteDAO = injector.getInstance(SiteTableDAO.class);
-        return siteDAO.query(user, new Filter(), order, new SiteDataBinder(), SiteTableDAO.RETRIEVE_ALL, 0, -1);
+        return siteDAO.query(user, new Filter(), order, new SiteDataBinder(),
+                new SiteProjection(SiteTableDAO.RETRIEVE_INDICATORS), 0, -1);
 
     }
 
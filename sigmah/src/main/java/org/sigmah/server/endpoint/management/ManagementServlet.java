@@ -28,6 +28,7 @@ import org.sigmah.server.dao.AuthenticationDAO;
 import org.sigmah.server.domain.Authentication;
 import org.sigmah.server.endpoint.file.FileManager;
 import org.sigmah.server.endpoint.file.FileStorageProvider;
+import org.sigmah.server.endpoint.file.ImageDerivativeCache;
 import org.sigmah.shared.domain.User;
 import org.sigmah.shared.dto.value.FileUploadUtils;
 
@@ -138,6 +139,9 @@ public class ManagementServlet extends HttpServlet {
                             ImageIO.write(image, "png", outputStream);
                             outputStream.close();
                             stream.close();
+
+                            // Discards the cached sizes of the previous logo.
+                            injector.getInstance(ImageDerivativeCache.class).invalidateAll();
                         }
                     }
                 }
@@ -0,0 +1,367 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.mail;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.mail.Authenticator;
+import javax.mail.MessagingException;
+import javax.mail.PasswordAuthentication;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+import org.sigmah.server.StartupListener;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Delivers the mails in the background, from a spool on the local disk.
+ * <p/>
+ * Each mail is written to the directory given by the <code>mail.spool</code> property
+ * (defaults to a <code>mail-spool</code> folder in the temporary directory of the web
+ * application) before {@link #spool(MimeMessage)} returns, and deleted once delivered. A
+ * bounded pool of workers delivers them, each keeping its SMTP connection open between
+ * mails. The delivery is stopped when the servlet context is destroyed. A failed
+ * delivery is retried with an exponential backoff, up to {@link #MAX_ATTEMPTS} times,
+ * after which the mail is moved to the <code>failed</code> sub-directory. The spool is
+ * scanned at startup and periodically, so the mails not delivered before a restart are
+ * delivered afterwards.
+ */
+@Singleton
+public class MailDelivery {
+
+    private static final Logger LOGGER = Logger.getLogger(MailDelivery.class);
+
+    public static final String SPOOL_KEY = "mail.spool";
+
+    static final int MAX_ATTEMPTS = 10;
+
+    private static final int WORKERS = 4;
+    private static final int QUEUE_CAPACITY = 10000;
+    private static final long SCAN_INTERVAL_SECONDS = 15;
+    private static final long FIRST_RETRY_DELAY = TimeUnit.SECONDS.toMillis(30);
+    private static final long MAX_RETRY_DELAY = TimeUnit.HOURS.toMillis(1);
+
+    private static final String EXTENSION = ".eml";
+
+    /**
+     * Delivery state of a spooled mail.
+     */
+    private static class Delivery {
+
+        private final File file;
+        private int attempts;
+        private long nextAttempt;
+        private boolean queued;
+
+        private Delivery(File file) {
+            this.file = file;
+        }
+    }
+
+    private final Session session;
+    private final File spool;
+    private final File failed;
+
+    private final ConcurrentMap<String, Delivery> deliveries = new ConcurrentHashMap<String, Delivery>();
+
+    /**
+     * Connection of each worker, kept open between two mails.
+     */
+    private final ThreadLocal<Transport> transports = new ThreadLocal<Transport>();
+
+    private final ThreadPoolExecutor workers;
+    private final ScheduledExecutorService scanner;
+
+    @Inject
+    public MailDelivery(Properties properties) {
+        this.session = createSession(properties);
+
+        String path = properties.getProperty(SPOOL_KEY);
+        if (path != null) {
+            spool = new File(path);
+        } else if (StartupListener.webAppTempDir != null) {
+            spool = new File(StartupListener.webAppTempDir, "mail-spool");
+        } else {
+            spool = new File(System.getProperty("java.io.tmpdir"), "sigmah-mail");
+        }
+        LOGGER.info("Mails are spooled in " + spool.getAbsolutePath());
+        failed = new File(spool, "failed");
+        if (!failed.exists() && !failed.mkdirs()) {
+            LOGGER.warn("Could not create the mail spool directory " + failed.getAbsolutePath());
+        }
+
+        workers = new ThreadPoolExecutor(WORKERS, WORKERS, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(QUEUE_CAPACITY), new DaemonThreadFactory("mail-delivery"));
+
+        scanner = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("mail-spool"));
+        scanner.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    scan();
+                } catch (Throwable e) {
+                    LOGGER.error("Could not scan the mail spool " + spool.getAbsolutePath(), e);
+                }
+            }
+        }, 0, SCAN_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return the session the mails must be built with.
+     */
+    public Session getSession() {
+        return session;
+    }
+
+    /**
+     * Writes the given mail to the spool and queues its delivery.
+     *
+     * @throws IOException
+     *             if the mail could not be written to the spool, in which case it will not
+     *             be delivered.
+     */
+    public void spool(MimeMessage message) throws IOException, MessagingException {
+        String name = System.currentTimeMillis() + "-" + UUID.randomUUID() + EXTENSION;
+        File temp = new File(spool, name + ".tmp");
+        File file = new File(spool, name);
+
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(temp));
+        try {
+            message.writeTo(out);
+        } finally {
+            out.close();
+        }
+        // the scan never sees a partially written mail
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not move the mail to " + file.getAbsolutePath());
+        }
+
+        queue(file);
+    }
+
+    /**
+     * Queues the spooled mails which are not queued yet and whose next attempt is due.
+     */
+    void scan() {
+        File[] files = spool.listFiles(new FilenameFilter() {
+
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(EXTENSION);
+            }
+        });
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            queue(file);
+        }
+    }
+
+    private void queue(File file) {
+        Delivery delivery;
+        synchronized (this) {
+            delivery = deliveries.get(file.getName());
+            if (delivery == null) {
+                delivery = new Delivery(file);
+                deliveries.put(file.getName(), delivery);
+            }
+            if (delivery.queued || delivery.nextAttempt > System.currentTimeMillis()) {
+                return;
+            }
+            delivery.queued = true;
+        }
+
+        try {
+            workers.execute(new DeliveryTask(delivery));
+        } catch (RejectedExecutionException e) {
+            // the queue is full, the mail stays in the spool until the next scan
+            synchronized (this) {
+                delivery.queued = false;
+            }
+        }
+    }
+
+    private class DeliveryTask implements Runnable {
+
+        private final Delivery delivery;
+
+        private DeliveryTask(Delivery delivery) {
+            this.delivery = delivery;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (!delivery.file.exists()) {
+                    // delivered by a previous task
+                    deliveries.remove(delivery.file.getName());
+                    return;
+                }
+
+                deliver(load(delivery.file));
+
+                if (!delivery.file.delete()) {
+                    LOGGER.warn("Could not delete the delivered mail " + delivery.file.getAbsolutePath());
+                }
+                deliveries.remove(delivery.file.getName());
+
+            } catch (Exception e) {
+                retryLater(delivery, e);
+
+            } finally {
+                synchronized (MailDelivery.this) {
+                    delivery.queued = false;
+                }
+            }
+        }
+    }
+
+    private synchronized void retryLater(Delivery delivery, Exception cause) {
+        delivery.attempts++;
+
+        if (delivery.attempts >= MAX_ATTEMPTS || !delivery.file.exists()) {
+            LOGGER.error("Giving up the delivery of the mail " + delivery.file.getName() + " after "
+                    + delivery.attempts + " attempts.", cause);
+            delivery.file.renameTo(new File(failed, delivery.file.getName()));
+            deliveries.remove(delivery.file.getName());
+
+        } else {
+            long delay = Math.min(FIRST_RETRY_DELAY << (delivery.attempts - 1), MAX_RETRY_DELAY);
+            delivery.nextAttempt = System.currentTimeMillis() + delay;
+            LOGGER.warn("Could not deliver the mail " + delivery.file.getName() + ", next attempt in "
+                    + delay / 1000 + "s.", cause);
+        }
+    }
+
+    private MimeMessage load(File file) throws IOException, MessagingException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            return new MimeMessage(session, in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private void deliver(MimeMessage message) throws MessagingException {
+        Transport transport = transports.get();
+        boolean reused = transport != null && transport.isConnected();
+        if (!reused) {
+            transport = connect();
+        }
+
+        try {
+            transport.sendMessage(message, message.getAllRecipients());
+
+        } catch (MessagingException e) {
+            close(transport);
+            if (!reused) {
+                throw e;
+            }
+            // the server may have closed the connection meanwhile
+            transport = connect();
+            transport.sendMessage(message, message.getAllRecipients());
+        }
+    }
+
+    private Transport connect() throws MessagingException {
+        close(transports.get());
+
+        Transport transport = session.getTransport("smtp");
+        transport.connect();
+        transports.set(transport);
+        return transport;
+    }
+
+    private void close(Transport transport) {
+        transports.remove();
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                LOGGER.debug("Could not close the SMTP connection.", e);
+            }
+        }
+    }
+
+    /**
+     * Stops the delivery. The mails not delivered yet stay in the spool.
+     */
+    public void shutdown() {
+        scanner.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private static Session createSession(Properties properties) {
+        Properties sessionProperties = new Properties();
+        sessionProperties.setProperty("mail.transport.protocol", "smtp");
+        sessionProperties.setProperty("mail.smtp.host",
+                properties.getProperty(MailSenderImpl.HOST_NAME_KEY, MailSenderImpl.DEFAULT_HOST_NAME));
+        sessionProperties.setProperty("mail.smtp.port",
+                properties.getProperty(MailSenderImpl.PORT_KEY, MailSenderImpl.DEFAULT_PORT));
+        sessionProperties.setProperty("mail.smtp.connectiontimeout", "30000");
+        sessionProperties.setProperty("mail.smtp.timeout", "60000");
+
+        // Authentication if specified.
+        final String authUsername = properties.getProperty(MailSenderImpl.FROM_AUTH_USERNAME_KEY, StringUtils.EMPTY);
+        final String authPassword = properties.getProperty(MailSenderImpl.FROM_AUTH_PASSWORD_KEY, StringUtils.EMPTY);
+        if (!StringUtils.EMPTY.equals(authUsername) && !StringUtils.EMPTY.equals(authPassword)) {
+            sessionProperties.setProperty("mail.smtp.auth", "true");
+            return Session.getInstance(sessionProperties, new Authenticator() {
+
+                @Override
+                protected PasswordAuthentication getPasswordAuthentication() {
+                    return new PasswordAuthentication(authUsername, authPassword);
+                }
+            });
+        }
+        return Session.getInstance(sessionProperties);
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        private DaemonThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
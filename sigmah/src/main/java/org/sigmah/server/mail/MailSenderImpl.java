@@ -5,16 +5,21 @@
 
 package org.sigmah.server.mail;
 
+import java.io.IOException;
 import java.util.Properties;
 
-import org.apache.commons.lang.StringUtils;
-import org.apache.commons.mail.DefaultAuthenticator;
+import javax.mail.MessagingException;
+
 import org.apache.commons.mail.Email;
 import org.apache.commons.mail.EmailException;
 import org.sigmah.server.util.logging.LogException;
 
 import com.google.inject.Inject;
 
+/**
+ * Builds the mails and hands them to the {@link MailDelivery}, which sends them in the
+ * background.
+ */
 public class MailSenderImpl implements MailSender {
 
     final public static String HOST_NAME_KEY = "mail.hostname";   
@@ -24,31 +29,35 @@ public class MailSenderImpl implements MailSender {
     final public static String FROM_AUTH_USERNAME_KEY = "mail.auth.username";
     final public static String FROM_AUTH_PASSWORD_KEY = "mail.auth.password";
 
-    final private static String DEFAULT_HOST_NAME = "localhost";
-    final private static String DEFAULT_PORT = "25";
+    final static String DEFAULT_HOST_NAME = "localhost";
+    final static String DEFAULT_PORT = "25";
     final private static String DEFAULT_ADDRESS = "mailer@sigmah.org";
     final private static String DEFAULT_NAME = "Sigmah";
 
     @Inject
     private Properties properties;
 
+    @Inject
+    private MailDelivery delivery;
+
     @LogException
     @Override
     public void send(Email email) throws EmailException {
 
-        email.setHostName(properties.getProperty(HOST_NAME_KEY, DEFAULT_HOST_NAME));
-        email.setSmtpPort(Integer.parseInt(properties.getProperty(PORT_KEY, DEFAULT_PORT)));
+        // The host, port and authentication are set on the session.
+        email.setMailSession(delivery.getSession());
         email.setFrom(properties.getProperty(FROM_ADDRESS_KEY, DEFAULT_ADDRESS),
                 properties.getProperty(FROM_NAME_KEY, DEFAULT_NAME));
 
-        // Authentication if specified.
-        final String authUsername = properties.getProperty(FROM_AUTH_USERNAME_KEY, StringUtils.EMPTY);
-        final String authPassword = properties.getProperty(FROM_AUTH_PASSWORD_KEY, StringUtils.EMPTY);
-        if (!StringUtils.EMPTY.equals(authUsername) && !StringUtils.EMPTY.equals(authPassword)) {
-            email.setAuthenticator(new DefaultAuthenticator(authUsername, authPassword));
+        email.buildMimeMessage();
+        try {
+            // The message is complete once spooled, its attachments may be deleted.
+            delivery.spool(email.getMimeMessage());
+        } catch (IOException e) {
+            throw new EmailException(e);
+        } catch (MessagingException e) {
+            throw new EmailException(e);
         }
-
-        email.send();
     }
 
 }
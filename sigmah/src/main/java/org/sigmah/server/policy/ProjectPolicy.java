@@ -19,6 +19,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.sigmah.client.page.project.logframe.ProjectLogFramePresenter;
 import org.sigmah.server.dao.Transactional;
+import org.sigmah.server.endpoint.gwtrpc.handler.ModelDTOCache;
 import org.sigmah.shared.command.result.ValueResultUtils;
 import org.sigmah.shared.domain.Amendment;
 import org.sigmah.shared.domain.Country;
@@ -150,6 +151,7 @@ public class ProjectPolicy implements EntityPolicy<Project> {
 		ProjectModel model = em.getReference(ProjectModel.class, properties.<Long> get("modelId"));
 		if (ProjectModelStatus.READY.equals(model.getStatus())) {
 			model.setStatus(ProjectModelStatus.USED);
+			injector.getInstance(ModelDTOCache.class).invalidateOnCompletion(em);
 		}
 		model = em.merge(model);
 		project.setProjectModel(model);
@@ -5,9 +5,13 @@
 
 package org.sigmah.server.policy;
 
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -26,6 +30,7 @@ import org.sigmah.shared.domain.report.ProjectReport;
 import org.sigmah.shared.domain.report.ProjectReportModel;
 import org.sigmah.shared.domain.report.ProjectReportModelSection;
 import org.sigmah.shared.domain.report.ProjectReportVersion;
+import org.sigmah.shared.domain.report.RichTextBlock;
 import org.sigmah.shared.domain.report.RichTextElement;
 import org.sigmah.shared.domain.value.Value;
 
@@ -235,11 +240,17 @@ public class ProjectReportPolicy implements EntityPolicy<ProjectReport> {
         final ProjectReport report = dao.findReportById((Integer) properties.get("reportId"));
         version.setReport(report);
 
-        // Copying the current values
+        // Sharing the blocks of the current values
         final ArrayList<RichTextElement> texts = new ArrayList<RichTextElement>();
 
         final List<RichTextElement> currentTexts = report.getCurrentVersion().getTexts();
         for(final RichTextElement text : currentTexts) {
+            if(text.getBlock() == null && text.getText() != null) {
+                // Moving the text of an element saved before the blocks
+                text.setBlock(findOrCreateBlock(text.getText()));
+                text.setText(null);
+            }
+
             final RichTextElement element = text.duplicate();
             element.setVersion(version);
             
@@ -257,6 +268,11 @@ public class ProjectReportPolicy implements EntityPolicy<ProjectReport> {
     @Override
     public void update(User user, Object entityId, PropertyMap changes) {
 
+        // Texts of the version
+        final HashMap<Integer, RichTextElement> elements = new HashMap<Integer, RichTextElement>();
+        for(final RichTextElement element : dao.findRichTextElementsByVersionId((Integer) entityId))
+            elements.put(element.getId(), element);
+
         for(Map.Entry<String, Object> entry : changes.entrySet()) {
             if("currentPhase".equals(entry.getKey())) {
                 final ProjectReportVersion version = dao.findReportVersionById((Integer) entityId);
@@ -266,11 +282,62 @@ public class ProjectReportPolicy implements EntityPolicy<ProjectReport> {
                 dao.merge(version);
 
             } else {
-                final RichTextElement element = dao.findRichTextElementById(new Integer(entry.getKey()));
-                element.setText((String) entry.getValue());
+                final RichTextElement element = elements.get(new Integer(entry.getKey()));
+                if(element == null) {
+                    log.warn("The rich text element #" + entry.getKey() + " is not a text of the version #" + entityId + ".");
+                    continue;
+                }
+
+                final String text = (String) entry.getValue();
+                final String current = element.getContent();
+                if(text == null ? current == null : text.equals(current))
+                    continue;
+
+                // Copy on write: the previous block may be shared with other versions
+                final RichTextBlock previous = element.getBlock();
+                element.setBlock(findOrCreateBlock(text));
+                element.setText(null);
                 dao.merge(element);
+
+                if(previous != null && previous != element.getBlock())
+                    dao.removeUnusedBlocks(Collections.singleton(previous));
             }
         }
     }
+
+    /**
+     * Finds the block having the given text or creates it.
+     * @param text Text of the block.
+     * @return The block of the given text or <code>null</code> if the text is <code>null</code>.
+     */
+    private RichTextBlock findOrCreateBlock(String text) {
+        if(text == null)
+            return null;
+
+        final String hash = hash(text);
+        for(final RichTextBlock block : dao.findRichTextBlocksByHash(hash)) {
+            if(text.equals(block.getText()))
+                return block;
+        }
+
+        final RichTextBlock block = new RichTextBlock(hash, text);
+        dao.persist(block);
+        return block;
+    }
+
+    private static String hash(String text) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-1").digest(text.getBytes("UTF-8"));
+            final StringBuilder builder = new StringBuilder();
+            for(final byte b : digest)
+                builder.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+            return builder.toString();
+
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
     
 }
@@ -0,0 +1,138 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.report;
+
+import com.google.inject.Singleton;
+import org.apache.log4j.Logger;
+import org.sigmah.server.domain.ReportDefinition;
+import org.sigmah.shared.report.model.Report;
+
+import javax.xml.bind.JAXBException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the parsed {@link ReportDefinition}s, so that their XML is only parsed once.
+ * <p>
+ * Report generation fills the elements of the report it is given, so each call returns
+ * its own copy of the parsed template. The template is kept serialized, which makes it
+ * immutable and its copies cheap. Definitions are looked up by id and their XML is
+ * compared to the parsed one, so updated definitions are parsed again.
+ */
+@Singleton
+public class ParsedReportCache {
+
+    private static final Logger LOGGER = Logger.getLogger(ParsedReportCache.class);
+
+    /**
+     * Maximum number of definitions kept, the cache is emptied when it is reached.
+     */
+    public static final int MAX_ENTRIES = 512;
+
+    private static class Template {
+
+        private final int hash;
+        private final String xml;
+
+        /**
+         * The serialized report, <code>null</code> if it could not be serialized.
+         */
+        private final byte[] report;
+
+        private Template(String xml, byte[] report) {
+            this.hash = xml.hashCode();
+            this.xml = xml;
+            this.report = report;
+        }
+
+        private boolean isParsedFrom(String xml) {
+            return hash == xml.hashCode() && this.xml.equals(xml);
+        }
+    }
+
+    private final ConcurrentMap<Integer, Template> templates = new ConcurrentHashMap<Integer, Template>();
+
+    /**
+     * Returns a new copy of the report described by the given definition.
+     *
+     * @param definition The report definition.
+     * @return A report model, owned by the caller.
+     * @throws JAXBException If the XML of the definition cannot be parsed.
+     */
+    public Report get(ReportDefinition definition) throws JAXBException {
+        return get(definition.getId(), definition.getXml());
+    }
+
+    /**
+     * Returns a new copy of the report described by the given XML.
+     *
+     * @param id  The id of the report definition.
+     * @param xml The XML of the report definition.
+     * @return A report model, owned by the caller.
+     * @throws JAXBException If the XML cannot be parsed.
+     */
+    public Report get(int id, String xml) throws JAXBException {
+        final Template template = templates.get(id);
+
+        if (template != null && template.isParsedFrom(xml)) {
+            if (template.report != null) {
+                final Report copy = deserialize(template.report);
+                if (copy != null) {
+                    return copy;
+                }
+            }
+            return ReportParserJaxb.parseXml(xml);
+        }
+
+        // The parsed report is not kept, it is returned to the caller.
+        final Report report = ReportParserJaxb.parseXml(xml);
+
+        if (templates.size() >= MAX_ENTRIES) {
+            templates.clear();
+        }
+        templates.put(id, new Template(xml, serialize(report)));
+
+        return report;
+    }
+
+    private static byte[] serialize(Report report) {
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(report);
+            out.close();
+            return bytes.toByteArray();
+
+        } catch (IOException e) {
+            // Copies are parsed again from the XML.
+            LOGGER.warn("The report '" + report.getTitle() + "' cannot be serialized, it will be parsed for each use.", e);
+            return null;
+        }
+    }
+
+    private static Report deserialize(byte[] report) {
+        try {
+            final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(report));
+            try {
+                return (Report) in.readObject();
+            } finally {
+                in.close();
+            }
+
+        } catch (IOException e) {
+            LOGGER.warn("Error while copying a parsed report.", e);
+            return null;
+        } catch (ClassNotFoundException e) {
+            LOGGER.warn("Error while copying a parsed report.", e);
+            return null;
+        }
+    }
+}
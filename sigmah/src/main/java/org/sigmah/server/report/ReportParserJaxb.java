@@ -18,14 +18,26 @@ import java.io.StringReader;
  */
 public class ReportParserJaxb {
 
+    private static JAXBContext context;
+
+    /**
+     * Returns the context of the report model package. It is thread safe and costly to
+     * create, so it is created once; unmarshallers are not, and are created per call.
+     */
+    private static synchronized JAXBContext getContext() throws JAXBException {
+        if (context == null) {
+            context = JAXBContext.newInstance(Report.class.getPackage().getName());
+        }
+        return context;
+    }
+
     public static Report parseXml(String xml) throws JAXBException {
         return parseXML(new StringReader(xml));
     }
 
     public static Report parseXML(Reader reader) throws JAXBException {
 
-        JAXBContext jc = JAXBContext.newInstance(Report.class.getPackage().getName());
-        Unmarshaller um = jc.createUnmarshaller();
+        Unmarshaller um = getContext().createUnmarshaller();
         um.setEventHandler(new javax.xml.bind.helpers.DefaultValidationEventHandler());
         return (Report) um.unmarshal(reader);
     }
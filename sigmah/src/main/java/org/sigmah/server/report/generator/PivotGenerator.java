@@ -85,6 +85,7 @@ public abstract class PivotGenerator<T extends PivotElement> extends BaseGenerat
 				userId, filter,
 				element.allDimensions()));
 
+		populator.getTable().sortAxes();
 
 		if(!rowDims.contains(new Dimension(DimensionType.Indicator))) {
 			populator.getTable().getRootRow().total();
@@ -242,37 +243,39 @@ public abstract class PivotGenerator<T extends PivotElement> extends BaseGenerat
 				}
 			} else if(childDimension != null) {
 				
+				Map<DimensionCategory, List<Bucket>> groups = groupByCategory(buckets, childDimension);
+
 				// first add those who are missing a value for this dimension
-				addHeaders(parent, dims, next(dims, childDimension), filter(buckets, childDimension, null), range);
+				List<Bucket> missing = groups.remove(null);
+				if(missing == null) {
+					missing = Collections.emptyList();
+				}
+				addHeaders(parent, dims, next(dims, childDimension), missing, range);
 								
-				for(DimensionCategory category : categories(buckets, childDimension)) {
+				for(Map.Entry<DimensionCategory, List<Bucket>> group : groups.entrySet()) {
+					DimensionCategory category = group.getKey();
 					PivotTableData.Axis child = parent.addChild(childDimension, category, renderLabel(childDimension, category), comparators.get(childDimension));
-					addHeaders(child, dims, filter(buckets, childDimension, category), range);
+					addHeaders(child, dims, group.getValue(), range);
 				}
 			}
 		}
 		
-		private Set<DimensionCategory> categories(List<Bucket> buckets, Dimension dim) {
-			Set<DimensionCategory> set = new HashSet<DimensionCategory>();
+		/**
+		 * Partitions the buckets by their category in the given dimension in a single pass.
+		 * Buckets without a value for the dimension are grouped under the <code>null</code> key.
+		 */
+		private Map<DimensionCategory, List<Bucket>> groupByCategory(List<Bucket> buckets, Dimension dim) {
+			Map<DimensionCategory, List<Bucket>> groups = new HashMap<DimensionCategory, List<Bucket>>();
 			for(Bucket bucket : buckets) {
 				DimensionCategory category = bucket.getCategory(dim);
-				if(category != null) {
-					set.add(category);
-				}
-			}
-			return set;
-		}
-		
-		private List<Bucket> filter(List<Bucket> buckets, Dimension dim, DimensionCategory cat) {
-			List<Bucket> filtered = new ArrayList<Bucket>();
-			for(Bucket bucket : buckets) {
-				DimensionCategory bucketCategory = bucket.getCategory(dim);
-				if( (cat == null &&  bucketCategory == null) ||
-				    (cat != null && cat.equals(bucketCategory))) {
-					filtered.add(bucket);
+				List<Bucket> group = groups.get(category);
+				if(group == null) {
+					group = new ArrayList<Bucket>();
+					groups.put(category, group);
 				}
+				group.add(bucket);
 			}
-			return filtered;
+			return groups;
 		}
 
 		private void addYears(PivotTableData.Axis parent, List<Dimension> dims, List<Bucket> buckets, DateRange dateRange) {
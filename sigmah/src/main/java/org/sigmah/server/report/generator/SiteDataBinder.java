@@ -13,7 +13,7 @@ import org.sigmah.shared.domain.AdminEntity;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
-public class SiteDataBinder implements SiteProjectionBinder<SiteData> {
+public class SiteDataBinder implements SiteProjectionBinder<SiteData>, SiteProjectionBinder.Cacheable {
 
 	@Override
 	public SiteData newInstance(String[] properties, ResultSet rs) throws SQLException {
@@ -9,6 +9,9 @@ import com.google.inject.Inject;
 import org.apache.commons.mail.EmailAttachment;
 import org.apache.commons.mail.EmailException;
 import org.apache.commons.mail.MultiPartEmail;
+import org.apache.log4j.Logger;
+import org.hibernate.Session;
+import org.hibernate.ejb.HibernateEntityManager;
 import org.quartz.Job;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
@@ -16,13 +19,13 @@ import org.sigmah.server.domain.DomainFilters;
 import org.sigmah.server.domain.ReportDefinition;
 import org.sigmah.server.domain.ReportSubscription;
 import org.sigmah.server.mail.MailSender;
-import org.sigmah.server.report.ReportParserJaxb;
+import org.sigmah.server.report.ParsedReportCache;
 import org.sigmah.server.report.generator.ReportGenerator;
 import org.sigmah.server.report.renderer.itext.RtfReportRenderer;
-import org.sigmah.shared.report.model.DateRange;
+import org.sigmah.shared.domain.User;
+import org.sigmah.shared.domain.profile.Profile;
 import org.sigmah.shared.report.model.Report;
 import org.sigmah.shared.report.model.ReportFrequency;
-import org.xml.sax.SAXException;
 
 import javax.persistence.EntityManager;
 import javax.xml.bind.JAXBException;
@@ -30,122 +33,384 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
  * Quartz Job that is run nightly to mail reports to subscribers.
+ * <p>
+ * The subscribers of a report are grouped by the data they are allowed to see, and the
+ * report is generated once per group. Generation uses the job's entity manager and stays
+ * on the job thread; the rendering and the sending of each group are done by a small
+ * pool of threads, while the job thread generates the next group.
  *
  * @author Alex Bertram
  */
 public class ReportMailerJob implements Job {
 
+    private static final Logger LOGGER = Logger.getLogger(ReportMailerJob.class);
+
+    /**
+     * Number of threads rendering and sending the reports.
+     */
+    private static final int DELIVERY_THREADS = 4;
+
+    /**
+     * Number of renderings and mails waiting for a thread. Once reached, the job thread
+     * renders or sends the next ones itself.
+     */
+    private static final int DELIVERY_QUEUE_SIZE = 64;
+
     private final EntityManager em;
     private final ReportGenerator reportGenerator;
     private final RtfReportRenderer rtfReportRenderer;
     private final MailSender mailer;
+    private final ParsedReportCache reportCache;
 
     private DateFormat reportDateFormat;
 
+    /**
+     * Visibility fingerprints of the subscribers, by user id, for the current run.
+     */
+    private final Map<Integer, String> fingerprints = new HashMap<Integer, String>();
+
     @Inject
     public ReportMailerJob(EntityManager em, ReportGenerator reportGenerator,
-                           RtfReportRenderer rtfReportRenderer, MailSender mailer) {
+                           RtfReportRenderer rtfReportRenderer, MailSender mailer,
+                           ParsedReportCache reportCache) {
         this.em = em;
         this.reportGenerator = reportGenerator;
         this.rtfReportRenderer = rtfReportRenderer;
         this.mailer = mailer;
+        this.reportCache = reportCache;
 
         reportDateFormat = DateFormat.getDateInstance(DateFormat.MEDIUM);
     }
 
 
     public void execute(JobExecutionContext jobContext) throws JobExecutionException {
+        execute(new Date());
+    }
 
-        Date today = new Date();
+    /**
+     * Mails the reports due at the given date.
+     */
+    void execute(Date today) {
         List<ReportDefinition> reports = em.createQuery("select t from ReportDefinition t")
                 .getResultList();
 
-        for (ReportDefinition template : reports) {
-            try {
-                Report report = ReportParserJaxb.parseXml(template.getXml());
-                if (report.getFrequency() == ReportFrequency.Monthly) {
-                    if (ReportMailerHelper.mailToday(today, report)) {
-                        execute(today, report, template.getSubscriptions());
+        RunMetrics metrics = new RunMetrics();
+        ExecutorService executor = new ThreadPoolExecutor(DELIVERY_THREADS, DELIVERY_THREADS,
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(DELIVERY_QUEUE_SIZE),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        try {
+            for (ReportDefinition template : reports) {
+                try {
+                    Report report = reportCache.get(template);
+                    if (report.getFrequency() == ReportFrequency.Monthly) {
+                        if (ReportMailerHelper.mailToday(today, report)) {
+                            execute(today, template, template.getSubscriptions(), executor, metrics);
+                        }
                     }
+                } catch (Throwable caught) {
+                    LOGGER.error("Report mailing of " + template.getId() + " failed.", caught);
                 }
-            } catch (Throwable caught) {
-                caught.printStackTrace();
+            }
+
+        } finally {
+            fingerprints.clear();
+
+            executor.shutdown();
+            try {
+                executor.awaitTermination(1, TimeUnit.HOURS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         }
+
+        LOGGER.info("Report mailing done: " + metrics);
     }
 
-    public void execute(Date today, Report report, Set<ReportSubscription> subs) {
+    private void execute(Date today, ReportDefinition template, Set<ReportSubscription> subs,
+                         ExecutorService executor, RunMetrics metrics) throws JAXBException {
 
-        // calculate the date range for the report
-        DateRange dateRange = ReportMailerHelper.computeDateRange(report, today);
+        metrics.reports.incrementAndGet();
 
-        // loop through report subscriptions that are to be mailed
-        // today
+        // subscribers seeing the same data receive the same report
+        Map<String, List<ReportSubscription>> groups = new LinkedHashMap<String, List<ReportSubscription>>();
         for (ReportSubscription sub : subs) {
+            String fingerprint = fingerprint(sub.getUser());
+            List<ReportSubscription> group = groups.get(fingerprint);
+            if (group == null) {
+                group = new ArrayList<ReportSubscription>();
+                groups.put(fingerprint, group);
+            }
+            group.add(sub);
+        }
 
+        for (List<ReportSubscription> group : groups.values()) {
             try {
-                mailReport(sub, today);
+                mailReport(template, group, today, executor, metrics);
             } catch (Exception e) {
-                System.out.println("Report mailing of " + sub.getTemplate().getId() + " failed for user "
-                        + sub.getUser().getEmail());
-                e.printStackTrace();
+                metrics.failures.addAndGet(group.size());
+                LOGGER.error("Report mailing of " + template.getId() + " failed for user "
+                        + group.get(0).getUser().getEmail() + " and " + (group.size() - 1) + " others.", e);
             }
         }
-
     }
 
-    private void mailReport(ReportSubscription sub, Date today) throws IOException, SAXException, EmailException {
+    private void mailReport(ReportDefinition template, List<ReportSubscription> group, Date today,
+                            ExecutorService executor, final RunMetrics metrics) throws JAXBException {
+
+        User user = group.get(0).getUser();
 
-        // apply the appropriate filters so the user
-        // only views the reports they're meant to
-        DomainFilters.applyUserFilter(sub.getUser(), em);
+        // apply the appropriate filters so the users
+        // only view the reports they're meant to
+        DomainFilters.applyUserFilter(user, em);
 
         // load the report definition
-        Report report = null;
-        try {
-            report = ReportParserJaxb.parseXml(sub.getTemplate().getXml());
-        } catch (JAXBException e) {
-            e.printStackTrace();
-            return;
-        }
+        final Report report = reportCache.get(template);
 
         // generate the report
-        reportGenerator.generate(sub.getUser(), report, null,
+        long start = System.nanoTime();
+        reportGenerator.generate(user, report, null,
                 ReportMailerHelper.computeDateRange(report, today));
+        metrics.groups.incrementAndGet();
+        metrics.generationTime.addAndGet(System.nanoTime() - start);
 
-        // render the report to a temporary path and create the
-        // attachement
+        // compose both a full html rendering of this report and a short text
+        // message for email clients that can't read html
+        final List<MultiPartEmail> emails = new ArrayList<MultiPartEmail>();
+        for (ReportSubscription sub : group) {
+            try {
+                MultiPartEmail email = new MultiPartEmail();
+                // email.setHtmlMsg(ReportMailerHelper.composeHtmlEmail(sub, report ));
+                email.setMsg(ReportMailerHelper.composeTextEmail(sub, report));
+                email.addTo(sub.getUser().getEmail(), sub.getUser().getName());
+                email.setSubject("ActivityInfo: " + report.getTitle());
+                emails.add(email);
+
+            } catch (EmailException e) {
+                metrics.failures.incrementAndGet();
+                LOGGER.error("Report mailing of " + template.getId() + " failed for user "
+                        + sub.getUser().getEmail(), e);
+            }
+        }
+        if (emails.isEmpty()) {
+            return;
+        }
 
-        File tempFile = File.createTempFile("report", ".rtf");
-        FileOutputStream rtf = new FileOutputStream(tempFile);
-        rtfReportRenderer.render(report, rtf);
-        rtf.close();
+        final String attachmentName = report.getContent().getFileName() +
+                reportDateFormat.format(today) + ".rtf";
+        final int templateId = template.getId();
 
-        EmailAttachment attachment = new EmailAttachment();
-        attachment.setName(report.getContent().getFileName() +
-                reportDateFormat.format(today) + ".rtf");
-        attachment.setDescription(report.getTitle());
-        attachment.setPath(tempFile.getAbsolutePath());
-        attachment.setDisposition(EmailAttachment.ATTACHMENT);
+        // the last of the rendering and the mails removes the file
+        final AtomicInteger remaining = new AtomicInteger(emails.size() + 1);
 
-        // compose both a full html rendering of this report and a short text
-        // message for email clients that can't read html
+        // render the report to a temporary path, once for the group
+        final Future<File> rendering = executor.submit(new Callable<File>() {
+
+            @Override
+            public File call() throws Exception {
+                long start = System.nanoTime();
+
+                File tempFile = createRenderingFile();
+                boolean rendered = false;
+                try {
+                    FileOutputStream rtf = new FileOutputStream(tempFile);
+                    try {
+                        rtfReportRenderer.render(report, rtf);
+                    } finally {
+                        rtf.close();
+                    }
+                    rendered = true;
+
+                } catch (Exception e) {
+                    LOGGER.error("Rendering of the report " + templateId + " failed.", e);
+                    throw e;
+                } finally {
+                    if (remaining.decrementAndGet() == 0 || !rendered) {
+                        delete(tempFile);
+                    }
+                }
+
+                metrics.renderTime.addAndGet(System.nanoTime() - start);
+                return tempFile;
+            }
+        });
+
+        // send the mails once the rendering is done. the rendering is queued before the
+        // mails, so it is always started before a thread waits for it.
+        for (final MultiPartEmail email : emails) {
+            executor.execute(new Runnable() {
 
-        // email
-        MultiPartEmail email = new MultiPartEmail();
-        // email.setHtmlMsg(ReportMailerHelper.composeHtmlEmail(sub, report ));
-        email.setMsg(ReportMailerHelper.composeTextEmail(sub, report));
-        email.addTo(sub.getUser().getEmail(), sub.getUser().getName());
-        email.setSubject("ActivityInfo: " + report.getTitle());
-        email.attach(attachment);
+                @Override
+                public void run() {
+                    try {
+                        File tempFile = rendering.get();
 
-        mailer.send(email);
+                        EmailAttachment attachment = new EmailAttachment();
+                        attachment.setName(attachmentName);
+                        attachment.setDescription(report.getTitle());
+                        attachment.setPath(tempFile.getAbsolutePath());
+                        attachment.setDisposition(EmailAttachment.ATTACHMENT);
+                        email.attach(attachment);
+
+                        mailer.send(email);
+                        metrics.sent.incrementAndGet();
+
+                    } catch (ExecutionException e) {
+                        // already logged by the rendering.
+                        metrics.failures.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        metrics.failures.incrementAndGet();
+                        Thread.currentThread().interrupt();
+                    } catch (Exception e) {
+                        metrics.failures.incrementAndGet();
+                        LOGGER.error("Report mailing of " + templateId + " failed for " + email.getToAddresses(), e);
+                    } finally {
+                        if (remaining.decrementAndGet() == 0) {
+                            deleteRendering(rendering);
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Creates the temporary file a report is rendered to.
+     */
+    protected File createRenderingFile() throws IOException {
+        return File.createTempFile("report", ".rtf");
+    }
+
+    /**
+     * Deletes the file of a finished rendering, once all the mails attaching it are sent or
+     * failed.
+     */
+    private static void deleteRendering(Future<File> rendering) {
+        try {
+            delete(rendering.get());
+        } catch (ExecutionException e) {
+            // the rendering deleted its file when it failed.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void delete(File file) {
+        if (!file.delete() && file.exists()) {
+            LOGGER.warn("Could not delete the temporary report " + file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Returns a key identifying what the given user can see in a report: two users with
+     * the same key get the same report. It is made of everything the visibility filters
+     * and the generators depend on, except the user id itself.
+     */
+    private String fingerprint(User user) {
+        String fingerprint = fingerprints.get(user.getId());
+        if (fingerprint != null) {
+            return fingerprint;
+        }
+
+        // the permissions themselves must not be filtered
+        Session session = ((HibernateEntityManager) em).getSession();
+        session.disableFilter("userVisible");
+        session.disableFilter("hideDeleted");
+
+        StringBuilder builder = new StringBuilder();
+        builder.append("locale:").append(user.getLocale());
+
+        if (user.getOrgUnitWithProfiles() != null && user.getOrgUnitWithProfiles().getOrgUnit() != null) {
+            builder.append(";unit:").append(user.getOrgUnitWithProfiles().getOrgUnit().getId());
+
+            List<Integer> profileIds = new ArrayList<Integer>();
+            if (user.getOrgUnitWithProfiles().getProfiles() != null) {
+                for (Profile profile : user.getOrgUnitWithProfiles().getProfiles()) {
+                    profileIds.add(profile.getId());
+                }
+            }
+            Collections.sort(profileIds);
+            builder.append(";profiles:").append(profileIds);
+        }
+
+        builder.append(";owner:");
+        for (Object databaseId : em.createQuery("select d.id from UserDatabase d " +
+                "where d.owner.id = :userId and d.dateDeleted is null order by d.id")
+                .setParameter("userId", user.getId())
+                .getResultList()) {
+            builder.append(databaseId).append(',');
+        }
+
+        builder.append(";permissions:");
+        for (Object row : em.createQuery("select p.database.id, p.partner.id, p.allowView, p.allowViewAll, " +
+                "p.allowEdit, p.allowEditAll, p.allowDesign, p.allowManageUsers, p.allowManageAllUsers " +
+                "from UserPermission p where p.user.id = :userId order by p.database.id, p.partner.id")
+                .setParameter("userId", user.getId())
+                .getResultList()) {
+            appendColumns(builder, (Object[]) row);
+        }
+
+        builder.append(";units:");
+        for (Object row : em.createQuery("select p.unit.id, p.viewAll, p.editAll from OrgUnitPermission p " +
+                "where p.user.id = :userId order by p.unit.id")
+                .setParameter("userId", user.getId())
+                .getResultList()) {
+            appendColumns(builder, (Object[]) row);
+        }
+
+        fingerprint = builder.toString();
+        fingerprints.put(user.getId(), fingerprint);
+        return fingerprint;
+    }
+
+    private static void appendColumns(StringBuilder builder, Object[] columns) {
+        for (int index = 0; index < columns.length; index++) {
+            if (index > 0) {
+                builder.append('/');
+            }
+            builder.append(columns[index]);
+        }
+        builder.append(',');
+    }
+
+    /**
+     * Counters of a run of the job.
+     */
+    private static class RunMetrics {
+        private final AtomicInteger reports = new AtomicInteger();
+        private final AtomicInteger groups = new AtomicInteger();
+        private final AtomicLong generationTime = new AtomicLong();
+        private final AtomicLong renderTime = new AtomicLong();
+        private final AtomicInteger sent = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+
+        @Override
+        public String toString() {
+            return reports + " reports, " + groups + " generations in " +
+                    TimeUnit.NANOSECONDS.toMillis(generationTime.get()) + " ms, rendered in " +
+                    TimeUnit.NANOSECONDS.toMillis(renderTime.get()) + " ms, " +
+                    sent + " mails sent, " + failures + " failures";
+        }
     }
 }
@@ -6,33 +6,30 @@
 package org.sigmah.server.sync;
 
 /**
- * 
+ * State of an admin level on the client, encoded as
+ * <code>version[,stamp,count]</code> where <code>stamp</code> is the latest
+ * <code>dateEdited</code> of the level's entities and <code>count</code> the number
+ * of entities the client holds for the level.
  */
 public class AdminLocalState {
     int version = 0;
-    boolean complete = false;
-    int lastId;
+    long stamp;
+    int count;
 
     public AdminLocalState(String localState) {
         if(localState != null) {
             String[] tokens = localState.split(",");
             version = Integer.parseInt(tokens[0]);
 
-            if(tokens.length == 1) {
-                complete = true;
-            } else {
-                complete = false;
-                lastId = Integer.parseInt(tokens[1]);
+            if(tokens.length == 3) {
+                stamp = Long.parseLong(tokens[1]);
+                count = Integer.parseInt(tokens[2]);
             }
         }
     }
 
     @Override
     public String toString() {
-        if(complete) {
-            return Integer.toString(version);
-        } else {
-            return version + "," + lastId;
-        }
+        return version + "," + stamp + "," + count;
     }
 }
@@ -0,0 +1,65 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.sync;
+
+import java.io.File;
+
+/**
+ * Pre-built, gzipped JSON SQL that loads all the entities of an admin level
+ * into an empty client table.
+ *
+ * @see AdminSnapshotStore
+ */
+public class AdminSnapshot {
+
+    private final int levelId;
+    private final long stamp;
+    private final int count;
+    private final String hash;
+    private final File file;
+
+    public AdminSnapshot(int levelId, long stamp, int count, String hash, File file) {
+        this.levelId = levelId;
+        this.stamp = stamp;
+        this.count = count;
+        this.hash = hash;
+        this.file = file;
+    }
+
+    public int getLevelId() {
+        return levelId;
+    }
+
+    /**
+     * @return the latest <code>dateEdited</code> (in milliseconds) of the level's entities
+     *         at the time the snapshot was built.
+     */
+    public long getStamp() {
+        return stamp;
+    }
+
+    /**
+     * @return the number of entities in the snapshot
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return the SHA-1 hash of the uncompressed JSON content
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public boolean isCurrent(long stamp, int count) {
+        return this.stamp == stamp && this.count == count && file.exists();
+    }
+}
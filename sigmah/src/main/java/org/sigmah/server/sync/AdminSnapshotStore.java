@@ -0,0 +1,177 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.sync;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.apache.log4j.Logger;
+import org.sigmah.server.endpoint.file.IOUtil;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps one {@link AdminSnapshot} per admin level on the local disk so that the
+ * initial synchronization of a level is served without querying and serializing
+ * its entities again.
+ * <p/>
+ * Snapshots are stored under the directory given by the <code>sync.snapshots.root</code>
+ * property (defaults to a <code>sigmah-sync</code> folder in the temporary directory)
+ * as <code>admin-{levelId}-{sha1}.json.gz</code>, with an
+ * <code>admin-{levelId}.properties</code> index recording the stamp and entity count
+ * the snapshot was built from. A snapshot is replaced as soon as the stamp or count of
+ * its level moves.
+ */
+@Singleton
+public class AdminSnapshotStore {
+
+    private static final Logger LOGGER = Logger.getLogger(AdminSnapshotStore.class);
+
+    private static final String ENCODING = "UTF-8";
+
+    private final File root;
+    private final ConcurrentMap<Integer, AdminSnapshot> snapshots = new ConcurrentHashMap<Integer, AdminSnapshot>();
+
+    @Inject
+    public AdminSnapshotStore(Properties properties) {
+        String path = properties.getProperty("sync.snapshots.root");
+        if(path != null) {
+            root = new File(path);
+        } else {
+            root = new File(System.getProperty("java.io.tmpdir"), "sigmah-sync");
+        }
+        if(!root.exists() && !root.mkdirs()) {
+            LOGGER.warn("Could not create the snapshot directory " + root.getAbsolutePath());
+        }
+    }
+
+    /**
+     * @return the snapshot of the given level if it was built from the given stamp and
+     *         entity count, or <code>null</code> if it must be (re)built.
+     */
+    public AdminSnapshot get(int levelId, long stamp, int count) {
+        AdminSnapshot snapshot = snapshots.get(levelId);
+        if(snapshot == null) {
+            snapshot = readIndex(levelId);
+            if(snapshot != null) {
+                snapshots.put(levelId, snapshot);
+            }
+        }
+        if(snapshot != null && snapshot.isCurrent(stamp, count)) {
+            return snapshot;
+        }
+        return null;
+    }
+
+    /**
+     * Compresses and stores the given JSON as the current snapshot of the level,
+     * replacing the previous one.
+     */
+    public synchronized AdminSnapshot put(int levelId, long stamp, int count, String json) throws IOException {
+        byte[] content = json.getBytes(ENCODING);
+        String hash = sha1(content);
+        File file = new File(root, "admin-" + levelId + "-" + hash + ".json.gz");
+
+        if(!file.exists()) {
+            File temp = new File(root, file.getName() + ".tmp");
+            OutputStream out = new GZIPOutputStream(new FileOutputStream(temp));
+            try {
+                out.write(content);
+            } finally {
+                out.close();
+            }
+            if(!temp.renameTo(file)) {
+                throw new IOException("Could not move " + temp.getAbsolutePath() + " to " + file.getAbsolutePath());
+            }
+        }
+
+        AdminSnapshot snapshot = new AdminSnapshot(levelId, stamp, count, hash, file);
+        writeIndex(snapshot);
+
+        AdminSnapshot previous = snapshots.put(levelId, snapshot);
+        if(previous != null && !previous.getFile().equals(file)) {
+            previous.getFile().delete();
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return the uncompressed JSON content of the snapshot
+     */
+    public String read(AdminSnapshot snapshot) throws IOException {
+        InputStream in = new GZIPInputStream(new BufferedInputStream(new FileInputStream(snapshot.getFile())));
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            IOUtil.copy(in, out);
+            return out.toString(ENCODING);
+        } finally {
+            in.close();
+        }
+    }
+
+    private AdminSnapshot readIndex(int levelId) {
+        File index = indexFile(levelId);
+        if(!index.exists()) {
+            return null;
+        }
+        try {
+            Properties properties = new Properties();
+            InputStream in = new FileInputStream(index);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+            String hash = properties.getProperty("hash");
+            return new AdminSnapshot(levelId,
+                    Long.parseLong(properties.getProperty("stamp")),
+                    Integer.parseInt(properties.getProperty("count")),
+                    hash,
+                    new File(root, "admin-" + levelId + "-" + hash + ".json.gz"));
+
+        } catch (Exception e) {
+            LOGGER.warn("Could not read snapshot index " + index.getAbsolutePath(), e);
+            return null;
+        }
+    }
+
+    private void writeIndex(AdminSnapshot snapshot) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("stamp", Long.toString(snapshot.getStamp()));
+        properties.setProperty("count", Integer.toString(snapshot.getCount()));
+        properties.setProperty("hash", snapshot.getHash());
+
+        OutputStream out = new FileOutputStream(indexFile(snapshot.getLevelId()));
+        try {
+            properties.store(out, "Admin level " + snapshot.getLevelId());
+        } finally {
+            out.close();
+        }
+    }
+
+    private File indexFile(int levelId) {
+        return new File(root, "admin-" + levelId + ".properties");
+    }
+
+    private static String sha1(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(content);
+            StringBuilder sb = new StringBuilder();
+            for(byte b : digest) {
+                sb.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -7,6 +7,7 @@ package org.sigmah.server.sync;
 
 import com.bedatadriven.rebar.sync.server.JpaUpdateBuilder;
 import com.google.inject.Inject;
+import org.apache.log4j.Logger;
 import org.json.JSONException;
 import org.sigmah.shared.command.GetSyncRegionUpdates;
 import org.sigmah.shared.command.result.SyncRegionUpdate;
@@ -14,26 +15,57 @@ import org.sigmah.shared.dao.AdminDAO;
 import org.sigmah.shared.domain.AdminEntity;
 import org.sigmah.shared.domain.User;
 
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 
+/**
+ * Builds the updates for an <code>admin/{levelId}</code> sync region.
+ * <p/>
+ * Clients without a copy of the level receive a pre-built {@link AdminSnapshot}. Clients
+ * that already hold the level only receive the entities edited since their version, as
+ * long as no entity they know of has been removed in the meantime.
+ */
 public class
         AdminUpdateBuilder implements UpdateBuilder {
+
+    private static final Logger LOGGER = Logger.getLogger(AdminUpdateBuilder.class);
+
     private AdminDAO dao;
+    private final EntityManager entityManager;
+    private final AdminSnapshotStore snapshotStore;
     protected int levelId;
     private AdminLocalState localState;
-    private static final int LAST_VERSION_NUMBER = 1;
+    private static final int LAST_VERSION_NUMBER = 2;
+
+    /**
+     * Columns of the client table before version 2, which added DateCreated and DateEdited.
+     */
+    private static final String VERSION_1_COLUMNS =
+            "AdminEntityId, AdminLevelId, AdminEntityParentId, Name, Soundex, Code, X1, Y1, X2, Y2";
     protected JpaUpdateBuilder builder;
 
 
     @Inject
-    public AdminUpdateBuilder(AdminDAO dao) {
+    public AdminUpdateBuilder(AdminDAO dao, EntityManager entityManager, AdminSnapshotStore snapshotStore) {
         this.dao = dao;
+        this.entityManager = entityManager;
+        this.snapshotStore = snapshotStore;
     }
 
     public SyncRegionUpdate build(User user, GetSyncRegionUpdates request) throws JSONException {
         parseLevelId(request);
         localState = new AdminLocalState(request.getLocalVersion());
 
+        Object[] probe = (Object[]) entityManager.createQuery(
+                "select max(e.dateEdited), count(e) from AdminEntity e where e.level.id = :levelId")
+                .setParameter("levelId", levelId)
+                .getSingleResult();
+        long stamp = probe[0] == null ? 0 : ((Date) probe[0]).getTime();
+        int count = ((Number) probe[1]).intValue();
+
         SyncRegionUpdate update = new SyncRegionUpdate();
         builder = new JpaUpdateBuilder();
 
@@ -41,16 +73,21 @@ public class
             /**
              * This level is out of date, delete all on the client and send all from the server
              */
-            builder.createTableIfNotExists(AdminEntity.class);
-            builder.executeStatement("delete from AdminEntity where AdminLevelId=" + levelId);
+            update.setSql(snapshotJson(stamp, count));
 
-            List<AdminEntity> entities = dao.query().level(levelId).execute();
-            update.setSql(makeJson(entities));
-            localState.complete = true;
-            localState.version = LAST_VERSION_NUMBER;
+        } else if(localState.stamp != stamp || localState.count != count) {
+            if(hasRemovedEntities()) {
+                update.setSql(snapshotJson(stamp, count));
+            } else {
+                update.setSql(deltaJson());
+            }
         }
 
-        update.setComplete(localState.complete);
+        localState.version = LAST_VERSION_NUMBER;
+        localState.stamp = stamp;
+        localState.count = count;
+
+        update.setComplete(true);
         update.setVersion(localState.toString());
 
         return update;
@@ -60,6 +97,91 @@ public class
         levelId = Integer.parseInt(request.getRegionId().substring("admin/".length()));
     }
 
+    /**
+     * The entities the client holds are those that existed at the time of its stamp: if
+     * fewer of them remain, some have been removed and the client must reload the level.
+     */
+    private boolean hasRemovedEntities() {
+        Number remaining = (Number) entityManager.createQuery(
+                "select count(e) from AdminEntity e where e.level.id = :levelId and " +
+                        "(e.dateCreated is null or e.dateCreated <= :stamp)")
+                .setParameter("levelId", levelId)
+                .setParameter("stamp", new Date(localState.stamp))
+                .getSingleResult();
+        return remaining.intValue() != localState.count;
+    }
+
+    private String snapshotJson(long stamp, int count) throws JSONException {
+        AdminSnapshot snapshot = snapshotStore.get(levelId, stamp, count);
+        try {
+            if(snapshot != null) {
+                return snapshotStore.read(snapshot);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not read the snapshot of admin level " + levelId + ", rebuilding it", e);
+        }
+
+        recreateTable();
+
+        List<AdminEntity> entities = dao.query().level(levelId).execute();
+        String json = makeJson(entities);
+
+        try {
+            snapshotStore.put(levelId, stamp, count, json);
+        } catch (IOException e) {
+            LOGGER.warn("Could not store the snapshot of admin level " + levelId, e);
+        }
+        return json;
+    }
+
+    /**
+     * Empties the client table of the entities of this level. The table of a client older
+     * than version 2 lacks the date columns, and SQLite cannot add them only when they are
+     * missing: the entities of the other levels are copied to a new table instead. Their
+     * dates are lost, which is harmless as only the server compares them.
+     */
+    private void recreateTable() throws JSONException {
+        builder.createTableIfNotExists(AdminEntity.class);
+        builder.executeStatement("drop table if exists AdminEntityPrevious");
+        builder.executeStatement("create table AdminEntityPrevious as select " + VERSION_1_COLUMNS +
+                " from AdminEntity where AdminLevelId<>" + levelId);
+        builder.executeStatement("drop table AdminEntity");
+        builder.createTableIfNotExists(AdminEntity.class);
+        builder.executeStatement("insert into AdminEntity (" + VERSION_1_COLUMNS + ") select " + VERSION_1_COLUMNS +
+                " from AdminEntityPrevious");
+        builder.executeStatement("drop table AdminEntityPrevious");
+    }
+
+    /**
+     * Sends the entities edited since the stamp of the client, including those edited in
+     * the same millisecond as the stamp which it may not have received yet. The entities
+     * are deleted before being inserted, so the client replaces those it already has.
+     */
+    private String deltaJson() throws JSONException {
+        List<AdminEntity> entities = entityManager.createQuery(
+                "select e from AdminEntity e where e.level.id = :levelId and e.dateEdited >= :stamp")
+                .setParameter("levelId", levelId)
+                .setParameter("stamp", new Date(localState.stamp))
+                .getResultList();
+
+        if(entities.isEmpty()) {
+            return null;
+        }
+
+        StringBuilder ids = new StringBuilder();
+        Iterator<AdminEntity> it = entities.iterator();
+        while(it.hasNext()) {
+            ids.append(it.next().getId());
+            if(it.hasNext()) {
+                ids.append(",");
+            }
+        }
+
+        builder.createTableIfNotExists(AdminEntity.class);
+        builder.executeStatement("delete from AdminEntity where AdminEntityId in (" + ids + ")");
+        return makeJson(entities);
+    }
+
     private String makeJson(List<AdminEntity> entities) throws JSONException {
         builder.insert(AdminEntity.class, entities);
         return builder.asJson();
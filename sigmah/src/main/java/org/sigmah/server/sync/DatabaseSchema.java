@@ -0,0 +1,102 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.sync;
+
+import org.sigmah.shared.domain.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Ids of the schema entities that belong to one {@link UserDatabase}, as of a given
+ * schema stamp. Computing these requires walking the database graph, so they are shared
+ * between all users who can see the database through the {@link SchemaCache}.
+ */
+public class DatabaseSchema {
+
+    private final int databaseId;
+    private final long stamp;
+    private final int countryId;
+    private final int ownerId;
+
+    private final Set<Integer> partnerIds = new TreeSet<Integer>();
+    private final Set<Integer> activityIds = new TreeSet<Integer>();
+    private final Set<Integer> indicatorIds = new TreeSet<Integer>();
+    private final Set<Integer> attributeGroupIds = new TreeSet<Integer>();
+    private final Set<Integer> attributeIds = new TreeSet<Integer>();
+
+    /**
+     * (ActivityId, AttributeGroupId) pairs
+     */
+    private final List<int[]> attributeGroupsInActivities = new ArrayList<int[]>();
+
+    public DatabaseSchema(UserDatabase database) {
+        this.databaseId = database.getId();
+        this.stamp = database.getLastSchemaUpdate().getTime();
+        this.countryId = database.getCountry().getId();
+        this.ownerId = database.getOwner().getId();
+
+        for(OrgUnit partner : database.getPartners()) {
+            partnerIds.add(partner.getId());
+        }
+        for(Activity activity : database.getActivities()) {
+            activityIds.add(activity.getId());
+            for(Indicator indicator : activity.getIndicators()) {
+                indicatorIds.add(indicator.getId());
+            }
+            for(AttributeGroup group : activity.getAttributeGroups()) {
+                attributeGroupsInActivities.add(new int[] { activity.getId(), group.getId() });
+                if(attributeGroupIds.add(group.getId())) {
+                    for(Attribute attribute : group.getAttributes()) {
+                        attributeIds.add(attribute.getId());
+                    }
+                }
+            }
+        }
+    }
+
+    public int getDatabaseId() {
+        return databaseId;
+    }
+
+    public long getStamp() {
+        return stamp;
+    }
+
+    public int getCountryId() {
+        return countryId;
+    }
+
+    public int getOwnerId() {
+        return ownerId;
+    }
+
+    public Set<Integer> getPartnerIds() {
+        return partnerIds;
+    }
+
+    public Set<Integer> getActivityIds() {
+        return activityIds;
+    }
+
+    public Set<Integer> getIndicatorIds() {
+        return indicatorIds;
+    }
+
+    public Set<Integer> getAttributeGroupIds() {
+        return attributeGroupIds;
+    }
+
+    public Set<Integer> getAttributeIds() {
+        return attributeIds;
+    }
+
+    public List<int[]> getAttributeGroupsInActivities() {
+        return attributeGroupsInActivities;
+    }
+}
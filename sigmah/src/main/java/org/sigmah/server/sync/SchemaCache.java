@@ -0,0 +1,49 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.sync;
+
+import com.google.inject.Singleton;
+import org.sigmah.shared.domain.UserDatabase;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least-recently-used cache of {@link DatabaseSchema}s keyed by database id and
+ * schema stamp, so that users sharing databases only pay for walking each database
+ * graph once per schema change.
+ */
+@Singleton
+public class SchemaCache {
+
+    public static final int MAX_ENTRIES = 500;
+
+    private final Map<String, DatabaseSchema> entries = new LinkedHashMap<String, DatabaseSchema>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, DatabaseSchema> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * @return the schema of the given database, computed from its entity graph if no
+     *         schema with the same stamp has been cached yet
+     */
+    public DatabaseSchema get(UserDatabase database) {
+        String key = database.getId() + ":" + database.getLastSchemaUpdate().getTime();
+        synchronized (entries) {
+            DatabaseSchema schema = entries.get(key);
+            if(schema != null) {
+                return schema;
+            }
+        }
+        DatabaseSchema schema = new DatabaseSchema(database);
+        synchronized (entries) {
+            entries.put(key, schema);
+        }
+        return schema;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.sync;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * State of the schema on the client, encoded as
+ * <code>version;databaseId=stamp;databaseId=stamp...</code> where each stamp is the
+ * time of the last schema change of the database visible to the user.
+ * <p/>
+ * Versions written before incremental updates (a single number) are read as an empty
+ * state, so those clients reload the whole schema once.
+ */
+public class SchemaLocalState {
+    int version = 0;
+    Map<Integer, Long> databases = new TreeMap<Integer, Long>();
+
+    public SchemaLocalState() {
+    }
+
+    public SchemaLocalState(int version) {
+        this.version = version;
+    }
+
+    public SchemaLocalState(String localState) {
+        if(localState != null && localState.indexOf(';') != -1) {
+            String[] tokens = localState.split(";");
+            version = Integer.parseInt(tokens[0]);
+            for(int i = 1; i < tokens.length; ++i) {
+                String[] entry = tokens[i].split("=");
+                databases.put(Integer.parseInt(entry[0]), Long.parseLong(entry[1]));
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return version == 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(version).append(';');
+        for(Map.Entry<Integer, Long> entry : databases.entrySet()) {
+            sb.append(entry.getKey()).append('=').append(entry.getValue()).append(';');
+        }
+        return sb.toString();
+    }
+}
@@ -7,6 +7,7 @@ package org.sigmah.server.sync;
 
 import com.bedatadriven.rebar.sync.server.JpaUpdateBuilder;
 import com.google.inject.Inject;
+import org.hibernate.ejb.HibernateEntityManager;
 import org.json.JSONException;
 import org.sigmah.shared.command.GetSyncRegionUpdates;
 import org.sigmah.shared.command.result.SyncRegionUpdate;
@@ -14,35 +15,26 @@ import org.sigmah.shared.dao.UserDatabaseDAO;
 import org.sigmah.shared.domain.*;
 
 import javax.persistence.EntityManager;
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
+/**
+ * Builds the updates for the <code>schema</code> sync region.
+ * <p/>
+ * Change tracking is done per database: the client version records the schema stamp
+ * of each database it holds, and only the databases whose stamp moved (or which are
+ * no longer visible) are removed and sent again. The small shared tables (countries,
+ * admin levels, location types, partners, owners and the user's permissions) are
+ * always reloaded along with a change.
+ */
 public class SchemaUpdateBuilder implements UpdateBuilder {
 
+    private static final int LAST_VERSION_NUMBER = 2;
+
     private final UserDatabaseDAO userDatabaseDAO;
     private final EntityManager entityManager;
-
-    private Set<Integer> countryIds = new HashSet<Integer>();
-    private List<Country> countries = new ArrayList<Country>();
-    private List<AdminLevel> adminLevels = new ArrayList<AdminLevel>();
+    private final SchemaCache schemaCache;
 
     private List<UserDatabase> databases = new ArrayList<UserDatabase>();
-
-    private Set<Integer> partnerIds = new HashSet<Integer>();
-    private List<OrgUnit> partners = new ArrayList<OrgUnit>();
-
-    private List<Activity> activities = new ArrayList<Activity>();
-    private List<Indicator> indicators = new ArrayList<Indicator>();
-    
-    private Set<Integer> attributeGroupIds = new HashSet<Integer>();
-    private List<AttributeGroup> attributeGroups = new ArrayList<AttributeGroup> ();
-    private List<Attribute> attributes = new ArrayList<Attribute>();
-    
-    private Set<Integer> userIds = new HashSet<Integer>();
-    private List<User> users = new ArrayList<User>();
-    private List<LocationType> locationTypes  = new ArrayList<LocationType>();
     private List<UserPermission> userPermissions;
 
     private Class[] schemaClasses = new Class[] {
@@ -59,10 +51,20 @@ public class SchemaUpdateBuilder implements UpdateBuilder {
             UserPermission.class
     };
 
+    private Class[] sharedClasses = new Class[] {
+            Country.class,
+            AdminLevel.class,
+            LocationType.class,
+            OrgUnit.class,
+            User.class,
+            UserPermission.class
+    };
+
     @Inject
-    public SchemaUpdateBuilder(UserDatabaseDAO userDatabaseDAO, EntityManager entityManager) {
+    public SchemaUpdateBuilder(UserDatabaseDAO userDatabaseDAO, EntityManager entityManager, SchemaCache schemaCache) {
         this.userDatabaseDAO = userDatabaseDAO;
         this.entityManager = entityManager;
+        this.schemaCache = schemaCache;
     }
 
     public SyncRegionUpdate build(User user, GetSyncRegionUpdates request) throws JSONException {
@@ -71,57 +73,115 @@ public class SchemaUpdateBuilder implements UpdateBuilder {
                 .setParameter(1, user.getId())
                 .getResultList();
 
-        long localVersion = request.getLocalVersion() == null ? 0 : Long.parseLong(request.getLocalVersion());
-        long serverVersion = getCurrentSchemaVersion(user);
+        SchemaLocalState localState = new SchemaLocalState(request.getLocalVersion());
+        SchemaLocalState serverState = getCurrentSchemaState(user);
 
         SyncRegionUpdate update = new SyncRegionUpdate();
-        update.setVersion(Long.toString(serverVersion));
+        update.setVersion(serverState.toString());
         update.setComplete(true);
 
-        if(localVersion == serverVersion) {
-            update.setComplete(true);
-        } else {
-            makeEntityLists(null);
-            update.setSql(buildSql());
+        if(localState.version != LAST_VERSION_NUMBER) {
+            update.setSql(buildSql(databases, localState.databases.keySet(), true));
+
+        } else if(!localState.databases.equals(serverState.databases)) {
+            Set<Integer> removed = new HashSet<Integer>(localState.databases.keySet());
+            List<UserDatabase> changed = new ArrayList<UserDatabase>();
+            for(UserDatabase db : databases) {
+                Long localStamp = localState.databases.get(db.getId());
+                if(localStamp == null || !localStamp.equals(serverState.databases.get(db.getId()))) {
+                    changed.add(db);
+                } else {
+                    removed.remove(db.getId());
+                }
+            }
+            update.setSql(buildSql(changed, removed, false));
         }
         return update;
     }
 
-    private String buildSql() throws JSONException {
+    /**
+     * @param changed the databases to (re)send
+     * @param removed the databases to remove from the client before sending
+     * @param reset true if all the schema tables should be emptied first
+     */
+    private String buildSql(List<UserDatabase> changed, Set<Integer> removed, boolean reset) throws JSONException {
         JpaUpdateBuilder builder = new JpaUpdateBuilder();
         for(Class schemaClass : schemaClasses) {
             builder.createTableIfNotExists(schemaClass);
-            builder.deleteAll(schemaClass);
+            if(reset) {
+                builder.deleteAll(schemaClass);
+            }
         }
+        builder.executeStatement("create table if not exists PartnerInDatabase (DatabaseId integer, PartnerId int)");
+        builder.executeStatement("create table if not exists AttributeGroupInActivity (ActivityId integer, AttributeGroupId integer)");
 
-        builder.insert(Country.class, countries);
-        builder.insert(AdminLevel.class, adminLevels);
-        builder.insert(UserDatabase.class, databases);
-        builder.insert(OrgUnit.class, partners);
-        builder.insert(Activity.class, activities);
-        builder.insert(Indicator.class, indicators);
-        builder.insert(AttributeGroup.class, attributeGroups);
-        builder.insert(Attribute.class, attributes);
-        builder.insert(LocationType.class, locationTypes);
-        builder.insert(User.class, users);
+        if(reset) {
+            builder.executeStatement("delete from PartnerInDatabase");
+            builder.executeStatement("delete from AttributeGroupInActivity");
+        } else {
+            for(Class sharedClass : sharedClasses) {
+                builder.deleteAll(sharedClass);
+            }
+            Set<Integer> stale = new HashSet<Integer>(removed);
+            Set<Integer> resentGroupIds = new HashSet<Integer>();
+            for(UserDatabase db : changed) {
+                stale.add(db.getId());
+                resentGroupIds.addAll(schemaCache.get(db).getAttributeGroupIds());
+            }
+            removeDatabases(builder, stale, resentGroupIds);
+        }
+
+        // shared tables are rebuilt from all the visible databases
+
+        Set<Integer> countryIds = new HashSet<Integer>();
+        Set<Integer> partnerIds = new HashSet<Integer>();
+        Set<Integer> userIds = new HashSet<Integer>();
+        for(UserDatabase db : databases) {
+            DatabaseSchema schema = schemaCache.get(db);
+            countryIds.add(schema.getCountryId());
+            partnerIds.addAll(schema.getPartnerIds());
+            userIds.add(schema.getOwnerId());
+        }
+
+        builder.insert(Country.class, findByIds("Country", countryIds));
+        builder.insert(AdminLevel.class, findByCountries("AdminLevel", countryIds));
+        builder.insert(OrgUnit.class, findByIds("OrgUnit", partnerIds));
+        builder.insert(LocationType.class, findByCountries("LocationType", countryIds));
+        builder.insert(User.class, findOwners(userIds));
         builder.insert(UserPermission.class, userPermissions);
 
-        builder.executeStatement("create table if not exists PartnerInDatabase (DatabaseId integer, PartnerId int)");
+        // database-specific tables are only sent for the changed databases
+
+        Set<Integer> activityIds = new HashSet<Integer>();
+        Set<Integer> indicatorIds = new HashSet<Integer>();
+        Set<Integer> attributeGroupIds = new HashSet<Integer>();
+        Set<Integer> attributeIds = new HashSet<Integer>();
+        for(UserDatabase db : changed) {
+            DatabaseSchema schema = schemaCache.get(db);
+            activityIds.addAll(schema.getActivityIds());
+            indicatorIds.addAll(schema.getIndicatorIds());
+            attributeGroupIds.addAll(schema.getAttributeGroupIds());
+            attributeIds.addAll(schema.getAttributeIds());
+        }
+
+        builder.insert(UserDatabase.class, changed);
+        builder.insert(Activity.class, findByIds("Activity", activityIds));
+        builder.insert(Indicator.class, findByIds("Indicator", indicatorIds));
+        builder.insert(AttributeGroup.class, findByIds("AttributeGroup", attributeGroupIds));
+        builder.insert(Attribute.class, findByIds("Attribute", attributeIds));
+
         builder.beginPreparedStatement("insert into PartnerInDatabase (DatabaseId, PartnerId) values (?, ?) ");
-        for(UserDatabase db : databases) {
-            for(OrgUnit orgUnit : db.getPartners()) {
-                builder.addExecution(db.getId(), orgUnit.getId());
+        for(UserDatabase db : changed) {
+            for(Integer partnerId : schemaCache.get(db).getPartnerIds()) {
+                builder.addExecution(db.getId(), partnerId);
             }
         }
         builder.finishPreparedStatement();
 
-        builder.executeStatement("create table if not exists AttributeGroupInActivity (ActivityId integer, AttributeGroupId integer)");
         builder.beginPreparedStatement("insert into AttributeGroupInActivity (ActivityId, AttributeGroupId) values (?,?)");
-        for(UserDatabase db : databases) {
-            for(Activity activity : db.getActivities()) {
-                for(AttributeGroup group : activity.getAttributeGroups()) {
-                    builder.addExecution(activity.getId(), group.getId());
-                }
+        for(UserDatabase db : changed) {
+            for(int[] link : schemaCache.get(db).getAttributeGroupsInActivities()) {
+                builder.addExecution(link[0], link[1]);
             }
         }
         builder.finishPreparedStatement();
@@ -129,62 +189,92 @@ public class SchemaUpdateBuilder implements UpdateBuilder {
         return builder.asJson();
     }
 
-    private void makeEntityLists(User user) {
-        for(UserDatabase database : databases) {
-        	if(!userIds.contains(database.getOwner().getId())) {
-        		User u = database.getOwner();
-        		// don't send hashed password to client
-        		u.setHashedPassword("");
-        		users.add(u);
-        		userIds.add(u.getId());
-        	}
-            
-            if(!countryIds.contains(database.getCountry().getId())) {
-                countries.add(database.getCountry());
-                adminLevels.addAll(database.getCountry().getAdminLevels());
-                countryIds.add(database.getCountry().getId());
-                for (org.sigmah.shared.domain.LocationType l: database.getCountry().getLocationTypes()) {
-                	locationTypes.add(l);
-                }
-            }
-            for(OrgUnit partner : database.getPartners()) {
-                if(!partnerIds.contains(partner.getId())) {
-                    partners.add(partner);
-                    partnerIds.add(partner.getId());
-                }
-            }
-            for(Activity activity : database.getActivities()) {
-                activities.add(activity);
-                for(Indicator indicator : activity.getIndicators()) {
-                    indicators.add(indicator);
-                }
-                for(AttributeGroup g: activity.getAttributeGroups()) {
-                	if (!attributeGroupIds.contains(g.getId())) {
-                		attributeGroups.add(g);
-                        attributeGroupIds.add(g.getId());
-                		for (Attribute a: g.getAttributes()) {
-                			attributes.add(a);
-                		}
-                	}
-                }
+    /**
+     * @param databaseIds the databases to remove from the client
+     * @param resentGroupIds the attribute groups which will be sent again
+     */
+    private void removeDatabases(JpaUpdateBuilder builder, Set<Integer> databaseIds, Set<Integer> resentGroupIds) throws JSONException {
+        if(databaseIds.isEmpty()) {
+            return;
+        }
+        String ids = idList(databaseIds);
+        String activities = "(select ActivityId from Activity where DatabaseId in " + ids + ")";
+
+        // attribute groups can be shared with the activities of other databases,
+        // they are kept on the client unless they are sent again
+        String sharedGroups = "(select AttributeGroupId from AttributeGroupInActivity where ActivityId not in " + activities + ")";
+        String groups = "(select AttributeGroupId from AttributeGroupInActivity where ActivityId in " + activities +
+                " and (AttributeGroupId not in " + sharedGroups +
+                (resentGroupIds.isEmpty() ? "" : " or AttributeGroupId in " + idList(resentGroupIds)) + "))";
+
+        builder.executeStatement("delete from Attribute where AttributeGroupId in " + groups);
+        builder.executeStatement("delete from AttributeGroup where AttributeGroupId in " + groups);
+        builder.executeStatement("delete from AttributeGroupInActivity where ActivityId in " + activities);
+        builder.executeStatement("delete from Indicator where ActivityId in " + activities);
+        builder.executeStatement("delete from Activity where DatabaseId in " + ids);
+        builder.executeStatement("delete from PartnerInDatabase where DatabaseId in " + ids);
+        builder.executeStatement("delete from UserDatabase where DatabaseId in " + ids);
+    }
+
+    private List findByIds(String entityName, Collection<Integer> ids) {
+        if(ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return entityManager.createQuery("select e from " + entityName + " e where e.id in (:ids)")
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+
+    private List findByCountries(String entityName, Collection<Integer> countryIds) {
+        if(countryIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return entityManager.createQuery("select e from " + entityName + " e where e.country.id in (:ids)")
+                .setParameter("ids", countryIds)
+                .getResultList();
+    }
+
+    private List<User> findOwners(Collection<Integer> userIds) {
+        List<User> owners = findByIds("User", userIds);
+        org.hibernate.Session session = ((HibernateEntityManager) entityManager).getSession();
+        for(User owner : owners) {
+            // don't send hashed password to client, and make sure the
+            // change is never flushed back to the database
+            session.evict(owner);
+            owner.setHashedPassword("");
+        }
+        return owners;
+    }
+
+    private static String idList(Collection<Integer> ids) {
+        StringBuilder sb = new StringBuilder("(");
+        Iterator<Integer> it = ids.iterator();
+        while(it.hasNext()) {
+            sb.append(it.next());
+            if(it.hasNext()) {
+                sb.append(",");
             }
         }
+        return sb.append(")").toString();
     }
 
-    public long getCurrentSchemaVersion(User user) {
-        long currentVersion = 1;
+    /**
+     * @return the schema stamp of each database visible to the user, taking into account
+     *         changes to the user's own permissions
+     */
+    public SchemaLocalState getCurrentSchemaState(User user) {
+        SchemaLocalState state = new SchemaLocalState(LAST_VERSION_NUMBER);
         for(UserDatabase db : databases) {
-            if(db.getLastSchemaUpdate().getTime() > currentVersion) {
-                currentVersion = db.getLastSchemaUpdate().getTime();
-            }
+            long stamp = db.getLastSchemaUpdate().getTime();
 
             if(db.getOwner().getId() != user.getId()) {
                 UserPermission permission = db.getPermissionByUser(user);
-                if(permission.getLastSchemaUpdate().getTime() > permission.getId()) {
-                    currentVersion = permission.getLastSchemaUpdate().getTime();
+                if(permission != null && permission.getLastSchemaUpdate().getTime() > stamp) {
+                    stamp = permission.getLastSchemaUpdate().getTime();
                 }
             }
+            state.databases.put(db.getId(), stamp);
         }
-        return currentVersion;
+        return state;
     }
 }
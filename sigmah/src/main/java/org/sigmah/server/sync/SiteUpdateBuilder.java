@@ -7,6 +7,7 @@ package org.sigmah.server.sync;
 
 import com.bedatadriven.rebar.sync.server.JpaUpdateBuilder;
 import com.google.inject.Inject;
+import org.apache.log4j.Logger;
 import org.json.JSONException;
 import org.sigmah.shared.command.GetSyncRegionUpdates;
 import org.sigmah.shared.command.result.SyncRegionUpdate;
@@ -16,23 +17,65 @@ import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 
+/**
+ * Builds the updates for a <code>site/{databaseId}/{partnerId}</code> sync region.
+ * <p/>
+ * Sites are fetched in pages whose size grows with each round until either the estimated
+ * payload (sites plus their dependent rows) reaches {@link #TARGET_ROW_COUNT}, the time
+ * spent reaches {@link #TARGET_MILLIS} or {@link #MAX_BATCH_SIZE} sites have been collected.
+ * Dependent rows are loaded and deleted with one set-based statement per table and page.
+ * <p/>
+ * The resulting JSON is compressed on the wire by the gzip support of the GWT-RPC servlet.
+ */
 public class SiteUpdateBuilder implements UpdateBuilder {
 
+    private static final Logger LOGGER = Logger.getLogger(SiteUpdateBuilder.class);
+
+    /**
+     * Number of sites requested by the first page of a batch.
+     */
+    public static final int MIN_BATCH_SIZE = 25;
+
+    /**
+     * Upper bound on the number of sites sent in a single update.
+     */
+    public static final int MAX_BATCH_SIZE = 2000;
+
+    /**
+     * Approximate number of rows (sites, attribute values, reporting periods and
+     * indicator values) after which the batch is closed.
+     */
+    public static final int TARGET_ROW_COUNT = 10000;
+
+    /**
+     * Time budget after which no further page is fetched.
+     */
+    public static final long TARGET_MILLIS = 3000;
+
     private final EntityManager entityManager;
 
     private int databaseId;
     private int orgUnitId;
-    public static final int MAX_RESULTS = 25;
 
-    private List<Site> all;
+    private List<Site> all = new ArrayList<Site>();
     private List<Site> created = new ArrayList<Site>();
     private List<Site> updated = new ArrayList<Site>();
     private List<Site> deleted = new ArrayList<Site>();
 
     private List<Integer> updatedOrDeleted = new ArrayList<Integer>();
     private List<Integer> createdOrUpdated = new ArrayList<Integer>();
+
+    private List<AttributeValue> attributeValues = new ArrayList<AttributeValue>();
+    private List<ReportingPeriod> reportingPeriods = new ArrayList<ReportingPeriod>();
+    private List<IndicatorValue> indicatorValues = new ArrayList<IndicatorValue>();
+
+    private boolean complete;
+    private int rowCount;
+
     private final JpaUpdateBuilder builder;
     private Timestamp localVersion;
 
@@ -52,124 +95,181 @@ public class SiteUpdateBuilder implements UpdateBuilder {
 
         localVersion = TimestampHelper.fromString(request.getLocalVersion());
 
-        // Retrieve the sites to that have changed in some way since our last call
+        try {
+            // Retrieve the sites to that have changed in some way since our last call
 
-        retrieveNextBatchOfModifiedSites(localVersion);
+            retrieveNextBatchOfModifiedSites();
 
-        if(!updatedOrDeleted.isEmpty()) {
-            removeDependentAttributeValuesOfDeletedOrUpdatedSites();
-            removeDependentIndicatorValuesOfDeletedOrUpdatedSites();
-            removeDependentReportingPeriodsOfDeletedOrUpdatedSites();
-        }
+            if(!updatedOrDeleted.isEmpty()) {
+                removeDependentIndicatorValuesOfDeletedOrUpdatedSites();
+                removeDependentAttributeValuesOfDeletedOrUpdatedSites();
+                removeDependentReportingPeriodsOfDeletedOrUpdatedSites();
+            }
+
+            builder.delete(Site.class, deleted);
+            builder.update(Site.class, updated);
+            builder.insert(Site.class, created);
+
+            if(!createdOrUpdated.isEmpty()) {
+                builder.insert(AttributeValue.class, attributeValues);
+                builder.insert(ReportingPeriod.class, reportingPeriods);
+                builder.insert(IndicatorValue.class, indicatorValues);
+            }
+
+            SyncRegionUpdate update = new SyncRegionUpdate();
+            update.setComplete(complete);
+            if(all.isEmpty()) {
+                update.setVersion(request.getLocalVersion());
+            } else {
+                update.setVersion(TimestampHelper.toString(all.get(all.size()-1).getDateEdited()));
+                update.setSql(builder.asJson());
+            }
 
-        builder.delete(Site.class, deleted);
-        builder.update(Site.class, updated);
-        builder.insert(Site.class, created);
+            return update;
 
-        if(!createdOrUpdated.isEmpty()) {
-            insertDependentAttributeValues();
-            insertDependentReportingPeriods();
-            insertDependentIndicatorValues();
+        } finally {
+            entityManager.close();
         }
+    }
+
+    /**
+     * Fetches pages of modified sites, together with their dependent rows, until the batch
+     * is large enough or there are no more modified sites.
+     */
+    private void retrieveNextBatchOfModifiedSites() {
+        long start = System.currentTimeMillis();
+        int pageSize = MIN_BATCH_SIZE;
+
+        while(true) {
+            List<Site> page = queryModifiedSites(all.size(), pageSize);
+            classify(page);
+            retrieveDependentRows(page);
+
+            if(page.size() < pageSize) {
+                complete = true;
+                break;
+            }
 
-        SyncRegionUpdate update = new SyncRegionUpdate();
-        update.setComplete(all.size() < MAX_RESULTS);
-        if(all.isEmpty()) {
-            update.setVersion(request.getLocalVersion());
-        } else {
-            update.setVersion(TimestampHelper.toString(all.get(all.size()-1).getDateEdited()));
-            update.setSql(builder.asJson());
+            long elapsed = System.currentTimeMillis() - start;
+            if(rowCount >= TARGET_ROW_COUNT || elapsed >= TARGET_MILLIS || all.size() >= MAX_BATCH_SIZE) {
+                break;
+            }
+            pageSize = nextPageSize(pageSize);
         }
 
-        entityManager.close();
-        
-        return update;
+        if(LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Site batch for site/" + databaseId + "/" + orgUnitId + ": " + all.size() +
+                    " sites, " + rowCount + " rows in " + (System.currentTimeMillis() - start) + " ms");
+        }
     }
 
+    /**
+     * Estimates how many more sites fit in the remaining row budget based on the average
+     * number of rows per site observed so far.
+     */
+    private int nextPageSize(int pageSize) {
+        double rowsPerSite = (double) rowCount / (double) all.size();
+        int remaining = (int) ((TARGET_ROW_COUNT - rowCount) / rowsPerSite);
+        int next = Math.min(pageSize * 2, remaining);
+        next = Math.min(next, MAX_BATCH_SIZE - all.size());
+        return Math.max(next, MIN_BATCH_SIZE);
+    }
 
-    private void retrieveNextBatchOfModifiedSites(Timestamp localVersion) {
-        all = entityManager.createQuery(
+    private List<Site> queryModifiedSites(int firstResult, int maxResults) {
+        return entityManager.createQuery(
                 "select s from Site s " +
                         "WHERE  (s.dateEdited > :localVersion) AND " +
                         "(s.dateDeleted is NULL or s.dateCreated < :localVersion) AND " +
                         "(s.activity.database = :database) AND " +
                         "(s.partner = :orgUnit)" +
-                        "ORDER BY s.dateEdited")
-                .setMaxResults(MAX_RESULTS)
+                        "ORDER BY s.dateEdited, s.id")
+                .setFirstResult(firstResult)
+                .setMaxResults(maxResults)
                 .setParameter("localVersion", localVersion)
                 .setParameter("database", entityManager.getReference(UserDatabase.class, databaseId))
                 .setParameter("orgUnit", entityManager.getReference(OrgUnit.class, orgUnitId))
                 .getResultList();
+    }
 
-
-        for(Site site : all) {
+    private void classify(List<Site> page) {
+        for(Site site : page) {
+            all.add(site);
+            rowCount++;
             if(site.isDeleted()) {
                 deleted.add(site);
                 updatedOrDeleted.add(site.getId());
-                createdOrUpdated.add(site.getId());
             } else if(TimestampHelper.isAfter(site.getDateCreated(), localVersion)) {
                 created.add(site);
                 createdOrUpdated.add(site.getId());
             } else {
                 updated.add(site);
                 updatedOrDeleted.add(site.getId());
+                createdOrUpdated.add(site.getId());
             }
         }
     }
 
-    private void removeDependentAttributeValuesOfDeletedOrUpdatedSites() throws JSONException {
-        builder.beginPreparedStatement("delete from AttributeValue where SiteId = ?");
-        addIdsOfUpdatedOrDeleted(builder);
-        builder.finishPreparedStatement();
-    }
-
-    private void removeDependentReportingPeriodsOfDeletedOrUpdatedSites() throws JSONException {
-        builder.beginPreparedStatement("delete from ReportingPeriod where SiteId = ?");
-        addIdsOfUpdatedOrDeleted(builder);
-        builder.finishPreparedStatement();
-    }
-
-    private void removeDependentIndicatorValuesOfDeletedOrUpdatedSites() throws JSONException {
-        builder.beginPreparedStatement("delete from IndicatorValue where IndicatorValue.ReportingPeriodId in " +
-                "(select ReportingPeriodId from ReportingPeriod where SiteId = ?) ");
-        addIdsOfUpdatedOrDeleted(builder);
-        builder.finishPreparedStatement();
-    }
+    private void retrieveDependentRows(List<Site> page) {
+        List<Integer> siteIds = new ArrayList<Integer>();
+        for(Site site : page) {
+            if(!site.isDeleted()) {
+                siteIds.add(site.getId());
+            }
+        }
+        if(siteIds.isEmpty()) {
+            return;
+        }
 
-    private void insertDependentAttributeValues() throws JSONException {
         List<AttributeValue> values = entityManager.createQuery(
                 "SELECT av from Site s " +
                         "JOIN s.attributeValues av " +
                         "WHERE s.id in (:sites)")
-                .setParameter("sites", createdOrUpdated)
+                .setParameter("sites", siteIds)
                 .getResultList();
+        attributeValues.addAll(values);
 
-        builder.insert(AttributeValue.class, values);
-    }
-
-    private void insertDependentReportingPeriods() throws JSONException {
-        List<ReportingPeriod> rps = entityManager.createQuery("SELECT p from Site s JOIN s.reportingPeriods p WHERE " +
-                "s.id in (:sites)")
-                .setParameter("sites", createdOrUpdated)
+        List<ReportingPeriod> periods = entityManager.createQuery(
+                "SELECT p from Site s JOIN s.reportingPeriods p WHERE " +
+                        "s.id in (:sites)")
+                .setParameter("sites", siteIds)
                 .getResultList();
+        reportingPeriods.addAll(periods);
 
-        builder.insert(ReportingPeriod.class, rps);
-    }
-
-    private void insertDependentIndicatorValues() throws JSONException {
-        List<IndicatorValue> values = entityManager.createQuery(
+        List<IndicatorValue> indicators = entityManager.createQuery(
                 "SELECT v from Site s JOIN s.reportingPeriods p JOIN p.indicatorValues v " +
                         "WHERE s.id in (:sites)")
-                .setParameter("sites", createdOrUpdated)
+                .setParameter("sites", siteIds)
                 .getResultList();
+        indicatorValues.addAll(indicators);
 
-        builder.insert(IndicatorValue.class, values);
+        rowCount += values.size() + periods.size() + indicators.size();
     }
 
-    private void addIdsOfUpdatedOrDeleted(JpaUpdateBuilder builder) throws JSONException {
-        for(Integer siteId : updatedOrDeleted) {
-            builder.addExecution(siteId);
+    private void removeDependentAttributeValuesOfDeletedOrUpdatedSites() throws JSONException {
+        builder.executeStatement("delete from AttributeValue where SiteId in " +
+                idList(updatedOrDeleted));
+    }
+
+    private void removeDependentReportingPeriodsOfDeletedOrUpdatedSites() throws JSONException {
+        builder.executeStatement("delete from ReportingPeriod where SiteId in " +
+                idList(updatedOrDeleted));
+    }
+
+    private void removeDependentIndicatorValuesOfDeletedOrUpdatedSites() throws JSONException {
+        builder.executeStatement("delete from IndicatorValue where IndicatorValue.ReportingPeriodId in " +
+                "(select ReportingPeriodId from ReportingPeriod where SiteId in " + idList(updatedOrDeleted) + ")");
+    }
+
+    private static String idList(Collection<Integer> ids) {
+        StringBuilder sb = new StringBuilder("(");
+        Iterator<Integer> it = ids.iterator();
+        while(it.hasNext()) {
+            sb.append(it.next());
+            if(it.hasNext()) {
+                sb.append(",");
+            }
         }
+        return sb.append(")").toString();
     }
 
     private void parseRegion(String regionId) {
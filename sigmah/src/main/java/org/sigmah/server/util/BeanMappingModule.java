@@ -25,6 +25,14 @@ public class BeanMappingModule extends AbstractModule {
     @Provides
     @Singleton
     Mapper provideMapper() {
+        return new SpecializedMapper(newDozerMapper());
+    }
+
+    /**
+     * @return a plain Dozer mapper configured with the application's mapping files,
+     *         without the specialized mappings
+     */
+    public static DozerBeanMapper newDozerMapper() {
         List<String> mappingFiles = new ArrayList<String>();
         mappingFiles.add("dozer-admin-mapping.xml");
         mappingFiles.add("dozer-schema-mapping.xml");
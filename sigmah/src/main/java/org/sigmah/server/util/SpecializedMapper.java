@@ -0,0 +1,159 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.util;
+
+import org.dozer.Mapper;
+import org.dozer.MappingException;
+import org.hibernate.proxy.HibernateProxy;
+import org.sigmah.shared.domain.Activity;
+import org.sigmah.shared.domain.Attribute;
+import org.sigmah.shared.domain.AttributeGroup;
+import org.sigmah.shared.domain.Indicator;
+import org.sigmah.shared.domain.OrgUnit;
+import org.sigmah.shared.dto.ActivityDTO;
+import org.sigmah.shared.dto.AttributeDTO;
+import org.sigmah.shared.dto.AttributeGroupDTO;
+import org.sigmah.shared.dto.IndicatorDTO;
+import org.sigmah.shared.dto.PartnerDTO;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link Mapper} with hand-written mappings for the entities mapped once per row when
+ * building the schema ({@link Activity}, {@link AttributeGroup}, {@link Attribute},
+ * {@link Indicator} and {@link OrgUnit} as a partner), falling back to Dozer for
+ * everything else.
+ * <p/>
+ * The specialized mappings produce the same DTOs as the wildcard mappings of
+ * <code>dozer-schema-mapping.xml</code>, without the reflective property lookups. They
+ * must be kept in sync with that file when the entities or DTOs change.
+ */
+public class SpecializedMapper implements Mapper {
+
+    private final Mapper dozer;
+
+    public SpecializedMapper(Mapper dozer) {
+        this.dozer = dozer;
+    }
+
+    @Override
+    public <T> T map(Object source, Class<T> destinationClass) throws MappingException {
+        if (source != null) {
+            Class<?> sourceClass = persistentClass(source);
+            if (sourceClass == Activity.class && destinationClass == ActivityDTO.class) {
+                return destinationClass.cast(mapActivity((Activity) source));
+            } else if (sourceClass == Indicator.class && destinationClass == IndicatorDTO.class) {
+                return destinationClass.cast(mapIndicator((Indicator) source));
+            } else if (sourceClass == AttributeGroup.class && destinationClass == AttributeGroupDTO.class) {
+                return destinationClass.cast(mapAttributeGroup((AttributeGroup) source));
+            } else if (sourceClass == Attribute.class && destinationClass == AttributeDTO.class) {
+                return destinationClass.cast(mapAttribute((Attribute) source));
+            } else if (sourceClass == OrgUnit.class && destinationClass == PartnerDTO.class) {
+                return destinationClass.cast(mapPartner((OrgUnit) source));
+            }
+        }
+        return dozer.map(source, destinationClass);
+    }
+
+    @Override
+    public void map(Object source, Object destination) throws MappingException {
+        dozer.map(source, destination);
+    }
+
+    @Override
+    public <T> T map(Object source, Class<T> destinationClass, String mapId) throws MappingException {
+        return dozer.map(source, destinationClass, mapId);
+    }
+
+    @Override
+    public void map(Object source, Object destination, String mapId) throws MappingException {
+        dozer.map(source, destination, mapId);
+    }
+
+    private static Class<?> persistentClass(Object source) {
+        if (source instanceof HibernateProxy) {
+            return ((HibernateProxy) source).getHibernateLazyInitializer().getPersistentClass();
+        }
+        return source.getClass();
+    }
+
+    static ActivityDTO mapActivity(Activity activity) {
+        ActivityDTO dto = new ActivityDTO();
+        dto.setId(activity.getId());
+        dto.setName(activity.getName());
+        dto.setCategory(activity.getCategory());
+        dto.setAssessment(activity.isAssessment());
+        dto.setReportingFrequency(activity.getReportingFrequency());
+        dto.setMapIcon(activity.getMapIcon());
+        if (activity.getLocationType() != null) {
+            dto.setLocationTypeId(activity.getLocationType().getId());
+        }
+
+        List<AttributeGroupDTO> groups = new ArrayList<AttributeGroupDTO>(activity.getAttributeGroups().size());
+        for (AttributeGroup group : activity.getAttributeGroups()) {
+            groups.add(mapAttributeGroup(group));
+        }
+        dto.setAttributeGroups(groups);
+
+        List<IndicatorDTO> indicators = new ArrayList<IndicatorDTO>(activity.getIndicators().size());
+        for (Indicator indicator : activity.getIndicators()) {
+            indicators.add(mapIndicator(indicator));
+        }
+        dto.setIndicators(indicators);
+
+        return dto;
+    }
+
+    static AttributeGroupDTO mapAttributeGroup(AttributeGroup group) {
+        AttributeGroupDTO dto = new AttributeGroupDTO();
+        dto.setId(group.getId());
+        dto.setName(group.getName());
+        dto.setMultipleAllowed(group.isMultipleAllowed());
+
+        List<AttributeDTO> attributes = new ArrayList<AttributeDTO>(group.getAttributes().size());
+        for (Attribute attribute : group.getAttributes()) {
+            attributes.add(mapAttribute(attribute));
+        }
+        dto.setAttributes(attributes);
+
+        return dto;
+    }
+
+    static AttributeDTO mapAttribute(Attribute attribute) {
+        AttributeDTO dto = new AttributeDTO();
+        dto.setId(attribute.getId());
+        dto.setName(attribute.getName());
+        return dto;
+    }
+
+    static IndicatorDTO mapIndicator(Indicator indicator) {
+        IndicatorDTO dto = new IndicatorDTO();
+        dto.setId(indicator.getId());
+        dto.setName(indicator.getName());
+        dto.setUnits(indicator.getUnits());
+        dto.setCode(indicator.getCode());
+        dto.setDescription(indicator.getDescription());
+        dto.setCategory(indicator.getCategory());
+        dto.setObjective(indicator.getObjective());
+        dto.setAggregation(indicator.getAggregation());
+        dto.setCollectIntervention(indicator.getCollectIntervention());
+        dto.setCollectMonitoring(indicator.isCollectMonitoring());
+        dto.setDirectDataEntryEnabled(indicator.isDirectDataEntryEnabled());
+        dto.setSourceOfVerification(indicator.getSourceOfVerification());
+        dto.setDatabaseId(indicator.getDatabase() == null ? null : indicator.getDatabase().getId());
+        dto.setLabels(indicator.getLabels() == null ? null : new ArrayList<String>(indicator.getLabels()));
+        return dto;
+    }
+
+    static PartnerDTO mapPartner(OrgUnit unit) {
+        PartnerDTO dto = new PartnerDTO();
+        dto.setId(unit.getId());
+        dto.setName(unit.getName());
+        dto.setFullName(unit.getFullName());
+        return dto;
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.util.logging;
+
+import org.apache.commons.mail.EmailException;
+import org.apache.commons.mail.SimpleEmail;
+import org.apache.log4j.Logger;
+import org.sigmah.server.mail.MailSender;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Mails the exceptions alerts in periodic digests.
+ * <p>
+ * The calling thread only counts the exception under its fingerprint (type and top frames
+ * of its root cause), the digests are built and sent by a background thread. At most
+ * {@link #MAX_PENDING} distinct exceptions are held between two digests, at most
+ * {@link #MAX_DIGESTS_PER_HOUR} digests are sent per hour and the stack trace of an
+ * exception is sent at most once per hour.
+ */
+class ExceptionAlerter {
+
+    private static final Logger LOGGER = Logger.getLogger(ExceptionAlerter.class);
+
+    static final int MAX_PENDING = 50;
+    static final int MAX_DIGESTS_PER_HOUR = 10;
+
+    private static final int FINGERPRINT_FRAMES = 3;
+    private static final long DIGEST_INTERVAL_SECONDS = 60;
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final int TAKEN = -1;
+
+    private static class Pending {
+
+        private final String fingerprint;
+        private final String method;
+        private final String message;
+        private final String stackTrace;
+        private final long firstSeen = System.currentTimeMillis();
+        private volatile long lastSeen = firstSeen;
+
+        /**
+         * Number of times the exception was thrown, {@code TAKEN} once the entry is taken by
+         * a digest.
+         */
+        private final AtomicInteger count = new AtomicInteger();
+
+        /**
+         * Number of times the exception was thrown when the entry was taken by a digest,
+         * only used by the worker thread.
+         */
+        private int total;
+
+        private Pending(String fingerprint, String method, Throwable caught) {
+            this.fingerprint = fingerprint;
+            this.method = method;
+            this.message = caught.getClass().getName() + ": " + caught.getMessage();
+            this.stackTrace = stackTraceToString(caught);
+        }
+
+        /**
+         * Counts the exception once more, unless the entry was already taken by a digest.
+         */
+        private boolean increment() {
+            while (true) {
+                int current = count.get();
+                if (current == TAKEN) {
+                    return false;
+                }
+                if (count.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Takes the entry for a digest, the next exceptions with the same fingerprint are
+         * counted in a new entry.
+         */
+        private void take() {
+            total = count.getAndSet(TAKEN);
+        }
+    }
+
+    private final MailSender mailSender;
+    private final List<String> recipients;
+
+    private final ConcurrentMap<String, Pending> pending = new ConcurrentHashMap<String, Pending>();
+    private final AtomicInteger dropped = new AtomicInteger();
+
+    // only used by the worker thread
+    private final LinkedList<Long> digestsSent = new LinkedList<Long>();
+    private final Map<String, Long> tracesSent = new HashMap<String, Long>();
+
+    private final ScheduledExecutorService worker;
+
+    private final Runnable flushTask = new Runnable() {
+
+        @Override
+        public void run() {
+            try {
+                flush();
+            } catch (Throwable e) {
+                LOGGER.warn("Exception thrown while trying to email alert about previous exceptions", e);
+            }
+        }
+    };
+
+    ExceptionAlerter(MailSender mailSender, List<String> recipients) {
+        this.mailSender = mailSender;
+        this.recipients = new ArrayList<String>(recipients);
+
+        this.worker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "exception-alerts");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.worker.scheduleWithFixedDelay(flushTask, DIGEST_INTERVAL_SECONDS, DIGEST_INTERVAL_SECONDS,
+                TimeUnit.SECONDS);
+    }
+
+    /**
+     * Adds an exception to the next digest.
+     *
+     * @param method
+     *            The name of the method which threw the exception.
+     * @param caught
+     *            The exception.
+     */
+    void alert(String method, Throwable caught) {
+        String fingerprint = fingerprint(caught);
+
+        while (true) {
+            Pending entry = pending.get(fingerprint);
+            if (entry == null) {
+                if (pending.size() >= MAX_PENDING) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+                Pending created = new Pending(fingerprint, method, caught);
+                entry = pending.putIfAbsent(fingerprint, created);
+                if (entry == null) {
+                    entry = created;
+                }
+            }
+
+            entry.lastSeen = System.currentTimeMillis();
+            if (entry.increment()) {
+                return;
+            }
+            // the entry was taken by the digest being built, the exception is counted in
+            // a new entry for the next one
+            pending.remove(fingerprint, entry);
+        }
+    }
+
+    /**
+     * Sends the exceptions counted so far and stops the background thread.
+     */
+    void shutdown() {
+        worker.execute(flushTask);
+        worker.shutdown();
+    }
+
+    /**
+     * Sends the exceptions counted since the last digest, unless the hourly limit of digests
+     * is reached, in which case they keep being counted for the next one.
+     *
+     * @return the number of exceptions sent, {@code 0} if no digest was sent.
+     */
+    int flush() throws EmailException {
+        if (pending.isEmpty() && dropped.get() == 0) {
+            return 0;
+        }
+
+        long now = System.currentTimeMillis();
+        while (!digestsSent.isEmpty() && digestsSent.getFirst() < now - HOUR_MILLIS) {
+            digestsSent.removeFirst();
+        }
+        if (digestsSent.size() >= MAX_DIGESTS_PER_HOUR) {
+            return 0;
+        }
+
+        List<Pending> entries = new ArrayList<Pending>();
+        for (String fingerprint : new ArrayList<String>(pending.keySet())) {
+            Pending entry = pending.remove(fingerprint);
+            if (entry != null) {
+                entry.take();
+                if (entry.total > 0) {
+                    entries.add(entry);
+                }
+            }
+        }
+        int droppedCount = dropped.getAndSet(0);
+        if (entries.isEmpty() && droppedCount == 0) {
+            return 0;
+        }
+
+        Collections.sort(entries, new Comparator<Pending>() {
+
+            @Override
+            public int compare(Pending p1, Pending p2) {
+                return p2.total - p1.total;
+            }
+        });
+
+        for (Iterator<Map.Entry<String, Long>> it = tracesSent.entrySet().iterator(); it.hasNext();) {
+            if (it.next().getValue() < now - HOUR_MILLIS) {
+                it.remove();
+            }
+        }
+
+        int total = droppedCount;
+        StringBuilder message = new StringBuilder();
+        DateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+
+        for (Pending entry : entries) {
+            total += entry.total;
+
+            message.append(entry.total).append(" x ").append(entry.message).append('\n');
+            message.append("    in ").append(entry.method).append(", from ")
+                    .append(format.format(new Date(entry.firstSeen))).append(" to ")
+                    .append(format.format(new Date(entry.lastSeen))).append('\n');
+
+            if (tracesSent.containsKey(entry.fingerprint)) {
+                message.append("    (stack trace already sent during the last hour)\n");
+            } else {
+                message.append(entry.stackTrace);
+                tracesSent.put(entry.fingerprint, now);
+            }
+            message.append('\n');
+        }
+        if (droppedCount > 0) {
+            message.append(droppedCount).append(" other exception(s) not detailed, more than ").append(MAX_PENDING)
+                    .append(" distinct exceptions were thrown.\n");
+        }
+
+        SimpleEmail email = new SimpleEmail();
+        for (String address : recipients) {
+            email.addTo(address);
+        }
+        email.setSubject("[ACTIVITYINFO EXCEPTION] " + total + " exception(s)"
+                + (entries.isEmpty() ? "" : ", " + entries.get(0).message));
+        email.setMsg(message.toString());
+
+        digestsSent.add(now);
+        mailSender.send(email);
+        return total;
+    }
+
+    /**
+     * Identifies the exceptions having the same cause, whatever their message.
+     */
+    static String fingerprint(Throwable caught) {
+        Throwable root = caught;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+
+        StringBuilder fingerprint = new StringBuilder(root.getClass().getName());
+        StackTraceElement[] frames = root.getStackTrace();
+        for (int index = 0; index < frames.length && index < FINGERPRINT_FRAMES; index++) {
+            fingerprint.append('|').append(frames[index]);
+        }
+        return fingerprint.toString();
+    }
+
+    private static String stackTraceToString(Throwable caught) {
+        StringWriter stringWriter = new StringWriter();
+        PrintWriter printWriter = new PrintWriter(stringWriter);
+        caught.printStackTrace(printWriter);
+        return stringWriter.toString();
+    }
+}
@@ -8,13 +8,9 @@ package org.sigmah.server.util.logging;
 import com.google.inject.Inject;
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
-import org.apache.commons.mail.EmailException;
-import org.apache.commons.mail.SimpleEmail;
 import org.apache.log4j.Logger;
 import org.sigmah.server.mail.MailSender;
 
-import java.io.PrintWriter;
-import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
@@ -23,6 +19,7 @@ public class LoggingInterceptor implements MethodInterceptor {
 
     private MailSender mailSender;
     private List<String> alertRecipients = new ArrayList<String>(0);
+    private ExceptionAlerter alerter;
 
     @Inject(optional = true)
     public void setMailSender(MailSender sender) {
@@ -79,31 +76,26 @@ public class LoggingInterceptor implements MethodInterceptor {
                     "Please set the 'alert.recipients' property in the activityinfo.config file");
         }
         if(mailSender != null && !alertRecipients.isEmpty()) {
-            try {
-                sendMail(caught);
-            } catch (EmailException e) {
-                logger.warn("Exception thrown while trying to email alert about previous exception", e);
-            }
+            // the alert is mailed later by a background thread, with the other
+            // exceptions thrown meanwhile
+            getAlerter().alert(getOriginalClass(invocation).getName() + "." + invocation.getMethod().getName(), caught);
         }
     }
 
-    private void sendMail(Throwable caught) throws EmailException {
-        SimpleEmail email = new SimpleEmail();
-        for(String address : alertRecipients) {
-            email.addTo(address);
+    /**
+     * Sends the pending exception alerts and stops their background thread.
+     */
+    public synchronized void shutdown() {
+        if(alerter != null) {
+            alerter.shutdown();
         }
-        email.setSubject("[ACTIVITYINFO EXCEPTION] " + caught.getMessage());
-        email.setMsg( stackTraceToString(caught));
-        mailSender.send(email);
     }
 
-
-    private String stackTraceToString(Throwable caught) {
-        StringWriter stringWriter = new StringWriter();
-        PrintWriter printWriter = new PrintWriter(stringWriter);
-        caught.printStackTrace(printWriter);
-        String trace = stringWriter.toString();
-        return trace;
+    private synchronized ExceptionAlerter getAlerter() {
+        if(alerter == null) {
+            alerter = new ExceptionAlerter(mailSender, alertRecipients);
+        }
+        return alerter;
     }
 
     private Class<?> getOriginalClass(MethodInvocation invocation) {
@@ -13,7 +13,8 @@ public class LoggingModule extends AbstractModule {
     @Override
     protected void configure() {
         LoggingInterceptor interceptor = new LoggingInterceptor();
-        requestInjection(interceptor);
+        // bound to be shut down with the servlet context
+        bind(LoggingInterceptor.class).toInstance(interceptor);
 
         bindInterceptor(Matchers.any(), Matchers.annotatedWith(Trace.class), interceptor);
         bindInterceptor(Matchers.any(), Matchers.annotatedWith(LogException.class), interceptor);
@@ -0,0 +1,217 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.util.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.sigmah.shared.command.Command;
+
+import com.google.inject.Singleton;
+
+/**
+ * Metrics of the executed commands, by command class: latency histogram, failures, SQL
+ * statements and size of the serialized responses.
+ * <p>
+ * Only the statements prepared through Hibernate are counted, the queries the
+ * <code>PivotHibernateDAO</code> and the <code>SqlSiteTableDAO</code> run on the JDBC
+ * connection are not.
+ * <p>
+ * Recording only updates atomic counters, the metrics are written in the Prometheus text
+ * format by {@link #write(Writer)}.
+ */
+@Singleton
+public class CommandMetrics {
+
+    /**
+     * Upper bounds of the latency buckets, in seconds.
+     */
+    private static final double[] BUCKETS = { 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10 };
+
+    private static final long[] BUCKET_NANOS = new long[BUCKETS.length];
+
+    static {
+        for (int index = 0; index < BUCKETS.length; index++) {
+            BUCKET_NANOS[index] = (long) (BUCKETS[index] * TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+
+    private static class Entry {
+
+        /**
+         * Count of each bucket, the last one counting the executions slower than all the
+         * bounds.
+         */
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS.length + 1);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong nanos = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong statements = new AtomicLong();
+        private final AtomicLong responses = new AtomicLong();
+        private final AtomicLong responseSize = new AtomicLong();
+    }
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * Returns the name under which the given command is recorded.
+     */
+    public static String nameOf(Command<?> command) {
+        return command.getClass().getSimpleName();
+    }
+
+    /**
+     * Returns the names under which the response to the given commands is recorded.
+     */
+    public static ArrayList<String> namesOf(List<? extends Command> commands) {
+        ArrayList<String> names = new ArrayList<String>(commands.size());
+        for (Command<?> command : commands) {
+            names.add(nameOf(command));
+        }
+        return names;
+    }
+
+    /**
+     * Records the execution of a command.
+     *
+     * @param command
+     *            The name of the command.
+     * @param nanos
+     *            The duration of the execution, in nanoseconds.
+     * @param failed
+     *            <code>true</code> if the execution threw an exception.
+     * @param statements
+     *            The number of SQL statements executed.
+     */
+    public void recordExecution(String command, long nanos, boolean failed, int statements) {
+        Entry entry = entry(command);
+
+        int bucket = 0;
+        while (bucket < BUCKET_NANOS.length && nanos > BUCKET_NANOS[bucket]) {
+            bucket++;
+        }
+        entry.buckets.incrementAndGet(bucket);
+        entry.count.incrementAndGet();
+        entry.nanos.addAndGet(nanos);
+        entry.statements.addAndGet(statements);
+        if (failed) {
+            entry.errors.incrementAndGet();
+        }
+    }
+
+    /**
+     * Records the size of a serialized response. The results of the commands are serialized
+     * together, so the size of a response to several commands is split evenly between them.
+     *
+     * @param commands
+     *            The names of the commands of the request.
+     * @param size
+     *            The number of characters of the response.
+     */
+    public void recordResponse(List<String> commands, long size) {
+        if (commands.isEmpty()) {
+            return;
+        }
+        long share = size / commands.size();
+        long remainder = size % commands.size();
+
+        for (int index = 0; index < commands.size(); index++) {
+            Entry entry = entry(commands.get(index));
+            entry.responses.incrementAndGet();
+            entry.responseSize.addAndGet(index < remainder ? share + 1 : share);
+        }
+    }
+
+    private Entry entry(String command) {
+        Entry entry = entries.get(command);
+        if (entry == null) {
+            Entry created = new Entry();
+            entry = entries.putIfAbsent(command, created);
+            if (entry == null) {
+                entry = created;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Writes the metrics in the Prometheus text exposition format.
+     */
+    public void write(Writer writer) throws IOException {
+        Map<String, Entry> sorted = new TreeMap<String, Entry>(entries);
+
+        writer.write("# HELP sigmah_command_duration_seconds Time spent executing the commands.\n");
+        writer.write("# TYPE sigmah_command_duration_seconds histogram\n");
+        for (Map.Entry<String, Entry> e : sorted.entrySet()) {
+            Entry entry = e.getValue();
+            if (entry.count.get() == 0) {
+                continue;
+            }
+            String label = label(e.getKey());
+
+            long cumulative = 0;
+            for (int bucket = 0; bucket < BUCKETS.length; bucket++) {
+                cumulative += entry.buckets.get(bucket);
+                writer.write("sigmah_command_duration_seconds_bucket{" + label + ",le=\"" + BUCKETS[bucket]
+                        + "\"} " + cumulative + "\n");
+            }
+            cumulative += entry.buckets.get(BUCKETS.length);
+            writer.write("sigmah_command_duration_seconds_bucket{" + label + ",le=\"+Inf\"} " + cumulative
+                    + "\n");
+            writer.write("sigmah_command_duration_seconds_sum{" + label + "} " + entry.nanos.get()
+                    / (double) TimeUnit.SECONDS.toNanos(1) + "\n");
+            writer.write("sigmah_command_duration_seconds_count{" + label + "} " + cumulative + "\n");
+        }
+
+        writer.write("# HELP sigmah_command_errors_total Commands whose execution failed.\n");
+        writer.write("# TYPE sigmah_command_errors_total counter\n");
+        for (Map.Entry<String, Entry> e : sorted.entrySet()) {
+            if (e.getValue().count.get() != 0) {
+                writer.write("sigmah_command_errors_total{" + label(e.getKey()) + "} " + e.getValue().errors.get()
+                        + "\n");
+            }
+        }
+
+        writer.write("# HELP sigmah_command_statements_total SQL statements prepared through Hibernate by the commands,"
+                + " the raw JDBC queries of the pivot and site table DAOs are not counted.\n");
+        writer.write("# TYPE sigmah_command_statements_total counter\n");
+        for (Map.Entry<String, Entry> e : sorted.entrySet()) {
+            if (e.getValue().count.get() != 0) {
+                writer.write("sigmah_command_statements_total{" + label(e.getKey()) + "} "
+                        + e.getValue().statements.get() + "\n");
+            }
+        }
+
+        writer.write("# HELP sigmah_command_response_characters Size of the serialized responses,"
+                + " split evenly between the commands of a batch.\n");
+        writer.write("# TYPE sigmah_command_response_characters summary\n");
+        for (Map.Entry<String, Entry> e : sorted.entrySet()) {
+            Entry entry = e.getValue();
+            if (entry.responses.get() != 0) {
+                String label = label(e.getKey());
+                writer.write("sigmah_command_response_characters_sum{" + label + "} " + entry.responseSize.get()
+                        + "\n");
+                writer.write("sigmah_command_response_characters_count{" + label + "} " + entry.responses.get()
+                        + "\n");
+            }
+        }
+
+        writer.flush();
+    }
+
+    private static String label(String command) {
+        return "command=\"" + command.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.util.metrics;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.sigmah.shared.command.Command;
+
+import com.google.inject.Inject;
+
+/**
+ * Records the calls of the methods annotated with {@link Metered}.
+ */
+public class MetricsInterceptor implements MethodInterceptor {
+
+    @Inject
+    private CommandMetrics metrics;
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        String command = commandOf(invocation.getArguments());
+
+        int[] previous = StatementCountingInterceptor.start();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Object result = invocation.proceed();
+            failed = false;
+            return result;
+
+        } finally {
+            long nanos = System.nanoTime() - start;
+            metrics.recordExecution(command, nanos, failed, StatementCountingInterceptor.stop(previous));
+        }
+    }
+
+    private static String commandOf(Object[] arguments) {
+        for (Object argument : arguments) {
+            if (argument instanceof Command) {
+                return CommandMetrics.nameOf((Command<?>) argument);
+            }
+        }
+        return "Unknown";
+    }
+}
@@ -0,0 +1,26 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.util.metrics;
+
+import com.google.inject.matcher.Matchers;
+import com.google.inject.servlet.ServletModule;
+
+/**
+ * Binds the command metrics. Installed before the HibernateModule so that the measures
+ * include the commit of the transactions.
+ */
+public class MetricsModule extends ServletModule {
+
+    @Override
+    protected void configureServlets() {
+        MetricsInterceptor interceptor = new MetricsInterceptor();
+        requestInjection(interceptor);
+
+        bindInterceptor(Matchers.any(), Matchers.annotatedWith(Metered.class), interceptor);
+
+        serve("/Sigmah/metrics").with(MetricsServlet.class);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.util.metrics;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.Properties;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.sigmah.server.dao.cache.QueryResultCache;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Exposes the {@link CommandMetrics} and the statistics of the {@link QueryResultCache} in
+ * the Prometheus text format.
+ * <p>
+ * The scraper authenticates with the <code>metrics.token</code> configuration property,
+ * sent as a bearer token in the <code>Authorization</code> header. The servlet is disabled
+ * when this property is not set.
+ */
+@Singleton
+public class MetricsServlet extends HttpServlet {
+
+    private static final long serialVersionUID = -1583240741208345177L;
+
+    private static final String BEARER = "Bearer ";
+
+    private final CommandMetrics metrics;
+    private final QueryResultCache cache;
+    private final byte[] token;
+
+    @Inject
+    public MetricsServlet(CommandMetrics metrics, QueryResultCache cache, Properties configProperties)
+            throws IOException {
+        this.metrics = metrics;
+        this.cache = cache;
+
+        String token = configProperties.getProperty("metrics.token");
+        this.token = token == null || token.trim().length() == 0 ? null : token.trim().getBytes("UTF-8");
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (token == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        String authorization = request.getHeader("Authorization");
+        if (authorization == null || !authorization.startsWith(BEARER)
+                || !MessageDigest.isEqual(token, authorization.substring(BEARER.length()).trim().getBytes("UTF-8"))) {
+            response.setHeader("WWW-Authenticate", "Bearer");
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+
+        response.setContentType("text/plain; version=0.0.4");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        metrics.write(response.getWriter());
+        cache.write(response.getWriter());
+    }
+}
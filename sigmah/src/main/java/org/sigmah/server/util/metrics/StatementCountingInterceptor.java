@@ -0,0 +1,62 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.util.metrics;
+
+import org.hibernate.EmptyInterceptor;
+
+/**
+ * Hibernate interceptor counting the statements prepared by the current thread while a
+ * command is measured. Registered with the <code>hibernate.ejb.interceptor</code> property
+ * of the persistence unit.
+ * <p>
+ * Statements executed directly on the JDBC connection (<code>Session.doWork()</code>) are
+ * not counted.
+ */
+public class StatementCountingInterceptor extends EmptyInterceptor {
+
+    private static final long serialVersionUID = 4170826624431318563L;
+
+    private static final ThreadLocal<int[]> COUNT = new ThreadLocal<int[]>();
+
+    /**
+     * Starts counting the statements of the current thread.
+     *
+     * @return The counter replaced, to give back to {@link #stop(int[])}.
+     */
+    static int[] start() {
+        int[] previous = COUNT.get();
+        COUNT.set(new int[1]);
+        return previous;
+    }
+
+    /**
+     * Stops counting the statements of the current thread.
+     *
+     * @param previous
+     *            The counter returned by {@link #start()}.
+     * @return The number of statements prepared since {@link #start()}.
+     */
+    static int stop(int[] previous) {
+        int[] count = COUNT.get();
+        if (previous != null) {
+            // nested measure, the statements also count for the outer one
+            previous[0] += count[0];
+            COUNT.set(previous);
+        } else {
+            COUNT.remove();
+        }
+        return count[0];
+    }
+
+    @Override
+    public String onPrepareStatement(String sql) {
+        int[] count = COUNT.get();
+        if (count != null) {
+            count[0]++;
+        }
+        return sql;
+    }
+}
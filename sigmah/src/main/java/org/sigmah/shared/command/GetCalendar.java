@@ -13,7 +13,7 @@ import org.sigmah.shared.domain.calendar.CalendarType;
  * Command used to ask for events.
  * @author Raphaël Calabro (rcalabro@ideia.fr)
  */
-public class GetCalendar implements Command<Calendar> {
+public class GetCalendar implements Command<Calendar>, ReadOnly {
     private CalendarType type;
     private Serializable identifier;
 
@@ -12,7 +12,7 @@ import org.sigmah.shared.dto.ProjectDTO;
  * 
  * @author Denis Colliot (dcolliot@ideia.fr)
  */
-public class GetProject implements Command<ProjectDTO> {
+public class GetProject implements Command<ProjectDTO>, ReadOnly {
 	
 	private static final long serialVersionUID = 5675515456984800856L;
 	
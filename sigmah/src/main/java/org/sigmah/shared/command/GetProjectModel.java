@@ -2,7 +2,7 @@ package org.sigmah.shared.command;
 
 import org.sigmah.shared.dto.ProjectModelDTO;
 
-public class GetProjectModel implements Command<ProjectModelDTO> {
+public class GetProjectModel implements Command<ProjectModelDTO>, ReadOnly {
 
 	private static final long serialVersionUID = 5341195938784834326L;
 	
@@ -11,7 +11,7 @@ import org.sigmah.shared.command.result.RemindersResultList;
  * Request to retrieve the reminder of every project available to the current user.
  * @author Raphaël Calabro (rcalabro@ideia.fr)
  */
-public class GetReminders implements Command<RemindersResultList> {
+public class GetReminders implements Command<RemindersResultList>, ReadOnly {
     private static final long serialVersionUID = 1L;
 
 }
@@ -7,6 +7,7 @@ package org.sigmah.shared.command;
 
 import org.sigmah.shared.command.result.SiteResult;
 import org.sigmah.shared.dao.Filter;
+import org.sigmah.shared.dao.SiteProjection;
 import org.sigmah.shared.report.model.DimensionType;
 
 /**
@@ -22,6 +23,8 @@ public class GetSites extends PagingGetCommand<SiteResult> implements OfflineSup
 
     private Integer seekToSiteId;
 
+    private SiteProjection projection;
+
     public GetSites() {
 		
 	}
@@ -45,6 +48,7 @@ public class GetSites extends PagingGetCommand<SiteResult> implements OfflineSup
         c.setLimit(getLimit());
         c.setOffset(getOffset());
         c.setSortInfo(getSortInfo());
+        c.projection = projection;
 
         return c;
     }
@@ -90,6 +94,8 @@ public class GetSites extends PagingGetCommand<SiteResult> implements OfflineSup
         if (!filter.equals(getSites.filter)) return false;
         if (seekToSiteId != null ? !seekToSiteId.equals(getSites.seekToSiteId) : getSites.seekToSiteId != null)
             return false;
+        if (projection != null ? !projection.equals(getSites.projection) : getSites.projection != null)
+            return false;
 
         return true;
     }
@@ -98,6 +104,7 @@ public class GetSites extends PagingGetCommand<SiteResult> implements OfflineSup
     public int hashCode() {
         int result = filter.hashCode();
         result = 31 * result + (seekToSiteId != null ? seekToSiteId.hashCode() : 0);
+        result = 31 * result + (projection != null ? projection.hashCode() : 0);
         return result;
     }
 
@@ -116,4 +123,19 @@ public class GetSites extends PagingGetCommand<SiteResult> implements OfflineSup
     public void setSeekToSiteId(Integer seekToSiteId) {
         this.seekToSiteId = seekToSiteId;
     }
+
+    /**
+     * @return the additional data of the sites to retrieve, or <code>null</code> for all
+     */
+    public SiteProjection getProjection() {
+        return projection;
+    }
+
+    /**
+     * Restricts the additional data of the sites to retrieve. The sites are loaded with all
+     * their data by default.
+     */
+    public void setProjection(SiteProjection projection) {
+        this.projection = projection;
+    }
 }
@@ -14,7 +14,7 @@ import org.sigmah.shared.command.result.ValueResult;
  * 
  * @author Denis Colliot (dcolliot@ideia.fr)
  */
-public class GetValue implements Command<ValueResult> {
+public class GetValue implements Command<ValueResult>, ReadOnly {
 	
 	private static final long serialVersionUID = 5675515456984800856L;
 	
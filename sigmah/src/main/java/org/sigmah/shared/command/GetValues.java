@@ -0,0 +1,93 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.shared.command;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.sigmah.shared.command.result.ValuesResult;
+
+/**
+ * Retrieves the values of several flexible elements referenced in a given project, in a
+ * single call.
+ *
+ * @see GetValue
+ */
+public class GetValues implements Command<ValuesResult>, ReadOnly {
+
+    private static final long serialVersionUID = -3473418474452389154L;
+
+    private int projectId;
+    private Integer amendmentId;
+
+    /**
+     * The ids of the elements.
+     */
+    private ArrayList<Long> elementIds = new ArrayList<Long>();
+
+    /**
+     * The entity names of the elements, in the same order as their ids. Do not use the
+     * getClass().getName() on client side to identify a flexible element type. Always use
+     * the getEntityName() !
+     */
+    private ArrayList<String> elementEntityNames = new ArrayList<String>();
+
+    public GetValues() {
+        // required, or serialization exception
+    }
+
+    public GetValues(int projectId, Integer amendmentId) {
+        this.projectId = projectId;
+        this.amendmentId = amendmentId;
+    }
+
+    /**
+     * Adds an element to retrieve the value of.
+     *
+     * @param elementId
+     *            The id of the element.
+     * @param elementEntityName
+     *            The entity name of the element.
+     */
+    public void addElement(long elementId, String elementEntityName) {
+        elementIds.add(elementId);
+        elementEntityNames.add(elementEntityName);
+    }
+
+    public int getProjectId() {
+        return projectId;
+    }
+
+    public void setProjectId(int projectId) {
+        this.projectId = projectId;
+    }
+
+    public Integer getAmendmentId() {
+        return amendmentId;
+    }
+
+    public void setAmendmentId(Integer amendmentId) {
+        this.amendmentId = amendmentId;
+    }
+
+    public List<Long> getElementIds() {
+        return elementIds;
+    }
+
+    public List<String> getElementEntityNames() {
+        return elementEntityNames;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder toString = new StringBuilder();
+        toString.append("GetValues:[projectId=").append(projectId);
+        toString.append(";amendmentId=").append(amendmentId);
+        toString.append(";elementIds=").append(elementIds);
+        toString.append("]");
+        return toString.toString();
+    }
+}
@@ -0,0 +1,11 @@
+package org.sigmah.shared.command;
+
+/**
+ * Marks the commands whose handlers only read data.
+ * <p>
+ * The read-only commands of a list sent to the server may be executed at the same time,
+ * each in its own transaction. Commands modifying anything must not implement it.
+ */
+public interface ReadOnly {
+
+}
@@ -0,0 +1,86 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.shared.command;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.sigmah.shared.command.result.LogFrameRowsResult;
+import org.sigmah.shared.dto.logframe.LogFrameRowChange;
+
+/**
+ * Applies the changes made to the rows of a saved log frame, instead of sending the whole
+ * log frame like {@link UpdateLogFrame}.
+ * <p>
+ * The changes are applied in order: a row created by this command must be created before
+ * the rows referencing it.
+ */
+public class UpdateLogFrameRows implements Command<LogFrameRowsResult> {
+
+    private static final long serialVersionUID = 6085139468447093871L;
+
+    private int projectId;
+    private int logFrameId;
+    private boolean mainObjectiveChanged;
+    private String mainObjective;
+    private ArrayList<LogFrameRowChange> changes = new ArrayList<LogFrameRowChange>();
+
+    public UpdateLogFrameRows() {
+        // serialization
+    }
+
+    public UpdateLogFrameRows(int projectId, int logFrameId) {
+        this.projectId = projectId;
+        this.logFrameId = logFrameId;
+    }
+
+    public int getProjectId() {
+        return projectId;
+    }
+
+    public void setProjectId(int projectId) {
+        this.projectId = projectId;
+    }
+
+    public int getLogFrameId() {
+        return logFrameId;
+    }
+
+    public void setLogFrameId(int logFrameId) {
+        this.logFrameId = logFrameId;
+    }
+
+    public boolean isMainObjectiveChanged() {
+        return mainObjectiveChanged;
+    }
+
+    public String getMainObjective() {
+        return mainObjective;
+    }
+
+    public void setMainObjective(String mainObjective) {
+        this.mainObjective = mainObjective;
+        this.mainObjectiveChanged = true;
+    }
+
+    public List<LogFrameRowChange> getChanges() {
+        return changes;
+    }
+
+    public void addChange(LogFrameRowChange change) {
+        changes.add(change);
+    }
+
+    public boolean isEmpty() {
+        return !mainObjectiveChanged && changes.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "UpdateLogFrameRows:[projectId=" + projectId + ";logFrameId=" + logFrameId + ";changes="
+                + changes.size() + "]";
+    }
+}
@@ -10,6 +10,13 @@ import java.util.ArrayList;
 
 import org.sigmah.shared.command.result.VoidResult;
 
+/**
+ * Saves the values of the monthly reports of a site.
+ * <p>
+ * If a version is given, the command fails with a
+ * {@link org.sigmah.shared.exception.ConcurrentUpdateException} if the reports have been
+ * saved since they were loaded with this version.
+ */
 public class UpdateMonthlyReports implements Command<VoidResult> {
 
 
@@ -33,6 +40,7 @@ public class UpdateMonthlyReports implements Command<VoidResult> {
 
     private int siteId;
     private ArrayList<Change> changes;
+    private Long version;
 
 
     public UpdateMonthlyReports() {
@@ -66,4 +74,16 @@ public class UpdateMonthlyReports implements Command<VoidResult> {
     public void setChanges(ArrayList<Change> changes) {
         this.changes = changes;
     }
+
+    /**
+     * @return the version of the monthly reports as loaded, or <code>null</code> to save
+     *         without checking it
+     */
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
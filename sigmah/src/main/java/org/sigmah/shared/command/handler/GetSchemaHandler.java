@@ -7,6 +7,7 @@ package org.sigmah.shared.command.handler;
 
 import com.allen_sauer.gwt.log.client.Log;
 import com.google.inject.Inject;
+import org.sigmah.server.endpoint.gwtrpc.handler.SchemaResultCache;
 import org.sigmah.shared.command.GetSchema;
 import org.sigmah.shared.command.result.CommandResult;
 import org.sigmah.shared.dao.UserDatabaseDAO;
@@ -21,6 +22,12 @@ import java.util.Map;
 
 
 /**
+ * Builds the schema visible to the user.
+ * <p/>
+ * The version of the schema is first probed from the <code>lastSchemaUpdate</code> of the
+ * visible databases and of the user's permissions; if it matches the version of the schema
+ * last built for the user, the cached schema is returned without loading any entity.
+ *
  * @author Alex Bertram
  * @see org.sigmah.shared.command.GetSchema
  */
@@ -28,17 +35,51 @@ public class GetSchemaHandler implements CommandHandler<GetSchema> {
 
     private UserDatabaseDAO userDatabaseDAO;
     private DTOMapper mapper;
+    private SchemaResultCache cache;
 
     @Inject
-    public GetSchemaHandler(UserDatabaseDAO userDatabaseDAO, DTOMapper mapper) {
+    public GetSchemaHandler(UserDatabaseDAO userDatabaseDAO, DTOMapper mapper, SchemaResultCache cache) {
         this.userDatabaseDAO = userDatabaseDAO;
         this.mapper = mapper;
-
+        this.cache = cache;
     }
 
     @Override
     public CommandResult execute(GetSchema cmd, User user) throws CommandException {
 
+        String version = probeVersion(user);
+        SchemaDTO cached = cache.get(user.getId(), version);
+        if (cached != null) {
+            return cached;
+        }
+
+        SchemaDTO schema = buildSchema(user);
+        cache.put(user.getId(), version, schema);
+        return schema;
+    }
+
+    /**
+     * @return a string identifying the visible databases and the schema timestamps of
+     *         these databases and of the user's permissions
+     */
+    private String probeVersion(User user) {
+        StringBuilder version = new StringBuilder();
+        for (Object[] row : userDatabaseDAO.queryUserDatabaseSchemaVersions()) {
+            version.append(row[0]).append(':').append(stamp(row[1])).append(',');
+        }
+        version.append('|');
+        for (Object[] row : userDatabaseDAO.queryUserPermissionSchemaVersions(user.getId())) {
+            version.append(row[0]).append(':').append(stamp(row[1])).append(',');
+        }
+        return version.toString();
+    }
+
+    private static long stamp(Object date) {
+        return date == null ? 0 : ((Date) date).getTime();
+    }
+
+    private SchemaDTO buildSchema(User user) {
+
         SchemaDTO schema = new SchemaDTO();
         Date lastUpdate = new Date(0);
 
@@ -12,6 +12,7 @@ import org.sigmah.shared.command.GetSites;
 import org.sigmah.shared.command.result.CommandResult;
 import org.sigmah.shared.command.result.SiteResult;
 import org.sigmah.shared.dao.SiteOrder;
+import org.sigmah.shared.dao.SiteProjection;
 import org.sigmah.shared.dao.SiteProjectionBinder;
 import org.sigmah.shared.dao.SiteTableColumn;
 import org.sigmah.shared.dao.SiteTableDAO;
@@ -55,7 +56,7 @@ public class GetSitesHandler implements CommandHandler<GetSites> {
                 cmd.getFilter(),
                 order,
                 new ModelBinder(),
-                SiteTableDAO.RETRIEVE_ALL,
+                cmd.getProjection() != null ? cmd.getProjection() : new SiteProjection(),
                 offset,
                 cmd.getLimit());
 
@@ -111,7 +112,7 @@ public class GetSitesHandler implements CommandHandler<GetSites> {
         }
     }
 
-    protected class ModelBinder implements SiteProjectionBinder<SiteDTO> {
+    protected class ModelBinder implements SiteProjectionBinder<SiteDTO>, SiteProjectionBinder.Cacheable {
 
         private Map<Integer, AdminEntityDTO> adminEntities = new HashMap<Integer, AdminEntityDTO>();
         private Map<Integer, PartnerDTO> partners = new HashMap<Integer, PartnerDTO>();
@@ -0,0 +1,37 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.shared.command.result;
+
+import java.util.List;
+
+import org.sigmah.shared.dto.logframe.LogFrameRowChange;
+
+/**
+ * The rows changed by an {@link org.sigmah.shared.command.UpdateLogFrameRows} command, in
+ * the order of its changes, with the ids of the created rows.
+ */
+public class LogFrameRowsResult extends ListResult<LogFrameRowChange> {
+
+    private static final long serialVersionUID = 4938021633573096842L;
+
+    /**
+     * The activity advancement of the project, <code>null</code> if it has not changed.
+     */
+    private Integer activityAdvancement;
+
+    public LogFrameRowsResult() {
+        // serialization
+    }
+
+    public LogFrameRowsResult(List<LogFrameRowChange> rows, Integer activityAdvancement) {
+        super(rows);
+        this.activityAdvancement = activityAdvancement;
+    }
+
+    public Integer getActivityAdvancement() {
+        return activityAdvancement;
+    }
+}
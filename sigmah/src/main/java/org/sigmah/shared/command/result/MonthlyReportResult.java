@@ -14,10 +14,24 @@ import java.util.List;
  */
 public class MonthlyReportResult extends ListResult<IndicatorRowDTO> {
 
+    private long version;
+
     public MonthlyReportResult() {
     }
 
     public MonthlyReportResult(List<IndicatorRowDTO> data) {
         super(data);
     }
+
+    /**
+     * @return the version of the monthly reports of the site, to send back with the
+     *         {@link org.sigmah.shared.command.UpdateMonthlyReports} command
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
 }
@@ -0,0 +1,53 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.shared.command.result;
+
+import java.util.HashMap;
+
+/**
+ * Values of several flexible elements, by element id.
+ *
+ * @see ValueResult
+ */
+public class ValuesResult implements CommandResult {
+
+    private static final long serialVersionUID = 2468130562375327041L;
+
+    private HashMap<Long, ValueResult> values = new HashMap<Long, ValueResult>();
+
+    public ValuesResult() {
+        // Serialization.
+    }
+
+    /**
+     * Returns the value of the given element.
+     *
+     * @param elementId
+     *            The id of the element.
+     * @return The value of the element, never <code>null</code>.
+     */
+    public ValueResult getValue(long elementId) {
+        final ValueResult value = values.get(elementId);
+        return value != null ? value : new ValueResult();
+    }
+
+    /**
+     * Sets the value of the given element.
+     *
+     * @param elementId
+     *            The id of the element.
+     * @param value
+     *            The value of the element.
+     */
+    public void setValue(long elementId, ValueResult value) {
+        values.put(elementId, value);
+    }
+
+    @Override
+    public String toString() {
+        return "ValuesResult\n" + values;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.shared.dao;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Data retrieved by a {@link SiteTableDAO} query in addition to the columns of the
+ * base query: the admin entities, the indicator values and the attribute values of the
+ * sites, each of them either for all the admin levels, indicators or attributes, or
+ * only for the given ones.
+ */
+public class SiteProjection implements Serializable {
+
+    private int retrieve;
+    private HashSet<Integer> adminLevelIds;
+    private HashSet<Integer> indicatorIds;
+    private HashSet<Integer> attributeIds;
+
+    public SiteProjection() {
+        this(SiteTableDAO.RETRIEVE_ALL);
+    }
+
+    /**
+     * @param retrieve Bitmask of additional entities to retrieve:
+     *                 RETRIEVE_ALL, RETRIEVE_NONE, RETRIEVE_ADMIN, RETRIEVE_INDICATORS, RETRIEVE_ATTRIBS
+     */
+    public SiteProjection(int retrieve) {
+        this.retrieve = retrieve;
+    }
+
+    /**
+     * Retrieves the admin entities of the given levels only.
+     */
+    public SiteProjection withAdminLevels(Collection<Integer> ids) {
+        retrieve |= SiteTableDAO.RETRIEVE_ADMIN;
+        adminLevelIds = new HashSet<Integer>(ids);
+        return this;
+    }
+
+    /**
+     * Retrieves the values of the given indicators only.
+     */
+    public SiteProjection withIndicators(Collection<Integer> ids) {
+        retrieve |= SiteTableDAO.RETRIEVE_INDICATORS;
+        indicatorIds = new HashSet<Integer>(ids);
+        return this;
+    }
+
+    /**
+     * Retrieves the values of the given attributes only.
+     */
+    public SiteProjection withAttributes(Collection<Integer> ids) {
+        retrieve |= SiteTableDAO.RETRIEVE_ATTRIBS;
+        attributeIds = new HashSet<Integer>(ids);
+        return this;
+    }
+
+    /**
+     * @param mask one of RETRIEVE_ADMIN, RETRIEVE_INDICATORS, RETRIEVE_ATTRIBS
+     * @return true if some of these entities are to be retrieved
+     */
+    public boolean retrieves(int mask) {
+        if ((retrieve & mask) == 0) {
+            return false;
+        }
+        Set<Integer> ids = mask == SiteTableDAO.RETRIEVE_ADMIN ? adminLevelIds
+                : mask == SiteTableDAO.RETRIEVE_INDICATORS ? indicatorIds
+                : mask == SiteTableDAO.RETRIEVE_ATTRIBS ? attributeIds : null;
+        return ids == null || !ids.isEmpty();
+    }
+
+    public int getRetrieve() {
+        return retrieve;
+    }
+
+    /**
+     * @return the levels of the admin entities to retrieve, or <code>null</code> for all
+     */
+    public Set<Integer> getAdminLevelIds() {
+        return adminLevelIds;
+    }
+
+    /**
+     * @return the indicators whose values to retrieve, or <code>null</code> for all
+     */
+    public Set<Integer> getIndicatorIds() {
+        return indicatorIds;
+    }
+
+    /**
+     * @return the attributes whose values to retrieve, or <code>null</code> for all
+     */
+    public Set<Integer> getAttributeIds() {
+        return attributeIds;
+    }
+
+    @Override
+    public String toString() {
+        return "[retrieve=" + retrieve + ",adminLevels=" + sorted(adminLevelIds)
+                + ",indicators=" + sorted(indicatorIds) + ",attributes=" + sorted(attributeIds) + "]";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        SiteProjection that = (SiteProjection) o;
+
+        return retrieve == that.retrieve
+                && (adminLevelIds != null ? adminLevelIds.equals(that.adminLevelIds) : that.adminLevelIds == null)
+                && (indicatorIds != null ? indicatorIds.equals(that.indicatorIds) : that.indicatorIds == null)
+                && (attributeIds != null ? attributeIds.equals(that.attributeIds) : that.attributeIds == null);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = retrieve;
+        result = 31 * result + (adminLevelIds != null ? adminLevelIds.hashCode() : 0);
+        result = 31 * result + (indicatorIds != null ? indicatorIds.hashCode() : 0);
+        result = 31 * result + (attributeIds != null ? attributeIds.hashCode() : 0);
+        return result;
+    }
+
+    private static List<Integer> sorted(Set<Integer> ids) {
+        if (ids == null) {
+            return null;
+        }
+        List<Integer> list = new ArrayList<Integer>(ids);
+        Collections.sort(list);
+        return list;
+    }
+}
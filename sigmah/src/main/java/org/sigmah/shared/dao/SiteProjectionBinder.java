@@ -25,4 +25,11 @@ public interface SiteProjectionBinder<SiteT> {
 	void setAdminEntity(SiteT site, AdminEntity entity);
 	void addIndicatorValue(SiteT site, int indicatorId, int aggregationMethod, double value);
 	void setAttributeValue(SiteT site, int attributeId, boolean value);
+
+	/**
+	 * Marks the binders whose rows depend only on the query: the server may cache these
+	 * rows and share them between requests, so they must be treated as read-only.
+	 */
+	interface Cacheable {
+	}
 }
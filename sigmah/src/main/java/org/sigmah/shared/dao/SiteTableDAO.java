@@ -42,6 +42,19 @@ public interface SiteTableDAO {
             int offset,
             int limit);
 
+    /**
+     * Queries the sites with only the admin entities, the indicator values and the
+     * attribute values of the given projection.
+     */
+    <RowT> List<RowT> query(
+            User user,
+            Filter filter,
+            List<SiteOrder> orderings,
+            SiteProjectionBinder<RowT> binder,
+            SiteProjection projection,
+            int offset,
+            int limit);
+
     int queryCount(User user, Filter filter);
 
     int queryPageNumber(User user, Filter filter, List<SiteOrder> orderings, int pageSize, int siteId);
@@ -171,10 +171,17 @@ public class SqlQueryBuilder {
     }
 
     public ResultSet executeQuery(Connection connection) throws SQLException {
+        return prepareStatement(connection).executeQuery();
+    }
+
+    /**
+     * Prepares the statement and sets its parameters, for the callers which need to
+     * configure or close it.
+     */
+    public PreparedStatement prepareStatement(Connection connection) throws SQLException {
         String sql = sql();
         Log.debug(sql);
-        PreparedStatement stmt = prepareStatement(connection, sql);
-        return stmt.executeQuery();
+        return prepareStatement(connection, sql);
     }
 
     private PreparedStatement prepareStatement(Connection connection, String sql) throws SQLException {
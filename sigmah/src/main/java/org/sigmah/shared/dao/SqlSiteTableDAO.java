@@ -16,16 +16,25 @@ import org.sigmah.shared.dto.IndicatorDTO;
 import org.sigmah.shared.report.model.DimensionType;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.sigmah.shared.dao.SqlQueryBuilder.select;
 
 public class SqlSiteTableDAO implements SiteTableDAO {
+
+    /**
+     * Maximum number of sites of the queries of the additional data.
+     */
+    private static final int CHUNK_SIZE = 500;
+    private static final String SITE_IDS = "(:siteIds)";
+
     private final Connection connection;
     private final SQLDialect dialect;
 
@@ -57,11 +66,32 @@ public class SqlSiteTableDAO implements SiteTableDAO {
             int offset,
             int limit) {
 
+        return query(user, filter, orderings, binder, new SiteProjection(retrieve), offset, limit);
+    }
+
+    /**
+     * Runs the base query, then one query for each kind of additional data of the
+     * projection, restricted to the admin levels, indicators or attributes it lists.
+     *
+     * @param projection the additional data to retrieve
+     */
+    @Override
+    public <RowT> List<RowT> query(
+            User user,
+            Filter filter,
+            List<SiteOrder> orderings,
+            final SiteProjectionBinder<RowT> binder,
+            SiteProjection projection,
+            int offset,
+            int limit) {
+
         try {
         	Integer databaseId = null;
-        	for(Integer restriction : filter.getRestrictions(DimensionType.Database)){
-        		databaseId = restriction;
-        		break;
+        	if(filter != null) {
+        		for(Integer restriction : filter.getRestrictions(DimensionType.Database)){
+        			databaseId = restriction;
+        			break;
+        		}
         	}
         	
             BaseQueryBuilder builder = new BaseQueryBuilder(databaseId)
@@ -80,27 +110,36 @@ public class SqlSiteTableDAO implements SiteTableDAO {
             }
 
             final Map<Integer, RowT> siteMap = new HashMap<Integer, RowT>();
+            final List<Integer> siteIds = new ArrayList<Integer>();
             final List<RowT> sites = new ArrayList<RowT>();
 
-            ResultSet rs = builder.executeQuery(connection);
-            while(rs.next()) {
-                RowT site = binder.newInstance(builder.aliases(), rs);
-                sites.add(site);
-                if(retrieve != 0) {
-                    siteMap.put(rs.getInt(SiteTableColumn.id.index()), site);
+            PreparedStatement stmt = builder.prepareStatement(connection);
+            try {
+                prepare(stmt);
+                ResultSet rs = stmt.executeQuery();
+                while(rs.next()) {
+                    RowT site = binder.newInstance(builder.aliases(), rs);
+                    sites.add(site);
+                    if(projection.getRetrieve() != 0) {
+                        int siteId = rs.getInt(SiteTableColumn.id.index());
+                        siteMap.put(siteId, site);
+                        siteIds.add(siteId);
+                    }
                 }
+            } finally {
+                stmt.close();
             }
 
             if( !sites.isEmpty()) {
 
-                if ((retrieve & RETRIEVE_ADMIN) != 0) {
-                    joinAdminEntities(siteMap, binder);
+                if (projection.retrieves(RETRIEVE_ADMIN)) {
+                    joinAdminEntities(siteIds, siteMap, binder, projection.getAdminLevelIds());
                 }
-                if ((retrieve & RETRIEVE_ATTRIBS) != 0) {
-                    this.joinAttributeValues(siteMap, binder);
+                if (projection.retrieves(RETRIEVE_ATTRIBS)) {
+                    joinAttributeValues(siteIds, siteMap, binder, projection.getAttributeIds());
                 }
-                if ((retrieve & RETRIEVE_INDICATORS) != 0) {
-                    joinIndicatorValues(siteMap, binder);
+                if (projection.retrieves(RETRIEVE_INDICATORS)) {
+                    joinIndicatorValues(siteIds, siteMap, binder, projection.getIndicatorIds());
                 }
             }
 
@@ -164,112 +203,183 @@ public class SqlSiteTableDAO implements SiteTableDAO {
         }
     }
 
-    protected <SiteT> void joinAdminEntities(
-            Map<Integer, SiteT> siteMap,
-            SiteProjectionBinder<SiteT> binder) throws SQLException
-    {
-        Map<Integer, AdminEntity> adminEntities = queryEntities(siteMap);
-        linkAdminEntitiesToSites(binder, siteMap, adminEntities);
+    /**
+     * Called before executing each statement, for instance to set the fetch size with
+     * which the rows are streamed.
+     */
+    protected void prepare(PreparedStatement statement) throws SQLException {
     }
 
-    private <SiteT> Map<Integer, AdminEntity> queryEntities(Map<Integer, SiteT> siteMap) throws SQLException {
-        Map<Integer, AdminEntity> map = new HashMap<Integer, AdminEntity>();
-
-        ResultSet rs = select("e.AdminEntityId, e.Name, e.AdminEntityParentId, e.AdminLevelId, e.X1, e.Y1, e.X2, e.Y2")
-                .from("AdminEntity e")
-                .where("e.AdminEntityId").in(
-                        select("AdminEntityId").from("LocationAdminLink").where("LocationId").in(
-                                select("LocationId").from("Site").where("SiteId").in(siteMap.keySet())))
-                .executeQuery(connection);
+    protected <SiteT> void joinAdminEntities(
+            List<Integer> siteIds,
+            final Map<Integer, SiteT> siteMap,
+            final SiteProjectionBinder<SiteT> binder,
+            Set<Integer> adminLevelIds) throws SQLException
+    {
+        SqlQueryBuilder query =
+                select("Site.SiteId, E.AdminEntityId, E.Name, E.Code, E.AdminEntityParentId, E.AdminLevelId, " +
+                        "E.X1, E.Y1, E.X2, E.Y2")
+                        .from("Site INNER JOIN LocationAdminLink Link ON (Link.LocationId = Site.LocationId) " +
+                                "INNER JOIN AdminEntity E ON (E.AdminEntityId = Link.AdminEntityId)")
+                        .whereTrue("Site.SiteId IN " + SITE_IDS);
+        if(adminLevelIds != null) {
+            query.and("E.AdminLevelId IN " + idList(adminLevelIds));
+        }
 
+        final Map<Integer, AdminEntity> adminEntities = new HashMap<Integer, AdminEntity>();
 
-        while(rs.next()) {
-            AdminEntity entity = new AdminEntity();
-            entity.setId(rs.getInt(1));
-            entity.setName(rs.getString(2));
+        forEachSiteChunk(query.sql(), siteIds, new SqlQueryBuilder.ResultHandler() {
+            @Override
+            public void handle(ResultSet rs) throws SQLException {
+                int siteId = rs.getInt(1);
+                int entityId = rs.getInt(2);
 
-            AdminEntity parent = new AdminEntity();
-            parent.setId(rs.getInt(3));
-            if(!rs.wasNull()) {
-                entity.setParent(parent);
-            }
+                AdminEntity entity = adminEntities.get(entityId);
+                if(entity == null) {
+                    entity = readAdminEntity(rs);
+                    adminEntities.put(entityId, entity);
+                }
 
-            AdminLevel level = new AdminLevel();
-            level.setId(rs.getInt(4));
-            entity.setLevel(level);
-
-            Bounds bounds = new Bounds();
-            bounds.setX1(rs.getDouble(5));
-            bounds.setY1(rs.getDouble(6));
-            bounds.setX2(rs.getDouble(7));
-            bounds.setY2(rs.getDouble(8));
-            if(!rs.wasNull()) {
-                entity.setBounds(bounds);
+                binder.setAdminEntity(siteMap.get(siteId), entity);
             }
-
-            map.put(entity.getId(), entity);
-        }
-
-        return map;
+        });
     }
 
+    private static AdminEntity readAdminEntity(ResultSet rs) throws SQLException {
+        AdminEntity entity = new AdminEntity();
+        entity.setId(rs.getInt(2));
+        entity.setName(rs.getString(3));
+        entity.setCode(rs.getString(4));
 
-    private <SiteT> void linkAdminEntitiesToSites(SiteProjectionBinder<SiteT> binder, Map<Integer, SiteT> siteMap, Map<Integer, AdminEntity> adminEntities) throws SQLException {
-        ResultSet rs =
-                select("Site.SiteId, Link.AdminEntityId ")
-                        .from("Site INNER JOIN Location ON (Location.LocationId = Site.LocationId) " +
-                                "INNER JOIN LocationAdminLink Link ON (Link.LocationId = Location.LocationId) ")
-                        .where("Site.SiteId").in(siteMap.keySet())
-                        .executeQuery(connection);
-
-        while(rs.next()) {
-            int siteId = rs.getInt(1);
-            int entityId = rs.getInt(2);
-            AdminEntity adminEntity = adminEntities.get(entityId);
+        AdminEntity parent = new AdminEntity();
+        parent.setId(rs.getInt(5));
+        if(!rs.wasNull()) {
+            entity.setParent(parent);
+        }
 
-            binder.setAdminEntity(siteMap.get(siteId), adminEntity);
+        AdminLevel level = new AdminLevel();
+        level.setId(rs.getInt(6));
+        entity.setLevel(level);
+
+        Bounds bounds = new Bounds();
+        bounds.setX1(rs.getDouble(7));
+        bounds.setY1(rs.getDouble(8));
+        bounds.setX2(rs.getDouble(9));
+        bounds.setY2(rs.getDouble(10));
+        if(!rs.wasNull()) {
+            entity.setBounds(bounds);
         }
-    }
 
+        return entity;
+    }
 
-    protected <SiteT> void joinIndicatorValues(Map<Integer, SiteT> siteMap, SiteProjectionBinder<SiteT> binder) throws SQLException {
+    protected <SiteT> void joinIndicatorValues(
+            List<Integer> siteIds,
+            final Map<Integer, SiteT> siteMap,
+            final SiteProjectionBinder<SiteT> binder,
+            Set<Integer> indicatorIds) throws SQLException {
 
-        ResultSet rs =
+        SqlQueryBuilder query =
                 select("P.SiteId, V.IndicatorId, V.Value")
                         .from("ReportingPeriod P " +
                                 "INNER JOIN IndicatorValue V ON (P.ReportingPeriodId = V.ReportingPeriodId) " +
                                 "INNER JOIN Indicator I ON (I.IndicatorId = V.IndicatorId)")
-                        .where("P.SiteId").in(siteMap.keySet())
-                        .and("I.dateDeleted IS NULL")
-                        .executeQuery(connection);
-
-        while(rs.next()) {
-            int siteId = rs.getInt(1);
-            int indicatorId = rs.getInt(2);
-            double indicatorValue = rs.getDouble(3);
-            if(!rs.wasNull()) {
-                binder.addIndicatorValue(siteMap.get(siteId), indicatorId, 0, indicatorValue);
-            }
+                        .whereTrue("P.SiteId IN " + SITE_IDS)
+                        .and("I.dateDeleted IS NULL");
+        if(indicatorIds != null) {
+            query.and("V.IndicatorId IN " + idList(indicatorIds));
         }
+
+        forEachSiteChunk(query.sql(), siteIds, new SqlQueryBuilder.ResultHandler() {
+            @Override
+            public void handle(ResultSet rs) throws SQLException {
+                int siteId = rs.getInt(1);
+                int indicatorId = rs.getInt(2);
+                double indicatorValue = rs.getDouble(3);
+                if(!rs.wasNull()) {
+                    binder.addIndicatorValue(siteMap.get(siteId), indicatorId, 0, indicatorValue);
+                }
+            }
+        });
     }
 
     protected <SiteT> void joinAttributeValues(
-            Map<Integer, SiteT> siteMap,
-            SiteProjectionBinder<SiteT> transformer) throws SQLException {
+            List<Integer> siteIds,
+            final Map<Integer, SiteT> siteMap,
+            final SiteProjectionBinder<SiteT> transformer,
+            Set<Integer> attributeIds) throws SQLException {
 
-        ResultSet rs =
+        SqlQueryBuilder query =
                 select("V.SiteId, V.AttributeId, V.Value").from("AttributeValue V")
-                        .where("V.SiteId").in(siteMap.keySet())
-                        .and("NOT V.Value is NULL")
-                        .executeQuery(connection);
+                        .whereTrue("V.SiteId IN " + SITE_IDS)
+                        .and("NOT V.Value is NULL");
+        if(attributeIds != null) {
+            query.and("V.AttributeId IN " + idList(attributeIds));
+        }
+
+        forEachSiteChunk(query.sql(), siteIds, new SqlQueryBuilder.ResultHandler() {
+            @Override
+            public void handle(ResultSet rs) throws SQLException {
+                int siteId = rs.getInt(1);
+                int attributeId = rs.getInt(2);
+                boolean value =rs.getBoolean(3);
+
+                transformer.setAttributeValue(siteMap.get(siteId), attributeId, value);
+            }
+        });
+    }
 
-        while(rs.next()) {
-            int siteId = rs.getInt(1);
-            int attributeId = rs.getInt(2);
-            boolean value =rs.getBoolean(3);
+    /**
+     * Runs a query restricted to the sites {@link #SITE_IDS} for the given sites, by chunks
+     * of at most {@link #CHUNK_SIZE} sites, with the same prepared statement. The last chunk
+     * is padded with its last site.
+     */
+    private void forEachSiteChunk(String sql, List<Integer> siteIds, SqlQueryBuilder.ResultHandler handler)
+            throws SQLException {
 
-            transformer.setAttributeValue(siteMap.get(siteId), attributeId, value);
+        int chunkSize = Math.min(CHUNK_SIZE, siteIds.size());
+        PreparedStatement stmt = connection.prepareStatement(sql.replace(SITE_IDS, parameterList(chunkSize)));
+        try {
+            prepare(stmt);
+            for(int start = 0; start < siteIds.size(); start += chunkSize) {
+                for(int i = 0; i != chunkSize; ++i) {
+                    stmt.setInt(i + 1, siteIds.get(Math.min(start + i, siteIds.size() - 1)));
+                }
+                ResultSet rs = stmt.executeQuery();
+                try {
+                    while(rs.next()) {
+                        handler.handle(rs);
+                    }
+                } finally {
+                    rs.close();
+                }
+            }
+        } finally {
+            stmt.close();
+        }
+    }
+
+    private static String parameterList(int count) {
+        StringBuilder list = new StringBuilder("(?");
+        for(int i = 1; i < count; ++i) {
+            list.append(", ?");
+        }
+        return list.append(")").toString();
+    }
+
+    /**
+     * @return the SQL list of the given ids, which are written in the query so that the
+     *         statement does not depend on their number
+     */
+    private static String idList(Set<Integer> ids) {
+        StringBuilder list = new StringBuilder("(");
+        for(Integer id : ids) {
+            if(list.length() > 1) {
+                list.append(", ");
+            }
+            list.append(id.intValue());
         }
+        return list.append(")").toString();
     }
 
     /**
@@ -316,7 +426,7 @@ public class SqlSiteTableDAO implements SiteTableDAO {
                     fieldList.append(", ");
                 }
                 fieldList.append(column.property()).append( " AS ").append(column.alias());
-                aliases[aliasIndex] = column.alias();
+                aliases[aliasIndex++] = column.alias();
             }
             return this;
         }
@@ -17,4 +17,16 @@ public interface UserDatabaseDAO extends DAO<UserDatabase, Integer> {
 
     List<UserDatabase> queryAllUserDatabasesAlphabetically();
 
+    /**
+     * @return the id and <code>lastSchemaUpdate</code> of each database visible to the
+     *         current user, ordered by id
+     */
+    List<Object[]> queryUserDatabaseSchemaVersions();
+
+    /**
+     * @return the database id and <code>lastSchemaUpdate</code> of each permission
+     *         granted to the given user, ordered by database id
+     */
+    List<Object[]> queryUserPermissionSchemaVersions(int userId);
+
 }
@@ -7,6 +7,7 @@ package org.sigmah.shared.domain;
 
 
 import javax.persistence.*;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -25,6 +26,8 @@ public class AdminEntity implements java.io.Serializable {
     private String soundex;
     private String code;
     private Bounds bounds;
+    private Date dateCreated;
+    private Date dateEdited;
 
     private Set<Location> locations = new HashSet<Location>(0);
     private Set<AdminEntity> children = new HashSet<AdminEntity>(0);
@@ -121,6 +124,46 @@ public class AdminEntity implements java.io.Serializable {
         this.bounds = bounds;
     }
 
+    /**
+     * @return the time at which this entity was created, or <code>null</code> for
+     *         entities imported before change tracking was introduced.
+     */
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "DateCreated", nullable = true)
+    public Date getDateCreated() {
+        return dateCreated;
+    }
+
+    public void setDateCreated(Date dateCreated) {
+        this.dateCreated = dateCreated;
+    }
+
+    /**
+     * @return the time at which this entity was last modified, or <code>null</code> for
+     *         entities imported before change tracking was introduced.
+     */
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "DateEdited", nullable = true)
+    public Date getDateEdited() {
+        return dateEdited;
+    }
+
+    public void setDateEdited(Date dateEdited) {
+        this.dateEdited = dateEdited;
+    }
+
+    @PrePersist
+    public void onCreate() {
+        Date now = new Date();
+        setDateCreated(now);
+        setDateEdited(now);
+    }
+
+    @PreUpdate
+    public void onUpdate() {
+        setDateEdited(new Date());
+    }
+
 
 //	@ManyToMany(cascade = CascadeType.ALL, fetch = FetchType.LAZY, mappedBy = "adminEntities")
 //	public Set<Location> getLocations() {
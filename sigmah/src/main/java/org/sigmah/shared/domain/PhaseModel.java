@@ -61,6 +61,7 @@ public class PhaseModel implements Serializable {
     }
 
     @OneToMany
+    @org.hibernate.annotations.BatchSize(size = 50)
     @JoinTable(name = "phase_model_sucessors", joinColumns = { @JoinColumn(name = "id_phase_model") }, inverseJoinColumns = { @JoinColumn(name = "id_phase_model_successor") }, uniqueConstraints = { @UniqueConstraint(columnNames = {
             "id_phase_model", "id_phase_model_successor" }) })
     public List<PhaseModel> getSuccessors() {
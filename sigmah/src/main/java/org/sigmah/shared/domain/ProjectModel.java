@@ -3,9 +3,9 @@ package org.sigmah.shared.domain;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
@@ -192,7 +192,7 @@ public class ProjectModel extends BaseModelData implements Serializable {
     /**
      * Reset the identifiers of the object
      */
-    public void resetImport(HashMap<Object, Object> modelesReset, HashSet<Object> modelesImport) {
+    public void resetImport(Map<Object, Object> modelesReset, Set<Object> modelesImport) {
         this.id = null;
         if (this.rootPhase != null) {
             this.rootPhase.resetImport(this);
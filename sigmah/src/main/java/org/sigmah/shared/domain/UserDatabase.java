@@ -22,6 +22,8 @@ import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedNativeQuery;
+import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
 import javax.persistence.OneToMany;
 import javax.persistence.Temporal;
@@ -53,7 +55,11 @@ import javax.persistence.Transient;
                 + "m.databaseId=DatabaseId and p.viewAll))"),
 
         @org.hibernate.annotations.Filter(name = "hideDeleted", condition = "DateDeleted is null") })
-@NamedQuery(name = "queryAllUserDatabasesAlphabetically", query = "select db from UserDatabase db order by db.name")
+@NamedQueries({
+        @NamedQuery(name = "queryAllUserDatabasesAlphabetically", query = "select db from UserDatabase db order by db.name"),
+        @NamedQuery(name = "queryUserDatabaseSchemaVersions", query = "select db.id, db.lastSchemaUpdate from UserDatabase db order by db.id") })
+@NamedNativeQuery(name = "queryUserPermissionSchemaVersions", query = "select DatabaseId, LastSchemaUpdate from UserPermission "
+        + "where UserId = ?1 order by DatabaseId")
 public class UserDatabase implements java.io.Serializable, Deleteable, SchemaElement {
 
     private static final long serialVersionUID = 7405094318163898712L;
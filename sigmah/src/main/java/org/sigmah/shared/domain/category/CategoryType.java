@@ -59,6 +59,7 @@ public class CategoryType implements Serializable {
     }
 
     @OneToMany(mappedBy = "parentType", cascade = CascadeType.ALL)
+    @org.hibernate.annotations.BatchSize(size = 50)
     @OrderBy("label asc")
     public List<CategoryElement> getElements() {
         return elements;
@@ -32,6 +32,7 @@ public class BudgetElement extends DefaultFlexibleElement {
     private BudgetSubField ratioDivisor;
 
     @OneToMany(mappedBy = "budgetElement", cascade = CascadeType.ALL)
+    @org.hibernate.annotations.BatchSize(size = 50)
     @OrderBy("fieldOrder")
 	public List<BudgetSubField> getBudgetSubFields() {
 	    return budgetSubFields;
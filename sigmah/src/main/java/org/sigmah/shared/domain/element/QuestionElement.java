@@ -43,6 +43,7 @@ public class QuestionElement extends FlexibleElement {
     }
 
     @OneToMany(mappedBy = "parentQuestion", cascade = CascadeType.ALL)
+    @org.hibernate.annotations.BatchSize(size = 50)
     @OrderBy("sortOrder asc")
     public List<QuestionChoiceElement> getChoices() {
         return choices;
@@ -68,6 +68,7 @@ public class Layout implements Serializable {
 	}
 
 	@OneToMany(mappedBy = "parentLayout", cascade = CascadeType.ALL)
+	@org.hibernate.annotations.BatchSize(size = 50)
 	public List<LayoutGroup> getGroups() {
 		return groups;
 	}
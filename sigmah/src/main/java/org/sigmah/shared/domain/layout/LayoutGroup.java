@@ -86,6 +86,7 @@ public class LayoutGroup implements Serializable {
     }
 
     @OneToMany(mappedBy = "parentLayoutGroup", cascade = CascadeType.ALL)
+    @org.hibernate.annotations.BatchSize(size = 50)
     @OrderBy("sortOrder asc, id asc")
     public List<LayoutConstraint> getConstraints() {
         return constraints;
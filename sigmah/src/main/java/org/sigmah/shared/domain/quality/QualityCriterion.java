@@ -1,9 +1,9 @@
 package org.sigmah.shared.domain.quality;
 
 import java.io.Serializable;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
@@ -118,7 +118,7 @@ public class QualityCriterion implements Serializable {
 	 *            the list of object that have been transformed or are being
 	 *            transformed.
 	 */
-	public void resetImport(HashMap<Object, Object> modelesReset, HashSet<Object> modelesImport) {
+	public void resetImport(Map<Object, Object> modelesReset, Set<Object> modelesImport) {
 		this.id = null;
 		if (!modelesImport.contains(this)) {
 			modelesImport.add(this);
@@ -1,9 +1,9 @@
 package org.sigmah.shared.domain.quality;
 
 import java.io.Serializable;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
@@ -94,8 +94,8 @@ public class QualityFramework implements Serializable {
 	 *            the list of object that have been transformed or are being
 	 *            transformed.
 	 */
-	public void resetImport(HashMap<Object, Object> modelesReset,
-			HashSet<Object> modelesImport) {
+	public void resetImport(Map<Object, Object> modelesReset,
+			Set<Object> modelesImport) {
 		this.id = null;
 
 		if (this.types != null) {
@@ -6,7 +6,7 @@
 package org.sigmah.shared.domain.report;
 
 import java.io.Serializable;
-import java.util.HashSet;
+import java.util.Set;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -16,7 +16,7 @@ import javax.persistence.Id;
 import javax.persistence.ManyToOne;
 import org.sigmah.shared.domain.quality.QualityCriterion;
 
-import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Represents a key question associated with a report section.
@@ -83,7 +83,7 @@ public class KeyQuestion implements Serializable {
 	 *            the list of object that have been transformed or are being
 	 *            transformed.
 	 */
-	public void resetImport(Integer sectionId, HashMap<Object, Object> modelesReset, HashSet<Object> modelesImport) {
+	public void resetImport(Integer sectionId, Map<Object, Object> modelesReset, Set<Object> modelesImport) {
 		this.id = null;
 		this.sectionId = sectionId;
 		if (this.qualityCriterion != null) {
@@ -6,9 +6,9 @@
 package org.sigmah.shared.domain.report;
 
 import java.io.Serializable;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.persistence.CascadeType;
 import javax.persistence.Entity;
@@ -88,7 +88,7 @@ public class ProjectReportModel implements Serializable {
 	 *            the list of object that have been transformed or are being
 	 *            transformed.
 	 */
-	public void resetImport(HashMap<Object, Object> modelesReset, HashSet<Object> modelesImport) {
+	public void resetImport(Map<Object, Object> modelesReset, Set<Object> modelesImport) {
 		this.id = null;
 		if (sections != null) {
 			for (ProjectReportModelSection section : sections) {
@@ -6,9 +6,9 @@
 package org.sigmah.shared.domain.report;
 
 import java.io.Serializable;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -126,7 +126,7 @@ public class ProjectReportModelSection implements Serializable {
 	 *            the list of object that have been transformed or are being
 	 *            transformed.
 	 */
-	public void resetImport(Integer projectModelId, Integer parentSectionModelId, HashMap<Object, Object> modelesReset, HashSet<Object> modelesImport) {
+	public void resetImport(Integer projectModelId, Integer parentSectionModelId, Map<Object, Object> modelesReset, Set<Object> modelesImport) {
 		this.id = null;
 		this.projectModelId = projectModelId;
 		this.parentSectionModelId = parentSectionModelId;
@@ -0,0 +1,68 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.shared.domain.report;
+
+import java.io.Serializable;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+
+/**
+ * Text of one or more rich text elements.<br>
+ * <br>
+ * A block is never modified once saved: the versions of a report share the blocks of
+ * the texts they have in common, and an edited text is saved as another block. Blocks
+ * are found by the hash of their text and removed when no element refers to them anymore.
+ */
+@Entity
+public class RichTextBlock implements Serializable {
+    private static final long serialVersionUID = -3216407713840158214L;
+    private Integer id;
+    private String hash;
+    private String text;
+
+    public RichTextBlock() {
+    }
+
+    public RichTextBlock(String hash, String text) {
+        this.hash = hash;
+        this.text = text;
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    /**
+     * Hexadecimal SHA-1 hash of the text.
+     */
+    @Column(nullable = false, length = 40)
+    @org.hibernate.annotations.Index(name = "RichTextBlock_hash")
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    @Column(columnDefinition="TEXT")
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+}
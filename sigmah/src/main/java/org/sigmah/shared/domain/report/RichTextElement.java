@@ -8,12 +8,18 @@ package org.sigmah.shared.domain.report;
 import java.io.Serializable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.ManyToOne;
+import javax.persistence.Transient;
 
 /**
+ * Text area of a version of a report.<br>
+ * <br>
+ * The text itself is kept in a {@link RichTextBlock} which may be shared with the other
+ * versions of the report.
  *
  * @author Raphaël Calabro (rcalabro@ideia.fr)
  */
@@ -25,11 +31,13 @@ public class RichTextElement implements Serializable {
     private Integer sectionId;
     private Integer index;
     private String text;
+    private RichTextBlock block;
 
     /**
      * Creates a new RichTextElement and fill some of its values.<br>
      * <br>
-     * Not similar to the clone method since it doesn't copy every fields.
+     * Not similar to the clone method since it doesn't copy every fields. The duplicate
+     * shares the block of this element.
      * @return A new RichTextElement object.
      */
     public RichTextElement duplicate() {
@@ -37,6 +45,7 @@ public class RichTextElement implements Serializable {
         duplicate.sectionId = this.sectionId;
         duplicate.index = this.index;
         duplicate.text = this.text;
+        duplicate.block = this.block;
 
         return duplicate;
     }
@@ -77,6 +86,11 @@ public class RichTextElement implements Serializable {
         this.sectionId = sectionId;
     }
 
+    /**
+     * Text of the elements saved before the introduction of the blocks,
+     * <code>null</code> for the others.
+     * @see #getContent()
+     */
     @Column(columnDefinition="TEXT")
     public String getText() {
         return text;
@@ -85,4 +99,22 @@ public class RichTextElement implements Serializable {
     public void setText(String text) {
         this.text = text;
     }
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    public RichTextBlock getBlock() {
+        return block;
+    }
+
+    public void setBlock(RichTextBlock block) {
+        this.block = block;
+    }
+
+    /**
+     * Gets the text of this element, from its block if it has one.
+     * @return The text of this element.
+     */
+    @Transient
+    public String getContent() {
+        return block != null ? block.getText() : text;
+    }
 }
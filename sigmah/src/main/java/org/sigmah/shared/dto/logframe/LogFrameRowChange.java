@@ -0,0 +1,272 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.shared.dto.logframe;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.sigmah.shared.domain.logframe.LogFrameGroupType;
+import org.sigmah.shared.dto.IndicatorDTO;
+
+import com.extjs.gxt.ui.client.data.BaseModelData;
+
+/**
+ * Change of a single row of a log frame: its creation, the new values of its own columns,
+ * or its deletion.
+ * <p>
+ * The rows are referenced by their id, or by their client-side id if they are not saved
+ * yet. The parent, the group and the indicators of a row are never serialized, only
+ * their references.
+ */
+public class LogFrameRowChange extends BaseModelData {
+
+    private static final long serialVersionUID = -1794420268360325487L;
+
+    /**
+     * Kinds of rows, in the order they must be created.
+     */
+    public static enum Kind {
+        GROUP, SPECIFIC_OBJECTIVE, EXPECTED_RESULT, ACTIVITY, PREREQUISITE
+    }
+
+    public LogFrameRowChange() {
+        // serialization
+    }
+
+    private LogFrameRowChange(Kind kind, Integer id, int clientSideId) {
+        set("kind", kind.name());
+        set("id", id);
+        if (id == null) {
+            set("tmpid", clientSideId);
+        }
+    }
+
+    /**
+     * Creates the deletion of a row.
+     */
+    public static LogFrameRowChange deletion(Kind kind, int id) {
+        final LogFrameRowChange change = new LogFrameRowChange(kind, id, id);
+        change.set("deleted", Boolean.TRUE);
+        return change;
+    }
+
+    /**
+     * Creates the current state of a group.
+     */
+    public static LogFrameRowChange of(LogFrameGroupDTO group) {
+        final LogFrameRowChange change = new LogFrameRowChange(Kind.GROUP, (Integer) group.get("id"),
+                group.getClientSideId());
+        change.set("label", group.getLabel());
+        change.set("type", group.getType() != null ? group.getType().name() : null);
+        return change;
+    }
+
+    /**
+     * Creates the current state of a specific objective.
+     */
+    public static LogFrameRowChange of(SpecificObjectiveDTO objective) {
+        final LogFrameRowChange change = ofElement(Kind.SPECIFIC_OBJECTIVE, objective);
+        change.set("interventionLogic", objective.getInterventionLogic());
+        return change;
+    }
+
+    /**
+     * Creates the current state of an expected result.
+     */
+    public static LogFrameRowChange of(ExpectedResultDTO result) {
+        final LogFrameRowChange change = ofElement(Kind.EXPECTED_RESULT, result);
+        change.set("interventionLogic", result.getInterventionLogic());
+        final SpecificObjectiveDTO parent = result.getParentSpecificObjective();
+        if (parent != null) {
+            change.setParent((Integer) parent.get("id"), parent.getClientSideId());
+        }
+        return change;
+    }
+
+    /**
+     * Creates the current state of an activity.
+     */
+    public static LogFrameRowChange of(LogFrameActivityDTO activity) {
+        final LogFrameRowChange change = ofElement(Kind.ACTIVITY, activity);
+        change.set("title", activity.getTitle());
+        change.set("startDate", activity.getStartDate());
+        change.set("endDate", activity.getEndDate());
+        change.set("advancement", activity.getAdvancement());
+        final ExpectedResultDTO parent = activity.getParentExpectedResult();
+        if (parent != null) {
+            change.setParent((Integer) parent.get("id"), parent.getClientSideId());
+        }
+        return change;
+    }
+
+    /**
+     * Creates the current state of a prerequisite.
+     */
+    public static LogFrameRowChange of(PrerequisiteDTO prerequisite) {
+        final LogFrameRowChange change = new LogFrameRowChange(Kind.PREREQUISITE, (Integer) prerequisite.get("id"),
+                prerequisite.getClientSideId());
+        change.set("code", prerequisite.getCode());
+        change.set("position", prerequisite.getPosition());
+        change.set("content", prerequisite.getContent());
+        change.setGroup(prerequisite.getGroup());
+        return change;
+    }
+
+    private static LogFrameRowChange ofElement(Kind kind, LogFrameElementDTO element) {
+        final LogFrameRowChange change = new LogFrameRowChange(kind, (Integer) element.get("id"),
+                element.getClientSideId());
+        change.set("code", element.getCode());
+        change.set("position", element.getPosition());
+        change.set("risksAndAssumptions", element.getRisksAndAssumptions());
+        change.setGroup(element.getGroup());
+        change.set("indicatorIds", indicatorIds(element.getIndicators()));
+        return change;
+    }
+
+    /**
+     * @return The sorted ids of the saved indicators, the indicators being saved on their
+     *         own before being linked to an element.
+     */
+    private static ArrayList<Integer> indicatorIds(List<IndicatorDTO> indicators) {
+        final ArrayList<Integer> ids = new ArrayList<Integer>();
+        if (indicators != null) {
+            for (final IndicatorDTO indicator : indicators) {
+                final Integer id = indicator.get("id");
+                if (id != null) {
+                    ids.add(id);
+                }
+            }
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    private void setParent(Integer id, int clientSideId) {
+        set("parentId", id);
+        if (id == null) {
+            set("parentTmpId", clientSideId);
+        }
+    }
+
+    private void setGroup(LogFrameGroupDTO group) {
+        if (group != null) {
+            final Integer id = (Integer) group.get("id");
+            set("groupId", id);
+            if (id == null) {
+                set("groupTmpId", group.getClientSideId());
+            }
+        }
+    }
+
+    public Kind getKind() {
+        return Kind.valueOf((String) get("kind"));
+    }
+
+    public boolean isDeleted() {
+        return Boolean.TRUE.equals(get("deleted"));
+    }
+
+    /**
+     * @return The id of the row, <code>null</code> if it is created by this change.
+     */
+    public Integer getId() {
+        return get("id");
+    }
+
+    public void setId(Integer id) {
+        set("id", id);
+    }
+
+    /**
+     * @return The client-side id of a row created by this change.
+     */
+    public Integer getTmpId() {
+        return get("tmpid");
+    }
+
+    public Integer getParentId() {
+        return get("parentId");
+    }
+
+    public Integer getParentTmpId() {
+        return get("parentTmpId");
+    }
+
+    public Integer getGroupId() {
+        return get("groupId");
+    }
+
+    public Integer getGroupTmpId() {
+        return get("groupTmpId");
+    }
+
+    public Integer getCode() {
+        return get("code");
+    }
+
+    public Integer getPosition() {
+        return get("position");
+    }
+
+    public String getLabel() {
+        return get("label");
+    }
+
+    public LogFrameGroupType getType() {
+        final String type = get("type");
+        return type != null ? LogFrameGroupType.valueOf(type) : null;
+    }
+
+    public String getRisksAndAssumptions() {
+        return get("risksAndAssumptions");
+    }
+
+    public String getInterventionLogic() {
+        return get("interventionLogic");
+    }
+
+    public String getTitle() {
+        return get("title");
+    }
+
+    public Date getStartDate() {
+        return get("startDate");
+    }
+
+    public Date getEndDate() {
+        return get("endDate");
+    }
+
+    public Integer getAdvancement() {
+        return get("advancement");
+    }
+
+    public String getContent() {
+        return get("content");
+    }
+
+    /**
+     * @return The ids of the indicators linked to an element, <code>null</code> for the
+     *         groups and the prerequisites.
+     */
+    public List<Integer> getIndicatorIds() {
+        return get("indicatorIds");
+    }
+
+    /**
+     * @return If this change sets the same values as the given one.
+     */
+    public boolean hasSameValues(LogFrameRowChange other) {
+        return other != null && getProperties().equals(other.getProperties());
+    }
+
+    @Override
+    public String toString() {
+        return "LogFrameRowChange " + getProperties();
+    }
+}
@@ -143,6 +143,17 @@ public final class FileUploadUtils {
 	 */
 	public static final String IMAGE_URL = "url";
 
+	/**
+	 * The size variant of an image (<code>banner</code>, <code>thumbnail</code>), the
+	 * stored image is returned if missing.
+	 */
+	public static final String IMAGE_SIZE = "size";
+
+	/**
+	 * The size of the organization logo in the application banner.
+	 */
+	public static final String IMAGE_SIZE_BANNER = "banner";
+
 	/**
 	 * The expected date of a monitored point.
 	 */
@@ -0,0 +1,22 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.shared.exception;
+
+/**
+ * Thrown when the data to update have been changed by another user since they were
+ * loaded.
+ */
+public class ConcurrentUpdateException extends CommandException {
+
+    private static final long serialVersionUID = 2817934028471620153L;
+
+    public ConcurrentUpdateException() {
+    }
+
+    public ConcurrentUpdateException(String message) {
+        super(message);
+    }
+}
@@ -7,6 +7,7 @@ package org.sigmah.shared.report.content;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
@@ -88,6 +89,16 @@ public class PivotTableData implements Serializable {
     public void updateTotals() {
     	rootRow.total();
     }
+
+    /**
+     * Sorts the children of every row and column axis that were added with a
+     * comparator. Axes sort themselves lazily when their children are first
+     * read, but this must be called before the table is serialized.
+     */
+    public void sortAxes() {
+        rootRow.sortDescendants();
+        rootColumn.sortDescendants();
+    }
     
     @Override 
     public String toString() {
@@ -175,6 +186,17 @@ public class PivotTableData implements Serializable {
 		
 		private List<Axis> children = new ArrayList<Axis>();
 
+        /**
+         * Position of this axis within its parent's children
+         */
+        private int ordinal;
+
+        /**
+         * Comparator for children which have been added but not yet sorted,
+         * null if the children are in order
+         */
+        private transient Comparator<Axis> pendingComparator;
+
         public Axis() {
 
 		}
@@ -201,22 +223,47 @@ public class PivotTableData implements Serializable {
 
             childMap.put(category, child);
 
-            if(comparator == null) {
-                children.add(child);
-            } else {
-                insertChildSorted(child, comparator);
+            child.ordinal = children.size();
+            children.add(child);
+
+            if(comparator != null) {
+                // children are sorted all at once when they are next read,
+                // rather than inserted one by one in order
+                pendingComparator = comparator;
             }
             return child;            
         }
 
-        private void insertChildSorted(Axis child, Comparator<Axis> comparator) {
-            for(int i=0; i!=children.size(); ++i) {
-                if(comparator.compare(child, children.get(i)) < 0) {
-                    children.add(i, child);
-                    return;
+        /**
+         * Sorts the children added with a comparator (the sort is stable, so children
+         * which compare equal keep the order in which they were added) and renumbers
+         * their ordinals.
+         */
+        private void sortChildren() {
+            if(pendingComparator != null) {
+                Collections.sort(children, pendingComparator);
+                for(int i=0; i!=children.size(); ++i) {
+                    children.get(i).ordinal = i;
                 }
+                pendingComparator = null;
             }
-            children.add(child);
+        }
+
+        private void sortDescendants() {
+            sortChildren();
+            for(Axis child : children) {
+                child.sortDescendants();
+            }
+        }
+
+        /**
+         * @return the position of this axis among its parent's children
+         */
+        public int getOrdinal() {
+            if(parent != null) {
+                parent.sortChildren();
+            }
+            return ordinal;
         }
 
 		public Axis nextSibling() {
@@ -224,7 +271,7 @@ public class PivotTableData implements Serializable {
                 return null;
             }
 
-            int i = parent.children.indexOf(this);
+            int i = getOrdinal();
 
             if(i < 1) {
                 return null;
@@ -238,7 +285,7 @@ public class PivotTableData implements Serializable {
 				return null;
 			}
 
-            int i = parent.children.indexOf(this);
+            int i = getOrdinal();
 
             if(i == parent.children.size()-1) {
                 return null;
@@ -248,10 +295,12 @@ public class PivotTableData implements Serializable {
 		}
 
 		public Axis firstChild() {
+			sortChildren();
 			return children.get(0);
 		}
 		
 		public Axis lastChild() {
+			sortChildren();
 			return children.get(children.size()-1);
 		}
 						
@@ -299,6 +348,7 @@ public class PivotTableData implements Serializable {
 
 		@Override
 		public List<Axis> getChildren() {
+			sortChildren();
 			return children;
 		}
 
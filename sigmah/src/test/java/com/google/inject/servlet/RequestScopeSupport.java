@@ -0,0 +1,31 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package com.google.inject.servlet;
+
+import java.util.concurrent.Callable;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Runs test code as if it was called by the {@link GuiceFilter} for the given request, so
+ * the request scope is active and the request can be continued by other threads with
+ * {@link ServletScopes#continueRequest}, without dispatching to the servlets.
+ */
+public final class RequestScopeSupport {
+
+    private RequestScopeSupport() {
+    }
+
+    public static <T> T callInRequest(HttpServletRequest request, Callable<T> callable) throws Exception {
+        GuiceFilter.Context previous = GuiceFilter.localContext.get();
+        GuiceFilter.localContext.set(new GuiceFilter.Context(request, null));
+        try {
+            return callable.call();
+        } finally {
+            GuiceFilter.localContext.set(previous);
+        }
+    }
+}
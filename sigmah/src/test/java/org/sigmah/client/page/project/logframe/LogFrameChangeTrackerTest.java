@@ -0,0 +1,113 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.client.page.project.logframe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sigmah.shared.command.UpdateLogFrameRows;
+import org.sigmah.shared.command.result.LogFrameRowsResult;
+import org.sigmah.shared.domain.logframe.LogFrameGroupType;
+import org.sigmah.shared.dto.IndicatorDTO;
+import org.sigmah.shared.dto.logframe.ExpectedResultDTO;
+import org.sigmah.shared.dto.logframe.LogFrameDTO;
+import org.sigmah.shared.dto.logframe.LogFrameGroupDTO;
+import org.sigmah.shared.dto.logframe.LogFrameRowChange;
+import org.sigmah.shared.dto.logframe.LogFrameRowChange.Kind;
+import org.sigmah.shared.dto.logframe.SpecificObjectiveDTO;
+
+public class LogFrameChangeTrackerTest {
+
+    private LogFrameDTO logFrame;
+    private SpecificObjectiveDTO objective;
+    private SpecificObjectiveDTO otherObjective;
+    private LogFrameChangeTracker tracker;
+
+    @Before
+    public void setUp() {
+        logFrame = new LogFrameDTO();
+        logFrame.setId(10);
+        logFrame.setMainObjective("Main objective");
+
+        LogFrameGroupDTO group = logFrame.addGroup("-", LogFrameGroupType.SPECIFIC_OBJECTIVE);
+        group.setId(1);
+
+        objective = logFrame.addSpecificObjective();
+        objective.setId(2);
+        objective.setGroup(group);
+
+        otherObjective = logFrame.addSpecificObjective();
+        otherObjective.setId(3);
+        otherObjective.setGroup(group);
+
+        tracker = new LogFrameChangeTracker();
+        tracker.reset(logFrame);
+    }
+
+    @Test
+    public void nothingChanged() {
+        assertTrue(tracker.createCommand(1, logFrame).isEmpty());
+    }
+
+    @Test
+    public void onlyChangedRowsAreSent() {
+        objective.setInterventionLogic("Changed");
+        logFrame.setMainObjective("Changed main objective");
+
+        UpdateLogFrameRows command = tracker.createCommand(1, logFrame);
+
+        assertTrue(command.isMainObjectiveChanged());
+        assertEquals(1, command.getChanges().size());
+        assertEquals(Integer.valueOf(2), command.getChanges().get(0).getId());
+        assertEquals("Changed", command.getChanges().get(0).getInterventionLogic());
+    }
+
+    @Test
+    public void linkedIndicatorsAreSent() {
+        IndicatorDTO indicator = new IndicatorDTO();
+        indicator.setId(7);
+        objective.getIndicators().add(indicator);
+
+        UpdateLogFrameRows command = tracker.createCommand(1, logFrame);
+
+        assertEquals(1, command.getChanges().size());
+        assertEquals(Collections.singletonList(7), command.getChanges().get(0).getIndicatorIds());
+    }
+
+    @Test
+    public void createdRowsGetTheirIds() {
+        ExpectedResultDTO result = objective.addExpectedResult();
+        logFrame.removeSpecificObjective(otherObjective);
+
+        UpdateLogFrameRows command = tracker.createCommand(1, logFrame);
+        assertEquals(2, command.getChanges().size());
+
+        LogFrameRowChange creation = command.getChanges().get(0);
+        assertEquals(Kind.EXPECTED_RESULT, creation.getKind());
+        assertNull(creation.getId());
+        assertEquals(Integer.valueOf(2), creation.getParentId());
+
+        LogFrameRowChange deletion = command.getChanges().get(1);
+        assertEquals(Kind.SPECIFIC_OBJECTIVE, deletion.getKind());
+        assertTrue(deletion.isDeleted());
+        assertEquals(Integer.valueOf(3), deletion.getId());
+
+        // the server sends back the rows with the ids of the created ones
+        List<LogFrameRowChange> rows = new ArrayList<LogFrameRowChange>(command.getChanges());
+        rows.get(0).setId(42);
+        tracker.onSaved(new LogFrameRowsResult(rows, null), logFrame);
+
+        assertEquals(42, result.getId());
+        assertTrue(tracker.createCommand(1, logFrame).isEmpty());
+    }
+}
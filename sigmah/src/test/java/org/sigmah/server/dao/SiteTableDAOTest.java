@@ -9,6 +9,10 @@ import com.google.inject.Inject;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.sigmah.server.dao.hibernate.HibernateSiteTableDAO;
+import org.sigmah.server.domain.SiteData;
+import org.sigmah.server.report.generator.SiteDataBinder;
+import org.sigmah.shared.dao.Filter;
+import org.sigmah.shared.dao.SiteProjection;
 import org.sigmah.shared.dao.SiteProjectionBinder;
 import org.sigmah.shared.dao.SiteTableDAO;
 import org.sigmah.shared.domain.User;
@@ -17,10 +21,15 @@ import org.sigmah.test.MockHibernateModule;
 import org.sigmah.test.Modules;
 
 import javax.persistence.EntityManager;
+import java.util.Collections;
 import java.util.List;
 
 import static org.easymock.EasyMock.createNiceMock;
 import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(InjectionSupport.class)
 @OnDataSet("/dbunit/sites-simple1.db.xml")
@@ -46,4 +55,24 @@ public class SiteTableDAOTest {
         List list = dao.query(user, null, null, binder, SiteTableDAO.RETRIEVE_ALL, 0, -1);
     }
 
+    @Test
+    public void testProjection() {
+
+        User user = em.find(User.class, 1);
+
+        Filter filter = new Filter();
+        filter.onActivity(1);
+
+        List<SiteData> sites = dao.query(user, filter, null, new SiteDataBinder(),
+                new SiteProjection(SiteTableDAO.RETRIEVE_NONE).withIndicators(Collections.singleton(1)), 0, -1);
+
+        assertEquals(3, sites.size());
+        for (SiteData site : sites) {
+            assertNotNull(site.getIndicatorValue(1));
+            assertNull(site.getIndicatorValue(2));
+            assertTrue(site.attributes.isEmpty());
+            assertTrue(site.adminEntities.isEmpty());
+        }
+    }
+
 }
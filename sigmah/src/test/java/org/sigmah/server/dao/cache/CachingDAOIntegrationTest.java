@@ -0,0 +1,99 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.dao.cache;
+
+import com.google.inject.Inject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.sigmah.server.dao.OnDataSet;
+import org.sigmah.server.dao.PivotDAO;
+import org.sigmah.server.endpoint.gwtrpc.CommandServlet;
+import org.sigmah.server.endpoint.gwtrpc.GwtRpcModule;
+import org.sigmah.server.util.BeanMappingModule;
+import org.sigmah.server.util.TemplateModule;
+import org.sigmah.shared.command.Command;
+import org.sigmah.shared.command.GetSites;
+import org.sigmah.shared.command.UpdateEntity;
+import org.sigmah.shared.command.result.CommandResult;
+import org.sigmah.shared.command.result.SiteResult;
+import org.sigmah.shared.dao.Filter;
+import org.sigmah.shared.domain.User;
+import org.sigmah.shared.dto.SiteDTO;
+import org.sigmah.shared.exception.CommandException;
+import org.sigmah.shared.report.model.Dimension;
+import org.sigmah.shared.report.model.DimensionType;
+import org.sigmah.test.CachingMockHibernateModule;
+import org.sigmah.test.InjectionSupport;
+import org.sigmah.test.Modules;
+
+import javax.persistence.EntityManager;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Reads through the caching DAOs, writes through the handlers and reads again.
+ */
+@RunWith(InjectionSupport.class)
+@OnDataSet("/dbunit/sites-simple1.db.xml")
+@Modules({
+        CachingMockHibernateModule.class,
+        TemplateModule.class,
+        BeanMappingModule.class,
+        GwtRpcModule.class
+})
+public class CachingDAOIntegrationTest {
+
+    private static final int OWNER_USER_ID = 1;
+
+    @Inject
+    private CommandServlet servlet;
+    @Inject
+    private EntityManager em;
+    @Inject
+    private PivotDAO pivotDAO;
+
+    @Test
+    public void writesInvalidateTheCachedResults() throws CommandException {
+
+        Filter filter = new Filter();
+        filter.addRestriction(DimensionType.Indicator, 1);
+        Set<Dimension> dimensions = Collections.singleton(new Dimension(DimensionType.Indicator));
+
+        List<PivotDAO.Bucket> buckets = pivotDAO.aggregate(OWNER_USER_ID, filter, dimensions);
+        assertEquals(15100, buckets.get(0).doubleValue(), 0.1);
+        assertSame(buckets, pivotDAO.aggregate(OWNER_USER_ID, filter, dimensions));
+
+        SiteResult sites = execute(GetSites.byId(1));
+        SiteDTO site = sites.getData().get(0);
+        assertEquals(1500, site.getIndicatorValue(1), 0.1);
+
+        site.setIndicatorValue(1, 2500.0);
+        execute(new UpdateEntity(site, site.getProperties()));
+
+        buckets = pivotDAO.aggregate(OWNER_USER_ID, filter, dimensions);
+        assertEquals(16100, buckets.get(0).doubleValue(), 0.1);
+
+        sites = execute(GetSites.byId(1));
+        assertEquals(2500, sites.getData().get(0).getIndicatorValue(1), 0.1);
+    }
+
+    private <T extends CommandResult> T execute(Command<T> command) throws CommandException {
+        User user = em.find(User.class, OWNER_USER_ID);
+
+        List<CommandResult> results = servlet.handleCommands(user, Collections.<Command>singletonList(command));
+        em.clear();
+
+        CommandResult result = results.get(0);
+        if (result instanceof CommandException) {
+            throw (CommandException) result;
+        }
+        return (T) result;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.dao.cache;
+
+import org.junit.Test;
+import org.sigmah.shared.dao.Filter;
+import org.sigmah.shared.report.model.DimensionType;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class QueryResultCacheTest {
+
+    @Test
+    public void keyIsIndependentOfTheRestrictionOrder() {
+        Filter a = new Filter();
+        a.addRestriction(DimensionType.Indicator, Arrays.asList(3, 1, 2));
+        a.addRestriction(DimensionType.Database, 4);
+
+        Filter b = new Filter();
+        b.addRestriction(DimensionType.Database, 4);
+        b.addRestriction(DimensionType.Indicator, Arrays.asList(2, 3, 1));
+
+        assertEquals(QueryResultCache.key("aggregate", 1, a), QueryResultCache.key("aggregate", 1, b));
+        assertFalse(QueryResultCache.key("aggregate", 1, a).equals(QueryResultCache.key("aggregate", 2, a)));
+    }
+
+    @Test
+    public void invalidationDiscardsTheResultsOfTheDatabase() {
+        QueryResultCache cache = new QueryResultCache();
+        cache.put("a", "A", new HashSet<Integer>(Arrays.asList(1)), 1, cache.getStamp());
+        cache.put("b", "B", new HashSet<Integer>(Arrays.asList(2)), 1, cache.getStamp());
+        cache.put("all", "ALL", null, 1, cache.getStamp());
+
+        cache.invalidate(Collections.singleton(1));
+
+        assertNull(cache.get("test", "a"));
+        assertNotNull(cache.get("test", "b"));
+        assertNull(cache.get("test", "all"));
+    }
+
+    @Test
+    public void resultLoadedBeforeAnInvalidationIsNotKept() {
+        QueryResultCache cache = new QueryResultCache();
+        long stamp = cache.getStamp();
+        cache.invalidate(Collections.singleton(1));
+        cache.put("a", "A", new HashSet<Integer>(Arrays.asList(2)), 1, stamp);
+
+        assertNull(cache.get("test", "a"));
+    }
+
+    @Test
+    public void leastRecentlyUsedResultsAreEvicted() {
+        QueryResultCache cache = new QueryResultCache();
+        int rows = QueryResultCache.MAX_ROWS / 10;
+        for (int i = 0; i < 10; i++) {
+            cache.put("r" + i, i, null, rows, cache.getStamp());
+        }
+        cache.get("test", "r0");
+        cache.put("r10", 10, null, rows, cache.getStamp());
+
+        assertNotNull(cache.get("test", "r0"));
+        assertNull(cache.get("test", "r1"));
+        assertNotNull(cache.get("test", "r10"));
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.endpoint.export.sigmah.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.persistence.EntityManager;
+
+import org.junit.Test;
+import org.sigmah.shared.domain.category.CategoryElement;
+import org.sigmah.shared.domain.category.CategoryType;
+import org.sigmah.shared.domain.element.QuestionChoiceElement;
+import org.sigmah.shared.domain.element.QuestionElement;
+
+public class ImportStateTest {
+
+    private static final int CATEGORY_TYPES = 5;
+    private static final int ELEMENTS_PER_TYPE = 10;
+
+    @Test
+    public void savesEachCategoryOnce() {
+        final List<Object> persisted = new ArrayList<Object>();
+
+        copy(question(), recordingEntityManager(persisted));
+
+        assertEquals(CATEGORY_TYPES * (ELEMENTS_PER_TYPE + 1), persisted.size());
+        assertEquals(persisted.size(), identitySet(persisted).size());
+    }
+
+    /**
+     * Copies one model from many threads, as concurrent "copy model" commands do, and
+     * checks that every copy saved all the categories of the model: a state left by
+     * another copy would make it skip the objects it has already seen.
+     * <p>
+     * A copy modifies the instances it saves, as the handlers do with the instances loaded
+     * by their entity manager, so the copies take turns on the shared model.
+     */
+    @Test
+    public void concurrentCopiesDoNotShareState() throws Exception {
+        final int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+        final int copiesPerThread = 50;
+
+        final QuestionElement model = question();
+        final Map<Object, Boolean> categories = identitySet(categoriesOf(model));
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<List<Object>>> results = new ArrayList<Future<List<Object>>>();
+            for (int i = 0; i != threads * copiesPerThread; ++i) {
+                results.add(executor.submit(new Callable<List<Object>>() {
+
+                    @Override
+                    public List<Object> call() throws Exception {
+                        final List<Object> persisted = new ArrayList<Object>();
+                        synchronized (model) {
+                            copy(model, recordingEntityManager(persisted));
+                        }
+                        return persisted;
+                    }
+                }));
+            }
+
+            for (Future<List<Object>> result : results) {
+                final List<Object> persisted = result.get();
+                assertEquals(CATEGORY_TYPES * (ELEMENTS_PER_TYPE + 1), persisted.size());
+                assertEquals("an object has been saved twice", persisted.size(), identitySet(persisted).size());
+                for (Object object : persisted) {
+                    assertTrue(categories.containsKey(object));
+                }
+            }
+
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static QuestionElement copy(QuestionElement question, EntityManager em) {
+        final ImportState state = new ImportState();
+        for (QuestionChoiceElement choice : question.getChoices()) {
+            state.saveCategoryElement(choice.getCategoryElement(), em);
+            assertNull(choice.getCategoryElement().getId());
+            assertSame(choice.getCategoryElement().getParentType(),
+                    choice.getCategoryElement().getParentType().getElements().get(0).getParentType());
+        }
+        return question;
+    }
+
+    private static List<Object> categoriesOf(QuestionElement question) {
+        final List<Object> categories = new ArrayList<Object>();
+        final Map<Object, Boolean> types = new IdentityHashMap<Object, Boolean>();
+        for (QuestionChoiceElement choice : question.getChoices()) {
+            final CategoryType type = choice.getCategoryElement().getParentType();
+            if (types.put(type, Boolean.TRUE) == null) {
+                categories.add(type);
+                categories.addAll(type.getElements());
+            }
+        }
+        return categories;
+    }
+
+    private static Map<Object, Boolean> identitySet(List<Object> objects) {
+        final Map<Object, Boolean> set = new IdentityHashMap<Object, Boolean>();
+        for (Object object : objects) {
+            set.put(object, Boolean.TRUE);
+        }
+        return set;
+    }
+
+    /**
+     * A question whose choices are linked to every element of a few category types.
+     */
+    private static QuestionElement question() {
+        final QuestionElement question = new QuestionElement();
+        question.setId(1L);
+        final List<QuestionChoiceElement> choices = new ArrayList<QuestionChoiceElement>();
+
+        int nextId = 1;
+        for (int t = 0; t != CATEGORY_TYPES; ++t) {
+            final CategoryType type = new CategoryType();
+            type.setId(nextId++);
+            type.setLabel("Type " + t);
+
+            final List<CategoryElement> elements = new ArrayList<CategoryElement>();
+            for (int e = 0; e != ELEMENTS_PER_TYPE; ++e) {
+                final CategoryElement element = new CategoryElement();
+                element.setId(nextId++);
+                element.setLabel("Element " + e);
+                element.setParentType(type);
+                elements.add(element);
+
+                final QuestionChoiceElement choice = new QuestionChoiceElement();
+                choice.setId((long) nextId++);
+                choice.setLabel(element.getLabel());
+                choice.setParentQuestion(question);
+                choice.setCategoryElement(element);
+                choices.add(choice);
+            }
+            type.setElements(elements);
+        }
+        question.setChoices(choices);
+        return question;
+    }
+
+    /**
+     * An entity manager recording the persisted objects in the given list.
+     */
+    private static EntityManager recordingEntityManager(final List<Object> persisted) {
+        return (EntityManager) Proxy.newProxyInstance(EntityManager.class.getClassLoader(),
+                new Class<?>[] { EntityManager.class }, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if ("persist".equals(method.getName())) {
+                            persisted.add(args[0]);
+                            return null;
+                        } else if ("merge".equals(method.getName())) {
+                            return args[0];
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
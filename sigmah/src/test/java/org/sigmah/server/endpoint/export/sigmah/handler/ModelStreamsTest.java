@@ -0,0 +1,103 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.endpoint.export.sigmah.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.sigmah.shared.domain.category.CategoryElement;
+import org.sigmah.shared.domain.category.CategoryType;
+
+public class ModelStreamsTest {
+
+    @Test
+    public void roundTrip() throws Exception {
+        final CategoryType type = categoryType(20);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ModelStreams.write(out, type);
+
+        assertCategoryTypeEquals(type, ModelStreams.read(new ByteArrayInputStream(out.toByteArray()),
+                CategoryType.class));
+    }
+
+    @Test
+    public void readsLegacyFiles() throws Exception {
+        final CategoryType type = categoryType(20);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ObjectOutputStream objectOutputStream = new ObjectOutputStream(out);
+        objectOutputStream.writeObject(type);
+        objectOutputStream.close();
+
+        assertCategoryTypeEquals(type, ModelStreams.read(new ByteArrayInputStream(out.toByteArray()),
+                CategoryType.class));
+    }
+
+    @Test
+    public void compressesLargeModels() throws Exception {
+        final CategoryType type = categoryType(2000);
+
+        final ByteArrayOutputStream legacy = new ByteArrayOutputStream();
+        final ObjectOutputStream objectOutputStream = new ObjectOutputStream(legacy);
+        objectOutputStream.writeObject(type);
+        objectOutputStream.close();
+
+        final ByteArrayOutputStream versioned = new ByteArrayOutputStream();
+        ModelStreams.write(versioned, type);
+
+        assertTrue(versioned.size() < legacy.size() / 2);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsNewerVersions() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final DataOutputStream header = new DataOutputStream(out);
+        header.write(ModelStreams.MAGIC);
+        header.writeInt(ModelStreams.FORMAT_VERSION + 1);
+        header.close();
+
+        ModelStreams.read(new ByteArrayInputStream(out.toByteArray()), CategoryType.class);
+    }
+
+    private static void assertCategoryTypeEquals(CategoryType expected, CategoryType actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getLabel(), actual.getLabel());
+        assertEquals(expected.getElements().size(), actual.getElements().size());
+        for (int i = 0; i != expected.getElements().size(); ++i) {
+            assertEquals(expected.getElements().get(i).getLabel(), actual.getElements().get(i).getLabel());
+            assertSame(actual, actual.getElements().get(i).getParentType());
+        }
+    }
+
+    private static CategoryType categoryType(int elementCount) {
+        final CategoryType type = new CategoryType();
+        type.setId(1);
+        type.setLabel("Sectors");
+
+        final List<CategoryElement> elements = new ArrayList<CategoryElement>();
+        for (int i = 0; i != elementCount; ++i) {
+            final CategoryElement element = new CategoryElement();
+            element.setId(i + 2);
+            element.setLabel("Sector " + i);
+            element.setColor("00ff00");
+            element.setParentType(type);
+            elements.add(element);
+        }
+        type.setElements(elements);
+        return type;
+    }
+}
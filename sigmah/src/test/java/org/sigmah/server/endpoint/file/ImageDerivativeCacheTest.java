@@ -0,0 +1,154 @@
+package org.sigmah.server.endpoint.file;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ImageDerivativeCacheTest {
+
+    private static final String PATH = "images/logo.png";
+
+    private MemoryStorageProvider storage;
+    private ImageDerivativeCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        storage = new MemoryStorageProvider();
+        storage.put(PATH, png(400, 100));
+        cache = new ImageDerivativeCache(storage);
+    }
+
+    @Test
+    public void resizesWithinTheVariantBounds() throws IOException {
+        final ImageDerivativeCache.Image banner = cache.get(PATH, ImageDerivativeCache.Variant.BANNER);
+        final BufferedImage image = ImageIO.read(new ByteArrayInputStream(banner.getContent()));
+
+        assertEquals("image/png", banner.getContentType());
+        assertTrue(image.getWidth() <= LogoManagerImpl.LOGO_WIDTH);
+        assertTrue(image.getHeight() <= LogoManagerImpl.LOGO_HEIGHT);
+        assertEquals(4.0, (double) image.getWidth() / image.getHeight(), 0.1);
+    }
+
+    @Test
+    public void originalIsServedUntouched() throws IOException {
+        final ImageDerivativeCache.Image original = cache.get(PATH, ImageDerivativeCache.Variant.ORIGINAL);
+
+        assertArrayEquals(storage.files.get(PATH), original.getContent());
+        assertEquals("image/png", original.getContentType());
+        assertEquals('"' + original.getVersion() + '"', original.getETag());
+    }
+
+    @Test
+    public void concurrentFirstRequestsShareOneLoad() throws Exception {
+        final int threads = 16;
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<ImageDerivativeCache.Image>> results = new ArrayList<Future<ImageDerivativeCache.Image>>();
+            for (int i = 0; i != threads; ++i) {
+                results.add(executor.submit(new Callable<ImageDerivativeCache.Image>() {
+
+                    @Override
+                    public ImageDerivativeCache.Image call() throws Exception {
+                        start.await();
+                        return cache.get(PATH, ImageDerivativeCache.Variant.THUMBNAIL);
+                    }
+                }));
+            }
+            start.countDown();
+
+            final ImageDerivativeCache.Image first = results.get(0).get();
+            for (Future<ImageDerivativeCache.Image> result : results) {
+                assertSame(first, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(1, storage.opens.get());
+    }
+
+    @Test
+    public void invalidateReloadsTheNewContent() throws IOException {
+        final ImageDerivativeCache.Image before = cache.get(PATH, ImageDerivativeCache.Variant.ORIGINAL);
+        assertSame(before, cache.get(PATH, ImageDerivativeCache.Variant.ORIGINAL));
+
+        storage.put(PATH, png(200, 200));
+        cache.invalidate(PATH);
+
+        final ImageDerivativeCache.Image after = cache.get(PATH, ImageDerivativeCache.Variant.ORIGINAL);
+        assertFalse(before.getVersion().equals(after.getVersion()));
+        assertEquals(2, storage.opens.get());
+    }
+
+    @Test
+    public void failuresAreNotCached() throws IOException {
+        try {
+            cache.get("missing.png", ImageDerivativeCache.Variant.ORIGINAL);
+            fail();
+        } catch (IOException e) {
+            // Expected.
+        }
+
+        storage.put("missing.png", png(10, 10));
+        assertNotNull(cache.get("missing.png", ImageDerivativeCache.Variant.ORIGINAL));
+        assertEquals(2, storage.opens.get());
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static class MemoryStorageProvider implements FileStorageProvider {
+
+        private final Map<String, byte[]> files = new ConcurrentHashMap<String, byte[]>();
+        private final AtomicInteger opens = new AtomicInteger();
+
+        void put(String storageId, byte[] content) {
+            files.put(storageId, content);
+        }
+
+        @Override
+        public OutputStream create(String storageId) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public InputStream open(String storageId) throws IOException {
+            opens.incrementAndGet();
+            final byte[] content = files.get(storageId);
+            if (content == null) {
+                throw new IOException("No file " + storageId);
+            }
+            return new ByteArrayInputStream(content);
+        }
+
+        @Override
+        public Boolean delete(String storageId) {
+            return files.remove(storageId) != null;
+        }
+    }
+}
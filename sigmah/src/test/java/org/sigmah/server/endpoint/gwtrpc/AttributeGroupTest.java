@@ -14,11 +14,13 @@ import org.sigmah.shared.command.CreateEntity;
 import org.sigmah.shared.command.GetSchema;
 import org.sigmah.shared.command.UpdateEntity;
 import org.sigmah.shared.command.result.CreateResult;
+import org.sigmah.shared.domain.UserDatabase;
 import org.sigmah.shared.dto.ActivityDTO;
 import org.sigmah.shared.dto.AttributeGroupDTO;
 import org.sigmah.shared.dto.SchemaDTO;
 import org.sigmah.test.InjectionSupport;
 
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -83,4 +85,15 @@ public class AttributeGroupTest extends CommandTestCase {
         Assert.assertEquals(group.getName(), schema.getActivityById(1).getAttributeGroups().get(0).getName());
 
     }
+
+    @Test
+    public void updatingAnAttributeMovesTheSchemaStamp() throws Exception {
+        Date initial = em.find(UserDatabase.class, 1).getLastSchemaUpdate();
+
+        Map<String, Object> changes = new HashMap<String, Object>();
+        changes.put("name", "Retour volontaire");
+        execute(new UpdateEntity("Attribute", 1, changes));
+
+        Assert.assertTrue(em.find(UserDatabase.class, 1).getLastSchemaUpdate().after(initial));
+    }
 }
@@ -0,0 +1,113 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.endpoint.gwtrpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.sigmah.server.dao.OnDataSet;
+import org.sigmah.shared.command.GetValues;
+import org.sigmah.shared.command.result.ValueResult;
+import org.sigmah.shared.command.result.ValuesResult;
+import org.sigmah.shared.dto.value.ListableValue;
+import org.sigmah.shared.dto.value.TripletValueDTO;
+import org.sigmah.shared.exception.CommandException;
+import org.sigmah.test.InjectionSupport;
+
+@RunWith(InjectionSupport.class)
+@OnDataSet("/dbunit/values.db.xml")
+public class GetValuesTest extends CommandTestCase {
+
+    private static final String MESSAGE = "element.MessageElement";
+    private static final String CHECKBOX = "element.CheckboxElement";
+    private static final String QUESTION = "element.QuestionElement";
+    private static final String TEXT_AREA = "element.TextAreaElement";
+    private static final String TRIPLETS = "element.TripletsListElement";
+
+    @Test
+    public void singleValues() throws CommandException {
+        GetValues cmd = new GetValues(1, null);
+        cmd.addElement(2, CHECKBOX);
+        cmd.addElement(4, TEXT_AREA);
+
+        ValuesResult result = execute(cmd);
+
+        assertEquals("true", result.getValue(2).getValueObject());
+        assertEquals("Something", result.getValue(4).getValueObject());
+        assertFalse(result.getValue(4).isAmendment());
+    }
+
+    @Test
+    public void valuesOfTheRequestedContainerOnly() throws CommandException {
+        GetValues cmd = new GetValues(2, null);
+        cmd.addElement(2, CHECKBOX);
+        cmd.addElement(4, TEXT_AREA);
+        cmd.addElement(6, TRIPLETS);
+
+        ValuesResult result = execute(cmd);
+
+        assertFalse("no value in this project", result.getValue(2).isValueDefined());
+        assertEquals("Something else", result.getValue(4).getValueObject());
+        assertCodes(result.getValue(6), "T3");
+    }
+
+    @Test
+    public void missingValues() throws CommandException {
+        GetValues cmd = new GetValues(1, null);
+        cmd.addElement(1, MESSAGE);
+        cmd.addElement(3, QUESTION);
+        cmd.addElement(99, TEXT_AREA);
+
+        ValuesResult result = execute(cmd);
+
+        // message elements have no value, empty values are not defined
+        assertFalse(result.getValue(1).isValueDefined());
+        assertFalse(result.getValue(3).isValueDefined());
+        assertFalse("unknown element", result.getValue(99).isValueDefined());
+        assertNull(result.getValue(3).getValueObject());
+    }
+
+    @Test
+    public void multiValuedElements() throws CommandException {
+        GetValues cmd = new GetValues(1, null);
+        cmd.addElement(5, QUESTION);
+        cmd.addElement(6, TRIPLETS);
+        cmd.addElement(7, TRIPLETS);
+
+        ValuesResult result = execute(cmd);
+
+        // the choices of a multiple question are kept as a single value
+        assertEquals("3~5", result.getValue(5).getValueObject());
+
+        // the lists read with the same query keep their own entities, in order
+        assertCodes(result.getValue(6), "T1", "T2");
+        assertCodes(result.getValue(7), "T2");
+    }
+
+    @Test
+    public void noElements() throws CommandException {
+        ValuesResult result = execute(new GetValues(1, null));
+
+        assertFalse(result.getValue(2).isValueDefined());
+    }
+
+    private static void assertCodes(ValueResult value, String... codes) {
+        assertTrue(value.isValueDefined());
+        assertNull(value.getValueObject());
+
+        List<ListableValue> values = value.getValuesObject();
+        assertEquals(codes.length, values.size());
+        for (int i = 0; i < codes.length; i++) {
+            assertEquals(codes[i], ((TripletValueDTO) values.get(i)).getCode());
+        }
+    }
+}
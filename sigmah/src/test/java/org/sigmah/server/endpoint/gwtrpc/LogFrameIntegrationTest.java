@@ -3,17 +3,20 @@ package org.sigmah.server.endpoint.gwtrpc;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.not;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 import java.util.List;
 
 import org.dozer.Mapper;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.sigmah.client.page.project.logframe.LogFrameChangeTracker;
 import org.sigmah.server.dao.OnDataSet;
 import org.sigmah.shared.command.CopyLogFrame;
 import org.sigmah.shared.command.GetIndicators;
 import org.sigmah.shared.command.GetProject;
 import org.sigmah.shared.command.UpdateLogFrame;
+import org.sigmah.shared.command.UpdateLogFrameRows;
 import org.sigmah.shared.command.result.IndicatorListResult;
 import org.sigmah.shared.command.result.LogFrameResult;
 import org.sigmah.shared.domain.Indicator;
@@ -140,6 +143,67 @@ public class LogFrameIntegrationTest extends CommandTestCase {
     }
 
 
+    @Test
+    public void linkIndicatorsWithRowChanges() throws CommandException {
+
+        createNewLogFrameForProject(1);
+
+        ProjectDTO project = execute(new GetProject(1));
+        LogFrameDTO logFrame = project.getLogFrameDTO();
+        IndicatorListResult indicators = execute(GetIndicators.forDatabase(1));
+
+        LogFrameChangeTracker tracker = new LogFrameChangeTracker();
+        tracker.reset(logFrame);
+
+        logFrame.getSpecificObjectives().get(0).getIndicators().add(indicators.getData().get(0));
+
+        UpdateLogFrameRows command = tracker.createCommand(1, logFrame);
+        assertThat(command.getChanges().size(), equalTo(1));
+        tracker.onSaved(execute(command), logFrame);
+
+        project = execute(new GetProject(1));
+        List<IndicatorDTO> linked = project.getLogFrameDTO().getSpecificObjectives().get(0).getIndicators();
+        assertThat(linked.size(), equalTo(1));
+        assertThat(linked.get(0).getId(), equalTo(indicators.getData().get(0).getId()));
+
+        // unlink it
+        logFrame.getSpecificObjectives().get(0).getIndicators().clear();
+        execute(tracker.createCommand(1, logFrame));
+
+        project = execute(new GetProject(1));
+        assertThat(project.getLogFrameDTO().getSpecificObjectives().get(0).getIndicators().size(), equalTo(0));
+    }
+
+    @Test
+    public void deleteRowsWithRowChanges() throws CommandException {
+
+        createNewLogFrameForProject(1);
+
+        ProjectDTO project = execute(new GetProject(1));
+        LogFrameDTO logFrame = project.getLogFrameDTO();
+
+        LogFrameChangeTracker tracker = new LogFrameChangeTracker();
+        tracker.reset(logFrame);
+
+        // a group still used by an objective cannot be deleted
+        LogFrameGroupDTO soGroup = logFrame.getDefaultGroup(LogFrameGroupType.SPECIFIC_OBJECTIVE);
+        logFrame.removeGroup(soGroup);
+        try {
+            execute(tracker.createCommand(1, logFrame));
+            fail("the group is still used");
+        } catch (CommandException e) {
+            // expected
+        }
+
+        // the objective, its result and its activities are deleted before the group
+        logFrame.removeSpecificObjective(logFrame.getSpecificObjectives().get(0));
+        tracker.onSaved(execute(tracker.createCommand(1, logFrame)), logFrame);
+
+        project = execute(new GetProject(1));
+        assertThat(project.getLogFrameDTO().getSpecificObjectives().size(), equalTo(0));
+        assertThat(project.getLogFrameDTO().getGroups().size(), equalTo(2));
+    }
+
     @Test
     public void copyLogFrame() throws CommandException {
     	
@@ -13,6 +13,7 @@ import org.sigmah.shared.command.GetMonthlyReports;
 import org.sigmah.shared.command.Month;
 import org.sigmah.shared.command.UpdateMonthlyReports;
 import org.sigmah.shared.command.result.MonthlyReportResult;
+import org.sigmah.shared.exception.ConcurrentUpdateException;
 import org.sigmah.test.InjectionSupport;
 
 import java.util.ArrayList;
@@ -80,5 +81,30 @@ public class MonthlyReportsTest extends CommandTestCase {
         Assert.assertEquals(22, result.getData().get(0).getValue(2009, 3).intValue());
     }
 
+    @Test
+    public void testDelete() throws Exception {
+        execute(new UpdateMonthlyReports(6, new UpdateMonthlyReports.Change(6, new Month(2009, 2), null)));
+
+        MonthlyReportResult result = execute(new GetMonthlyReports(6, new Month(2009, 1), new Month(2009, 2)));
+
+        Assert.assertEquals(35, result.getData().get(0).getValue(2009, 1).intValue());
+        Assert.assertNull(result.getData().get(0).getValue(2009, 2));
+    }
+
+    @Test(expected = ConcurrentUpdateException.class)
+    public void testUpdateWithStaleVersion() throws Exception {
+        long version = execute(new GetMonthlyReports(6, new Month(2009, 1), new Month(2009, 2))).getVersion();
+
+        UpdateMonthlyReports update =
+                new UpdateMonthlyReports(6, new UpdateMonthlyReports.Change(6, new Month(2009, 1), 45.0));
+        update.setVersion(version);
+        execute(update);
+
+        UpdateMonthlyReports stale =
+                new UpdateMonthlyReports(6, new UpdateMonthlyReports.Change(6, new Month(2009, 2), 10.0));
+        stale.setVersion(version);
+        execute(stale);
+    }
+
 
 }
@@ -0,0 +1,165 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.endpoint.gwtrpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.sigmah.server.dao.OnDataSet;
+import org.sigmah.server.mock.MockHttpServletRequest;
+import org.sigmah.server.util.BeanMappingModule;
+import org.sigmah.server.util.TemplateModule;
+import org.sigmah.shared.command.Command;
+import org.sigmah.shared.command.GetSchema;
+import org.sigmah.shared.command.result.CommandResult;
+import org.sigmah.shared.domain.User;
+import org.sigmah.shared.dto.SchemaDTO;
+import org.sigmah.test.InjectionSupport;
+import org.sigmah.test.MockHibernateModule;
+import org.sigmah.test.Modules;
+
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.servlet.RequestScopeSupport;
+import com.google.inject.servlet.RequestScoped;
+
+/**
+ * Executes batches of read-only commands within a request, so they are dispatched to the
+ * command threads of the {@link CommandServlet} as in production.
+ */
+@RunWith(InjectionSupport.class)
+@OnDataSet("/dbunit/schema1.db.xml")
+@Modules({
+        ParallelCommandTest.RequestScopedHibernateModule.class,
+        TemplateModule.class,
+        BeanMappingModule.class,
+        GwtRpcModule.class
+})
+public class ParallelCommandTest {
+
+    @Inject
+    private CommandServlet servlet;
+
+    @Inject
+    private Injector injector;
+
+    @Before
+    public void clearEntityManagers() {
+        RequestScopedHibernateModule.TrackingEntityManagerProvider.clear();
+    }
+
+    @Test
+    public void readOnlyCommandsAreExecutedByTheCommandThreads() throws Exception {
+
+        List<CommandResult> results = executeInRequest(new GetSchema(), new GetSchema(), new GetSchema());
+
+        assertEquals(3, results.size());
+        for (CommandResult result : results) {
+            assertTrue("result is " + result, result instanceof SchemaDTO);
+            assertNotNull("PEAR is visible", ((SchemaDTO) result).getDatabaseById(1));
+        }
+
+        List<EntityManager> commandEntityManagers =
+                RequestScopedHibernateModule.TrackingEntityManagerProvider.createdByOtherThreads();
+        assertTrue("commands had their own EntityManagers", commandEntityManagers.size() > 1);
+        for (EntityManager em : commandEntityManagers) {
+            assertFalse("EntityManager of a command is closed", em.isOpen());
+        }
+    }
+
+    @Test
+    public void singleReadOnlyCommandIsExecutedByTheRequestThread() throws Exception {
+
+        List<CommandResult> results = executeInRequest(new GetSchema());
+
+        assertTrue(results.get(0) instanceof SchemaDTO);
+        assertTrue("no command thread was used",
+                RequestScopedHibernateModule.TrackingEntityManagerProvider.createdByOtherThreads().isEmpty());
+    }
+
+    private List<CommandResult> executeInRequest(final Command... commands) throws Exception {
+        return RequestScopeSupport.callInRequest(new MockHttpServletRequest(),
+                new Callable<List<CommandResult>>() {
+
+            @Override
+            public List<CommandResult> call() throws Exception {
+                EntityManager em = injector.getInstance(EntityManager.class);
+                try {
+                    User user = em.find(User.class, 1);
+                    return servlet.handleCommands(user, Arrays.<Command>asList(commands));
+                } finally {
+                    em.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Opens an EntityManager per request, as the {@code HibernateModule} does in
+     * production, and keeps track of them.
+     */
+    public static class RequestScopedHibernateModule extends MockHibernateModule {
+
+        @Override
+        protected void configureEm() {
+            bind(EntityManager.class).toProvider(TrackingEntityManagerProvider.class)
+                    .in(RequestScoped.class);
+        }
+
+        static class TrackingEntityManagerProvider extends EntityManagerProvider {
+
+            private static final List<EntityManager> created = new ArrayList<EntityManager>();
+            private static final List<Thread> threads = new ArrayList<Thread>();
+
+            @Inject
+            public TrackingEntityManagerProvider(EntityManagerFactory emf) {
+                super(emf);
+            }
+
+            @Override
+            public EntityManager get() {
+                EntityManager em = super.get();
+                synchronized (created) {
+                    created.add(em);
+                    threads.add(Thread.currentThread());
+                }
+                return em;
+            }
+
+            static void clear() {
+                synchronized (created) {
+                    created.clear();
+                    threads.clear();
+                }
+            }
+
+            static List<EntityManager> createdByOtherThreads() {
+                List<EntityManager> ems = new ArrayList<EntityManager>();
+                synchronized (created) {
+                    for (int i = 0; i < created.size(); i++) {
+                        if (threads.get(i) != Thread.currentThread()) {
+                            ems.add(created.get(i));
+                        }
+                    }
+                }
+                return ems;
+            }
+        }
+    }
+}
@@ -11,12 +11,16 @@ import org.junit.runner.RunWith;
 import org.sigmah.server.dao.OnDataSet;
 import org.sigmah.shared.command.AddPartner;
 import org.sigmah.shared.command.GetSchema;
+import org.sigmah.shared.command.RemovePartner;
 import org.sigmah.shared.command.result.CreateResult;
+import org.sigmah.shared.domain.UserDatabase;
 import org.sigmah.shared.dto.PartnerDTO;
 import org.sigmah.shared.dto.SchemaDTO;
 import org.sigmah.shared.exception.DuplicateException;
 import org.sigmah.test.InjectionSupport;
 
+import java.util.Date;
+
 @RunWith(InjectionSupport.class)
 @OnDataSet("/dbunit/sites-simple1.db.xml")
 public class PartnerTest extends CommandTestCase {
@@ -59,6 +63,36 @@ public class PartnerTest extends CommandTestCase {
     }
 
 
+    @Test
+    public void addingAndRemovingPartnersMovesTheSchemaStamp() throws Exception {
+        Date initial = lastSchemaUpdate(PEAR_PLUS_DB_ID);
+
+        PartnerDTO newPartner = new PartnerDTO();
+        newPartner.setName("Solidarites");
+        CreateResult cr = execute(new AddPartner(PEAR_PLUS_DB_ID, newPartner));
+
+        Date added = lastSchemaUpdate(PEAR_PLUS_DB_ID);
+        Assert.assertTrue("stamp moved by AddPartner", added.after(initial));
+
+        // the stamp has a millisecond precision
+        waitUntilAfter(added);
+        execute(new RemovePartner(PEAR_PLUS_DB_ID, cr.getNewId()));
+
+        Assert.assertTrue("stamp moved by RemovePartner", lastSchemaUpdate(PEAR_PLUS_DB_ID).after(added));
+        Assert.assertNull(execute(new GetSchema()).getDatabaseById(PEAR_PLUS_DB_ID).getPartnerById(cr.getNewId()));
+    }
+
+    private Date lastSchemaUpdate(int databaseId) {
+        em.clear();
+        return em.find(UserDatabase.class, databaseId).getLastSchemaUpdate();
+    }
+
+    private static void waitUntilAfter(Date date) throws InterruptedException {
+        while (!new Date().after(date)) {
+            Thread.sleep(1);
+        }
+    }
+
     @Test(expected = DuplicateException.class)
     public void testAddDuplicatePartner() throws Exception {
         PartnerDTO newPartner = new PartnerDTO();
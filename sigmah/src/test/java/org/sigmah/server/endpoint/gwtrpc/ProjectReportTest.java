@@ -0,0 +1,172 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.endpoint.gwtrpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.Query;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.sigmah.server.dao.OnDataSet;
+import org.sigmah.shared.command.CreateEntity;
+import org.sigmah.shared.command.GetProjectReport;
+import org.sigmah.shared.command.RemoveProjectReportDraft;
+import org.sigmah.shared.command.UpdateEntity;
+import org.sigmah.shared.domain.report.RichTextBlock;
+import org.sigmah.shared.domain.report.RichTextElement;
+import org.sigmah.shared.dto.report.ProjectReportDTO;
+import org.sigmah.shared.exception.CommandException;
+import org.sigmah.test.InjectionSupport;
+
+@RunWith(InjectionSupport.class)
+@OnDataSet("/dbunit/project-report.db.xml")
+public class ProjectReportTest extends CommandTestCase {
+
+    private static final int REPORT_ID = 1;
+    private static final int VERSION_ID = 1;
+
+    private static final int SHARED_BLOCK_ID = 1;
+    private static final int CONCLUSION_BLOCK_ID = 2;
+
+    @Test
+    public void draftSharesTheBlocksOfItsVersion() throws CommandException {
+        int draftId = createDraft();
+
+        List<RichTextElement> texts = texts(draftId);
+        assertEquals(3, texts.size());
+        assertEquals(SHARED_BLOCK_ID, texts.get(0).getBlock().getId().intValue());
+        assertEquals(CONCLUSION_BLOCK_ID, texts.get(2).getBlock().getId().intValue());
+
+        // only the legacy text got a new block
+        assertEquals(3, blockCount());
+    }
+
+    @Test
+    public void legacyTextIsMovedToABlockByTheDraft() throws CommandException {
+        int draftId = createDraft();
+
+        RichTextElement legacy = texts(VERSION_ID).get(1);
+        assertNull(legacy.getText());
+        assertEquals("Legacy text", legacy.getBlock().getText());
+
+        RichTextElement copy = texts(draftId).get(1);
+        assertNull(copy.getText());
+        assertEquals(legacy.getBlock().getId(), copy.getBlock().getId());
+    }
+
+    @Test
+    public void savingASectionWritesOnlyItsElement() throws CommandException {
+        int draftId = createDraft();
+        List<RichTextElement> texts = texts(draftId);
+
+        Map<String, Object> changes = new HashMap<String, Object>();
+        changes.put(texts.get(0).getId().toString(), "New summary");
+        // unchanged text sent again
+        changes.put(texts.get(2).getId().toString(), "Conclusion");
+        save(draftId, changes);
+
+        texts = texts(draftId);
+        assertEquals("New summary", texts.get(0).getContent());
+        assertEquals("Legacy text", texts.get(1).getContent());
+        assertEquals(CONCLUSION_BLOCK_ID, texts.get(2).getBlock().getId().intValue());
+
+        // the current version keeps its text
+        assertEquals(SHARED_BLOCK_ID, texts(VERSION_ID).get(0).getBlock().getId().intValue());
+        assertEquals(4, blockCount());
+
+        // the author reads the draft
+        ProjectReportDTO report = execute(new GetProjectReport(REPORT_ID));
+        assertEquals(draftId, report.getVersionId().intValue());
+        assertTrue(report.isDraft());
+    }
+
+    @Test
+    public void identicalTextReusesItsBlock() throws CommandException {
+        int draftId = createDraft();
+        List<RichTextElement> texts = texts(draftId);
+
+        save(draftId, texts.get(0).getId(), "Conclusion");
+
+        assertEquals(CONCLUSION_BLOCK_ID, texts(draftId).get(0).getBlock().getId().intValue());
+        assertEquals(3, blockCount());
+    }
+
+    @Test
+    public void replacedBlockIsRemovedWhenUnused() throws CommandException {
+        int draftId = createDraft();
+        int elementId = texts(draftId).get(0).getId();
+
+        save(draftId, elementId, "First try");
+        assertNotNull(block("First try"));
+
+        save(draftId, elementId, "Second try");
+        assertNull(block("First try"));
+        assertNotNull(block("Second try"));
+
+        // still the text of the current version
+        assertNotNull(block("Shared text"));
+    }
+
+    @Test
+    public void removingADraftRemovesItsOwnBlocks() throws CommandException {
+        int draftId = createDraft();
+
+        save(draftId, texts(draftId).get(2).getId(), "Draft only");
+        execute(new RemoveProjectReportDraft(draftId));
+
+        assertNull(block("Draft only"));
+        assertFalse(texts(VERSION_ID).isEmpty());
+        assertEquals(3, blockCount());
+    }
+
+    private int createDraft() throws CommandException {
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put("reportId", REPORT_ID);
+        properties.put("phaseName", "Phase 1");
+
+        return execute(new CreateEntity("ProjectReportDraft", properties)).getNewId();
+    }
+
+    private void save(int versionId, int elementId, String text) throws CommandException {
+        Map<String, Object> changes = new HashMap<String, Object>();
+        changes.put(Integer.toString(elementId), text);
+        save(versionId, changes);
+    }
+
+    private void save(int versionId, Map<String, Object> changes) throws CommandException {
+        execute(new UpdateEntity("ProjectReport", versionId, changes));
+    }
+
+    private List<RichTextElement> texts(int versionId) {
+        Query query = em.createQuery("SELECT e FROM RichTextElement e LEFT JOIN FETCH e.block "
+                + "WHERE e.version.id = :versionId ORDER BY e.sectionId, e.index");
+        query.setParameter("versionId", versionId);
+        return query.getResultList();
+    }
+
+    private RichTextBlock block(String text) {
+        List<RichTextBlock> blocks = em.createQuery("SELECT b FROM RichTextBlock b").getResultList();
+        for (RichTextBlock block : blocks) {
+            if (text.equals(block.getText())) {
+                return block;
+            }
+        }
+        return null;
+    }
+
+    private int blockCount() {
+        return ((Number) em.createQuery("SELECT COUNT(b) FROM RichTextBlock b").getSingleResult()).intValue();
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.mail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal SMTP server accepting every mail, to test the delivery without a real server.
+ */
+public class LocalSmtpServer {
+
+    private final ServerSocket serverSocket;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger messages = new AtomicInteger();
+
+    public LocalSmtpServer() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("localhost"));
+
+        Thread acceptor = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        final Socket socket = serverSocket.accept();
+                        connections.incrementAndGet();
+
+                        Thread session = new Thread(new Runnable() {
+
+                            @Override
+                            public void run() {
+                                handle(socket);
+                            }
+                        });
+                        session.setDaemon(true);
+                        session.start();
+                    }
+                } catch (IOException e) {
+                    // stopped
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private void handle(Socket socket) {
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), "US-ASCII");
+
+            reply(out, "220 localhost");
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.length() < 4 ? line.toUpperCase() : line.substring(0, 4).toUpperCase();
+
+                if ("DATA".equals(command)) {
+                    reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                    while ((line = in.readLine()) != null && !".".equals(line)) {
+                        // content ignored
+                    }
+                    messages.incrementAndGet();
+                    reply(out, "250 OK");
+
+                } else if ("QUIT".equals(command)) {
+                    reply(out, "221 Bye");
+                    break;
+
+                } else {
+                    reply(out, "250 OK");
+                }
+            }
+            socket.close();
+
+        } catch (IOException e) {
+            // connection closed by the client
+        }
+    }
+
+    private static void reply(Writer out, String line) throws IOException {
+        out.write(line + "\r\n");
+        out.flush();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getConnections() {
+        return connections.get();
+    }
+
+    public int getMessages() {
+        return messages.get();
+    }
+
+    public void stop() throws IOException {
+        serverSocket.close();
+    }
+}
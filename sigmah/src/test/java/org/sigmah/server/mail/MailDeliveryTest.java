@@ -0,0 +1,116 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.mail;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+
+public class MailDeliveryTest {
+
+    private File spool;
+    private LocalSmtpServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        spool = File.createTempFile("mail-spool", "");
+        spool.delete();
+        server = new LocalSmtpServer();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.stop();
+        delete(spool);
+    }
+
+    private void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private MailDelivery createDelivery(int port) {
+        Properties properties = new Properties();
+        properties.setProperty(MailSenderImpl.HOST_NAME_KEY, "localhost");
+        properties.setProperty(MailSenderImpl.PORT_KEY, Integer.toString(port));
+        properties.setProperty(MailDelivery.SPOOL_KEY, spool.getAbsolutePath());
+        return new MailDelivery(properties);
+    }
+
+    private MimeMessage createMessage(MailDelivery delivery, int index) throws MessagingException {
+        MimeMessage message = new MimeMessage(delivery.getSession());
+        message.setFrom(new InternetAddress("mailer@sigmah.org"));
+        message.setRecipient(Message.RecipientType.TO, new InternetAddress("user" + index + "@example.org"));
+        message.setSubject("Report " + index);
+        message.setText("Report content");
+        return message;
+    }
+
+    private void waitForMessages(int count) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 30000;
+        while (server.getMessages() < count && System.currentTimeMillis() < timeout) {
+            Thread.sleep(50);
+        }
+    }
+
+    private int spooledCount() {
+        return spool.listFiles().length - 1; // minus the failed directory
+    }
+
+    @Test
+    public void connectionsAreReused() throws Exception {
+        MailDelivery delivery = createDelivery(server.getPort());
+        try {
+            for (int i = 0; i < 1000; i++) {
+                delivery.spool(createMessage(delivery, i));
+            }
+            waitForMessages(1000);
+
+            Assert.assertEquals(1000, server.getMessages());
+            Assert.assertTrue(server.getConnections() <= 4);
+
+        } finally {
+            delivery.shutdown();
+        }
+    }
+
+    @Test
+    public void spooledMailsSurviveRestart() throws Exception {
+        LocalSmtpServer down = new LocalSmtpServer();
+        down.stop();
+
+        MailDelivery delivery = createDelivery(down.getPort());
+        for (int i = 0; i < 10; i++) {
+            delivery.spool(createMessage(delivery, i));
+        }
+        Thread.sleep(500);
+        delivery.shutdown();
+        Assert.assertEquals(10, spooledCount());
+
+        MailDelivery restarted = createDelivery(server.getPort());
+        try {
+            waitForMessages(10);
+            Assert.assertEquals(10, server.getMessages());
+
+        } finally {
+            restarted.shutdown();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.mapping;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dozer.Mapper;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.sigmah.server.util.BeanMappingModule;
+import org.sigmah.server.util.SpecializedMapper;
+import org.sigmah.shared.domain.Activity;
+import org.sigmah.shared.domain.Attribute;
+import org.sigmah.shared.domain.AttributeGroup;
+import org.sigmah.shared.domain.Indicator;
+import org.sigmah.shared.domain.LocationType;
+import org.sigmah.shared.domain.OrgUnit;
+import org.sigmah.shared.domain.UserDatabase;
+import org.sigmah.shared.dto.ActivityDTO;
+import org.sigmah.shared.dto.AttributeDTO;
+import org.sigmah.shared.dto.AttributeGroupDTO;
+import org.sigmah.shared.dto.IndicatorDTO;
+import org.sigmah.shared.dto.PartnerDTO;
+
+/**
+ * Checks that the specialized mappings produce the same DTOs as Dozer, and compares
+ * their speed on the schema of a large organization.
+ */
+public class SpecializedMapperTest {
+
+    private static final Log log = LogFactory.getLog(SpecializedMapperTest.class);
+
+    private final Mapper dozer = BeanMappingModule.newDozerMapper();
+    private final Mapper specialized = new SpecializedMapper(dozer);
+
+    @Test
+    public void activitiesMatchDozer() {
+        for (Activity activity : largeSchema(20)) {
+            assertActivityEquals(dozer.map(activity, ActivityDTO.class),
+                    specialized.map(activity, ActivityDTO.class));
+        }
+    }
+
+    @Test
+    public void partnersMatchDozer() {
+        for (OrgUnit unit : partners(50)) {
+            PartnerDTO expected = dozer.map(unit, PartnerDTO.class);
+            PartnerDTO actual = specialized.map(unit, PartnerDTO.class);
+            assertEquals(expected.getProperties(), actual.getProperties());
+        }
+    }
+
+    @Test
+    public void missingRelationsMatchDozer() {
+        Activity activity = new Activity(1, "No location type");
+        Indicator indicator = new Indicator();
+        indicator.setId(2);
+        indicator.setName("No database");
+        activity.getIndicators().add(indicator);
+
+        assertActivityEquals(dozer.map(activity, ActivityDTO.class),
+                specialized.map(activity, ActivityDTO.class));
+    }
+
+    @Test
+    @Ignore("benchmark")
+    public void benchmark() {
+        List<Activity> schema = largeSchema(500);
+        List<OrgUnit> partners = partners(2000);
+
+        for (int round = 0; round != 5; ++round) {
+            log.info("round " + round + ": dozer " + time(dozer, schema, partners) +
+                    " ms, specialized " + time(specialized, schema, partners) + " ms");
+        }
+    }
+
+    private static long time(Mapper mapper, List<Activity> schema, List<OrgUnit> partners) {
+        long start = System.currentTimeMillis();
+        for (Activity activity : schema) {
+            mapper.map(activity, ActivityDTO.class);
+        }
+        for (OrgUnit unit : partners) {
+            mapper.map(unit, PartnerDTO.class);
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    private static void assertActivityEquals(ActivityDTO expected, ActivityDTO actual) {
+        assertEquals(expected.getProperties(), actual.getProperties());
+
+        assertEquals(expected.getIndicators().size(), actual.getIndicators().size());
+        for (int i = 0; i != expected.getIndicators().size(); ++i) {
+            IndicatorDTO expectedIndicator = expected.getIndicators().get(i);
+            IndicatorDTO actualIndicator = actual.getIndicators().get(i);
+            assertEquals(expectedIndicator.getProperties(), actualIndicator.getProperties());
+        }
+
+        assertEquals(expected.getAttributeGroups().size(), actual.getAttributeGroups().size());
+        for (int i = 0; i != expected.getAttributeGroups().size(); ++i) {
+            AttributeGroupDTO expectedGroup = expected.getAttributeGroups().get(i);
+            AttributeGroupDTO actualGroup = actual.getAttributeGroups().get(i);
+            assertEquals(expectedGroup.getProperties(), actualGroup.getProperties());
+
+            assertEquals(expectedGroup.getAttributes().size(), actualGroup.getAttributes().size());
+            for (int j = 0; j != expectedGroup.getAttributes().size(); ++j) {
+                AttributeDTO expectedAttribute = expectedGroup.getAttributes().get(j);
+                AttributeDTO actualAttribute = actualGroup.getAttributes().get(j);
+                assertEquals(expectedAttribute.getProperties(), actualAttribute.getProperties());
+            }
+        }
+    }
+
+    /**
+     * Builds activities with 25 indicators and 4 attribute groups of 8 attributes each,
+     * roughly the shape of the databases of our largest organizations.
+     */
+    private static List<Activity> largeSchema(int activityCount) {
+        UserDatabase database = new UserDatabase();
+        database.setId(1);
+
+        LocationType locationType = new LocationType();
+        locationType.setId(3);
+
+        List<Activity> activities = new ArrayList<Activity>();
+        int nextId = 1;
+        for (int a = 0; a != activityCount; ++a) {
+            Activity activity = new Activity(nextId++, "Activity " + a);
+            activity.setCategory("Category " + (a % 7));
+            activity.setAssessment(a % 5 == 0);
+            activity.setReportingFrequency(a % 2);
+            activity.setMapIcon("icon" + (a % 3));
+            activity.setLocationType(locationType);
+
+            for (int i = 0; i != 25; ++i) {
+                Indicator indicator = new Indicator();
+                indicator.setId(nextId++);
+                indicator.setName("Indicator " + i);
+                indicator.setUnits("people");
+                indicator.setCode("I" + i);
+                indicator.setDescription(i % 2 == 0 ? null : "Description " + i);
+                indicator.setCategory("Category " + (i % 4));
+                indicator.setObjective(i % 3 == 0 ? null : Double.valueOf(i * 100));
+                indicator.setAggregation(i % 3);
+                indicator.setCollectIntervention(i % 2 == 0);
+                indicator.setCollectMonitoring(i % 3 == 0);
+                indicator.setDirectDataEntryEnabled(i % 4 == 0);
+                indicator.setSourceOfVerification("Survey");
+                indicator.setDatabase(i % 5 == 0 ? null : database);
+                indicator.setLabels(i % 6 == 0 ? Arrays.asList("Yes", "No") : null);
+                indicator.setActivity(activity);
+                activity.getIndicators().add(indicator);
+            }
+
+            for (int g = 0; g != 4; ++g) {
+                AttributeGroup group = new AttributeGroup();
+                group.setName("Group " + g);
+                group.setMultipleAllowed(g % 2 == 0);
+                for (int t = 0; t != 8; ++t) {
+                    Attribute attribute = new Attribute();
+                    attribute.setId(nextId++);
+                    attribute.setName("Attribute " + t);
+                    attribute.setGroup(group);
+                    group.getAttributes().add(attribute);
+                }
+                activity.getAttributeGroups().add(group);
+            }
+            activities.add(activity);
+        }
+        return activities;
+    }
+
+    private static List<OrgUnit> partners(int count) {
+        List<OrgUnit> units = new ArrayList<OrgUnit>();
+        for (int i = 0; i != count; ++i) {
+            OrgUnit unit = new OrgUnit();
+            unit.setId(i + 1);
+            unit.setName("OU" + i);
+            unit.setFullName(i % 3 == 0 ? null : "Org unit " + i);
+            units.add(unit);
+        }
+        return units;
+    }
+}
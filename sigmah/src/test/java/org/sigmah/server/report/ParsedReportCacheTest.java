@@ -0,0 +1,66 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.report;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.sigmah.shared.report.model.Report;
+
+import javax.xml.bind.JAXBException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+public class ParsedReportCacheTest {
+
+    private String readXml(String filename) throws IOException {
+        Reader reader = new InputStreamReader(
+                getClass().getResourceAsStream("/report-def/parse-test/" + filename), "UTF-8");
+        try {
+            StringBuilder xml = new StringBuilder();
+            char[] buffer = new char[4096];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                xml.append(buffer, 0, read);
+            }
+            return xml.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void eachCallReturnsItsOwnCopy() throws IOException, JAXBException {
+        ParsedReportCache cache = new ParsedReportCache();
+        String xml = readXml("report-elements.xml");
+
+        Report first = cache.get(1, xml);
+        Report second = cache.get(1, xml);
+
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(first.getTitle(), second.getTitle());
+        Assert.assertEquals(first.getElements().size(), second.getElements().size());
+        Assert.assertNotSame(first.getElements().get(0), second.getElements().get(0));
+
+        // changes made while generating a report must not leak into the next ones
+        first.setTitle("Changed");
+        first.getElements().clear();
+
+        Report third = cache.get(1, xml);
+        Assert.assertEquals(second.getTitle(), third.getTitle());
+        Assert.assertEquals(second.getElements().size(), third.getElements().size());
+    }
+
+    @Test
+    public void updatedDefinitionsAreParsedAgain() throws IOException, JAXBException {
+        ParsedReportCache cache = new ParsedReportCache();
+
+        Assert.assertEquals("My Title", cache.get(1, readXml("report.xml")).getTitle());
+
+        String updated = readXml("report.xml").replace("My Title", "My New Title");
+        Assert.assertEquals("My New Title", cache.get(1, updated).getTitle());
+    }
+}
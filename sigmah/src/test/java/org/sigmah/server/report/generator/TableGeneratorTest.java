@@ -126,6 +126,11 @@ public class TableGeneratorTest {
             }
         }
 
+        @Override
+        public <RowT> List<RowT> query(User user, Filter filter, List<SiteOrder> orderings, SiteProjectionBinder<RowT> binder, SiteProjection projection, int offset, int limit) {
+            return query(user, filter, orderings, binder, projection.getRetrieve(), offset, limit);
+        }
+
         @Override
         public int queryCount(User user, Filter filter) {
             return 0;
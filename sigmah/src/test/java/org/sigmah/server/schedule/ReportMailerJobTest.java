@@ -0,0 +1,164 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.schedule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import org.apache.commons.mail.Email;
+import org.apache.commons.mail.EmailException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.sigmah.server.dao.OnDataSet;
+import org.sigmah.server.mail.MailSender;
+import org.sigmah.server.report.ParsedReportCache;
+import org.sigmah.server.report.generator.ReportGenerator;
+import org.sigmah.server.report.renderer.itext.RtfReportRenderer;
+import org.sigmah.shared.dao.Filter;
+import org.sigmah.shared.domain.User;
+import org.sigmah.shared.report.content.ReportContent;
+import org.sigmah.shared.report.model.DateRange;
+import org.sigmah.shared.report.model.Report;
+import org.sigmah.shared.report.model.ReportElement;
+import org.sigmah.test.InjectionSupport;
+import org.sigmah.test.MockHibernateModule;
+import org.sigmah.test.Modules;
+
+import com.google.inject.Inject;
+
+@RunWith(InjectionSupport.class)
+@OnDataSet("/dbunit/report-mailer.db.xml")
+@Modules({MockHibernateModule.class})
+public class ReportMailerJobTest {
+
+    @Inject
+    private EntityManager em;
+
+    private RecordingGenerator generator;
+    private RecordingMailSender mailer;
+    private final List<File> renderings = Collections.synchronizedList(new ArrayList<File>());
+
+    @Before
+    public void setUp() {
+        generator = new RecordingGenerator();
+        mailer = new RecordingMailSender();
+        renderings.clear();
+    }
+
+    @Test
+    public void subscribersSeeingTheSameDataShareAGeneration() {
+        newJob().execute(dueDate());
+
+        // Bavon and Stefan have the same permissions, Marlene and Lisa differ
+        assertEquals(3, generator.userIds.size());
+        assertTrue(generator.userIds.contains(4));
+        assertTrue(generator.userIds.contains(5));
+        assertTrue(generator.userIds.contains(2) != generator.userIds.contains(3));
+
+        assertEquals(4, mailer.sent.size());
+        assertEquals(3, renderings.size());
+    }
+
+    @Test
+    public void renderingsAreDeletedAfterTheLastMail() {
+        newJob().execute(dueDate());
+
+        for (File rendering : renderings) {
+            assertFalse(rendering + " deleted", rendering.exists());
+        }
+    }
+
+    @Test
+    public void renderingsAreDeletedWhenAMailFails() {
+        mailer.failingAddress = "stefan@nrcdrc.org";
+
+        newJob().execute(dueDate());
+
+        assertEquals(3, mailer.sent.size());
+        assertEquals(3, renderings.size());
+        for (File rendering : renderings) {
+            assertFalse(rendering + " deleted", rendering.exists());
+        }
+    }
+
+    private ReportMailerJob newJob() {
+        return new ReportMailerJob(em, generator, new StubRenderer(), mailer, new ParsedReportCache()) {
+
+            @Override
+            protected File createRenderingFile() throws IOException {
+                File file = super.createRenderingFile();
+                renderings.add(file);
+                return file;
+            }
+        };
+    }
+
+    /**
+     * @return a day on which the monthly report of the dataset is due
+     */
+    private static Date dueDate() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2011, Calendar.MARCH, 15);
+        return calendar.getTime();
+    }
+
+    private static class RecordingGenerator extends ReportGenerator {
+
+        private final List<Integer> userIds = new ArrayList<Integer>();
+
+        public RecordingGenerator() {
+            super(null, null, null, null, null);
+        }
+
+        @Override
+        public void generate(User user, Report report, Filter inheritedFilter, DateRange dateRange) {
+            userIds.add(user.getId());
+
+            ReportContent content = new ReportContent();
+            content.setFileName("Report");
+            report.setContent(content);
+        }
+    }
+
+    private static class StubRenderer extends RtfReportRenderer {
+
+        public StubRenderer() {
+            super(null, null, null, null, null);
+        }
+
+        @Override
+        public void render(ReportElement element, OutputStream os) throws IOException {
+            os.write("{\\rtf1 Report}".getBytes("US-ASCII"));
+        }
+    }
+
+    private static class RecordingMailSender implements MailSender {
+
+        private final List<Email> sent = Collections.synchronizedList(new ArrayList<Email>());
+        private volatile String failingAddress;
+
+        @Override
+        public void send(Email message) throws EmailException {
+            if (message.getToAddresses().toString().contains(String.valueOf(failingAddress))) {
+                throw new EmailException("Mailbox unavailable");
+            }
+            sent.add(message);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.sync;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+public class AdminSnapshotStoreTest {
+
+    private Properties config;
+
+    @Before
+    public void setUp() {
+        File root = new File(System.getProperty("java.io.tmpdir"), "AdminSnapshotStoreTest" + System.nanoTime());
+        config = new Properties();
+        config.setProperty("sync.snapshots.root", root.getAbsolutePath());
+    }
+
+    @Test
+    public void storeAndReload() throws IOException {
+        AdminSnapshotStore store = new AdminSnapshotStore(config);
+        AdminSnapshot snapshot = store.put(3, 1000L, 12, "{\"sql\":\"Kivu\"}");
+
+        assertThat(store.get(3, 1000L, 12), notNullValue());
+        assertThat(store.read(snapshot), equalTo("{\"sql\":\"Kivu\"}"));
+
+        // a new store must find the snapshot through the index on disk
+        AdminSnapshotStore reopened = new AdminSnapshotStore(config);
+        AdminSnapshot reloaded = reopened.get(3, 1000L, 12);
+        assertThat(reloaded, notNullValue());
+        assertThat(reloaded.getHash(), equalTo(snapshot.getHash()));
+    }
+
+    @Test
+    public void staleSnapshotIsReplaced() throws IOException {
+        AdminSnapshotStore store = new AdminSnapshotStore(config);
+        AdminSnapshot first = store.put(3, 1000L, 12, "{\"sql\":\"Kivu\"}");
+
+        assertThat(store.get(3, 2000L, 12), nullValue());
+        assertThat(store.get(3, 1000L, 11), nullValue());
+
+        AdminSnapshot second = store.put(3, 2000L, 12, "{\"sql\":\"Nord Kivu\"}");
+
+        assertThat(second.getHash(), not(equalTo(first.getHash())));
+        assertThat(first.getFile().exists(), equalTo(false));
+        assertThat(store.read(store.get(3, 2000L, 12)), equalTo("{\"sql\":\"Nord Kivu\"}"));
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.util.logging;
+
+import org.apache.commons.mail.Email;
+import org.apache.commons.mail.EmailException;
+import org.junit.Assert;
+import org.junit.Test;
+import org.sigmah.server.mail.MailSender;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class ExceptionAlerterTest {
+
+    private static class RecordingMailSender implements MailSender {
+
+        private final List<Email> sent = Collections.synchronizedList(new ArrayList<Email>());
+
+        @Override
+        public void send(Email message) throws EmailException {
+            sent.add(message);
+        }
+    }
+
+    private Throwable fail(String message) {
+        try {
+            throw new IllegalStateException(message);
+        } catch (IllegalStateException e) {
+            return e;
+        }
+    }
+
+    @Test
+    public void sameExceptionsHaveSameFingerprint() {
+        List<Throwable> caught = new ArrayList<Throwable>();
+        for (int i = 0; i < 2; i++) {
+            caught.add(fail("row " + i));
+        }
+
+        Assert.assertEquals(ExceptionAlerter.fingerprint(caught.get(0)), ExceptionAlerter.fingerprint(caught.get(1)));
+        Assert.assertEquals(ExceptionAlerter.fingerprint(caught.get(0)),
+                ExceptionAlerter.fingerprint(new RuntimeException("wrapped", caught.get(1))));
+        Assert.assertFalse(ExceptionAlerter.fingerprint(caught.get(0)).equals(
+                ExceptionAlerter.fingerprint(new IllegalArgumentException())));
+    }
+
+    @Test
+    public void exceptionsAreSentInOneDigest() throws EmailException {
+        RecordingMailSender mailSender = new RecordingMailSender();
+        ExceptionAlerter alerter = new ExceptionAlerter(mailSender, Collections.singletonList("alerts@example.org"));
+
+        for (int i = 0; i < 100; i++) {
+            alerter.alert("handleCommand", fail("row " + i));
+        }
+        alerter.alert("handleCommand", new IllegalArgumentException());
+        Assert.assertTrue(mailSender.sent.isEmpty());
+
+        alerter.flush();
+        Assert.assertEquals(1, mailSender.sent.size());
+
+        alerter.flush();
+        Assert.assertEquals(1, mailSender.sent.size());
+    }
+
+    @Test
+    public void digestsAreRateLimited() throws EmailException {
+        RecordingMailSender mailSender = new RecordingMailSender();
+        ExceptionAlerter alerter = new ExceptionAlerter(mailSender, Collections.singletonList("alerts@example.org"));
+
+        for (int i = 0; i < ExceptionAlerter.MAX_DIGESTS_PER_HOUR + 5; i++) {
+            alerter.alert("handleCommand", fail("row " + i));
+            alerter.flush();
+        }
+        Assert.assertEquals(ExceptionAlerter.MAX_DIGESTS_PER_HOUR, mailSender.sent.size());
+    }
+
+    @Test
+    public void noExceptionIsLostWhileDigestsAreBuilt() throws Exception {
+        RecordingMailSender mailSender = new RecordingMailSender();
+        final ExceptionAlerter alerter = new ExceptionAlerter(mailSender, Collections.singletonList("alerts@example.org"));
+        final Throwable caught = fail("row");
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread() {
+
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        alerter.alert("handleCommand", caught);
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        int total = 0;
+        for (int i = 0; i < ExceptionAlerter.MAX_DIGESTS_PER_HOUR - 1; i++) {
+            total += alerter.flush();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        total += alerter.flush();
+
+        Assert.assertEquals(40000, total);
+    }
+
+    @Test
+    public void pendingExceptionsAreSentOnShutdown() throws Exception {
+        RecordingMailSender mailSender = new RecordingMailSender();
+        ExceptionAlerter alerter = new ExceptionAlerter(mailSender, Collections.singletonList("alerts@example.org"));
+
+        alerter.alert("handleCommand", fail("row"));
+        alerter.shutdown();
+
+        for (int i = 0; i < 50 && mailSender.sent.isEmpty(); i++) {
+            Thread.sleep(100);
+        }
+        Assert.assertEquals(1, mailSender.sent.size());
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.server.util.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+public class CommandMetricsTest {
+
+    private String write(CommandMetrics metrics) throws IOException {
+        StringWriter writer = new StringWriter();
+        metrics.write(writer);
+        return writer.toString();
+    }
+
+    @Test
+    public void bucketsAreCumulative() throws IOException {
+        CommandMetrics metrics = new CommandMetrics();
+        metrics.recordExecution("GetProject", TimeUnit.MILLISECONDS.toNanos(3), false, 2);
+        metrics.recordExecution("GetProject", TimeUnit.MILLISECONDS.toNanos(200), true, 5);
+        metrics.recordExecution("GetProject", TimeUnit.SECONDS.toNanos(30), false, 1);
+
+        String text = write(metrics);
+
+        Assert.assertTrue(text.contains("sigmah_command_duration_seconds_bucket{command=\"GetProject\",le=\"0.005\"} 1\n"));
+        Assert.assertTrue(text.contains("sigmah_command_duration_seconds_bucket{command=\"GetProject\",le=\"0.1\"} 1\n"));
+        Assert.assertTrue(text.contains("sigmah_command_duration_seconds_bucket{command=\"GetProject\",le=\"0.25\"} 2\n"));
+        Assert.assertTrue(text.contains("sigmah_command_duration_seconds_bucket{command=\"GetProject\",le=\"10.0\"} 2\n"));
+        Assert.assertTrue(text.contains("sigmah_command_duration_seconds_bucket{command=\"GetProject\",le=\"+Inf\"} 3\n"));
+        Assert.assertTrue(text.contains("sigmah_command_duration_seconds_count{command=\"GetProject\"} 3\n"));
+        Assert.assertTrue(text.contains("sigmah_command_errors_total{command=\"GetProject\"} 1\n"));
+        Assert.assertTrue(text.contains("sigmah_command_statements_total{command=\"GetProject\"} 8\n"));
+    }
+
+    @Test
+    public void responsesAreRecordedApart() throws IOException {
+        CommandMetrics metrics = new CommandMetrics();
+        metrics.recordResponse(Collections.singletonList("GetSchema"), 100);
+        metrics.recordResponse(Collections.singletonList("GetSchema"), 50);
+
+        String text = write(metrics);
+
+        Assert.assertTrue(text.contains("sigmah_command_response_characters_sum{command=\"GetSchema\"} 150\n"));
+        Assert.assertTrue(text.contains("sigmah_command_response_characters_count{command=\"GetSchema\"} 2\n"));
+        Assert.assertFalse(text.contains("sigmah_command_duration_seconds_count{command=\"GetSchema\"}"));
+    }
+
+    @Test
+    public void batchedResponsesAreSplitBetweenTheirCommands() throws IOException {
+        CommandMetrics metrics = new CommandMetrics();
+        metrics.recordResponse(Arrays.asList("GetProject", "GetSchema", "GetProject"), 100);
+
+        String text = write(metrics);
+
+        Assert.assertTrue(text.contains("sigmah_command_response_characters_sum{command=\"GetProject\"} 67\n"));
+        Assert.assertTrue(text.contains("sigmah_command_response_characters_count{command=\"GetProject\"} 2\n"));
+        Assert.assertTrue(text.contains("sigmah_command_response_characters_sum{command=\"GetSchema\"} 33\n"));
+        Assert.assertTrue(text.contains("sigmah_command_response_characters_count{command=\"GetSchema\"} 1\n"));
+    }
+
+    @Test
+    public void statementsOfNestedMeasuresCountForTheOuterOne() {
+        StatementCountingInterceptor interceptor = new StatementCountingInterceptor();
+
+        int[] outer = StatementCountingInterceptor.start();
+        interceptor.onPrepareStatement("select 1");
+
+        int[] inner = StatementCountingInterceptor.start();
+        interceptor.onPrepareStatement("select 2");
+        interceptor.onPrepareStatement("select 3");
+        Assert.assertEquals(2, StatementCountingInterceptor.stop(inner));
+
+        Assert.assertEquals(3, StatementCountingInterceptor.stop(outer));
+
+        // not measured anymore
+        interceptor.onPrepareStatement("select 4");
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.shared.report.content;
+
+import org.junit.Test;
+import org.sigmah.shared.report.model.DateDimension;
+import org.sigmah.shared.report.model.DateUnit;
+import org.sigmah.shared.report.model.Dimension;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class PivotTableDataTest {
+
+    private static final Comparator<PivotTableData.Axis> BY_YEAR = new Comparator<PivotTableData.Axis>() {
+        @Override
+        public int compare(PivotTableData.Axis a1, PivotTableData.Axis a2) {
+            return ((YearCategory) a1.getCategory()).getYear() - ((YearCategory) a2.getCategory()).getYear();
+        }
+    };
+
+    @Test
+    public void childrenAreSortedWithOrdinals() {
+        Dimension yearDim = new DateDimension(DateUnit.YEAR);
+        PivotTableData table = new PivotTableData(new ArrayList<Dimension>(), new ArrayList<Dimension>());
+
+        PivotTableData.Axis root = table.getRootRow();
+        PivotTableData.Axis y2009 = root.addChild(yearDim, new YearCategory(2009), "2009", BY_YEAR);
+        PivotTableData.Axis y2007 = root.addChild(yearDim, new YearCategory(2007), "2007", BY_YEAR);
+        PivotTableData.Axis y2008 = root.addChild(yearDim, new YearCategory(2008), "2008", BY_YEAR);
+
+        table.sortAxes();
+
+        assertSame(y2007, root.getChildren().get(0));
+        assertSame(y2008, root.getChildren().get(1));
+        assertSame(y2009, root.getChildren().get(2));
+
+        assertEquals(0, y2007.getOrdinal());
+        assertEquals(2, y2009.getOrdinal());
+
+        assertSame(y2007, y2008.nextSibling());
+        assertSame(y2009, y2008.prevSibling());
+        assertNull(y2007.nextSibling());
+        assertNull(y2009.prevSibling());
+        assertSame(y2008, root.getChild(new YearCategory(2008)));
+    }
+}
@@ -0,0 +1,25 @@
+/*
+ * All Sigmah code is released under the GNU General Public License v3
+ * See COPYRIGHT.txt and LICENSE.txt.
+ */
+
+package org.sigmah.test;
+
+import org.sigmah.server.dao.PivotDAO;
+import org.sigmah.server.dao.cache.CachingPivotDAO;
+import org.sigmah.server.dao.cache.CachingSiteTableDAO;
+import org.sigmah.shared.dao.SiteTableDAO;
+
+/**
+ * {@link MockHibernateModule} keeping the results of the pivot and site table queries in
+ * the cache, as in production. The tests using it must not share the cached results
+ * between datasets.
+ */
+public class CachingMockHibernateModule extends MockHibernateModule {
+
+    @Override
+    protected void configureCachedDAOs() {
+        bind(SiteTableDAO.class).to(CachingSiteTableDAO.class);
+        bind(PivotDAO.class).to(CachingPivotDAO.class);
+    }
+}
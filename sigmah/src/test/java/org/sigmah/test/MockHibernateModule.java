@@ -12,7 +12,9 @@ import javax.persistence.EntityManagerFactory;
 
 import org.hibernate.ejb.Ejb3Configuration;
 import org.sigmah.server.dao.hibernate.HibernateModule;
+import org.sigmah.server.dao.hibernate.HibernateSiteTableDAO;
 import org.sigmah.server.domain.PersistentClasses;
+import org.sigmah.shared.dao.SiteTableDAO;
 
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
@@ -72,4 +74,11 @@ public class MockHibernateModule extends HibernateModule {
         bind(EntityManager.class).toProvider(EntityManagerProvider.class)
                 .in(TestScoped.class);
     }
+
+    @Override
+    protected void configureCachedDAOs() {
+        // the datasets are reloaded between the tests without going through the handlers
+        // which invalidate the cached results, so the DAOs are used directly
+        bind(SiteTableDAO.class).to(HibernateSiteTableDAO.class);
+    }
 }